@@ -0,0 +1,20 @@
+#!/bin/bash
+# Builds the application and the JMH benchmarks, runs them and stores the results as JSON,
+# one file per run named after the commit, so runs can be compared over time.
+#
+# Usage: ./benchmarks/run.sh [JMH options], e.g. ./benchmarks/run.sh PresignBenchmark -f 1
+#   (no options: every benchmark, including the end-to-end scenario)
+
+set -e
+
+cd "$(dirname "$0")/.."
+OUT=benchmarks/results
+mkdir -p "$OUT"
+
+./mvnw -q install -DskipTests
+./mvnw -q -f benchmarks/pom.xml package
+
+RESULT="$OUT/$(date -u +%Y%m%dT%H%M%SZ)-$(git rev-parse --short HEAD).json"
+java -jar benchmarks/target/benchmarks.jar -rf json -rff "$RESULT" "$@"
+
+echo "📊 Results written to $RESULT"
@@ -0,0 +1,146 @@
+package com.peerlink.fileSharer.benchmarks;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.peerlink.fileSharer.FileSharerApplication;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.ServerSocket;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * The full application on a free port, with H2 (PostgreSQL mode) in place of PostgreSQL
+ * and the local storage backend in place of S3, plus an HTTP client to drive it.
+ */
+public final class BenchmarkApplication implements AutoCloseable {
+
+    private final ConfigurableApplicationContext context;
+    private final String baseUrl;
+    private final ObjectMapper objectMapper;
+    private final HttpClient httpClient = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build();
+
+    private BenchmarkApplication(ConfigurableApplicationContext context, String baseUrl) {
+        this.context = context;
+        this.baseUrl = baseUrl;
+        this.objectMapper = context.getBean(ObjectMapper.class);
+    }
+
+    /**
+     * @param overrides Application properties on top of the benchmark defaults.
+     */
+    public static BenchmarkApplication start(Map<String, String> overrides) throws IOException {
+        int port;
+        try (ServerSocket socket = new ServerSocket(0)) {
+            port = socket.getLocalPort();
+        }
+        String baseUrl = "http://localhost:" + port;
+
+        Map<String, Object> properties = new HashMap<>();
+        properties.put("server.port", String.valueOf(port));
+        properties.put("spring.datasource.url",
+            "jdbc:h2:mem:" + UUID.randomUUID() + ";MODE=PostgreSQL;DATABASE_TO_LOWER=TRUE;DB_CLOSE_DELAY=-1");
+        properties.put("spring.jpa.hibernate.ddl-auto", "create");
+        properties.put("app.storage.backend", "local");
+        properties.put("app.storage.local.root", Files.createTempDirectory("benchmark-storage").toString());
+        properties.put("app.storage.local.signing-key", "benchmark-signing-key");
+        properties.put("app.storage.local.public-base-url", baseUrl);
+        properties.put("app.ratelimit.enabled", "false"); // All clients share one address
+        properties.put("management.tracing.sampling.probability", "0");
+        properties.put("logging.level.root", "WARN");
+        properties.putAll(overrides);
+
+        ConfigurableApplicationContext context = new SpringApplicationBuilder(
+            FileSharerApplication.class, BenchmarkDatabaseConfig.class
+        ).properties(properties).run();
+        return new BenchmarkApplication(context, baseUrl);
+    }
+
+    public HttpRequest.Builder request(String path) {
+        return HttpRequest.newBuilder(URI.create(baseUrl + path));
+    }
+
+    public HttpRequest.Builder postJson(String path, Object body) {
+        try {
+            return request(path)
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofByteArray(objectMapper.writeValueAsBytes(body)));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Sends the request and fails unless the response is 200 OK.
+     */
+    public <T> HttpResponse<T> send(HttpRequest.Builder request, HttpResponse.BodyHandler<T> handler)
+        throws IOException, InterruptedException {
+        HttpResponse<T> response = httpClient.send(request.build(), handler);
+        if (response.statusCode() != 200) {
+            throw new IllegalStateException(response.uri() + " returned " + response.statusCode());
+        }
+        return response;
+    }
+
+    /**
+     * Sends the request and returns whatever status came back.
+     */
+    public int sendForStatus(HttpRequest.Builder request) throws IOException, InterruptedException {
+        return httpClient.send(request.build(), HttpResponse.BodyHandlers.discarding()).statusCode();
+    }
+
+    /**
+     * Uploads the bytes as a guest through /files/upload/stream.
+     * @return The new share code.
+     */
+    public String uploadStream(byte[] payload) throws IOException, InterruptedException {
+        HttpResponse<String> response = send(
+            request("/files/upload/stream?filename=payload.bin")
+                .header("Content-Type", "application/octet-stream")
+                .POST(HttpRequest.BodyPublishers.ofByteArray(payload)),
+            HttpResponse.BodyHandlers.ofString()
+        );
+        return json(response.body()).get("shareCode").asText();
+    }
+
+    /**
+     * Uploads the bytes as a guest through /files/upload, as a multipart/form-data body.
+     * @return The new share code.
+     */
+    public String uploadMultipart(byte[] payload) throws IOException, InterruptedException {
+        String boundary = "----fileSharerBenchmarkBoundary";
+        String head = "--" + boundary + "\r\n"
+            + "Content-Disposition: form-data; name=\"file\"; filename=\"payload.bin\"\r\n"
+            + "Content-Type: application/octet-stream\r\n\r\n";
+        String tail = "\r\n--" + boundary + "--\r\n";
+        HttpResponse<String> response = send(
+            request("/files/upload")
+                .header("Content-Type", "multipart/form-data; boundary=" + boundary)
+                .POST(HttpRequest.BodyPublishers.concat(
+                    HttpRequest.BodyPublishers.ofString(head),
+                    HttpRequest.BodyPublishers.ofByteArray(payload),
+                    HttpRequest.BodyPublishers.ofString(tail)
+                )),
+            HttpResponse.BodyHandlers.ofString()
+        );
+        return json(response.body()).get("shareCode").asText();
+    }
+
+    public JsonNode json(String body) throws IOException {
+        return objectMapper.readTree(body);
+    }
+
+    @Override
+    public void close() {
+        context.close();
+    }
+}
@@ -0,0 +1,19 @@
+package com.peerlink.fileSharer.benchmarks;
+
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import javax.sql.DataSource;
+
+/**
+ * Replaces Spring Boot's JdbcTemplate when the application runs on H2 for the end-to-end benchmark.
+ */
+@Configuration(proxyBeanMethods = false)
+public class BenchmarkDatabaseConfig {
+
+    @Bean
+    public JdbcTemplate jdbcTemplate(DataSource dataSource) {
+        return new H2JdbcTemplate(dataSource);
+    }
+}
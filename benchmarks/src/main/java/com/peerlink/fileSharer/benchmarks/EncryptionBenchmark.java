@@ -0,0 +1,119 @@
+package com.peerlink.fileSharer.benchmarks;
+
+import com.peerlink.fileSharer.service.EnvelopeEncryption;
+import com.peerlink.fileSharer.service.UploadEncoder;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Base64;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Throughput of the encryption stage against plaintext: storing a file through UploadEncoder
+ * with and without app.encryption.enabled, decrypting a whole object, and decrypting a 1 MiB
+ * range from its middle. Content is random, so compression never kicks in. Divide the file
+ * size by the time per operation for bytes per second; encrypt and decrypt should come close
+ * to plaintext on CPUs with AES instructions.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class EncryptionBenchmark {
+
+    private static final int RANGE_BYTES = 1024 * 1024;
+
+    @Param({"67108864"})
+    private int fileSize;
+
+    @Param({"16", "64", "256"})
+    private int segmentKb;
+
+    private byte[] content;
+    private byte[] stored;
+    private EnvelopeEncryption.Envelope envelope;
+    private UploadEncoder plainEncoder;
+    private UploadEncoder encryptingEncoder;
+    private EnvelopeEncryption encryption;
+    private final byte[] buffer = new byte[64 * 1024];
+
+    @Setup
+    public void setUp() throws IOException {
+        Random random = new Random(42);
+        content = new byte[fileSize];
+        random.nextBytes(content);
+        byte[] masterKey = new byte[32];
+        random.nextBytes(masterKey);
+
+        encryption = new EnvelopeEncryption(true, Base64.getEncoder().encodeToString(masterKey), segmentKb);
+        plainEncoder = new UploadEncoder(false, 6, 1024, new EnvelopeEncryption(false, "", segmentKb));
+        encryptingEncoder = new UploadEncoder(false, 6, 1024, encryption);
+
+        try (UploadEncoder.EncodedUpload encoded = encryptingEncoder.encode(new ByteArrayInputStream(content), null)) {
+            stored = encoded.stream().readAllBytes();
+            envelope = encoded.finish(stored.length).envelope();
+        }
+    }
+
+    @Benchmark
+    public long plaintext() throws IOException {
+        try (UploadEncoder.EncodedUpload encoded = plainEncoder.encode(new ByteArrayInputStream(content), null)) {
+            return drain(encoded.stream());
+        }
+    }
+
+    @Benchmark
+    public long encrypt() throws IOException {
+        try (UploadEncoder.EncodedUpload encoded = encryptingEncoder.encode(new ByteArrayInputStream(content), null)) {
+            return drain(encoded.stream());
+        }
+    }
+
+    @Benchmark
+    public long decrypt() throws IOException {
+        try (InputStream in = encryption.decrypt(envelope, new ByteArrayInputStream(stored))) {
+            return drain(in);
+        }
+    }
+
+    @Benchmark
+    public long decryptRange() throws IOException {
+        long start = fileSize / 2 - RANGE_BYTES / 2;
+        EnvelopeEncryption.SegmentRange range = EnvelopeEncryption.segmentRange(envelope, stored.length, start, start + RANGE_BYTES - 1);
+        InputStream storedRange = new ByteArrayInputStream(
+            stored, (int) range.storedStart(), (int) (range.storedEnd() - range.storedStart() + 1)
+        );
+        try (InputStream in = encryption.decrypt(envelope, storedRange, range)) {
+            // The stream runs on to the end of the last segment; a download stops at the range
+            long remaining = RANGE_BYTES;
+            while (remaining > 0) {
+                remaining -= in.read(buffer, 0, (int) Math.min(buffer.length, remaining));
+            }
+            return RANGE_BYTES;
+        }
+    }
+
+    private long drain(InputStream in) throws IOException {
+        long total = 0;
+        int read;
+        while ((read = in.read(buffer)) >= 0) {
+            total += read;
+        }
+        return total;
+    }
+}
@@ -0,0 +1,102 @@
+package com.peerlink.fileSharer.benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.http.HttpResponse;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Concurrent uploads and downloads over HTTP against the full application: embedded Tomcat,
+ * Spring Security, JPA and the share code allocator, with H2 in place of PostgreSQL and the
+ * local storage backend in place of S3. Nothing runs in containers.
+ *
+ * SampleTime mode reports latency percentiles (p50 ... p99.99) next to the average.
+ */
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 10)
+@Threads(16)
+@Fork(1)
+@State(Scope.Benchmark)
+public class EndToEndBenchmark {
+
+    private static final int SEEDED_FILES = 64;
+
+    @Param({"262144"})
+    private int fileSize;
+
+    private BenchmarkApplication app;
+    private byte[] payload;
+    private final List<String> shareCodes = new ArrayList<>();
+
+    @Setup(Level.Trial)
+    public void startApplication() throws Exception {
+        app = BenchmarkApplication.start(Map.of());
+
+        payload = new byte[fileSize];
+        new Random(42).nextBytes(payload);
+        for (int i = 0; i < SEEDED_FILES; i++) {
+            shareCodes.add(app.uploadStream(payload));
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void stopApplication() {
+        app.close();
+    }
+
+    /**
+     * Streaming upload of a guest file (request body straight to storage).
+     */
+    @Benchmark
+    public String uploadStream() throws Exception {
+        return app.uploadStream(payload);
+    }
+
+    /**
+     * Share code lookup and signed link, the path most downloads take.
+     */
+    @Benchmark
+    public String downloadLink() throws Exception {
+        return app.send(app.request("/files/download/" + randomShareCode()).GET(), HttpResponse.BodyHandlers.ofString()).body();
+    }
+
+    /**
+     * Whole-file download through /files/stream.
+     */
+    @Benchmark
+    public long proxiedDownload() throws Exception {
+        HttpResponse<InputStream> response = app.send(
+            app.request("/files/stream/" + randomShareCode()).GET(),
+            HttpResponse.BodyHandlers.ofInputStream()
+        );
+        try (InputStream body = response.body()) {
+            return body.transferTo(OutputStream.nullOutputStream());
+        }
+    }
+
+    private String randomShareCode() {
+        return shareCodes.get(ThreadLocalRandom.current().nextInt(shareCodes.size()));
+    }
+}
@@ -0,0 +1,29 @@
+package com.peerlink.fileSharer.benchmarks;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.lang.Nullable;
+
+import javax.sql.DataSource;
+import java.util.List;
+
+/**
+ * JdbcTemplate for H2 in PostgreSQL mode. H2 cannot parse the DELETE ... RETURNING with
+ * SKIP LOCKED that ShareCodeAllocator uses to claim recycled codes. Benchmarks never
+ * recycle codes, so that statement is answered with an empty list.
+ */
+public class H2JdbcTemplate extends JdbcTemplate {
+
+    private static final String CLAIM_RECYCLED = "DELETE FROM recycled_share_codes";
+
+    public H2JdbcTemplate(DataSource dataSource) {
+        super(dataSource);
+    }
+
+    @Override
+    public <T> List<T> queryForList(String sql, Class<T> elementType, @Nullable Object... args) {
+        if (sql.startsWith(CLAIM_RECYCLED)) {
+            return List.of();
+        }
+        return super.queryForList(sql, elementType, args);
+    }
+}
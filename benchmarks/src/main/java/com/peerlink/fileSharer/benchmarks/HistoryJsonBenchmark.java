@@ -0,0 +1,93 @@
+package com.peerlink.fileSharer.benchmarks;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.peerlink.fileSharer.model.FileRecord;
+import com.peerlink.fileSharer.payload.FileHistoryItem;
+import com.peerlink.fileSharer.payload.FileHistoryPage;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * JSON serialization of history responses: the slim paginated projection
+ * (/files/user/history/page) against the full entity list (/files/user/history).
+ * The ObjectMapper is configured like Spring Boot's.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class HistoryJsonBenchmark {
+
+    @Param({"10", "50", "500"})
+    private int items;
+
+    private ObjectMapper objectMapper;
+    private FileHistoryPage page;
+    private List<FileRecord> records;
+
+    @Setup
+    public void setUp() {
+        objectMapper = Jackson2ObjectMapperBuilder.json()
+            .featuresToDisable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS)
+            .build();
+
+        Instant now = Instant.now();
+        List<FileHistoryItem> pageItems = new ArrayList<>(items);
+        records = new ArrayList<>(items);
+        for (int i = 0; i < items; i++) {
+            String shareCode = String.valueOf(10_000 + i);
+            String filename = "holiday-photos-" + i + ".zip";
+            Instant uploadDate = now.minus(Duration.ofMinutes(i));
+            Instant expiresAt = uploadDate.plus(Duration.ofDays(7));
+            String sha256 = "%064x".formatted(i);
+            pageItems.add(new FileHistoryItem(
+                (long) i, shareCode, filename, uploadDate, (long) i * 3, expiresAt, "application/zip", 4_500_000L, sha256, null
+            ));
+
+            FileRecord record = new FileRecord();
+            record.setId((long) i);
+            record.setShareCode(shareCode);
+            record.setOriginalFilename(filename);
+            record.setS3ObjectKey(UUID.randomUUID() + "_" + filename);
+            record.setUploadDate(uploadDate);
+            record.setExpiresAt(expiresAt);
+            record.setDownloadCount((long) i * 3);
+            record.setContentType("application/zip");
+            record.setOriginalSize(4_500_000L);
+            record.setSha256(sha256);
+            records.add(record);
+        }
+        page = new FileHistoryPage(pageItems, "MjAyNi0wMS0wMVQwMDowMDowMFpfMTIz");
+    }
+
+    @Benchmark
+    public byte[] historyPage() throws JsonProcessingException {
+        return objectMapper.writeValueAsBytes(page);
+    }
+
+    @Benchmark
+    public byte[] fullHistory() throws JsonProcessingException {
+        return objectMapper.writeValueAsBytes(records);
+    }
+}
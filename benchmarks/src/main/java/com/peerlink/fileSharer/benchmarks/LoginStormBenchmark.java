@@ -0,0 +1,82 @@
+package com.peerlink.fileSharer.benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Group;
+import org.openjdk.jmh.annotations.GroupThreads;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.net.http.HttpResponse;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A login storm (every client logging in at once, as after a mobile app relaunch) running
+ * next to ordinary downloads. The "login" result gives login latency percentiles, the
+ * "downloadLink" result what the storm does to downloads; EndToEndBenchmark.downloadLink
+ * is the baseline without a storm.
+ *
+ * Logins the bounded login executor turns away come back as 503 and are counted like any
+ * other response, so a fast p99 with many rejections is visible as such in the results.
+ */
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 10)
+@Fork(1)
+@State(Scope.Benchmark)
+public class LoginStormBenchmark {
+
+    private static final String USERNAME = "storm-user";
+    private static final String PASSWORD = "correct horse battery staple";
+
+    @Param({"10", "12"})
+    private String bcryptStrength;
+
+    // 0 = half the available cores (the application default)
+    @Param({"0"})
+    private String loginThreads;
+
+    private BenchmarkApplication app;
+    private String shareCode;
+
+    @Setup(Level.Trial)
+    public void startApplication() throws Exception {
+        app = BenchmarkApplication.start(Map.of(
+            "app.auth.bcrypt.strength", bcryptStrength,
+            "app.auth.login.threads", loginThreads
+        ));
+        app.send(app.postJson("/auth/signup", Map.of("username", USERNAME, "password", PASSWORD)),
+            HttpResponse.BodyHandlers.discarding());
+        shareCode = app.uploadStream(new byte[64 * 1024]);
+    }
+
+    @TearDown(Level.Trial)
+    public void stopApplication() {
+        app.close();
+    }
+
+    @Benchmark
+    @Group("storm")
+    @GroupThreads(12)
+    public int login() throws Exception {
+        return app.sendForStatus(app.postJson("/auth/login", Map.of("username", USERNAME, "password", PASSWORD)));
+    }
+
+    @Benchmark
+    @Group("storm")
+    @GroupThreads(4)
+    public String downloadLink() throws Exception {
+        return app.send(app.request("/files/download/" + shareCode).GET(), HttpResponse.BodyHandlers.ofString()).body();
+    }
+}
@@ -0,0 +1,92 @@
+package com.peerlink.fileSharer.benchmarks;
+
+import org.apache.tomcat.util.http.fileupload.FileItem;
+import org.apache.tomcat.util.http.fileupload.FileUpload;
+import org.apache.tomcat.util.http.fileupload.disk.DiskFileItemFactory;
+import org.apache.tomcat.util.http.fileupload.servlet.ServletRequestContext;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.mock.web.MockHttpServletRequest;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Parsing of a multipart/form-data upload the way Tomcat does it for /files/upload before
+ * the controller runs: with Spring Boot's default file-size-threshold of 0 every part is
+ * written to a temp file. The difference to /files/upload/stream, which skips this step.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class MultipartParsingBenchmark {
+
+    private static final String BOUNDARY = "----fileSharerBenchmarkBoundary";
+
+    @Param({"65536", "4194304", "67108864"})
+    private int fileSize;
+
+    // Bytes held in memory before a part spills to disk (spring.servlet.multipart.file-size-threshold)
+    @Param({"0"})
+    private int sizeThreshold;
+
+    private byte[] body;
+    private File repository;
+
+    @Setup
+    public void setUp() throws IOException {
+        byte[] content = new byte[fileSize];
+        new Random(42).nextBytes(content);
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream(fileSize + 512);
+        out.write(("--" + BOUNDARY + "\r\n"
+            + "Content-Disposition: form-data; name=\"file\"; filename=\"payload.bin\"\r\n"
+            + "Content-Type: application/octet-stream\r\n\r\n").getBytes(StandardCharsets.US_ASCII));
+        out.write(content);
+        out.write(("\r\n--" + BOUNDARY + "\r\n"
+            + "Content-Disposition: form-data; name=\"ttlHours\"\r\n\r\n24\r\n"
+            + "--" + BOUNDARY + "--\r\n").getBytes(StandardCharsets.US_ASCII));
+        body = out.toByteArray();
+
+        repository = Files.createTempDirectory("multipart-benchmark").toFile();
+    }
+
+    @Benchmark
+    public long parse() throws Exception {
+        MockHttpServletRequest request = new MockHttpServletRequest("POST", "/files/upload");
+        request.setContentType("multipart/form-data; boundary=" + BOUNDARY);
+        request.setContent(body);
+
+        DiskFileItemFactory factory = new DiskFileItemFactory();
+        factory.setRepository(repository);
+        factory.setSizeThreshold(sizeThreshold);
+        FileUpload upload = new FileUpload();
+        upload.setFileItemFactory(factory);
+
+        List<FileItem> items = upload.parseRequest(new ServletRequestContext(request));
+        long size = 0;
+        for (FileItem item : items) {
+            size += item.getSize();
+            item.delete();
+        }
+        return size;
+    }
+}
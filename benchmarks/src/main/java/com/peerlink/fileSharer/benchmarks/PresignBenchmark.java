@@ -0,0 +1,76 @@
+package com.peerlink.fileSharer.benchmarks;
+
+import com.amazonaws.auth.AWSStaticCredentialsProvider;
+import com.amazonaws.auth.BasicAWSCredentials;
+import com.amazonaws.services.s3.AmazonS3;
+import com.amazonaws.services.s3.AmazonS3ClientBuilder;
+import com.peerlink.fileSharer.storage.LocalStorageBackend;
+import com.peerlink.fileSharer.storage.S3StorageBackend;
+import com.peerlink.fileSharer.storage.StorageBackend;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.time.Duration;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of signing download and upload URLs, the only per-request work on a download cache
+ * miss besides the database lookup. S3 signing is SigV4 and needs no network; the local
+ * backend signs with HMAC-SHA256.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class PresignBenchmark {
+
+    private static final Duration VALIDITY = Duration.ofMinutes(10);
+
+    @Param({"s3", "local"})
+    private String backend;
+
+    private StorageBackend storage;
+    private String key;
+
+    @Setup
+    public void setUp() throws IOException {
+        if (backend.equals("s3")) {
+            AmazonS3 amazonS3 = AmazonS3ClientBuilder.standard()
+                .withCredentials(new AWSStaticCredentialsProvider(new BasicAWSCredentials("benchmark", "benchmark")))
+                .withRegion("us-east-1")
+                .build();
+            S3StorageBackend s3 = new S3StorageBackend(amazonS3);
+            ReflectionTestUtils.setField(s3, "bucketName", "benchmark-bucket");
+            storage = s3;
+        } else {
+            String root = Files.createTempDirectory("presign-benchmark").toString();
+            storage = new LocalStorageBackend(root, "benchmark-signing-key", "http://localhost:8080");
+        }
+        key = UUID.randomUUID() + "_quarterly report (final).pdf";
+    }
+
+    @Benchmark
+    public String presignGet() {
+        return storage.presignGet(key, "quarterly report (final).pdf", VALIDITY);
+    }
+
+    @Benchmark
+    public String presignPut() {
+        return storage.presignPut(key, "application/pdf", VALIDITY);
+    }
+}
@@ -0,0 +1,95 @@
+package com.peerlink.fileSharer.benchmarks;
+
+import com.peerlink.fileSharer.service.ShareCodeAllocator;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Share code allocation with a given fraction of the 5-digit code space already taken
+ * by legacy random codes. Every taken code inside a fresh block is skipped, so at high
+ * occupancy each block yields fewer codes and the allocator goes back to the database
+ * sequence more often.
+ *
+ * Each invocation starts a fresh allocator (the startup scan is not timed) and allocates
+ * CODES_PER_INVOCATION codes.
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 10)
+@Measurement(iterations = 30)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ShareCodeAllocatorBenchmark {
+
+    private static final int CODES_PER_INVOCATION = 5_000;
+    private static final int FIVE_DIGIT_CODES = 90_000;
+
+    @Param({"0", "0.1", "0.5", "0.9", "0.95", "0.99"})
+    private double occupancy;
+
+    @Param({"500"})
+    private int blockSize;
+
+    private JdbcTemplate jdbcTemplate;
+    private ShareCodeAllocator allocator;
+
+    @Setup(Level.Trial)
+    public void createDatabase() {
+        jdbcTemplate = new H2JdbcTemplate(
+            new DriverManagerDataSource("jdbc:h2:mem:allocator;MODE=PostgreSQL;DB_CLOSE_DELAY=-1")
+        );
+        jdbcTemplate.execute("DROP ALL OBJECTS");
+        jdbcTemplate.execute("CREATE TABLE file_records (share_code VARCHAR(16) PRIMARY KEY)");
+        jdbcTemplate.execute("CREATE TABLE recycled_share_codes (share_code VARCHAR(16) PRIMARY KEY, recycled_at TIMESTAMP)");
+
+        List<Integer> allCodes = new ArrayList<>(FIVE_DIGIT_CODES);
+        for (int code = 10_000; code < 100_000; code++) {
+            allCodes.add(code);
+        }
+        Collections.shuffle(allCodes, new Random(42));
+        List<Object[]> taken = allCodes.subList(0, (int) (FIVE_DIGIT_CODES * occupancy)).stream()
+            .map(code -> new Object[]{String.valueOf(code)})
+            .toList();
+        jdbcTemplate.batchUpdate("INSERT INTO file_records (share_code) VALUES (?)", taken);
+    }
+
+    @Setup(Level.Invocation)
+    public void startAllocator() {
+        jdbcTemplate.execute("DROP SEQUENCE IF EXISTS share_code_block_seq");
+        allocator = new ShareCodeAllocator(jdbcTemplate, new SimpleMeterRegistry(), blockSize, 30, 8731640052281L);
+        allocator.initialize();
+    }
+
+    @TearDown(Level.Invocation)
+    public void stopAllocator() {
+        allocator.shutdown();
+    }
+
+    @Benchmark
+    public void allocate(Blackhole blackhole) {
+        for (int i = 0; i < CODES_PER_INVOCATION; i++) {
+            blackhole.consume(allocator.allocate());
+        }
+    }
+}
@@ -0,0 +1,80 @@
+package com.peerlink.fileSharer.benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The two upload paths end to end, with files of several storage parts (the stream path cuts
+ * uploads into app.upload.part-size-mb = 8 MiB parts): /files/upload, where Tomcat parses the
+ * multipart body into a temp file before the controller stores it, against
+ * /files/upload/stream, where the body goes to storage part by part while it arrives.
+ *
+ * Run it with the GC profiler for the memory side, e.g.
+ * ./benchmarks/run.sh UploadPathBenchmark -prof gc
+ * gc.alloc.rate.norm is then the heap allocated per upload, client and server together (the
+ * application runs in the benchmark JVM; the client side is the same for both paths).
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 10)
+@Measurement(iterations = 5, time = 10)
+@Threads(4)
+@Fork(1)
+@State(Scope.Benchmark)
+public class UploadPathBenchmark {
+
+    // 2.5 and 12.5 parts of 8 MiB
+    @Param({"20971520", "104857600"})
+    private int fileSize;
+
+    private BenchmarkApplication app;
+    private byte[] payload;
+
+    @Setup(Level.Trial)
+    public void startApplication() throws Exception {
+        app = BenchmarkApplication.start(Map.of(
+            "spring.servlet.multipart.max-file-size", "1GB",
+            "spring.servlet.multipart.max-request-size", "1GB"
+        ));
+
+        payload = new byte[fileSize];
+        new Random(42).nextBytes(payload);
+    }
+
+    @TearDown(Level.Trial)
+    public void stopApplication() {
+        app.close();
+    }
+
+    /**
+     * Multipart upload of a guest file through /files/upload.
+     */
+    @Benchmark
+    public String uploadMultipart() throws Exception {
+        return app.uploadMultipart(payload);
+    }
+
+    /**
+     * Streaming upload of a guest file through /files/upload/stream.
+     */
+    @Benchmark
+    public String uploadStream() throws Exception {
+        return app.uploadStream(payload);
+    }
+}
@@ -0,0 +1,85 @@
+#!/bin/bash
+# Compares platform-thread and virtual-thread execution modes under concurrent
+# uploads and downloads. Runs against LocalStack S3 and Postgres from docker-compose.yml.
+#
+# Requirements: docker compose, curl, hey (https://github.com/rakyll/hey), a built jar
+#   ./mvnw clean package -DskipTests && ./loadtest/run.sh
+#
+# Tunables (env): CONCURRENCY, REQUESTS, FILE_SIZE_MB, JAR
+
+set -e
+
+CONCURRENCY=${CONCURRENCY:-200}
+REQUESTS=${REQUESTS:-2000}
+FILE_SIZE_MB=${FILE_SIZE_MB:-4}
+JAR=${JAR:-target/fileSharer-0.0.1-SNAPSHOT.jar}
+BUCKET=loadtest-bucket
+PORT=8080
+OUT=loadtest/results
+mkdir -p "$OUT"
+
+echo "🐳 Starting Postgres and LocalStack..."
+docker compose up -d postgres localstack
+until curl -s http://localhost:4566/_localstack/health | grep -q '"s3": "\(available\|running\)"'; do sleep 1; done
+curl -s -X PUT "http://localhost:4566/$BUCKET" > /dev/null
+
+PAYLOAD="$OUT/payload.bin"
+head -c $((FILE_SIZE_MB * 1024 * 1024)) /dev/urandom > "$PAYLOAD"
+
+run_mode() {
+    local mode=$1 virtual=$2 s3_connections=$3 db_pool=$4
+
+    echo "🚀 Starting backend in $mode mode..."
+    java -jar "$JAR" \
+        --server.port=$PORT \
+        --spring.datasource.url=jdbc:postgresql://localhost:5432/filesharerdb \
+        --spring.datasource.username=postgres \
+        --spring.datasource.password=deep2345 \
+        --spring.threads.virtual.enabled=$virtual \
+        --app.ratelimit.enabled=false \
+        --spring.datasource.hikari.maximum-pool-size=$db_pool \
+        --app.aws.s3.max-connections=$s3_connections \
+        --cloud.aws.s3.endpoint=http://localhost:4566 \
+        --cloud.aws.credentials.access-key=test \
+        --cloud.aws.credentials.secret-key=test \
+        --cloud.aws.region.static=us-east-1 \
+        --app.aws.s3.bucket-name=$BUCKET \
+        > "$OUT/app-$mode.log" 2>&1 &
+    local pid=$!
+    until curl -s "http://localhost:$PORT/actuator/health" | grep -q UP; do sleep 1; done
+
+    echo "⬆️  Uploads ($CONCURRENCY concurrent, $REQUESTS requests, ${FILE_SIZE_MB} MB each)..."
+    hey -n "$REQUESTS" -c "$CONCURRENCY" -m POST -T application/octet-stream -D "$PAYLOAD" \
+        "http://localhost:$PORT/files/upload/stream?filename=payload.bin" > "$OUT/upload-$mode.txt"
+
+    local code
+    code=$(curl -s -X POST -H "Content-Type: application/octet-stream" --data-binary @"$PAYLOAD" \
+        "http://localhost:$PORT/files/upload/stream?filename=payload.bin" | sed 's/.*"shareCode":"\([^"]*\)".*/\1/')
+
+    echo "⬇️  Downloads of share code $code..."
+    hey -n $((REQUESTS * 10)) -c "$CONCURRENCY" \
+        "http://localhost:$PORT/files/download/$code" > "$OUT/download-$mode.txt"
+
+    kill $pid
+    wait $pid 2>/dev/null || true
+}
+
+summary() {
+    local file=$1
+    local rps p99
+    rps=$(grep "Requests/sec" "$file" | awk '{print $2}')
+    p99=$(grep "99% in" "$file" | awk '{print $3}')
+    echo "$rps,$p99"
+}
+
+run_mode platform false 50 10
+run_mode virtual true 256 30
+
+echo "mode,operation,requests_per_sec,p99_seconds" > "$OUT/summary.csv"
+for mode in platform virtual; do
+    echo "$mode,upload,$(summary "$OUT/upload-$mode.txt")" >> "$OUT/summary.csv"
+    echo "$mode,download,$(summary "$OUT/download-$mode.txt")" >> "$OUT/summary.csv"
+done
+
+echo "✅ Results in $OUT/summary.csv"
+column -s, -t "$OUT/summary.csv"
@@ -2,8 +2,10 @@ package com.peerlink.fileSharer;
 
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.scheduling.annotation.EnableScheduling;
 
 @SpringBootApplication
+@EnableScheduling // Background jobs (e.g. stale upload session cleanup)
 public class FileSharerApplication {
 
 	public static void main(String[] args) {
@@ -0,0 +1,73 @@
+package com.peerlink.fileSharer.config;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.binder.jvm.ExecutorServiceMetrics;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+@Configuration
+public class ExecutorConfig {
+
+    // Executor for blocking S3 work that runs off the request thread (e.g. multipart part uploads).
+    // Follows spring.threads.virtual.enabled, the same switch that moves Tomcat request handling
+    // onto virtual threads, so both modes can be compared with a single property.
+    @Bean(destroyMethod = "shutdown")
+    public ExecutorService s3IoExecutor(
+        @Value("${spring.threads.virtual.enabled:false}") boolean virtualThreads,
+        @Value("${app.upload.part-upload-threads:16}") int platformThreads
+    ) {
+        if (virtualThreads) {
+            // One cheap virtual thread per part; concurrency is bounded by the S3 connection pool
+            return Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("s3-io-", 0).factory());
+        }
+        return Executors.newFixedThreadPool(platformThreads);
+    }
+
+    // Password hashing for /auth/login, kept off the request threads. Hashing is CPU-bound, so a
+    // few platform threads (virtual threads would only hash more at once) and a short queue; when
+    // both are full the login is refused with 503 instead of starving uploads and downloads.
+    // Queue depth and rejections show up as executor.* metrics with name=login.
+    @Bean(destroyMethod = "shutdown")
+    public ExecutorService loginExecutor(
+        MeterRegistry meterRegistry,
+        @Value("${app.auth.login.threads:0}") int threads,
+        @Value("${app.auth.login.queue-size:64}") int queueSize
+    ) {
+        int poolSize = threads > 0 ? threads : Math.max(1, Runtime.getRuntime().availableProcessors() / 2);
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(
+            poolSize, poolSize, 0, TimeUnit.MILLISECONDS,
+            new ArrayBlockingQueue<>(Math.max(1, queueSize)),
+            Thread.ofPlatform().name("login-", 0).factory(),
+            new ThreadPoolExecutor.AbortPolicy()
+        );
+        new ExecutorServiceMetrics(executor, "login", Tags.empty()).bindTo(meterRegistry);
+        return executor;
+    }
+
+    // Post-upload processing (FileProcessingService): hashing and thumbnailing on a few
+    // low-priority platform threads, so it never takes CPU from requests. The service hands
+    // out at most one task per thread; the backlog waits in file_processing_tasks, not here.
+    @Bean(destroyMethod = "shutdown")
+    public ExecutorService processingExecutor(
+        MeterRegistry meterRegistry,
+        @Value("${app.processing.threads:2}") int threads
+    ) {
+        int poolSize = Math.max(1, threads);
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(
+            poolSize, poolSize, 0, TimeUnit.MILLISECONDS,
+            new ArrayBlockingQueue<>(poolSize),
+            Thread.ofPlatform().name("processing-", 0).priority(Thread.MIN_PRIORITY).factory(),
+            new ThreadPoolExecutor.AbortPolicy()
+        );
+        new ExecutorServiceMetrics(executor, "processing", Tags.empty()).bindTo(meterRegistry);
+        return executor;
+    }
+}
@@ -0,0 +1,129 @@
+package com.peerlink.fileSharer.config;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import software.amazon.awssdk.auth.credentials.AwsBasicCredentials;
+import software.amazon.awssdk.auth.credentials.StaticCredentialsProvider;
+import software.amazon.awssdk.core.retry.RetryMode;
+import software.amazon.awssdk.core.retry.RetryPolicy;
+import software.amazon.awssdk.http.async.SdkAsyncHttpClient;
+import software.amazon.awssdk.http.nio.netty.NettyNioAsyncHttpClient;
+import software.amazon.awssdk.regions.Region;
+import software.amazon.awssdk.services.s3.S3AsyncClient;
+import software.amazon.awssdk.services.s3.S3AsyncClientBuilder;
+import software.amazon.awssdk.services.s3.S3Configuration;
+import software.amazon.awssdk.services.s3.presigner.S3Presigner;
+
+import java.net.URI;
+import java.time.Duration;
+
+/**
+ * SDK v2 clients for app.storage.backend=s3-async. Calls go out on a Netty event loop and
+ * hold no thread while S3 works on them, so slow S3 calls can no longer tie up the threads
+ * other downloads need; concurrency is bounded by max-connections, and calls that cannot
+ * get a connection within connection-acquire-timeout-ms fail instead of queueing forever.
+ *
+ * Uses the same credentials, region, endpoint and app.aws.s3.* settings as S3Config.
+ */
+@Configuration
+@ConditionalOnProperty(name = "app.storage.backend", havingValue = "s3-async")
+public class S3AsyncConfig {
+
+    @Value("${cloud.aws.credentials.access-key}")
+    private String accessKey;
+
+    @Value("${cloud.aws.credentials.secret-key}")
+    private String secretKey;
+
+    @Value("${cloud.aws.region.static}")
+    private String region;
+
+    @Value("${cloud.aws.s3.endpoint:}")
+    private String endpoint;
+
+    @Value("${app.aws.s3.max-connections:50}")
+    private int maxConnections;
+
+    @Value("${app.aws.s3.connect-timeout-ms:3000}")
+    private long connectTimeoutMs;
+
+    @Value("${app.aws.s3.socket-timeout-ms:30000}")
+    private long socketTimeoutMs;
+
+    // Per attempt and per call; 0 = no limit
+    @Value("${app.aws.s3.request-timeout-ms:0}")
+    private long requestTimeoutMs;
+
+    @Value("${app.aws.s3.connection-max-idle-ms:15000}")
+    private long connectionMaxIdleMs;
+
+    @Value("${app.aws.s3.tcp-keep-alive:true}")
+    private boolean tcpKeepAlive;
+
+    @Value("${app.aws.s3.max-retries:3}")
+    private int maxRetries;
+
+    // Calls waiting for a connection beyond max-connections, and how long each may wait
+    @Value("${app.aws.s3.max-pending-acquires:10000}")
+    private int maxPendingAcquires;
+
+    @Value("${app.aws.s3.connection-acquire-timeout-ms:10000}")
+    private long connectionAcquireTimeoutMs;
+
+    @Bean
+    public S3ClientMetrics s3ClientMetrics(MeterRegistry meterRegistry) {
+        return new S3ClientMetrics(meterRegistry, maxConnections);
+    }
+
+    @Bean(destroyMethod = "close")
+    public S3AsyncClient s3AsyncClient(S3ClientMetrics s3ClientMetrics) {
+        // 1. Connection pool: keep-alive connections reused across calls, closed when idle
+        SdkAsyncHttpClient httpClient = NettyNioAsyncHttpClient.builder()
+            .maxConcurrency(maxConnections)
+            .maxPendingConnectionAcquires(maxPendingAcquires)
+            .connectionAcquisitionTimeout(Duration.ofMillis(connectionAcquireTimeoutMs))
+            .connectionTimeout(Duration.ofMillis(connectTimeoutMs))
+            .readTimeout(Duration.ofMillis(socketTimeoutMs))
+            .writeTimeout(Duration.ofMillis(socketTimeoutMs))
+            .connectionMaxIdleTime(Duration.ofMillis(connectionMaxIdleMs))
+            .useIdleConnectionReaper(true)
+            .tcpKeepAlive(tcpKeepAlive)
+            .build();
+
+        // 2. Adaptive retries: standard backoff plus a client-side rate limiter that slows
+        // requests down while S3 is throttling
+        S3AsyncClientBuilder builder = S3AsyncClient.builder()
+            .credentialsProvider(StaticCredentialsProvider.create(AwsBasicCredentials.create(accessKey, secretKey)))
+            .region(Region.of(region))
+            .httpClient(httpClient)
+            .overrideConfiguration(override -> {
+                override.retryPolicy(RetryPolicy.builder(RetryMode.ADAPTIVE).numRetries(maxRetries).build());
+                override.addMetricPublisher(s3ClientMetrics.metricPublisher());
+                if (requestTimeoutMs > 0) {
+                    override.apiCallAttemptTimeout(Duration.ofMillis(requestTimeoutMs));
+                }
+            });
+
+        if (!endpoint.isBlank()) {
+            builder.endpointOverride(URI.create(endpoint)).forcePathStyle(true);
+        }
+        return builder.build();
+    }
+
+    // Presigning is a local computation; the presigner makes no calls to S3
+    @Bean(destroyMethod = "close")
+    public S3Presigner s3Presigner() {
+        S3Presigner.Builder builder = S3Presigner.builder()
+            .credentialsProvider(StaticCredentialsProvider.create(AwsBasicCredentials.create(accessKey, secretKey)))
+            .region(Region.of(region));
+
+        if (!endpoint.isBlank()) {
+            builder.endpointOverride(URI.create(endpoint))
+                .serviceConfiguration(S3Configuration.builder().pathStyleAccessEnabled(true).build());
+        }
+        return builder.build();
+    }
+}
@@ -0,0 +1,179 @@
+package com.peerlink.fileSharer.config;
+
+import com.amazonaws.Request;
+import com.amazonaws.Response;
+import com.amazonaws.metrics.RequestMetricCollector;
+import com.amazonaws.util.AWSRequestMetrics;
+import com.amazonaws.util.TimingInfo;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import software.amazon.awssdk.core.metrics.CoreMetric;
+import software.amazon.awssdk.http.HttpMetric;
+import software.amazon.awssdk.metrics.MetricCollection;
+import software.amazon.awssdk.metrics.MetricPublisher;
+import software.amazon.awssdk.metrics.SdkMetric;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Micrometer metrics for the S3 clients, fed by the v1 SDK's request metric collector
+ * (app.storage.backend=s3) or the v2 SDK's metric publisher (s3-async):
+ * - s3.client.calls: duration of each API call, by operation and outcome (success / failure)
+ * - s3.client.retries: retries the SDK made, by operation
+ * - s3.client.pool.leased / pending / available / max: connection pool state seen by the
+ *   latest call; pending > 0 means calls are queueing for a connection
+ * - s3.client.pool.acquire: time spent waiting for a connection (v2 only)
+ * - s3.client.connections.opened: new TLS connections (v1 only); when this grows with
+ *   s3.client.calls, connections are not being reused
+ */
+public class S3ClientMetrics {
+
+    private final MeterRegistry meterRegistry;
+    private final AtomicInteger leased = new AtomicInteger();
+    private final AtomicInteger pending = new AtomicInteger();
+    private final AtomicInteger available = new AtomicInteger();
+    private final AtomicInteger max = new AtomicInteger();
+    private final Counter connectionsOpened;
+    private final Timer poolAcquire;
+
+    public S3ClientMetrics(MeterRegistry meterRegistry, int maxConnections) {
+        this.meterRegistry = meterRegistry;
+        this.max.set(maxConnections);
+        Gauge.builder("s3.client.pool.leased", leased, AtomicInteger::get)
+            .description("Connections in use")
+            .register(meterRegistry);
+        Gauge.builder("s3.client.pool.pending", pending, AtomicInteger::get)
+            .description("Calls waiting for a connection")
+            .register(meterRegistry);
+        Gauge.builder("s3.client.pool.available", available, AtomicInteger::get)
+            .description("Idle connections ready for reuse")
+            .register(meterRegistry);
+        Gauge.builder("s3.client.pool.max", max, AtomicInteger::get)
+            .description("Maximum connections")
+            .register(meterRegistry);
+        this.connectionsOpened = Counter.builder("s3.client.connections.opened")
+            .description("New TLS connections to S3")
+            .register(meterRegistry);
+        this.poolAcquire = Timer.builder("s3.client.pool.acquire")
+            .description("Time spent waiting for a pooled connection")
+            .register(meterRegistry);
+    }
+
+    void connectionOpened() {
+        connectionsOpened.increment();
+    }
+
+    private void recordCall(String operation, boolean success, int retries, Duration duration) {
+        if (duration != null) {
+            Timer.builder("s3.client.calls")
+                .tag("operation", operation)
+                .tag("outcome", success ? "success" : "failure")
+                .register(meterRegistry)
+                .record(duration);
+        }
+        if (retries > 0) {
+            Counter.builder("s3.client.retries")
+                .tag("operation", operation)
+                .register(meterRegistry)
+                .increment(retries);
+        }
+    }
+
+    /**
+     * Collector for the v1 AmazonS3 client. Setting a collector on the client also makes the
+     * SDK capture pool statistics for every request.
+     */
+    public RequestMetricCollector requestMetricCollector() {
+        return new RequestMetricCollector() {
+            @Override
+            public void collectMetrics(Request<?> request, Response<?> response) {
+                TimingInfo timing = request.getAWSRequestMetrics().getTimingInfo();
+
+                setIfPresent(leased, timing.getCounter(AWSRequestMetrics.Field.HttpClientPoolLeasedCount.name()));
+                setIfPresent(pending, timing.getCounter(AWSRequestMetrics.Field.HttpClientPoolPendingCount.name()));
+                setIfPresent(available, timing.getCounter(AWSRequestMetrics.Field.HttpClientPoolAvailableCount.name()));
+
+                Number retries = timing.getCounter(AWSRequestMetrics.Field.HttpClientRetryCount.name());
+                TimingInfo execution = timing.getSubMeasurement(AWSRequestMetrics.Field.ClientExecuteTime.name());
+                Double millis = execution == null ? null : execution.getTimeTakenMillisIfKnown();
+
+                recordCall(
+                    operationName(request.getOriginalRequest().getClass().getSimpleName()),
+                    response != null,
+                    retries == null ? 0 : retries.intValue(),
+                    millis == null ? null : Duration.ofNanos((long) (millis * 1_000_000))
+                );
+            }
+        };
+    }
+
+    /**
+     * Publisher for the v2 S3AsyncClient.
+     */
+    public MetricPublisher metricPublisher() {
+        return new MetricPublisher() {
+            @Override
+            public void publish(MetricCollection apiCall) {
+                String operation = first(apiCall, CoreMetric.OPERATION_NAME);
+                Boolean success = first(apiCall, CoreMetric.API_CALL_SUCCESSFUL);
+                Integer retries = first(apiCall, CoreMetric.RETRY_COUNT);
+
+                recordCall(
+                    operation == null ? "unknown" : operation,
+                    Boolean.TRUE.equals(success),
+                    retries == null ? 0 : retries,
+                    first(apiCall, CoreMetric.API_CALL_DURATION)
+                );
+
+                // Pool state is reported per attempt, in the HttpClient collection under each attempt
+                List<MetricCollection> httpClient = new ArrayList<>();
+                collect(apiCall, "HttpClient", httpClient);
+                for (MetricCollection metrics : httpClient) {
+                    setIfPresent(leased, first(metrics, HttpMetric.LEASED_CONCURRENCY));
+                    setIfPresent(pending, first(metrics, HttpMetric.PENDING_CONCURRENCY_ACQUIRES));
+                    setIfPresent(available, first(metrics, HttpMetric.AVAILABLE_CONCURRENCY));
+                    setIfPresent(max, first(metrics, HttpMetric.MAX_CONCURRENCY));
+                    Duration acquire = first(metrics, HttpMetric.CONCURRENCY_ACQUIRE_DURATION);
+                    if (acquire != null) {
+                        poolAcquire.record(acquire);
+                    }
+                }
+            }
+
+            @Override
+            public void close() {
+            }
+        };
+    }
+
+    // "PutObjectRequest" -> "PutObject", matching the v2 operation names
+    private static String operationName(String requestClass) {
+        return requestClass.endsWith("Request") ? requestClass.substring(0, requestClass.length() - "Request".length()) : requestClass;
+    }
+
+    private static void setIfPresent(AtomicInteger gauge, Number value) {
+        if (value != null) {
+            gauge.set(value.intValue());
+        }
+    }
+
+    private static <T> T first(MetricCollection metrics, SdkMetric<T> metric) {
+        List<T> values = metrics.metricValues(metric);
+        return values.isEmpty() ? null : values.get(0);
+    }
+
+    private static void collect(MetricCollection metrics, String name, List<MetricCollection> found) {
+        for (MetricCollection child : metrics.children()) {
+            if (name.equals(child.name())) {
+                found.add(child);
+            }
+            collect(child, name, found);
+        }
+    }
+}
@@ -1,14 +1,30 @@
 package com.peerlink.fileSharer.config;
 
+import com.amazonaws.ClientConfiguration;
 import com.amazonaws.auth.AWSStaticCredentialsProvider;
 import com.amazonaws.auth.BasicAWSCredentials;
+import com.amazonaws.client.builder.AwsClientBuilder;
+import com.amazonaws.http.conn.ssl.SdkTLSSocketFactory;
+import com.amazonaws.retry.RetryMode;
 import com.amazonaws.services.s3.AmazonS3;
 import com.amazonaws.services.s3.AmazonS3ClientBuilder;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.apache.http.HttpHost;
+import org.apache.http.conn.ssl.DefaultHostnameVerifier;
+import org.apache.http.protocol.HttpContext;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 
+import javax.net.ssl.SSLContext;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.security.NoSuchAlgorithmException;
+
 @Configuration
+@ConditionalOnProperty(name = "app.storage.backend", havingValue = "s3", matchIfMissing = true) // s3-async and local need no v1 client
 public class S3Config {
 
     // These values are injected from application.properties
@@ -21,16 +37,95 @@ public class S3Config {
     @Value("${cloud.aws.region.static}")
     private String region;
 
+    // Optional S3-compatible endpoint (e.g. LocalStack on http://localhost:4566 for local runs and load tests)
+    @Value("${cloud.aws.s3.endpoint:}")
+    private String endpoint;
+
+    // Size of the HTTP connection pool; must grow with the number of threads doing S3 I/O
+    // (the SDK default of 50 is far too small once uploads run on virtual threads)
+    @Value("${app.aws.s3.max-connections:50}")
+    private int maxConnections;
+
+    @Value("${app.aws.s3.connect-timeout-ms:3000}")
+    private int connectTimeoutMs;
+
+    // Longest silence on an open connection before the call fails
+    @Value("${app.aws.s3.socket-timeout-ms:30000}")
+    private int socketTimeoutMs;
+
+    // Whole HTTP request, body included; 0 = no limit (part uploads of a slow client may take long)
+    @Value("${app.aws.s3.request-timeout-ms:0}")
+    private int requestTimeoutMs;
+
+    // Idle pooled connections are closed after this; S3 itself drops them after about 20 s idle
+    @Value("${app.aws.s3.connection-max-idle-ms:15000}")
+    private long connectionMaxIdleMs;
+
+    @Value("${app.aws.s3.tcp-keep-alive:true}")
+    private boolean tcpKeepAlive;
+
+    @Value("${app.aws.s3.max-retries:3}")
+    private int maxRetries;
+
+    @Bean
+    public S3ClientMetrics s3ClientMetrics(MeterRegistry meterRegistry) {
+        return new S3ClientMetrics(meterRegistry, maxConnections);
+    }
+
     @Bean
-    public AmazonS3 amazonS3Client() {
+    public AmazonS3 amazonS3Client(S3ClientMetrics s3ClientMetrics) throws NoSuchAlgorithmException {
         // 1. Create credentials provider using the keys from properties
         BasicAWSCredentials credentials = new BasicAWSCredentials(accessKey, secretKey);
-        
+
+        // Standard retries back off exponentially with jitter and draw from a retry quota, so a
+        // struggling S3 gets fewer retries instead of a retry storm (the v1 SDK has no adaptive mode;
+        // the s3-async backend uses it)
+        ClientConfiguration clientConfiguration = new ClientConfiguration()
+                .withMaxConnections(maxConnections)
+                .withConnectionTimeout(connectTimeoutMs)
+                .withSocketTimeout(socketTimeoutMs)
+                .withRequestTimeout(requestTimeoutMs)
+                .withConnectionMaxIdleMillis(connectionMaxIdleMs)
+                .withTcpKeepAlive(tcpKeepAlive)
+                .withRetryMode(RetryMode.STANDARD)
+                .withMaxErrorRetry(maxRetries)
+                .withThrottledRetries(true);
+        clientConfiguration.getApacheHttpClientConfig()
+                .setSslSocketFactory(new CountingTlsSocketFactory(SSLContext.getDefault(), s3ClientMetrics));
+
         // 2. Build the S3 Client
-        return AmazonS3ClientBuilder
+        AmazonS3ClientBuilder builder = AmazonS3ClientBuilder
                 .standard()
                 .withCredentials(new AWSStaticCredentialsProvider(credentials))
-                .withRegion(region)
-                .build();
+                .withClientConfiguration(clientConfiguration)
+                .withMetricsCollector(s3ClientMetrics.requestMetricCollector());
+
+        if (endpoint.isBlank()) {
+            builder.withRegion(region);
+        } else {
+            builder.withEndpointConfiguration(new AwsClientBuilder.EndpointConfiguration(endpoint, region))
+                   .withPathStyleAccessEnabled(true);
+        }
+        return builder.build();
+    }
+
+    // The SDK's own TLS socket factory, counting every connection it opens (each one a full handshake)
+    private static final class CountingTlsSocketFactory extends SdkTLSSocketFactory {
+
+        private final S3ClientMetrics metrics;
+
+        CountingTlsSocketFactory(SSLContext sslContext, S3ClientMetrics metrics) {
+            super(sslContext, new DefaultHostnameVerifier());
+            this.metrics = metrics;
+        }
+
+        @Override
+        public Socket connectSocket(
+            int connectTimeout, Socket socket, HttpHost host,
+            InetSocketAddress remoteAddress, InetSocketAddress localAddress, HttpContext context
+        ) throws IOException {
+            metrics.connectionOpened();
+            return super.connectSocket(connectTimeout, socket, host, remoteAddress, localAddress, context);
+        }
     }
-}
\ No newline at end of file
+}
@@ -1,5 +1,10 @@
 package com.peerlink.fileSharer.config;
 
+import com.peerlink.fileSharer.security.TokenService;
+import com.peerlink.fileSharer.security.UploadRateLimitFilter;
+import com.peerlink.fileSharer.security.UploadRateLimiter;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.security.authentication.AuthenticationManager;
@@ -12,6 +17,7 @@ import org.springframework.security.config.http.SessionCreationPolicy;
 import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.security.web.SecurityFilterChain;
+import org.springframework.security.web.access.intercept.AuthorizationFilter;
 
 @Configuration
 @EnableWebSecurity
@@ -19,9 +25,11 @@ import org.springframework.security.web.SecurityFilterChain;
 public class SecurityConfig {
 
     // 1. Password Encoder (Essential for security)
+    // Each +1 of strength doubles the hashing cost. Raising it is safe: hashes made with a lower
+    // strength still verify and are re-hashed on the user's next successful login.
     @Bean
-    public PasswordEncoder passwordEncoder() {
-        return new BCryptPasswordEncoder(); // Strong hashing algorithm
+    public PasswordEncoder passwordEncoder(@Value("${app.auth.bcrypt.strength:10}") int strength) {
+        return new BCryptPasswordEncoder(strength); // Strong hashing algorithm
     }
 
     // 2. Authentication Manager (Manages the login process)
@@ -31,20 +39,45 @@ public class SecurityConfig {
     }
 
     // 3. Security Filter Chain (The actual security rules)
+    // app.auth.mode=session (default): the login stores the SecurityContext in an HttpSession.
+    // app.auth.mode=token: no sessions; each request carries a bearer token (see TokenService).
     @Bean
-    public SecurityFilterChain securityFilterChain(HttpSecurity http) throws Exception {
+    public SecurityFilterChain securityFilterChain(
+        HttpSecurity http,
+        UploadRateLimiter uploadRateLimiter,
+        ObjectProvider<TokenService> tokenServiceProvider,
+        @Value("${management.server.port:-1}") int managementPort
+    ) throws Exception {
+        TokenService tokenService = tokenServiceProvider.getIfAvailable();
+        if (tokenService != null) {
+            http
+                .sessionManagement(session -> session.sessionCreationPolicy(SessionCreationPolicy.STATELESS))
+                .oauth2ResourceServer(oauth2 -> oauth2.jwt(jwt -> jwt
+                    .decoder(tokenService.accessTokenDecoder())
+                    .jwtAuthenticationConverter(tokenService::authenticate)
+                ));
+        } else {
+            http.sessionManagement(session -> {
+                session.sessionCreationPolicy(SessionCreationPolicy.IF_REQUIRED);
+                session.maximumSessions(1);
+            });
+        }
+
         http
             .csrf(AbstractHttpConfigurer::disable)
             .cors(cors -> cors.configure(http))
-            .sessionManagement(session -> {
-                session.sessionCreationPolicy(SessionCreationPolicy.IF_REQUIRED);
-                session.maximumSessions(1);
-            })
             .authorizeHttpRequests(authorize -> authorize
-                .requestMatchers("/auth/**", "/files/download/**", "/files/upload").permitAll()
-                .requestMatchers("/files/user/**").authenticated()
+                .requestMatchers("/auth/**", "/files/download/**", "/files/upload", "/files/upload/stream", "/files/upload/batch", "/files/bundle/**", "/files/uploads/**", "/files/direct/**", "/files/stream/**", "/files/preview/**").permitAll()
+                .requestMatchers("/files/user/**", "/files/blobs/**", "/files/upload/by-hash").authenticated()
+                // Metrics and other actuator endpoints are only served on the management port
+                // (management.server.port, kept off the public network); the public port has health only
+                .requestMatchers("/actuator/health", "/actuator/health/**").permitAll()
+                .requestMatchers(request -> request.getLocalPort() != managementPort
+                    && request.getRequestURI().startsWith(request.getContextPath() + "/actuator")).denyAll()
                 .anyRequest().permitAll()
             )
+            // Upload rate limits need the user from the session or token, and must run before the body is read
+            .addFilterAfter(new UploadRateLimitFilter(uploadRateLimiter), AuthorizationFilter.class)
             .httpBasic(AbstractHttpConfigurer::disable)
             .formLogin(AbstractHttpConfigurer::disable);
 
@@ -4,30 +4,60 @@ package com.peerlink.fileSharer.controller;
 import com.peerlink.fileSharer.model.User;
 import com.peerlink.fileSharer.payload.SignupRequest;
 import com.peerlink.fileSharer.payload.LoginRequest;
+import com.peerlink.fileSharer.payload.RefreshTokenRequest;
 import com.peerlink.fileSharer.repository.UserRepository;
+import com.peerlink.fileSharer.security.LoginService;
+import com.peerlink.fileSharer.security.TokenService;
+import com.peerlink.fileSharer.security.UserPrincipal;
+import com.peerlink.fileSharer.service.AccountPurgeService;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpSession;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
-import org.springframework.security.authentication.AuthenticationManager;
-import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.security.core.Authentication;
+import org.springframework.security.core.AuthenticationException;
+import org.springframework.security.core.annotation.AuthenticationPrincipal;
+import org.springframework.security.core.context.SecurityContext;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.security.oauth2.jwt.JwtException;
+import org.springframework.security.web.context.HttpSessionSecurityContextRepository;
 import org.springframework.web.bind.annotation.*;
 
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.RejectedExecutionException;
+
 @RestController
 @RequestMapping("/auth")
 public class AuthController {
 
-    private final AuthenticationManager authenticationManager;
+    private static final Logger log = LoggerFactory.getLogger(AuthController.class);
+
+    private final LoginService loginService;
     private final UserRepository userRepository;
     private final PasswordEncoder passwordEncoder;
+    private final ObjectProvider<TokenService> tokenService; // Only present with app.auth.mode=token
+    private final AccountPurgeService accountPurgeService;
 
-    public AuthController(AuthenticationManager authenticationManager, UserRepository userRepository, PasswordEncoder passwordEncoder) {
-        this.authenticationManager = authenticationManager;
+    public AuthController(
+        LoginService loginService,
+        UserRepository userRepository,
+        PasswordEncoder passwordEncoder,
+        ObjectProvider<TokenService> tokenService,
+        AccountPurgeService accountPurgeService
+    ) {
+        this.loginService = loginService;
         this.userRepository = userRepository;
         this.passwordEncoder = passwordEncoder;
+        this.tokenService = tokenService;
+        this.accountPurgeService = accountPurgeService;
     }
 
     @PostMapping("/signup")
@@ -44,32 +74,118 @@ public class AuthController {
         user.setRole("FREE_USER"); // Default role
 
         userRepository.save(user);
+        loginService.forgetFailure(signupRequest.getUsername(), signupRequest.getPassword());
 
         return new ResponseEntity<>("User registered successfully!", HttpStatus.OK);
     }
     
     // Note: Login is handled by Spring Security, but you need an endpoint 
     // to trigger the authentication and manage the session/token.
-    // For simplicity, we are using the AuthenticationManager to validate credentials.
+    // Credentials are checked by LoginService on the bounded login executor; the request thread
+    // is released meanwhile, and a saturated executor turns into 503 instead of a growing backlog.
     @PostMapping("/login")
-    public ResponseEntity<String> authenticateUser(@RequestBody LoginRequest loginRequest, HttpServletRequest request) {
-        Authentication authentication = authenticationManager.authenticate(
-            new UsernamePasswordAuthenticationToken(
-                loginRequest.getUsername(), loginRequest.getPassword()
-            )
-        );
-        
-        SecurityContextHolder.getContext().setAuthentication(authentication);
+    public CompletableFuture<ResponseEntity<?>> authenticateUser(@RequestBody LoginRequest loginRequest, HttpServletRequest request) {
+        // Session mode: the session is created here on the container thread, since the request
+        // must not be touched from the login executor once it has gone async
+        LoginSession session = tokenService.getIfAvailable() == null ? loginSession(request) : null;
+        try {
+            return loginService.authenticate(loginRequest.getUsername(), loginRequest.getPassword())
+                .<ResponseEntity<?>>thenApply(authentication -> loginSucceeded(authentication, session))
+                .exceptionally(failure -> loginFailed(failure, session));
+        } catch (RejectedExecutionException e) {
+            discardIfCreated(session);
+            return CompletableFuture.completedFuture(ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                .header(HttpHeaders.RETRY_AFTER, "1")
+                .body(Map.of("message", "Too many logins in progress, please retry shortly.")));
+        }
+    }
+
+    /**
+     * The session a login is stored in, and whether the login request created it.
+     */
+    private record LoginSession(HttpSession session, boolean created) {}
+
+    // A fresh session id for the login (an existing session is kept but gets a new id, against session fixation)
+    private static LoginSession loginSession(HttpServletRequest request) {
+        if (request.getSession(false) != null) {
+            request.changeSessionId();
+            return new LoginSession(request.getSession(false), false);
+        }
+        return new LoginSession(request.getSession(true), true);
+    }
+
+    // A failed login must not leave a session behind; HttpSession is thread-safe, so this may
+    // run on the login executor
+    private static void discardIfCreated(LoginSession session) {
+        if (session == null || !session.created()) {
+            return;
+        }
+        try {
+            session.session().invalidate();
+        } catch (IllegalStateException e) {
+            // Already invalidated
+        }
+    }
+
+    // Runs on the login executor: nothing may go into its thread's SecurityContextHolder, and
+    // only the session (thread-safe) may be used, not the request
+    private ResponseEntity<?> loginSucceeded(Authentication authentication, LoginSession session) {
+        // Stateless mode: hand out tokens instead of creating a session
+        TokenService tokens = tokenService.getIfAvailable();
+        if (tokens != null) {
+            log.debug("Token login successful for {}", authentication.getName());
+            return ResponseEntity.ok(tokens.issue((UserPrincipal) authentication.getPrincipal()));
+        }
+
+        SecurityContext context = SecurityContextHolder.createEmptyContext();
+        context.setAuthentication(authentication);
         
-        // Create session explicitly
-        HttpSession session = request.getSession(true);
-        session.setAttribute("SPRING_SECURITY_CONTEXT", SecurityContextHolder.getContext());
+        session.session().setAttribute(HttpSessionSecurityContextRepository.SPRING_SECURITY_CONTEXT_KEY, context);
         
-        System.out.println("Login successful. Session ID: " + session.getId());
+        log.debug("Login successful for {}", authentication.getName()); // Never log the session id: it is a bearer credential
         
         return new ResponseEntity<>("User logged-in successfully!", HttpStatus.OK);
     }
+
+    private static ResponseEntity<?> loginFailed(Throwable failure, LoginSession session) {
+        discardIfCreated(session);
+        Throwable cause = failure instanceof CompletionException ? failure.getCause() : failure;
+        if (cause instanceof AuthenticationException) {
+            return ResponseEntity.status(HttpStatus.UNAUTHORIZED).body(Map.of("message", "Invalid username or password."));
+        }
+        throw failure instanceof CompletionException completion ? completion : new CompletionException(cause);
+    }
     
+    // Exchanges a refresh token for a new access/refresh token pair (app.auth.mode=token only)
+    @PostMapping("/refresh")
+    public ResponseEntity<?> refreshToken(@RequestBody RefreshTokenRequest refreshRequest) {
+        TokenService tokens = tokenService.getIfAvailable();
+        if (tokens == null) {
+            return ResponseEntity.status(HttpStatus.NOT_FOUND).body(Map.of("message", "Token authentication is not enabled."));
+        }
+        try {
+            return ResponseEntity.ok(tokens.refresh(refreshRequest.getRefreshToken()));
+        } catch (JwtException | IllegalArgumentException e) {
+            return ResponseEntity.status(HttpStatus.UNAUTHORIZED).body(Map.of("message", "Invalid or expired refresh token."));
+        }
+    }
+
+    // Deletes the account with all its files. Login stops working at once; files, bundles and
+    // the user itself are removed by a background job, so this returns before they are gone.
+    @DeleteMapping("/account")
+    @PreAuthorize("isAuthenticated()")
+    public ResponseEntity<?> deleteAccount(@AuthenticationPrincipal UserPrincipal principal, HttpServletRequest request) {
+        accountPurgeService.requestPurge(principal.getId());
+
+        HttpSession session = request.getSession(false);
+        if (session != null) {
+            session.invalidate();
+        }
+        SecurityContextHolder.clearContext();
+
+        return ResponseEntity.accepted().body(Map.of("message", "Account scheduled for deletion."));
+    }
+
     @GetMapping("/check")
     public ResponseEntity<String> checkAuth() {
         Authentication auth = SecurityContextHolder.getContext().getAuthentication();
@@ -0,0 +1,118 @@
+package com.peerlink.fileSharer.controller;
+
+import com.peerlink.fileSharer.model.FileRecord;
+import com.peerlink.fileSharer.model.User;
+import com.peerlink.fileSharer.payload.CompleteDirectUploadRequest;
+import com.peerlink.fileSharer.payload.DirectUploadRequest;
+import com.peerlink.fileSharer.payload.DirectUploadTicket;
+import com.peerlink.fileSharer.repository.UserRepository;
+import com.peerlink.fileSharer.security.UploadRateLimiter;
+import com.peerlink.fileSharer.security.UserPrincipal;
+import com.peerlink.fileSharer.service.DirectUploadService;
+import com.peerlink.fileSharer.service.DirectUploadService.RejectedUploadException;
+import com.peerlink.fileSharer.service.ExpiryPolicy;
+import jakarta.servlet.http.HttpServletRequest;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.core.annotation.AuthenticationPrincipal;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.Map;
+
+/**
+ * Direct-to-storage uploads: request presigned URLs, PUT the file (or its parts) straight
+ * to the bucket, then complete to activate the share code. No file bytes pass through here,
+ * so the announced size is charged against the client's upload bandwidth quota when the
+ * URLs are handed out, and given back if the upload fails or is rejected at complete.
+ */
+@RestController
+@RequestMapping("/files/direct")
+public class DirectUploadController {
+
+    private final DirectUploadService directUploadService;
+    private final UserRepository userRepository;
+    private final ExpiryPolicy expiryPolicy;
+    private final UploadRateLimiter rateLimiter;
+
+    public DirectUploadController(
+        DirectUploadService directUploadService,
+        UserRepository userRepository,
+        ExpiryPolicy expiryPolicy,
+        UploadRateLimiter rateLimiter
+    ) {
+        this.directUploadService = directUploadService;
+        this.userRepository = userRepository;
+        this.expiryPolicy = expiryPolicy;
+        this.rateLimiter = rateLimiter;
+    }
+
+    // Utility to get a User reference for the principal without querying the users table (null for guests)
+    private User userReference(UserPrincipal principal) {
+        return principal != null ? userRepository.getReferenceById(principal.getId()) : null;
+    }
+
+    // --- 1. START: reserve the share code and get the upload URLs ---
+    @PostMapping
+    public ResponseEntity<?> startUpload(
+        @RequestBody DirectUploadRequest request,
+        @AuthenticationPrincipal UserPrincipal principal,
+        HttpServletRequest httpRequest
+    ) {
+        if (request.getFilename() == null || request.getFilename().isBlank()) {
+            return ResponseEntity.badRequest().body(Map.of("message", "Filename is required."));
+        }
+        if (request.getSize() == null) {
+            return ResponseEntity.badRequest().body(Map.of("message", "File size is required."));
+        }
+
+        // The file bypasses UploadRateLimitFilter, so its announced size is charged here
+        String clientKey = UploadRateLimiter.clientKey(principal, httpRequest.getRemoteAddr());
+        UploadRateLimiter.Tier tier = UploadRateLimiter.tierFor(principal != null ? principal.getRole() : null);
+        UploadRateLimiter.Rejection rejection = rateLimiter.tryAcquireBytes(clientKey, tier, request.getSize());
+        if (rejection != null) {
+            return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
+                .header(HttpHeaders.RETRY_AFTER, String.valueOf(rejection.retryAfterSeconds()))
+                .body(Map.of("message", rejection.message()));
+        }
+
+        try {
+            DirectUploadTicket ticket = directUploadService.startUpload(
+                request.getFilename(), request.getContentType(), request.getSize(), userReference(principal),
+                expiryPolicy.expiresAt(principal != null ? principal.getRole() : null, request.getTtlHours())
+            );
+            return ResponseEntity.ok(ticket);
+        } catch (RuntimeException e) {
+            rateLimiter.refundBytes(clientKey, tier, request.getSize());
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(Map.of("message", e.getMessage()));
+        }
+    }
+
+    // --- 2. COMPLETE: verify the stored object and activate the share code ---
+    @PostMapping("/{shareCode}/complete")
+    public ResponseEntity<Map<String, String>> completeUpload(
+        @PathVariable String shareCode,
+        @RequestBody CompleteDirectUploadRequest request,
+        @AuthenticationPrincipal UserPrincipal principal,
+        HttpServletRequest httpRequest
+    ) {
+        try {
+            FileRecord record = directUploadService.completeUpload(
+                shareCode, request.getUploadToken(), request.getEtag(), request.getParts(),
+                principal != null ? principal.getId() : null
+            );
+            return ResponseEntity.ok(Map.of("shareCode", record.getShareCode()));
+        } catch (RejectedUploadException e) {
+            // Nothing was stored: give back what start charged (uploads abandoned until the pending
+            // TTL are not refunded, the bucket has long refilled by then)
+            rateLimiter.refundBytes(
+                UploadRateLimiter.clientKey(principal, httpRequest.getRemoteAddr()),
+                UploadRateLimiter.tierFor(principal != null ? principal.getRole() : null),
+                e.announcedSize()
+            );
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(Map.of("message", e.getMessage()));
+        } catch (RuntimeException e) {
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(Map.of("message", e.getMessage()));
+        }
+    }
+}
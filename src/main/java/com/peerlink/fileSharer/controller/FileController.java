@@ -1,37 +1,80 @@
 package com.peerlink.fileSharer.controller;
 
 import com.peerlink.fileSharer.model.FileRecord;
+import com.peerlink.fileSharer.model.FileThumbnail;
 import com.peerlink.fileSharer.model.User;
+import com.peerlink.fileSharer.payload.BulkDeleteRequest;
 import com.peerlink.fileSharer.repository.UserRepository;
+import com.peerlink.fileSharer.security.UserPrincipal;
+import com.peerlink.fileSharer.service.BundleService;
+import com.peerlink.fileSharer.service.ExpiryPolicy;
+import com.peerlink.fileSharer.service.FileProcessingService;
 import com.peerlink.fileSharer.service.FileService;
+import jakarta.servlet.http.HttpServletRequest;
+import org.springframework.http.CacheControl;
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.security.core.annotation.AuthenticationPrincipal;
-import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 import java.io.IOException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 @RestController
 @RequestMapping("/files")
 public class FileController {
 
+    private static final int MAX_HISTORY_PAGE_SIZE = 200;
+
+    // One multi-object storage delete and a bounded IN list per call
+    private static final int MAX_BULK_DELETE = 1000;
+
     private final FileService fileService;
     private final UserRepository userRepository;
+    private final ExpiryPolicy expiryPolicy;
+    private final BundleService bundleService;
+    private final FileProcessingService fileProcessingService;
     
     // Inject services
-    public FileController(FileService fileService, UserRepository userRepository) {
+    public FileController(
+        FileService fileService,
+        UserRepository userRepository,
+        ExpiryPolicy expiryPolicy,
+        BundleService bundleService,
+        FileProcessingService fileProcessingService
+    ) {
         this.fileService = fileService;
         this.userRepository = userRepository;
+        this.expiryPolicy = expiryPolicy;
+        this.bundleService = bundleService;
+        this.fileProcessingService = fileProcessingService;
     }
     
-    // Utility to get the full User entity from the principal
-    private User getCurrentUser(UserDetails userDetails) {
-        return userRepository.findByUsername(userDetails.getUsername())
-                             .orElseThrow(() -> new RuntimeException("User not found!"));
+    // Utility to get a User reference for the principal without querying the users table
+    // (the principal already carries the id; null for guests)
+    private User userReference(UserPrincipal principal) {
+        return principal != null ? userRepository.getReferenceById(principal.getId()) : null;
+    }
+
+    // Expiry for a new upload: the requested TTL, capped by the uploader's role (guests have their own cap)
+    private Instant expiresAt(UserPrincipal principal, Long ttlHours) {
+        return expiryPolicy.expiresAt(principal != null ? principal.getRole() : null, ttlHours);
+    }
+
+    // Invalid input that an endpoint does not handle itself (e.g. an out-of-range ttlHours)
+    @ExceptionHandler(IllegalArgumentException.class)
+    public ResponseEntity<Map<String, String>> badRequest(IllegalArgumentException e) {
+        return ResponseEntity.badRequest().body(Map.of("message", e.getMessage()));
     }
 
     // --- 1. UPLOAD ENDPOINT (ANONYMOUS OR AUTHENTICATED) ---
@@ -39,24 +82,108 @@ public class FileController {
     public ResponseEntity<Map<String, String>> uploadFile(
         @RequestParam("file") MultipartFile file,
         @RequestParam(value = "guestId", required = false) String guestId,
-        @AuthenticationPrincipal UserDetails userDetails
+        @RequestParam(value = "ttlHours", required = false) Long ttlHours,
+        @AuthenticationPrincipal UserPrincipal principal
     ) throws IOException {
         
         // Check if user is logged in
-        if (userDetails != null) {
+        if (principal != null) {
             // Logged-in user flow
-            User user = getCurrentUser(userDetails);
-            FileRecord record = fileService.uploadFile(file, user);
-            user.setTransferCount(user.getTransferCount() + 1);
-            userRepository.save(user);
+            FileRecord record = fileService.uploadFile(file, userReference(principal), expiresAt(principal, ttlHours));
+            userRepository.incrementTransferCount(principal.getId());
             return ResponseEntity.ok(Map.of("shareCode", record.getShareCode()));
         } else {
             // Guest user flow - upload without user association
-            FileRecord record = fileService.uploadFileAsGuest(file, guestId);
+            FileRecord record = fileService.uploadFileAsGuest(file, guestId, expiresAt(null, ttlHours));
             return ResponseEntity.ok(Map.of("shareCode", record.getShareCode()));
         }
     }
 
+    // --- 1b. STREAMING UPLOAD ENDPOINT (ANONYMOUS OR AUTHENTICATED) ---
+    // The request body is the raw file (e.g. Content-Type: application/octet-stream).
+    // It is cut into parts and sent to S3 while it is still arriving, so large files
+    // are never buffered whole on disk or heap.
+    @PostMapping("/upload/stream")
+    public ResponseEntity<Map<String, String>> uploadFileStreaming(
+        @RequestParam("filename") String filename,
+        @RequestParam(value = "guestId", required = false) String guestId,
+        @RequestParam(value = "ttlHours", required = false) Long ttlHours,
+        @AuthenticationPrincipal UserPrincipal principal,
+        HttpServletRequest request
+    ) throws IOException {
+        FileRecord record = fileService.uploadFileStreaming(
+            request.getInputStream(), filename, request.getContentType(), userReference(principal),
+            expiresAt(principal, ttlHours)
+        );
+
+        if (principal != null) {
+            userRepository.incrementTransferCount(principal.getId());
+        }
+        return ResponseEntity.ok(Map.of("shareCode", record.getShareCode()));
+    }
+
+    // --- 1c. DEDUPLICATION PRE-CHECK ---
+    // Lets a logged-in client that computed the SHA-256 of a file ask whether it can use upload/by-hash,
+    // i.e. whether it already has a stored file with this content.
+    @GetMapping("/blobs/{sha256}")
+    @PreAuthorize("isAuthenticated()")
+    public ResponseEntity<Map<String, Boolean>> blobExists(
+        @PathVariable String sha256,
+        @AuthenticationPrincipal UserPrincipal principal
+    ) {
+        return ResponseEntity.ok(Map.of("exists", fileService.blobExists(sha256, principal.getId())));
+    }
+
+    // --- 1d. UPLOAD BY HASH (no bytes sent) ---
+    // Logged-in users only, and only for content they already have a file of: knowing a hash
+    // is not proof of having the content.
+    @PostMapping("/upload/by-hash")
+    @PreAuthorize("isAuthenticated()")
+    public ResponseEntity<Map<String, String>> uploadByHash(
+        @RequestParam("sha256") String sha256,
+        @RequestParam("filename") String filename,
+        @RequestParam(value = "ttlHours", required = false) Long ttlHours,
+        @AuthenticationPrincipal UserPrincipal principal
+    ) {
+        FileRecord record = fileService.uploadByHash(
+            sha256, filename, userReference(principal), expiresAt(principal, ttlHours)
+        );
+
+        if (record == null) {
+            // Unknown content: the client has to upload the bytes normally
+            return ResponseEntity.status(HttpStatus.NOT_FOUND).body(
+                Map.of("message", "Content not stored yet, upload the file.")
+            );
+        }
+        userRepository.incrementTransferCount(principal.getId());
+        return ResponseEntity.ok(Map.of("shareCode", record.getShareCode()));
+    }
+
+    // --- 1e. BATCH UPLOAD (ANONYMOUS OR AUTHENTICATED) ---
+    // Many files in one multipart request (repeat the "files" part), stored concurrently and
+    // shared under one bundle code. Each file also gets its own share code.
+    @PostMapping("/upload/batch")
+    public ResponseEntity<?> uploadBatch(
+        @RequestParam("files") List<MultipartFile> files,
+        @RequestParam(value = "ttlHours", required = false) Long ttlHours,
+        @AuthenticationPrincipal UserPrincipal principal
+    ) throws IOException {
+        BundleService.BundleUpload upload;
+        try {
+            upload = bundleService.uploadBundle(files, userReference(principal), expiresAt(principal, ttlHours));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Map.of("message", e.getMessage()));
+        }
+
+        if (principal != null) {
+            userRepository.incrementTransferCount(principal.getId());
+        }
+        List<Map<String, String>> fileCodes = upload.files().stream()
+            .map(record -> Map.of("filename", record.getOriginalFilename(), "shareCode", record.getShareCode()))
+            .toList();
+        return ResponseEntity.ok(Map.of("shareCode", upload.bundle().getShareCode(), "files", fileCodes));
+    }
+
     // --- 2. PUBLIC DOWNLOAD ENDPOINT ---
     // Does NOT require authentication (permitAll in SecurityConfig)
     // Returns a temporary S3 redirect URL.
@@ -74,36 +201,118 @@ public class FileController {
         return ResponseEntity.ok(Map.of("redirectUrl", s3Url));
     }
 
+    // --- 2b. PUBLIC BUNDLE DOWNLOAD ---
+    // Streams all files of a bundle as one zip, built on the fly while it is sent.
+    @GetMapping("/bundle/{shareCode}")
+    public ResponseEntity<?> downloadBundle(@PathVariable String shareCode) {
+        List<FileRecord> files = bundleService.getBundleFiles(shareCode);
+
+        if (files == null || files.isEmpty()) {
+            return ResponseEntity.status(HttpStatus.NOT_FOUND).body(
+                Map.of("message", "File not found or expired.")
+            );
+        }
+
+        StreamingResponseBody body = out -> bundleService.writeZip(files, out);
+        return ResponseEntity.ok()
+            .contentType(MediaType.parseMediaType("application/zip"))
+            .header(HttpHeaders.CONTENT_DISPOSITION,
+                ContentDisposition.attachment().filename("bundle-" + shareCode + ".zip").build().toString())
+            .body(body);
+    }
+
+    // --- 2c. PUBLIC PREVIEW ---
+    // Thumbnail made after upload (see FileProcessingService), for history and share pages.
+    // 404 until the file has been processed, and for files that are not images.
+    @GetMapping("/preview/{shareCode}")
+    public ResponseEntity<?> preview(@PathVariable String shareCode) {
+        FileThumbnail thumbnail = fileService.findDownloadable(shareCode) == null
+            ? null
+            : fileProcessingService.findThumbnail(shareCode).orElse(null);
+
+        if (thumbnail == null) {
+            return ResponseEntity.status(HttpStatus.NOT_FOUND).body(
+                Map.of("message", "No preview available.")
+            );
+        }
+
+        // Share codes are reused after a file is deleted, so the ETag names the file, not the code
+        return ResponseEntity.ok()
+            .contentType(MediaType.parseMediaType(thumbnail.getContentType()))
+            .cacheControl(CacheControl.maxAge(Duration.ofMinutes(10)))
+            .eTag(String.valueOf(thumbnail.getFileId()))
+            .body(thumbnail.getImage());
+    }
+
     // --- 3. USER PROFILE: LIST FILES ---
     // Requires a logged-in user
     @GetMapping("/user/history")
     @PreAuthorize("isAuthenticated()")
-    public ResponseEntity<List<FileRecord>> getUserFiles(@AuthenticationPrincipal UserDetails userDetails) {
-        User user = getCurrentUser(userDetails);
-        
+    public ResponseEntity<List<FileRecord>> getUserFiles(@AuthenticationPrincipal UserPrincipal principal) {
         // Retrieve the list of files associated with this user from the DB
-        List<FileRecord> fileRecords = fileService.getUserFiles(user.getId());
+        List<FileRecord> fileRecords = fileService.getUserFiles(principal.getId());
         
         return ResponseEntity.ok(fileRecords);
     }
     
+    // --- 3b. USER PROFILE: PAGINATED HISTORY ---
+    // Keyset-paginated, slim version of /user/history for users with many files.
+    // Follow nextCursor until it is null; prefix filters by the start of the filename.
+    @GetMapping("/user/history/page")
+    @PreAuthorize("isAuthenticated()")
+    public ResponseEntity<?> getUserFilesPage(
+        @RequestParam(value = "cursor", required = false) String cursor,
+        @RequestParam(value = "limit", defaultValue = "50") int limit,
+        @RequestParam(value = "prefix", required = false) String prefix,
+        @AuthenticationPrincipal UserPrincipal principal
+    ) {
+        int pageSize = Math.min(Math.max(limit, 1), MAX_HISTORY_PAGE_SIZE);
+
+        try {
+            return ResponseEntity.ok(fileService.getUserFilesPage(principal.getId(), cursor, pageSize, prefix));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Map.of("message", e.getMessage()));
+        }
+    }
+    
     // --- 4. USER PROFILE: DELETE FILE ---
     // Requires a logged-in user
     @DeleteMapping("/user/delete/{shareCode}")
     @PreAuthorize("isAuthenticated()")
     public ResponseEntity<String> deleteFile(
         @PathVariable String shareCode,
-        @AuthenticationPrincipal UserDetails userDetails
+        @AuthenticationPrincipal UserPrincipal principal
     ) {
-        User user = getCurrentUser(userDetails);
-        
         try {
             // Deletes the file from S3 and the record from PostgreSQL
-            fileService.deleteFile(shareCode, user.getId());
+            fileService.deleteFile(shareCode, principal.getId());
             return ResponseEntity.ok("File deleted successfully.");
         } catch (RuntimeException e) {
             // Handles "File not found or unauthorized." exception from FileService
             return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(e.getMessage());
         }
     }
-}
\ No newline at end of file
+
+    // --- 4b. USER PROFILE: BULK DELETE ---
+    // Deletes up to MAX_BULK_DELETE files per call; unknown codes and codes of other users are
+    // reported as notFound. Safe to retry: files deleted by an earlier attempt come back as notFound.
+    @PostMapping("/user/delete")
+    @PreAuthorize("isAuthenticated()")
+    public ResponseEntity<?> deleteFiles(
+        @RequestBody BulkDeleteRequest deleteRequest,
+        @AuthenticationPrincipal UserPrincipal principal
+    ) {
+        List<String> shareCodes = deleteRequest.getShareCodes();
+        if (shareCodes == null || shareCodes.isEmpty()) {
+            return ResponseEntity.badRequest().body(Map.of("message", "No share codes given."));
+        }
+        if (shareCodes.size() > MAX_BULK_DELETE) {
+            return ResponseEntity.badRequest().body(Map.of("message", "At most " + MAX_BULK_DELETE + " share codes per call."));
+        }
+
+        List<String> deleted = fileService.deleteFiles(shareCodes, principal.getId());
+        Set<String> notFound = new HashSet<>(shareCodes);
+        deleted.forEach(notFound::remove);
+        return ResponseEntity.ok(Map.of("deleted", deleted, "notFound", notFound));
+    }
+}
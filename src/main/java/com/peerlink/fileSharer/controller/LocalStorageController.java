@@ -0,0 +1,128 @@
+package com.peerlink.fileSharer.controller;
+
+import com.peerlink.fileSharer.storage.LocalStorageBackend;
+import com.peerlink.fileSharer.storage.StorageBackend;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PutMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Serves and accepts objects of the local storage backend through the signed URLs it hands
+ * out (the local equivalent of S3 presigned URLs). Only active with app.storage.backend=local.
+ */
+@RestController
+@RequestMapping("/files/local")
+@ConditionalOnProperty(name = "app.storage.backend", havingValue = "local")
+public class LocalStorageController {
+
+    // Tomcat's sendfile hooks: the connector streams the file from the page cache to the socket
+    private static final String SENDFILE_SUPPORTED = "org.apache.tomcat.sendfile.support";
+    private static final String SENDFILE_FILENAME = "org.apache.tomcat.sendfile.filename";
+    private static final String SENDFILE_START = "org.apache.tomcat.sendfile.start";
+    private static final String SENDFILE_END = "org.apache.tomcat.sendfile.end";
+
+    private final LocalStorageBackend storage;
+
+    public LocalStorageController(LocalStorageBackend storage) {
+        this.storage = storage;
+    }
+
+    @GetMapping
+    public void download(
+        @RequestParam("key") String key,
+        @RequestParam("filename") String filename,
+        @RequestParam(value = "encoding", required = false) String encoding,
+        @RequestParam("expires") long expires,
+        @RequestParam("sig") String signature,
+        HttpServletRequest request,
+        HttpServletResponse response
+    ) throws IOException {
+        if (!storage.verify(key, filename, encoding, expires, signature)) {
+            response.sendError(HttpServletResponse.SC_FORBIDDEN, "Link is invalid or has expired.");
+            return;
+        }
+
+        Path file = storage.resolve(key);
+        if (!Files.isRegularFile(file)) {
+            response.sendError(HttpServletResponse.SC_NOT_FOUND, "File not found or expired.");
+            return;
+        }
+        long size = Files.size(file);
+
+        response.setContentType(MediaType.APPLICATION_OCTET_STREAM_VALUE);
+        response.setContentLengthLong(size);
+        if (encoding != null) {
+            response.setHeader(HttpHeaders.CONTENT_ENCODING, encoding);
+        }
+        response.setHeader(HttpHeaders.CONTENT_DISPOSITION,
+            ContentDisposition.attachment().filename(filename, StandardCharsets.UTF_8).build().toString());
+
+        sendFile(file, 0, size, request, response);
+    }
+
+    // Target of presignPut / presignPart: the raw body becomes the object or one part of it
+    @PutMapping("/upload")
+    public void upload(
+        @RequestParam("key") String key,
+        @RequestParam(value = "uploadId", required = false) String uploadId,
+        @RequestParam(value = "partNumber", required = false) Integer partNumber,
+        @RequestParam("expires") long expires,
+        @RequestParam("sig") String signature,
+        HttpServletRequest request,
+        HttpServletResponse response
+    ) throws IOException {
+        if (!storage.verifyUpload(key, uploadId, partNumber, expires, signature)) {
+            response.sendError(HttpServletResponse.SC_FORBIDDEN, "Link is invalid or has expired.");
+            return;
+        }
+
+        String etag;
+        if (uploadId == null) {
+            storage.put(key, request.getInputStream(), request.getContentLengthLong(), request.getContentType());
+            etag = storage.stat(key).map(StorageBackend.ObjectInfo::etag).orElseThrow();
+        } else {
+            etag = storage.uploadPart(key, uploadId, partNumber, request.getInputStream(), request.getContentLengthLong());
+        }
+        // Quoted like S3, so clients can treat both backends the same
+        response.setHeader(HttpHeaders.ETAG, "\"" + etag + "\"");
+        response.setStatus(HttpServletResponse.SC_OK);
+    }
+
+    /**
+     * Zero-copy transfer of [start, end) of the file: Tomcat sendfile when the connector
+     * supports it, otherwise FileChannel.transferTo into the response channel.
+     */
+    static void sendFile(Path file, long start, long end, HttpServletRequest request, HttpServletResponse response) throws IOException {
+        if (Boolean.TRUE.equals(request.getAttribute(SENDFILE_SUPPORTED))) {
+            request.setAttribute(SENDFILE_FILENAME, file.toAbsolutePath().toString());
+            request.setAttribute(SENDFILE_START, start);
+            request.setAttribute(SENDFILE_END, end);
+            return;
+        }
+
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            WritableByteChannel out = Channels.newChannel(response.getOutputStream());
+            long position = start;
+            while (position < end) {
+                position += channel.transferTo(position, end - position, out);
+            }
+        }
+    }
+}
@@ -0,0 +1,257 @@
+package com.peerlink.fileSharer.controller;
+
+import com.peerlink.fileSharer.service.ProxyDownloadService;
+import com.peerlink.fileSharer.service.ProxyDownloadService.ProxyTarget;
+import jakarta.servlet.ServletOutputStream;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpRange;
+import org.springframework.http.MediaType;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.UUID;
+
+/**
+ * Proxied downloads with HTTP range support, for clients that can't reach the bucket and
+ * for download managers that fetch one file over several connections or resume after a
+ * drop. Supports Range (including multiple ranges, sent as multipart/byteranges),
+ * If-Range, ETag and If-None-Match. Multiple ranges that overlap or add up to more than
+ * the file are answered with the whole file, so a request cannot make the server send
+ * the same bytes many times over.
+ *
+ * Files stored compressed go out with Content-Encoding to clients that accept it (ranges
+ * then address the compressed bytes, as RFC 9110 defines). Other clients get the file
+ * decompressed on the fly, whole and without range support.
+ *
+ * Objects the edge cache holds on local disk are sent with zero-copy sendfile.
+ */
+@RestController
+@RequestMapping("/files/stream")
+public class ProxyDownloadController {
+
+    private static final String BYTES = "bytes";
+
+    private final ProxyDownloadService proxyDownloadService;
+
+    public ProxyDownloadController(ProxyDownloadService proxyDownloadService) {
+        this.proxyDownloadService = proxyDownloadService;
+    }
+
+    @GetMapping("/{shareCode}")
+    public void download(
+        @PathVariable String shareCode,
+        HttpServletRequest request,
+        HttpServletResponse response
+    ) throws IOException {
+        ProxyTarget target = proxyDownloadService.resolve(shareCode);
+        if (target == null) {
+            response.sendError(HttpServletResponse.SC_NOT_FOUND, "File not found or expired.");
+            return;
+        }
+        long size = target.size();
+        String encoding = target.file().contentEncoding();
+        boolean decode = encoding != null && !accepts(request.getHeader(HttpHeaders.ACCEPT_ENCODING), encoding);
+        String etag = decode ? target.identityEtag() : target.etag();
+        String contentType = target.file().contentType() != null
+            ? target.file().contentType()
+            : MediaType.APPLICATION_OCTET_STREAM_VALUE;
+
+        response.setHeader(HttpHeaders.ACCEPT_RANGES, decode ? "none" : BYTES);
+        response.setHeader(HttpHeaders.ETAG, etag);
+        response.setHeader(HttpHeaders.CONTENT_DISPOSITION,
+            ContentDisposition.attachment().filename(target.file().originalFilename(), StandardCharsets.UTF_8).build().toString());
+        if (encoding != null) {
+            response.setHeader(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING);
+        }
+
+        // 1. Conditional GET: the client already has this exact version
+        if (matchesAny(request.getHeader(HttpHeaders.IF_NONE_MATCH), etag)) {
+            response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+            return;
+        }
+
+        if (decode) {
+            // Offsets into the original bytes can't be found without decompressing up to them
+            response.setStatus(HttpServletResponse.SC_OK);
+            response.setContentType(contentType);
+            if (target.file().originalSize() != null) {
+                response.setContentLengthLong(target.file().originalSize());
+            }
+            proxyDownloadService.countDownload(target);
+            proxyDownloadService.copyDecoded(target, response.getOutputStream());
+            return;
+        }
+
+        // 2. Ranges only apply if the client's copy is still current (If-Range)
+        List<HttpRange> ranges = List.of();
+        String rangeHeader = request.getHeader(HttpHeaders.RANGE);
+        String ifRange = request.getHeader(HttpHeaders.IF_RANGE);
+        if (rangeHeader != null && (ifRange == null || ifRange.trim().equals(etag))) {
+            try {
+                ranges = HttpRange.parseRanges(rangeHeader);
+            } catch (IllegalArgumentException e) {
+                ranges = List.of(); // Malformed Range headers are ignored, as RFC 9110 allows
+            }
+        }
+
+        List<long[]> bounds = ranges.isEmpty() ? List.of() : resolve(ranges, size);
+        if (bounds == null) {
+            response.setHeader(HttpHeaders.CONTENT_RANGE, BYTES + " */" + size);
+            response.sendError(HttpServletResponse.SC_REQUESTED_RANGE_NOT_SATISFIABLE);
+            return;
+        }
+
+        if (bounds.isEmpty()) {
+            // 3. Whole file
+            response.setStatus(HttpServletResponse.SC_OK);
+            response.setContentType(contentType);
+            setContentEncoding(response, encoding);
+            response.setContentLengthLong(size);
+            proxyDownloadService.countDownload(target);
+            if (size > 0) {
+                send(target, 0, size - 1, request, response);
+            }
+            return;
+        }
+
+        // A download counts once, on the request that fetches its first byte
+        if (bounds.stream().anyMatch(range -> range[0] == 0)) {
+            proxyDownloadService.countDownload(target);
+        }
+
+        response.setStatus(HttpServletResponse.SC_PARTIAL_CONTENT);
+        if (bounds.size() == 1) {
+            // 4. One range
+            long start = bounds.get(0)[0];
+            long end = bounds.get(0)[1];
+            response.setContentType(contentType);
+            setContentEncoding(response, encoding);
+            response.setHeader(HttpHeaders.CONTENT_RANGE, contentRange(start, end, size));
+            response.setContentLengthLong(end - start + 1);
+            send(target, start, end, request, response);
+            return;
+        }
+
+        // 5. Several ranges: multipart/byteranges, one part per range (the encoding goes in the
+        // part headers, since the multipart body itself is not compressed)
+        String boundary = UUID.randomUUID().toString();
+        response.setContentType("multipart/byteranges; boundary=" + boundary);
+        ServletOutputStream out = response.getOutputStream();
+        for (long[] range : bounds) {
+            out.print("\r\n--" + boundary + "\r\n");
+            out.print(HttpHeaders.CONTENT_TYPE + ": " + contentType + "\r\n");
+            if (encoding != null) {
+                out.print(HttpHeaders.CONTENT_ENCODING + ": " + encoding + "\r\n");
+            }
+            out.print(HttpHeaders.CONTENT_RANGE + ": " + contentRange(range[0], range[1], size) + "\r\n\r\n");
+            proxyDownloadService.copy(target, range[0], range[1], out);
+        }
+        out.print("\r\n--" + boundary + "--\r\n");
+    }
+
+    // Bytes start..end (inclusive) as the whole response body
+    private void send(ProxyTarget target, long start, long end, HttpServletRequest request, HttpServletResponse response) throws IOException {
+        Path cached = target.cachedFile();
+        if (cached != null) {
+            proxyDownloadService.servedFromCache(end - start + 1);
+            LocalStorageController.sendFile(cached, start, end + 1, request, response);
+        } else {
+            proxyDownloadService.copy(target, start, end, response.getOutputStream());
+        }
+    }
+
+    // Inclusive [start, end] pairs in request order, null if no range can be satisfied (e.g. all
+    // start past the end), or empty if the ranges overlap or ask for more bytes than the file has:
+    // then they are ignored and the whole file is sent once, as RFC 9110 allows
+    static List<long[]> resolve(List<HttpRange> ranges, long size) {
+        List<long[]> bounds = new ArrayList<>(ranges.size());
+        long requested = 0;
+        for (HttpRange range : ranges) {
+            // getRangeStart doesn't check the start against the size: a range starting at or past
+            // the end comes back with end < start. It is unsatisfiable; the others may still be served
+            long start = range.getRangeStart(size);
+            long end = range.getRangeEnd(size);
+            if (start > end) {
+                continue;
+            }
+            bounds.add(new long[]{start, end});
+            requested += end - start + 1;
+        }
+        if (bounds.isEmpty()) {
+            return null;
+        }
+        if (requested > size) {
+            return List.of();
+        }
+        List<long[]> sorted = new ArrayList<>(bounds);
+        sorted.sort(Comparator.comparingLong(range -> range[0]));
+        for (int i = 1; i < sorted.size(); i++) {
+            if (sorted.get(i)[0] <= sorted.get(i - 1)[1]) {
+                return List.of();
+            }
+        }
+        return bounds;
+    }
+
+    private static void setContentEncoding(HttpServletResponse response, String encoding) {
+        if (encoding != null) {
+            response.setHeader(HttpHeaders.CONTENT_ENCODING, encoding);
+        }
+    }
+
+    private static String contentRange(long start, long end, long size) {
+        return BYTES + " " + start + "-" + end + "/" + size;
+    }
+
+    // Whether Accept-Encoding allows the coding (named, or covered by *, with a non-zero q-value)
+    private static boolean accepts(String acceptEncoding, String coding) {
+        if (acceptEncoding == null) {
+            return false;
+        }
+        for (String candidate : acceptEncoding.split(",")) {
+            String[] parts = candidate.split(";");
+            String name = parts[0].trim().toLowerCase(Locale.ROOT);
+            if (!name.equals(coding) && !name.equals("*")) {
+                continue;
+            }
+            for (int i = 1; i < parts.length; i++) {
+                String parameter = parts[i].trim();
+                if (parameter.startsWith("q=")) {
+                    try {
+                        return Double.parseDouble(parameter.substring(2)) > 0;
+                    } catch (NumberFormatException e) {
+                        return false;
+                    }
+                }
+            }
+            return true;
+        }
+        return false;
+    }
+
+    private static boolean matchesAny(String ifNoneMatch, String etag) {
+        if (ifNoneMatch == null) {
+            return false;
+        }
+        for (String candidate : ifNoneMatch.split(",")) {
+            String tag = candidate.trim();
+            // Weak comparison, as If-None-Match requires
+            if (tag.equals("*") || tag.equals(etag) || tag.equals("W/" + etag)) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,150 @@
+package com.peerlink.fileSharer.controller;
+
+import com.peerlink.fileSharer.model.FileRecord;
+import com.peerlink.fileSharer.model.UploadSession;
+import com.peerlink.fileSharer.model.UploadSessionPart;
+import com.peerlink.fileSharer.model.User;
+import com.peerlink.fileSharer.payload.CreateUploadSessionRequest;
+import com.peerlink.fileSharer.repository.UserRepository;
+import com.peerlink.fileSharer.security.UserPrincipal;
+import com.peerlink.fileSharer.service.ExpiryPolicy;
+import com.peerlink.fileSharer.service.ResumableUploadService;
+import jakarta.servlet.http.HttpServletRequest;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.core.annotation.AuthenticationPrincipal;
+import org.springframework.web.bind.annotation.*;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Resumable upload protocol, used alongside /files/upload for large files on flaky links:
+ * create a session, PUT numbered chunks (any order, retry freely), check which chunks
+ * the server already has, then complete to get the share code.
+ */
+@RestController
+@RequestMapping("/files/uploads")
+public class UploadSessionController {
+
+    private final ResumableUploadService resumableUploadService;
+    private final UserRepository userRepository;
+    private final ExpiryPolicy expiryPolicy;
+
+    public UploadSessionController(
+        ResumableUploadService resumableUploadService,
+        UserRepository userRepository,
+        ExpiryPolicy expiryPolicy
+    ) {
+        this.resumableUploadService = resumableUploadService;
+        this.userRepository = userRepository;
+        this.expiryPolicy = expiryPolicy;
+    }
+
+    // Utility to get a User reference for the principal without querying the users table (null for guests)
+    private User userReference(UserPrincipal principal) {
+        return principal != null ? userRepository.getReferenceById(principal.getId()) : null;
+    }
+
+    private Long userId(UserPrincipal principal) {
+        return principal != null ? principal.getId() : null;
+    }
+
+    // --- 1. CREATE SESSION ---
+    @PostMapping
+    public ResponseEntity<Map<String, Object>> createSession(
+        @RequestBody CreateUploadSessionRequest request,
+        @AuthenticationPrincipal UserPrincipal principal
+    ) {
+        if (request.getFilename() == null || request.getFilename().isBlank()) {
+            return ResponseEntity.badRequest().body(Map.of("message", "Filename is required."));
+        }
+
+        UploadSession session;
+        try {
+            session = resumableUploadService.createSession(
+                request.getFilename(), request.getContentType(), request.getChunkSize(),
+                userReference(principal), request.getGuestId()
+            );
+        } catch (RuntimeException e) {
+            return ResponseEntity.badRequest().body(Map.of("message", e.getMessage()));
+        }
+
+        return ResponseEntity.ok(Map.of(
+            "sessionId", session.getId(),
+            "minChunkSize", ResumableUploadService.MIN_CHUNK_SIZE,
+            "maxChunks", ResumableUploadService.MAX_PART_NUMBER
+        ));
+    }
+
+    // --- 2. UPLOAD ONE CHUNK (raw body, Content-Length required) ---
+    @PutMapping("/{sessionId}/chunks/{partNumber}")
+    public ResponseEntity<Map<String, Object>> uploadChunk(
+        @PathVariable String sessionId,
+        @PathVariable int partNumber,
+        @AuthenticationPrincipal UserPrincipal principal,
+        HttpServletRequest request
+    ) throws IOException {
+        try {
+            UploadSessionPart part = resumableUploadService.uploadChunk(
+                sessionId, partNumber, request.getInputStream(), request.getContentLengthLong(), userId(principal)
+            );
+            return ResponseEntity.ok(Map.of("partNumber", part.getPartNumber(), "size", part.getSize()));
+        } catch (RuntimeException e) {
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(Map.of("message", e.getMessage()));
+        }
+    }
+
+    // --- 3. LIST STORED CHUNKS (for resuming) ---
+    @GetMapping("/{sessionId}")
+    public ResponseEntity<Map<String, Object>> getSession(
+        @PathVariable String sessionId,
+        @AuthenticationPrincipal UserPrincipal principal
+    ) {
+        try {
+            List<Map<String, Object>> parts = resumableUploadService.getStoredParts(sessionId, userId(principal))
+                .stream()
+                .map(part -> Map.<String, Object>of("partNumber", part.getPartNumber(), "size", part.getSize()))
+                .toList();
+            return ResponseEntity.ok(Map.of("sessionId", sessionId, "parts", parts));
+        } catch (RuntimeException e) {
+            return ResponseEntity.status(HttpStatus.NOT_FOUND).body(Map.of("message", e.getMessage()));
+        }
+    }
+
+    // --- 4. COMPLETE: stitch the chunks together and issue the share code ---
+    @PostMapping("/{sessionId}/complete")
+    public ResponseEntity<Map<String, String>> completeSession(
+        @PathVariable String sessionId,
+        @RequestParam(value = "ttlHours", required = false) Long ttlHours,
+        @AuthenticationPrincipal UserPrincipal principal
+    ) {
+        try {
+            FileRecord record = resumableUploadService.completeSession(
+                sessionId, userId(principal),
+                expiryPolicy.expiresAt(principal != null ? principal.getRole() : null, ttlHours)
+            );
+            if (principal != null) {
+                userRepository.incrementTransferCount(principal.getId());
+            }
+            return ResponseEntity.ok(Map.of("shareCode", record.getShareCode()));
+        } catch (RuntimeException e) {
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(Map.of("message", e.getMessage()));
+        }
+    }
+
+    // --- 5. ABORT ---
+    @DeleteMapping("/{sessionId}")
+    public ResponseEntity<String> abortSession(
+        @PathVariable String sessionId,
+        @AuthenticationPrincipal UserPrincipal principal
+    ) {
+        try {
+            resumableUploadService.abortSession(sessionId, userId(principal));
+            return ResponseEntity.ok("Upload session cancelled.");
+        } catch (RuntimeException e) {
+            return ResponseEntity.status(HttpStatus.NOT_FOUND).body(e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,38 @@
+package com.peerlink.fileSharer.model;
+
+import jakarta.persistence.*;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.Instant;
+
+/**
+ * A requested account deletion and how far it got. The row exists from the request until
+ * the user row is gone, so a purge interrupted by a crash or restart resumes where it stopped.
+ */
+@Entity
+@Table(name = "account_purges")
+@Data // Lombok: Generates getters, setters, etc.
+@NoArgsConstructor // Lombok: Generates a no-argument constructor
+public class AccountPurge {
+
+    @Id
+    @Column(name = "user_id")
+    private Long userId; // Plain id, no FK: the user row is deleted while this row still exists
+
+    @Column(name = "requested_at", nullable = false)
+    private Instant requestedAt = Instant.now();
+
+    @Column(name = "last_file_id", nullable = false)
+    private Long lastFileId = 0L; // Keyset cursor: every file with a lower or equal id is already purged
+
+    @Column(name = "files_purged", nullable = false)
+    private Long filesPurged = 0L;
+
+    @Column(name = "claimed_until")
+    private Instant claimedUntil; // Lease of the instance working on it; null or past = free to pick up
+
+    public AccountPurge(Long userId) {
+        this.userId = userId;
+    }
+}
@@ -0,0 +1,44 @@
+package com.peerlink.fileSharer.model;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import jakarta.persistence.*;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.Instant;
+
+@Entity
+@Table(name = "file_bundles", indexes = {
+    @Index(name = "idx_file_bundles_expires_at", columnList = "expires_at")
+})
+@Data // Lombok: Generates getters, setters, etc.
+@NoArgsConstructor // Lombok: Generates a no-argument constructor
+public class FileBundle {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(unique = true, nullable = false)
+    private String shareCode; // One code for the whole batch; drawn from the same pool as file codes
+
+    @Column(name = "file_count")
+    private Integer fileCount;
+
+    @Column(name = "created_at")
+    private Instant createdAt = Instant.now();
+
+    @Column(name = "expires_at")
+    private Instant expiresAt; // Same lifetime as the files in it; null = never
+
+    // Nullable for guest uploads
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "user_id", nullable = true)
+    @JsonIgnore
+    private User user;
+
+    @JsonIgnore
+    public boolean isExpired() {
+        return expiresAt != null && !expiresAt.isAfter(Instant.now());
+    }
+}
@@ -0,0 +1,47 @@
+package com.peerlink.fileSharer.model;
+
+import jakarta.persistence.*;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.Instant;
+
+/**
+ * A file waiting for post-upload processing (see FileProcessingService). The row is the
+ * queue entry: it is written right after the file's record and deleted once the file has
+ * been processed or has used up its attempts.
+ */
+@Entity
+@Table(name = "file_processing_tasks", indexes = {
+    // The poller takes due tasks in this order: WHERE next_attempt_at <= ?
+    @Index(name = "idx_file_processing_tasks_due", columnList = "next_attempt_at"),
+    // Dropping the tasks of deleted files
+    @Index(name = "idx_file_processing_tasks_file", columnList = "file_id")
+})
+@Data // Lombok: Generates getters, setters, etc.
+@NoArgsConstructor // Lombok: Generates a no-argument constructor
+public class FileProcessingTask {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "file_id", nullable = false)
+    private Long fileId; // Plain id, no FK: the task is dropped with its file, not before it
+
+    @Column(nullable = false)
+    private Integer attempts = 0; // Counted when a worker claims the task, so a crash counts too
+
+    @Column(name = "next_attempt_at", nullable = false)
+    private Instant nextAttemptAt = Instant.now(); // While a worker holds the task, the end of its lease
+
+    @Column(name = "last_error", length = 500)
+    private String lastError;
+
+    @Column(name = "created_at", nullable = false)
+    private Instant createdAt = Instant.now();
+
+    public FileProcessingTask(Long fileId) {
+        this.fileId = fileId;
+    }
+}
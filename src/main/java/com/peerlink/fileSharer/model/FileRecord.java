@@ -8,7 +8,20 @@ import lombok.NoArgsConstructor;
 import java.time.Instant;
 
 @Entity
-@Table(name = "file_records")
+@Table(name = "file_records", indexes = {
+    // Keyset pagination of a user's history: WHERE user_id = ? AND (upload_date, id) < (?, ?)
+    @Index(name = "idx_file_records_user_upload", columnList = "user_id, upload_date DESC, id DESC"),
+    // Walking all of a user's files in id order (account purge): WHERE user_id = ? AND id > ?
+    @Index(name = "idx_file_records_user_id", columnList = "user_id, id"),
+    // Filename prefix search within a user's files
+    @Index(name = "idx_file_records_user_filename", columnList = "user_id, originalFilename"),
+    // Reconciling and expiring pending direct uploads
+    @Index(name = "idx_file_records_status_upload", columnList = "status, upload_date"),
+    // The expiry reaper walks this index in expiry order
+    @Index(name = "idx_file_records_expires_at", columnList = "expires_at"),
+    // Members of a bundle, for the zip download
+    @Index(name = "idx_file_records_bundle", columnList = "bundle_id")
+})
 @Data // Lombok: Generates getters, setters, etc.
 @NoArgsConstructor // Lombok: Generates a no-argument constructor
 public class FileRecord {
@@ -26,9 +39,61 @@ public class FileRecord {
     @Column(nullable = false)
     private String s3ObjectKey; // The unique identifier/path in the AWS S3 bucket
 
+    @Column(name = "content_hash", length = 64)
+    @JsonIgnore
+    private String contentHash; // SHA-256 of the content when the object is a shared, deduplicated blob
+
+    @Column(name = "content_type")
+    private String contentType; // Sniffed from the first bytes of the upload (see UploadEncoder); null on old rows
+
+    @Column(name = "content_encoding", length = 16)
+    private String contentEncoding; // gzip when the object is stored compressed, null when stored as uploaded
+
+    @Column(name = "original_size")
+    private Long originalSize; // Bytes the client uploaded; null where unknown (direct and resumable uploads)
+
+    @Column(name = "stored_size")
+    private Long storedSize; // Bytes in storage, smaller than originalSize for compressed files
+
+    @Column(name = "encryption_key", length = 128)
+    @JsonIgnore
+    private String encryptionKey; // Data key of an encrypted object, wrapped with the master key (see EnvelopeEncryption); null = plaintext
+
+    @Column(name = "encryption_segment_size")
+    @JsonIgnore
+    private Integer encryptionSegmentSize; // Plaintext bytes per encrypted segment
+
+    @Column(length = 64)
+    private String sha256; // Hex SHA-256 of the content as uploaded, set by post-upload processing (see FileProcessingService)
+
+    @Column(name = "thumbnail_type", length = 32)
+    private String thumbnailType; // Content type of the preview at /files/preview/{shareCode}; null = no preview
+
+    @Column(name = "processed_at")
+    private Instant processedAt; // When post-upload processing finished; null until then
+
+    @Enumerated(EnumType.STRING)
+    @Column(length = 16)
+    private FileStatus status = FileStatus.ACTIVE; // PENDING while a direct upload is in progress; null on old rows means ACTIVE
+
+    @Column(name = "pending_upload_id")
+    @JsonIgnore
+    private String pendingUploadId; // Multipart upload of a pending direct upload, null for a single PUT
+
+    @Column(name = "expected_size")
+    @JsonIgnore
+    private Long expectedSize; // Size the client announced for a direct upload, checked on finalize
+
+    @Column(name = "bundle_id")
+    @JsonIgnore
+    private Long bundleId; // FileBundle this file was uploaded with, if any (plain id, no FK: bundles and files expire independently)
+
     @Column(name = "upload_date")
     private Instant uploadDate = Instant.now(); // Timestamp of when the file was uploaded
 
+    @Column(name = "expires_at")
+    private Instant expiresAt; // After this the share code stops working and the reaper deletes the file; null = never
+
     @Column(name = "download_count")
     private Long downloadCount = 0L; // Tracks how many times the file has been downloaded
 
@@ -38,4 +103,14 @@ public class FileRecord {
     @JoinColumn(name = "user_id", nullable = true)
     @JsonIgnore
     private User user;
+
+    @JsonIgnore
+    public boolean isPending() {
+        return status == FileStatus.PENDING;
+    }
+
+    @JsonIgnore
+    public boolean isExpired() {
+        return expiresAt != null && !expiresAt.isAfter(Instant.now());
+    }
 }
\ No newline at end of file
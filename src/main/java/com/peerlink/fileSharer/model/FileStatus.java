@@ -0,0 +1,9 @@
+package com.peerlink.fileSharer.model;
+
+/**
+ * Lifecycle of a FileRecord. Records from before statuses existed have none and count as ACTIVE.
+ */
+public enum FileStatus {
+    PENDING, // Share code reserved, client is still uploading straight to storage
+    ACTIVE   // Bytes are in storage and the share code can be downloaded
+}
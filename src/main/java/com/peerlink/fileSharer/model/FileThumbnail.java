@@ -0,0 +1,38 @@
+package com.peerlink.fileSharer.model;
+
+import jakarta.persistence.*;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * A small JPEG preview of an image file, made by FileProcessingService so clients can show
+ * history without downloading the files. Served by GET /files/preview/{shareCode}.
+ */
+@Entity
+@Table(name = "file_thumbnails")
+@Data // Lombok: Generates getters, setters, etc.
+@NoArgsConstructor // Lombok: Generates a no-argument constructor
+public class FileThumbnail {
+
+    @Id
+    @Column(name = "file_id")
+    private Long fileId; // Plain id, no FK: FileRecordPurger deletes it together with the record
+
+    @Column(name = "content_type", nullable = false, length = 32)
+    private String contentType;
+
+    @Column(nullable = false)
+    private Integer width;
+
+    @Column(nullable = false)
+    private Integer height;
+
+    @Column(name = "source_width", nullable = false)
+    private Integer sourceWidth; // Dimensions of the original image
+
+    @Column(name = "source_height", nullable = false)
+    private Integer sourceHeight;
+
+    @Column(nullable = false, length = 262144)
+    private byte[] image; // A few KiB at the default size
+}
@@ -0,0 +1,23 @@
+package com.peerlink.fileSharer.model;
+
+import jakarta.persistence.*;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.Instant;
+
+@Entity
+@Table(name = "recycled_share_codes", indexes = {
+    @Index(name = "idx_recycled_share_codes_recycled_at", columnList = "recycled_at")
+})
+@Data // Lombok: Generates getters, setters, etc.
+@NoArgsConstructor // Lombok: Generates a no-argument constructor
+public class RecycledShareCode {
+
+    @Id
+    @Column(name = "share_code")
+    private String shareCode; // Code of a deleted/expired file, free to be handed out again
+
+    @Column(name = "recycled_at", nullable = false)
+    private Instant recycledAt = Instant.now(); // Codes are only reused after a quarantine period
+}
@@ -0,0 +1,42 @@
+package com.peerlink.fileSharer.model;
+
+import jakarta.persistence.*;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.Instant;
+
+@Entity
+@Table(name = "stored_blobs")
+@Data // Lombok: Generates getters, setters, etc.
+@NoArgsConstructor // Lombok: Generates a no-argument constructor
+public class StoredBlob {
+
+    @Id
+    @Column(name = "content_hash", length = 64)
+    private String contentHash; // Hex SHA-256 of the stored bytes
+
+    @Column(nullable = false)
+    private String s3ObjectKey; // The single S3 object shared by every FileRecord with this hash
+
+    @Column(nullable = false)
+    private Long size; // Size of the content as uploaded
+
+    @Column(name = "content_encoding", length = 16)
+    private String contentEncoding; // How the object is stored (gzip), null when stored as uploaded
+
+    @Column(name = "stored_size")
+    private Long storedSize; // Size of the object; null on old rows means the same as size
+
+    @Column(name = "encryption_key", length = 128)
+    private String encryptionKey; // Wrapped data key when the object is encrypted; every reference decrypts with it
+
+    @Column(name = "encryption_segment_size")
+    private Integer encryptionSegmentSize;
+
+    @Column(name = "ref_count", nullable = false)
+    private Long refCount = 1L; // Number of FileRecords pointing at the object; it is deleted at 0
+
+    @Column(name = "created_at", nullable = false)
+    private Instant createdAt = Instant.now();
+}
@@ -0,0 +1,55 @@
+package com.peerlink.fileSharer.model;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import jakarta.persistence.*;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.Instant;
+
+@Entity
+@Table(name = "upload_sessions", indexes = {
+    @Index(name = "idx_upload_sessions_updated_at", columnList = "updated_at")
+})
+@Data // Lombok: Generates getters, setters, etc.
+@NoArgsConstructor // Lombok: Generates a no-argument constructor
+public class UploadSession {
+
+    @Id
+    private String id; // Random UUID handed to the client; doubles as the resume token
+
+    @Column(nullable = false)
+    private String s3UploadId; // The S3 multipart upload this session feeds
+
+    @Column(nullable = false)
+    private String s3ObjectKey; // Key the object will have once the upload is completed
+
+    @Column(nullable = false)
+    private String originalFilename;
+
+    private String contentType;
+
+    private Long chunkSize; // Declared by the client; null for sessions that did not declare one
+
+    private String guestId; // Set for guest sessions, null otherwise
+
+    @Column(name = "encryption_key", length = 128)
+    @JsonIgnore
+    private String encryptionKey; // Data key the chunks are encrypted with, wrapped (see EnvelopeEncryption); null = plaintext
+
+    @Column(name = "encryption_segment_size")
+    @JsonIgnore
+    private Integer encryptionSegmentSize; // Plaintext bytes per encrypted segment
+
+    @Column(name = "created_at", nullable = false)
+    private Instant createdAt = Instant.now();
+
+    @Column(name = "updated_at", nullable = false)
+    private Instant updatedAt = Instant.now(); // Bumped on every stored chunk; stale sessions are garbage-collected
+
+    // Nullable for guest uploads
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "user_id", nullable = true)
+    @JsonIgnore
+    private User user;
+}
@@ -0,0 +1,30 @@
+package com.peerlink.fileSharer.model;
+
+import jakarta.persistence.*;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Entity
+@Table(name = "upload_session_parts", uniqueConstraints = {
+    @UniqueConstraint(name = "uk_upload_session_parts_session_part", columnNames = {"session_id", "part_number"})
+})
+@Data // Lombok: Generates getters, setters, etc.
+@NoArgsConstructor // Lombok: Generates a no-argument constructor
+public class UploadSessionPart {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "session_id", nullable = false)
+    private String sessionId;
+
+    @Column(name = "part_number", nullable = false)
+    private Integer partNumber; // Chunk number chosen by the client, maps 1:1 onto the S3 part number
+
+    @Column(nullable = false)
+    private String etag; // ETag S3 returned for the part, needed to complete the upload
+
+    @Column(nullable = false)
+    private Long size;
+}
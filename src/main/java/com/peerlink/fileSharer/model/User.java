@@ -29,8 +29,8 @@ public class User {
     @Column(nullable = false)
     private String role = "FREE_USER"; // Role for security (e.g., FREE_USER, PREMIUM)
 
-    // Maps the one-to-many relationship with FileRecord
-    // CascadeType.ALL means if a User is deleted, their associated files (metadata) are also handled.
-    @OneToMany(mappedBy = "user", cascade = CascadeType.ALL, orphanRemoval = true)
+    // Maps the one-to-many relationship with FileRecord. No cascade: deleting a user would load
+    // every file and leave the stored objects behind; AccountPurgeService removes them in pages.
+    @OneToMany(mappedBy = "user")
     private List<FileRecord> files = new ArrayList<>();
 }
\ No newline at end of file
@@ -0,0 +1,10 @@
+package com.peerlink.fileSharer.payload;
+
+import lombok.Data;
+
+import java.util.List;
+
+@Data
+public class BulkDeleteRequest {
+    private List<String> shareCodes;
+}
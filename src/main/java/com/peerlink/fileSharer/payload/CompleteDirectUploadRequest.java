@@ -0,0 +1,13 @@
+package com.peerlink.fileSharer.payload;
+
+import com.peerlink.fileSharer.storage.StorageBackend.CompletedPart;
+import lombok.Data;
+
+import java.util.List;
+
+@Data
+public class CompleteDirectUploadRequest {
+    private String uploadToken;
+    private String etag; // ETag header of the single PUT response (optional, verified if present)
+    private List<CompletedPart> parts; // Part numbers and ETags of a multipart upload
+}
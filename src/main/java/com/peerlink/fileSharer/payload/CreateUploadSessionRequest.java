@@ -0,0 +1,11 @@
+package com.peerlink.fileSharer.payload;
+
+import lombok.Data;
+
+@Data
+public class CreateUploadSessionRequest {
+    private String filename;
+    private String contentType;
+    private String guestId;
+    private Long chunkSize; // Size of every chunk but the last, at least ResumableUploadService.MIN_CHUNK_SIZE
+}
@@ -0,0 +1,11 @@
+package com.peerlink.fileSharer.payload;
+
+import lombok.Data;
+
+@Data
+public class DirectUploadRequest {
+    private String filename;
+    private String contentType;
+    private Long size; // Exact size in bytes; checked against the stored object on completion
+    private Long ttlHours; // Optional, capped by the uploader's role
+}
@@ -0,0 +1,18 @@
+package com.peerlink.fileSharer.payload;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+import java.time.Instant;
+import java.util.List;
+
+@Data
+@AllArgsConstructor
+public class DirectUploadTicket {
+    private String shareCode; // Reserved now, downloadable once the upload is completed
+    private String uploadToken; // Proves on completion that the caller started this upload
+    private String uploadUrl; // PUT the whole file here (single upload), null for multipart
+    private List<String> partUrls; // PUT part n to partUrls[n - 1] (multipart upload), null for a single upload
+    private Long partSize; // Every part but the last must be exactly this size
+    private Instant expiresAt; // The URLs stop working after this
+}
@@ -0,0 +1,24 @@
+package com.peerlink.fileSharer.payload;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.Instant;
+
+// Slim projection of FileRecord for the paginated history (no entity hydration)
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class FileHistoryItem {
+    private Long id;
+    private String shareCode;
+    private String originalFilename;
+    private Instant uploadDate;
+    private Long downloadCount;
+    private Instant expiresAt; // null = never expires
+    private String contentType;
+    private Long originalSize; // null until known (direct and resumable uploads get it from post-upload processing)
+    private String sha256; // null until the file has been processed
+    private String thumbnailType; // Set when /files/preview/{shareCode} has a preview
+}
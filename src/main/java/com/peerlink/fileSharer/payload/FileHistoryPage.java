@@ -0,0 +1,13 @@
+package com.peerlink.fileSharer.payload;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+import java.util.List;
+
+@Data
+@AllArgsConstructor
+public class FileHistoryPage {
+    private List<FileHistoryItem> items;
+    private String nextCursor; // Pass back as ?cursor= to get the next page; null on the last page
+}
@@ -0,0 +1,8 @@
+package com.peerlink.fileSharer.payload;
+
+import lombok.Data;
+
+@Data
+public class RefreshTokenRequest {
+    private String refreshToken;
+}
@@ -0,0 +1,13 @@
+package com.peerlink.fileSharer.payload;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+@Data
+@AllArgsConstructor
+public class TokenResponse {
+    private String accessToken; // Send as "Authorization: Bearer <accessToken>"
+    private String refreshToken; // Exchange at /auth/refresh for a new pair before the access token expires
+    private String tokenType; // Always "Bearer"
+    private long expiresIn; // Seconds until the access token expires
+}
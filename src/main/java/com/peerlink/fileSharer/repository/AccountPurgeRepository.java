@@ -0,0 +1,38 @@
+package com.peerlink.fileSharer.repository;
+
+import com.peerlink.fileSharer.model.AccountPurge;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.Instant;
+import java.util.List;
+
+public interface AccountPurgeRepository extends JpaRepository<AccountPurge, Long> {
+
+    // Oldest requests first
+    List<AccountPurge> findAllByOrderByRequestedAt(Limit limit);
+
+    // Takes the lease if nobody holds it (1 = claimed). Instances racing for the same purge
+    // serialize on the row, so exactly one of them wins.
+    @Modifying
+    @Transactional
+    @Query("update AccountPurge p set p.claimedUntil = :until "
+         + "where p.userId = :userId and (p.claimedUntil is null or p.claimedUntil < :now)")
+    int claim(@Param("userId") Long userId, @Param("now") Instant now, @Param("until") Instant until);
+
+    // Moves the cursor past a purged page and extends the lease
+    @Modifying
+    @Transactional
+    @Query("update AccountPurge p set p.lastFileId = :lastFileId, p.filesPurged = p.filesPurged + :purged, "
+         + "p.claimedUntil = :until where p.userId = :userId")
+    int advance(
+        @Param("userId") Long userId,
+        @Param("lastFileId") Long lastFileId,
+        @Param("purged") long purged,
+        @Param("until") Instant until
+    );
+}
@@ -0,0 +1,27 @@
+package com.peerlink.fileSharer.repository;
+
+import com.peerlink.fileSharer.model.FileBundle;
+import jakarta.persistence.LockModeType;
+import jakarta.persistence.QueryHint;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.QueryHints;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.Optional;
+
+public interface FileBundleRepository extends JpaRepository<FileBundle, Long> {
+
+    Optional<FileBundle> findByShareCode(String shareCode);
+
+    // Next batch of a user's bundles (account purge)
+    List<FileBundle> findByUser_IdOrderById(Long userId, Limit limit);
+
+    // Next batch of expired bundles for the expiry reaper, oldest first. The rows stay locked until
+    // the caller's transaction ends; rows another instance is deleting are skipped (-2 = SKIP LOCKED)
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @QueryHints(@QueryHint(name = "jakarta.persistence.lock.timeout", value = "-2"))
+    List<FileBundle> findByExpiresAtBeforeOrderByExpiresAt(Instant now, Limit limit);
+}
@@ -0,0 +1,38 @@
+package com.peerlink.fileSharer.repository;
+
+import com.peerlink.fileSharer.model.FileProcessingTask;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.Instant;
+import java.util.Collection;
+import java.util.List;
+
+public interface FileProcessingTaskRepository extends JpaRepository<FileProcessingTask, Long> {
+
+    // Tasks that are due, oldest first; claimed tasks are not due until their lease runs out
+    List<FileProcessingTask> findByNextAttemptAtLessThanEqualOrderByNextAttemptAt(Instant now, Limit limit);
+
+    // Takes the task for one attempt, leasing it until :until (1 = claimed). Pollers racing for
+    // the same task serialize on the row, so exactly one of them wins.
+    @Modifying
+    @Transactional
+    @Query("update FileProcessingTask t set t.nextAttemptAt = :until, t.attempts = t.attempts + 1 "
+         + "where t.id = :id and t.nextAttemptAt <= :now")
+    int claim(@Param("id") Long id, @Param("now") Instant now, @Param("until") Instant until);
+
+    // Schedules the next attempt after a failure
+    @Modifying
+    @Transactional
+    @Query("update FileProcessingTask t set t.nextAttemptAt = :nextAttemptAt, t.lastError = :error where t.id = :id")
+    int retryAt(@Param("id") Long id, @Param("nextAttemptAt") Instant nextAttemptAt, @Param("error") String error);
+
+    @Modifying
+    @Transactional
+    @Query("delete from FileProcessingTask t where t.fileId in :fileIds")
+    int deleteByFileIdIn(@Param("fileIds") Collection<Long> fileIds);
+}
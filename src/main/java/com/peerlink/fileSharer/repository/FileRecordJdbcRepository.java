@@ -0,0 +1,97 @@
+package com.peerlink.fileSharer.repository;
+
+import com.peerlink.fileSharer.model.FileRecord;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.persister.entity.AbstractEntityPersister;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.time.Instant;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Bulk inserts of file records. FileRecord ids are IDENTITY columns, which makes Hibernate
+ * insert row by row; plain JDBC can still send all rows as one batch (one round trip, or a
+ * single multi-row INSERT with reWriteBatchedInserts=true on the Postgres driver).
+ *
+ * Column names are taken from Hibernate's mapping, so they always match the schema
+ * ddl-auto generated.
+ */
+@Repository
+public class FileRecordJdbcRepository {
+
+    private static final String[] PROPERTIES = {
+        "shareCode", "originalFilename", "s3ObjectKey", "contentHash", "status",
+        "expiresAt", "uploadDate", "downloadCount", "user", "bundleId",
+        "contentType", "contentEncoding", "originalSize", "storedSize",
+        "encryptionKey", "encryptionSegmentSize"
+    };
+
+    private final JdbcTemplate jdbcTemplate;
+    private final String insertSql;
+    private final String idsSql;
+
+    public FileRecordJdbcRepository(JdbcTemplate jdbcTemplate, EntityManagerFactory entityManagerFactory) {
+        this.jdbcTemplate = jdbcTemplate;
+
+        AbstractEntityPersister persister = (AbstractEntityPersister) entityManagerFactory
+            .unwrap(SessionFactoryImplementor.class)
+            .getMappingMetamodel()
+            .getEntityDescriptor(FileRecord.class);
+        String columns = Stream.of(PROPERTIES)
+            .map(property -> persister.getPropertyColumnNames(property)[0])
+            .collect(Collectors.joining(", "));
+        String placeholders = String.join(", ", Collections.nCopies(PROPERTIES.length, "?"));
+        this.insertSql = "INSERT INTO " + persister.getTableName() + " (" + columns + ") VALUES (" + placeholders + ")";
+        this.idsSql = "SELECT " + persister.getIdentifierColumnNames()[0] + ", " + persister.getPropertyColumnNames("shareCode")[0]
+            + " FROM " + persister.getTableName() + " WHERE " + persister.getPropertyColumnNames("shareCode")[0] + " IN (%s)";
+    }
+
+    /**
+     * Inserts all records in one JDBC batch, then reads the generated ids back by share code
+     * (one more round trip) and sets them on the records. Call it inside a transaction.
+     */
+    public void insertAll(List<FileRecord> records) {
+        if (records.isEmpty()) {
+            return;
+        }
+        jdbcTemplate.batchUpdate(insertSql, records, records.size(), (ps, record) -> {
+            ps.setString(1, record.getShareCode());
+            ps.setString(2, record.getOriginalFilename());
+            ps.setString(3, record.getS3ObjectKey());
+            ps.setString(4, record.getContentHash());
+            ps.setString(5, record.getStatus() == null ? null : record.getStatus().name());
+            ps.setObject(6, timestamp(record.getExpiresAt()), Types.TIMESTAMP);
+            ps.setObject(7, timestamp(record.getUploadDate()), Types.TIMESTAMP);
+            ps.setLong(8, record.getDownloadCount());
+            ps.setObject(9, record.getUser() == null ? null : record.getUser().getId(), Types.BIGINT);
+            ps.setObject(10, record.getBundleId(), Types.BIGINT);
+            ps.setString(11, record.getContentType());
+            ps.setString(12, record.getContentEncoding());
+            ps.setObject(13, record.getOriginalSize(), Types.BIGINT);
+            ps.setObject(14, record.getStoredSize(), Types.BIGINT);
+            ps.setString(15, record.getEncryptionKey());
+            ps.setObject(16, record.getEncryptionSegmentSize(), Types.INTEGER);
+        });
+
+        // Share codes are unique, so they identify the new rows
+        Map<String, FileRecord> byShareCode = records.stream()
+            .collect(Collectors.toMap(FileRecord::getShareCode, Function.identity()));
+        String sql = idsSql.formatted(String.join(", ", Collections.nCopies(records.size(), "?")));
+        jdbcTemplate.query(sql, rs -> {
+            byShareCode.get(rs.getString(2)).setId(rs.getLong(1));
+        }, records.stream().map(FileRecord::getShareCode).toArray());
+    }
+
+    private static Timestamp timestamp(Instant instant) {
+        return instant == null ? null : Timestamp.from(instant);
+    }
+}
@@ -1,8 +1,21 @@
 package com.peerlink.fileSharer.repository;
 
 import com.peerlink.fileSharer.model.FileRecord;
+import com.peerlink.fileSharer.model.FileStatus;
+import com.peerlink.fileSharer.payload.FileHistoryItem;
+import jakarta.persistence.LockModeType;
+import jakarta.persistence.QueryHint;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.time.Instant;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
@@ -16,4 +29,79 @@ public interface FileRecordRepository extends JpaRepository<FileRecord, Long> {
 
     // Find a file record by both the share code AND the user ID (for security/deletion)
     Optional<FileRecord> findByShareCodeAndUserId(String shareCode, Long userId);
-}
\ No newline at end of file
+
+    // The user's files among the given codes, in one query (bulk delete); codes of other users are skipped
+    List<FileRecord> findByUser_IdAndShareCodeIn(Long userId, Collection<String> shareCodes);
+
+    // Next page of a user's files after the cursor, in id order (account purge)
+    List<FileRecord> findByUser_IdAndIdGreaterThanOrderById(Long userId, Long afterId, Limit limit);
+
+    // Whether a user still has a file with this content (hash-only uploads)
+    boolean existsByUser_IdAndContentHash(Long userId, String contentHash);
+
+    // One page of a user's history, newest first, using keyset (seek) pagination on
+    // (upload_date, id) so every page is an index range scan regardless of offset.
+    // The prefix is a LIKE pattern ("abc%"), or "%" for no filter.
+    @Query("select new com.peerlink.fileSharer.payload.FileHistoryItem("
+         + "f.id, f.shareCode, f.originalFilename, f.uploadDate, f.downloadCount, f.expiresAt, "
+         + "f.contentType, f.originalSize, f.sha256, f.thumbnailType) "
+         + "from FileRecord f "
+         + "where f.user.id = :userId "
+         + "and (f.uploadDate, f.id) < (:beforeDate, :beforeId) "
+         + "and f.originalFilename like :prefix escape '\\' "
+         + "and (f.status is null or f.status <> com.peerlink.fileSharer.model.FileStatus.PENDING) "
+         + "order by f.uploadDate desc, f.id desc")
+    List<FileHistoryItem> findHistoryPage(
+        @Param("userId") Long userId,
+        @Param("beforeDate") Instant beforeDate,
+        @Param("beforeId") Long beforeId,
+        @Param("prefix") String prefix,
+        Limit limit
+    );
+
+    // Stores the results of post-upload processing. Type and size only fill in what the upload
+    // did not know (direct and resumable uploads); 0 = the file is gone
+    @Modifying
+    @Transactional
+    @Query("update FileRecord f set f.sha256 = :sha256, f.thumbnailType = :thumbnailType, f.processedAt = :processedAt, "
+         + "f.contentType = coalesce(f.contentType, :contentType), f.originalSize = coalesce(f.originalSize, :size) "
+         + "where f.id = :id")
+    int recordProcessing(
+        @Param("id") Long id,
+        @Param("sha256") String sha256,
+        @Param("contentType") String contentType,
+        @Param("size") Long size,
+        @Param("thumbnailType") String thumbnailType,
+        @Param("processedAt") Instant processedAt
+    );
+
+    // Locks the rows of those files that still exist (FileRecordPurger). Rows another
+    // transaction holds are skipped rather than waited for: that purge deletes them.
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @QueryHints(@QueryHint(name = "jakarta.persistence.lock.timeout", value = "-2")) // -2 = SKIP LOCKED
+    @Query("select f from FileRecord f where f.id in :ids")
+    List<FileRecord> lockForPurge(@Param("ids") Collection<Long> ids);
+
+    // Files of a bundle, in upload order
+    List<FileRecord> findByBundleIdOrderById(Long bundleId);
+
+    // Next batch for the expiry reaper: an index range scan on expires_at, oldest first
+    List<FileRecord> findByExpiresAtBeforeOrderByExpiresAt(Instant now, Limit limit);
+
+    // Direct uploads that were started before the cutoff, oldest first (expiry of abandoned uploads)
+    List<FileRecord> findByStatusAndUploadDateBeforeOrderByUploadDate(FileStatus status, Instant before, Limit limit);
+
+    // Direct uploads sent as a single PUT, which can be activated as soon as the object shows up (paged by id)
+    List<FileRecord> findByStatusAndPendingUploadIdIsNullAndIdGreaterThanOrderById(FileStatus status, Long afterId, Limit limit);
+
+    // Turns a pending upload into a downloadable file; 0 = it is not pending any more
+    // (activated or discarded by someone else), so exactly one caller wins
+    @Modifying
+    @Transactional
+    @Query("update FileRecord f set f.status = com.peerlink.fileSharer.model.FileStatus.ACTIVE, f.pendingUploadId = null "
+         + "where f.id = :id and f.status = com.peerlink.fileSharer.model.FileStatus.PENDING")
+    int activatePending(@Param("id") Long id);
+
+    // Whether a multipart upload in storage still belongs to a pending direct upload
+    boolean existsByPendingUploadId(String pendingUploadId);
+}
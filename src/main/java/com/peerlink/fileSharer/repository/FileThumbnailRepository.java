@@ -0,0 +1,14 @@
+package com.peerlink.fileSharer.repository;
+
+import com.peerlink.fileSharer.model.FileThumbnail;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.util.Optional;
+
+public interface FileThumbnailRepository extends JpaRepository<FileThumbnail, Long> {
+
+    @Query("select t from FileThumbnail t, FileRecord f where f.shareCode = :shareCode and t.fileId = f.id")
+    Optional<FileThumbnail> findByShareCode(@Param("shareCode") String shareCode);
+}
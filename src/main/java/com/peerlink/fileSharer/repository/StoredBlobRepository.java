@@ -0,0 +1,18 @@
+package com.peerlink.fileSharer.repository;
+
+import com.peerlink.fileSharer.model.StoredBlob;
+import jakarta.persistence.LockModeType;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.util.Optional;
+
+public interface StoredBlobRepository extends JpaRepository<StoredBlob, String> {
+
+    // Row-locks the blob so reference count changes can't race with the final delete
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("select b from StoredBlob b where b.contentHash = :contentHash")
+    Optional<StoredBlob> findForUpdate(@Param("contentHash") String contentHash);
+}
@@ -0,0 +1,32 @@
+package com.peerlink.fileSharer.repository;
+
+import com.peerlink.fileSharer.model.UploadSessionPart;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.List;
+
+public interface UploadSessionPartRepository extends JpaRepository<UploadSessionPart, Long> {
+
+    // All stored chunks of a session, in the order S3 needs them to complete the upload
+    List<UploadSessionPart> findBySessionIdOrderByPartNumber(String sessionId);
+
+    // Records a stored chunk; a re-sent chunk replaces the earlier part. One statement, so
+    // concurrent retries of the same chunk can't insert two rows for one part number
+    @Modifying
+    @Transactional
+    @Query(value = """
+        INSERT INTO upload_session_parts (session_id, part_number, etag, size)
+        VALUES (:sessionId, :partNumber, :etag, :size)
+        ON CONFLICT (session_id, part_number) DO UPDATE SET etag = EXCLUDED.etag, size = EXCLUDED.size
+        """, nativeQuery = true)
+    void upsert(
+        @Param("sessionId") String sessionId, @Param("partNumber") int partNumber,
+        @Param("etag") String etag, @Param("size") long size
+    );
+
+    void deleteBySessionId(String sessionId);
+}
@@ -0,0 +1,19 @@
+package com.peerlink.fileSharer.repository;
+
+import com.peerlink.fileSharer.model.UploadSession;
+import org.springframework.data.jpa.repository.JpaRepository;
+
+import java.time.Instant;
+import java.util.List;
+
+public interface UploadSessionRepository extends JpaRepository<UploadSession, String> {
+
+    // Sessions nobody has touched since the cutoff (for the cleanup job)
+    List<UploadSession> findByUpdatedAtBefore(Instant cutoff);
+
+    // Unfinished uploads of a user (account purge)
+    List<UploadSession> findByUser_Id(Long userId);
+
+    // Whether a multipart upload in storage still belongs to a session (cleanup job)
+    boolean existsByS3UploadId(String s3UploadId);
+}
@@ -2,6 +2,10 @@ package com.peerlink.fileSharer.repository;
 
 import com.peerlink.fileSharer.model.User;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
 import java.util.Optional;
 
 // JpaRepository<EntityClass, PrimaryKeyType>
@@ -9,4 +13,32 @@ public interface UserRepository extends JpaRepository<User, Long> {
 
     // Custom method for Spring Security to find a user by their username during login.
     Optional<User> findByUsername(String username);
-}
\ No newline at end of file
+
+    // Like findByUsername / findById, but skips users whose account is being purged, so
+    // they can neither log in nor refresh tokens while their files are deleted
+    @Query("select u from User u where u.username = :username "
+         + "and not exists (select p from AccountPurge p where p.userId = u.id)")
+    Optional<User> findActiveByUsername(@Param("username") String username);
+
+    @Query("select u from User u where u.id = :id "
+         + "and not exists (select p from AccountPurge p where p.userId = u.id)")
+    Optional<User> findActiveById(@Param("id") Long id);
+
+    // Atomically bump the transfer counter (no read-modify-write, no lost updates under concurrent uploads)
+    @Modifying
+    @Transactional
+    @Query("update User u set u.transferCount = u.transferCount + 1 where u.id = :id")
+    int incrementTransferCount(@Param("id") Long id);
+
+    // Replaces the password hash (re-hashing with stronger encoder settings on login)
+    @Modifying
+    @Transactional
+    @Query("update User u set u.password = :password where u.id = :id")
+    int updatePassword(@Param("id") Long id, @Param("password") String password);
+
+    // Deletes just the row; the user's files, bundles and sessions must be gone already (account purge)
+    @Modifying
+    @Transactional
+    @Query("delete from User u where u.id = :id")
+    int deleteRow(@Param("id") Long id);
+}
@@ -2,18 +2,14 @@ package com.peerlink.fileSharer.security;
 
 import com.peerlink.fileSharer.model.User;
 import com.peerlink.fileSharer.repository.UserRepository;
-import org.springframework.security.core.GrantedAuthority;
-import org.springframework.security.core.authority.SimpleGrantedAuthority;
 import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.security.core.userdetails.UserDetailsPasswordService;
 import org.springframework.security.core.userdetails.UserDetailsService;
 import org.springframework.security.core.userdetails.UsernameNotFoundException;
 import org.springframework.stereotype.Service;
 
-import java.util.Collection;
-import java.util.Collections;
-
 @Service
-public class CustomUserDetailsService implements UserDetailsService {
+public class CustomUserDetailsService implements UserDetailsService, UserDetailsPasswordService {
 
     private final UserRepository userRepository;
 
@@ -23,20 +19,21 @@ public class CustomUserDetailsService implements UserDetailsService {
 
     @Override
     public UserDetails loadUserByUsername(String username) throws UsernameNotFoundException {
-        // Find the user in the database
-        User user = userRepository.findByUsername(username)
+        // Find the user in the database (accounts being deleted can no longer log in)
+        User user = userRepository.findActiveByUsername(username)
                 .orElseThrow(() -> new UsernameNotFoundException("User not found with username: " + username));
 
-        // Convert the application User model into a Spring Security UserDetails object
-        return new org.springframework.security.core.userdetails.User(
-                user.getUsername(),
-                user.getPassword(),
-                mapRolesToAuthorities(user.getRole())
-        );
+        // Convert the application User model into a principal that remembers the id and role,
+        // so later requests never have to look the user up again
+        return UserPrincipal.from(user);
     }
 
-    // Utility method to convert the String role to a Spring Security GrantedAuthority
-    private Collection<? extends GrantedAuthority> mapRolesToAuthorities(String role) {
-        return Collections.singletonList(new SimpleGrantedAuthority(role));
+    // Called by Spring Security after a successful login whose stored hash is weaker than the
+    // encoder's current settings (see app.auth.bcrypt.strength), with the freshly re-hashed password
+    @Override
+    public UserDetails updatePassword(UserDetails user, String newPassword) {
+        UserPrincipal principal = (UserPrincipal) user;
+        userRepository.updatePassword(principal.getId(), newPassword);
+        return new UserPrincipal(principal.getId(), principal.getUsername(), newPassword, principal.getRole());
     }
 }
\ No newline at end of file
@@ -0,0 +1,97 @@
+package com.peerlink.fileSharer.security;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.security.authentication.AuthenticationManager;
+import org.springframework.security.authentication.BadCredentialsException;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.Authentication;
+import org.springframework.stereotype.Service;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.util.HexFormat;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+
+/**
+ * Verifies login credentials on the bounded login executor, so password hashing can only
+ * use the CPU that executor is given, however many logins arrive at once.
+ *
+ * Credentials that failed within the last few seconds are rejected again without hashing,
+ * which makes scripted retries of a wrong password cheap for us. Only a SHA-256 digest of
+ * username and password is remembered, in memory, for failed-login-cache.ttl-seconds.
+ */
+@Service
+public class LoginService {
+
+    private final AuthenticationManager authenticationManager;
+    private final ExecutorService loginExecutor;
+    private final Cache<String, Boolean> recentFailures;
+
+    public LoginService(
+        AuthenticationManager authenticationManager,
+        @Qualifier("loginExecutor") ExecutorService loginExecutor,
+        MeterRegistry meterRegistry,
+        @Value("${app.auth.failed-login-cache.ttl-seconds:60}") long failureTtlSeconds,
+        @Value("${app.auth.failed-login-cache.max-size:100000}") long failureCacheSize
+    ) {
+        this.authenticationManager = authenticationManager;
+        this.loginExecutor = loginExecutor;
+        this.recentFailures = Caffeine.newBuilder()
+            .maximumSize(failureCacheSize)
+            .expireAfterWrite(Duration.ofSeconds(failureTtlSeconds))
+            .recordStats()
+            .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, recentFailures, "failedLogins");
+    }
+
+    /**
+     * Checks the credentials off the calling thread.
+     * @return The authentication, or a future failed with an AuthenticationException.
+     * @throws java.util.concurrent.RejectedExecutionException if the login executor is saturated.
+     */
+    public CompletableFuture<Authentication> authenticate(String username, String password) {
+        String key = failureKey(username, password);
+        if (recentFailures.getIfPresent(key) != null) {
+            return CompletableFuture.failedFuture(new BadCredentialsException("Bad credentials"));
+        }
+
+        return CompletableFuture
+            .supplyAsync(() -> authenticationManager.authenticate(
+                new UsernamePasswordAuthenticationToken(username, password)
+            ), loginExecutor)
+            .whenComplete((authentication, failure) -> {
+                Throwable cause = failure instanceof CompletionException ? failure.getCause() : failure;
+                if (cause instanceof BadCredentialsException) {
+                    recentFailures.put(key, Boolean.TRUE);
+                }
+            });
+    }
+
+    /**
+     * Forgets a remembered failure, e.g. when an account is created with exactly those credentials.
+     */
+    public void forgetFailure(String username, String password) {
+        recentFailures.invalidate(failureKey(username, password));
+    }
+
+    private static String failureKey(String username, String password) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            digest.update(String.valueOf(username).getBytes(StandardCharsets.UTF_8));
+            digest.update((byte) 0);
+            digest.update(String.valueOf(password).getBytes(StandardCharsets.UTF_8));
+            return HexFormat.of().formatHex(digest.digest());
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+}
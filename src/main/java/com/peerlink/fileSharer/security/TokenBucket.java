@@ -0,0 +1,70 @@
+package com.peerlink.fileSharer.security;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Lock-free token bucket. Instead of a token count it keeps the time at which the bucket
+ * will be full again (the "theoretical arrival time" of the generic cell rate algorithm),
+ * so the whole state is one long that is updated with compare-and-set.
+ *
+ * A request that costs more than the bucket holds is admitted when the bucket is full and
+ * leaves it in debt: later requests wait until the average rate is back under the limit.
+ */
+public class TokenBucket {
+
+    private final double nanosPerToken;
+    private final long burstNanos;
+    private final AtomicLong fullAt;
+
+    /**
+     * @param tokensPerSecond Refill rate.
+     * @param capacity Tokens the bucket holds when full (the allowed burst).
+     */
+    public TokenBucket(double tokensPerSecond, double capacity, long nowNanos) {
+        this.nanosPerToken = 1_000_000_000d / tokensPerSecond;
+        this.burstNanos = (long) (capacity * nanosPerToken);
+        this.fullAt = new AtomicLong(nowNanos);
+    }
+
+    /**
+     * Takes tokens if the bucket has them.
+     * @return 0 if the tokens were taken, otherwise how many nanoseconds to wait before retrying.
+     */
+    public long tryConsume(long tokens, long nowNanos) {
+        long cost = (long) (tokens * nanosPerToken);
+        while (true) {
+            long current = fullAt.get();
+            long base = Math.max(current, nowNanos);
+            long wait = base - nowNanos + Math.min(cost, burstNanos) - burstNanos;
+            if (wait > 0) {
+                return wait;
+            }
+            if (fullAt.compareAndSet(current, base + cost)) {
+                return 0;
+            }
+        }
+    }
+
+    /**
+     * Takes tokens unconditionally, for usage that is only known after the fact.
+     */
+    public void consume(long tokens, long nowNanos) {
+        long cost = (long) (tokens * nanosPerToken);
+        fullAt.accumulateAndGet(nowNanos, (current, now) -> Math.max(current, now) + cost);
+    }
+
+    /**
+     * Gives back tokens taken by tryConsume for a request that was rejected later on. The
+     * bucket never ends up fuller than full: a fullAt in the past just means full.
+     */
+    public void refund(long tokens) {
+        fullAt.addAndGet(-(long) (tokens * nanosPerToken));
+    }
+
+    /**
+     * Nanoseconds until the bucket is full again; a full bucket carries no state worth keeping.
+     */
+    public long nanosUntilFull(long nowNanos) {
+        return Math.max(0, fullAt.get() - nowNanos);
+    }
+}
@@ -0,0 +1,144 @@
+package com.peerlink.fileSharer.security;
+
+import com.nimbusds.jose.jwk.source.ImmutableSecret;
+import com.peerlink.fileSharer.payload.TokenResponse;
+import com.peerlink.fileSharer.repository.UserRepository;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.security.authentication.AbstractAuthenticationToken;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.oauth2.core.DelegatingOAuth2TokenValidator;
+import org.springframework.security.oauth2.jose.jws.MacAlgorithm;
+import org.springframework.security.oauth2.jwt.JwsHeader;
+import org.springframework.security.oauth2.jwt.Jwt;
+import org.springframework.security.oauth2.jwt.JwtClaimValidator;
+import org.springframework.security.oauth2.jwt.JwtClaimsSet;
+import org.springframework.security.oauth2.jwt.JwtDecoder;
+import org.springframework.security.oauth2.jwt.JwtEncoder;
+import org.springframework.security.oauth2.jwt.JwtEncoderParameters;
+import org.springframework.security.oauth2.jwt.JwtValidators;
+import org.springframework.security.oauth2.jwt.NimbusJwtDecoder;
+import org.springframework.security.oauth2.jwt.NimbusJwtEncoder;
+import org.springframework.stereotype.Component;
+
+import javax.crypto.SecretKey;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.UUID;
+
+/**
+ * Stateless authentication (app.auth.mode=token): signed access tokens carrying the user's
+ * id and role, so every request is authenticated from the token alone with no session or
+ * database lookup, plus longer-lived refresh tokens to obtain new ones.
+ *
+ * Tokens are HS256 JWTs signed with app.auth.token.signing-key, which every instance must
+ * share. Refreshing re-reads the user, so role changes and deleted accounts take effect
+ * within one access token lifetime.
+ */
+@Component
+@ConditionalOnProperty(name = "app.auth.mode", havingValue = "token")
+public class TokenService {
+
+    private static final String TYPE_CLAIM = "typ";
+    private static final String USER_ID_CLAIM = "uid";
+    private static final String ROLE_CLAIM = "role";
+    private static final String ACCESS = "access";
+    private static final String REFRESH = "refresh";
+
+    private final UserRepository userRepository;
+    private final JwtEncoder encoder;
+    private final JwtDecoder accessTokenDecoder;
+    private final JwtDecoder refreshTokenDecoder;
+    private final Duration accessTokenTtl;
+    private final Duration refreshTokenTtl;
+
+    public TokenService(
+        UserRepository userRepository,
+        @Value("${app.auth.token.signing-key}") String signingKey,
+        @Value("${app.auth.token.access-ttl-minutes:15}") long accessTtlMinutes,
+        @Value("${app.auth.token.refresh-ttl-days:14}") long refreshTtlDays
+    ) {
+        byte[] keyBytes = signingKey.getBytes(StandardCharsets.UTF_8);
+        if (keyBytes.length < 32) {
+            throw new IllegalStateException("app.auth.token.signing-key must be at least 32 bytes for HS256.");
+        }
+        SecretKey key = new SecretKeySpec(keyBytes, "HmacSHA256");
+
+        this.userRepository = userRepository;
+        this.encoder = new NimbusJwtEncoder(new ImmutableSecret<>(key));
+        this.accessTokenDecoder = decoder(key, ACCESS);
+        this.refreshTokenDecoder = decoder(key, REFRESH);
+        this.accessTokenTtl = Duration.ofMinutes(accessTtlMinutes);
+        this.refreshTokenTtl = Duration.ofDays(refreshTtlDays);
+    }
+
+    /**
+     * Issues an access and refresh token pair for a user who has just logged in.
+     */
+    public TokenResponse issue(UserPrincipal user) {
+        Instant now = Instant.now();
+        String accessToken = encode(user, ACCESS, now, accessTokenTtl);
+        String refreshToken = encode(user, REFRESH, now, refreshTokenTtl);
+        return new TokenResponse(accessToken, refreshToken, "Bearer", accessTokenTtl.toSeconds());
+    }
+
+    /**
+     * Exchanges a valid refresh token for a new pair.
+     * @throws org.springframework.security.oauth2.jwt.JwtException if the token is invalid or expired
+     * @throws IllegalArgumentException if the user no longer exists or is being deleted
+     */
+    public TokenResponse refresh(String refreshToken) {
+        Jwt jwt = refreshTokenDecoder.decode(refreshToken);
+        Long userId = ((Number) jwt.getClaim(USER_ID_CLAIM)).longValue();
+        UserPrincipal user = userRepository.findActiveById(userId)
+            .map(UserPrincipal::from)
+            .orElseThrow(() -> new IllegalArgumentException("User no longer exists."));
+        return issue(user);
+    }
+
+    /**
+     * Validates access tokens (signature, expiry and token type) for the resource server filter.
+     */
+    public JwtDecoder accessTokenDecoder() {
+        return accessTokenDecoder;
+    }
+
+    /**
+     * Turns a validated access token into the same principal a session login produces,
+     * so @AuthenticationPrincipal UserPrincipal works unchanged in both modes.
+     */
+    public AbstractAuthenticationToken authenticate(Jwt jwt) {
+        UserPrincipal principal = new UserPrincipal(
+            ((Number) jwt.getClaim(USER_ID_CLAIM)).longValue(),
+            jwt.getSubject(),
+            null,
+            jwt.getClaimAsString(ROLE_CLAIM)
+        );
+        return new UsernamePasswordAuthenticationToken(principal, jwt, principal.getAuthorities());
+    }
+
+    private String encode(UserPrincipal user, String type, Instant now, Duration ttl) {
+        JwtClaimsSet claims = JwtClaimsSet.builder()
+            .id(UUID.randomUUID().toString())
+            .subject(user.getUsername())
+            .issuedAt(now)
+            .expiresAt(now.plus(ttl))
+            .claim(TYPE_CLAIM, type)
+            .claim(USER_ID_CLAIM, user.getId())
+            .claim(ROLE_CLAIM, user.getRole())
+            .build();
+        return encoder.encode(JwtEncoderParameters.from(JwsHeader.with(MacAlgorithm.HS256).build(), claims)).getTokenValue();
+    }
+
+    // An access token is never accepted as a refresh token, nor the other way round
+    private static JwtDecoder decoder(SecretKey key, String type) {
+        NimbusJwtDecoder decoder = NimbusJwtDecoder.withSecretKey(key).macAlgorithm(MacAlgorithm.HS256).build();
+        decoder.setJwtValidator(new DelegatingOAuth2TokenValidator<>(
+            JwtValidators.createDefault(),
+            new JwtClaimValidator<String>(TYPE_CLAIM, type::equals)
+        ));
+        return decoder;
+    }
+}
@@ -0,0 +1,145 @@
+package com.peerlink.fileSharer.security;
+
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ReadListener;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.ServletInputStream;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletRequestWrapper;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+
+/**
+ * Applies UploadRateLimiter to upload requests. Runs in the security filter chain, after
+ * the session has identified the user but before Spring MVC reads the body, so a throttled
+ * upload is answered with 429 before any of its bytes are parsed or sent to storage.
+ * Bytes are charged by Content-Length; bodies without one are counted as they are read.
+ * Direct uploads only count as requests here: their file goes straight to storage, so
+ * DirectUploadController charges the announced size instead.
+ *
+ * Not a @Component: SecurityConfig adds it to the chain, Boot must not register it again.
+ */
+public class UploadRateLimitFilter extends OncePerRequestFilter {
+
+    private final UploadRateLimiter rateLimiter;
+
+    public UploadRateLimitFilter(UploadRateLimiter rateLimiter) {
+        this.rateLimiter = rateLimiter;
+    }
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        if (!rateLimiter.isEnabled()) {
+            return true;
+        }
+        String method = request.getMethod();
+        if (!method.equals("POST") && !method.equals("PUT")) {
+            return true;
+        }
+        String path = path(request);
+        return !path.startsWith("/files/upload") && !path.startsWith("/files/direct");
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+        throws ServletException, IOException {
+        // 1. Who is uploading
+        UserPrincipal principal = currentUser();
+        String clientKey = UploadRateLimiter.clientKey(principal, request.getRemoteAddr());
+        UploadRateLimiter.Tier tier = UploadRateLimiter.tierFor(principal != null ? principal.getRole() : null);
+
+        // 2. Reject before the body is read
+        boolean direct = path(request).startsWith("/files/direct");
+        long contentLength = request.getContentLengthLong();
+        UploadRateLimiter.Rejection rejection = rateLimiter.tryAcquire(clientKey, tier, direct ? 0 : Math.max(0, contentLength));
+        if (rejection != null) {
+            response.setStatus(HttpStatus.TOO_MANY_REQUESTS.value());
+            response.setHeader(HttpHeaders.RETRY_AFTER, String.valueOf(rejection.retryAfterSeconds()));
+            response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+            response.getWriter().write("{\"message\":\"" + rejection.message() + "\"}");
+            return;
+        }
+
+        if (direct || contentLength >= 0) {
+            chain.doFilter(request, response);
+            return;
+        }
+
+        // 3. No Content-Length (chunked streaming upload): charge what was actually read
+        CountingRequest counted = new CountingRequest(request);
+        try {
+            chain.doFilter(counted, response);
+        } finally {
+            rateLimiter.chargeBytes(clientKey, tier, counted.bytesRead);
+        }
+    }
+
+    private static String path(HttpServletRequest request) {
+        return request.getRequestURI().substring(request.getContextPath().length());
+    }
+
+    private static UserPrincipal currentUser() {
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        return authentication != null && authentication.getPrincipal() instanceof UserPrincipal principal ? principal : null;
+    }
+
+    // Counts the bytes the application reads from the request body
+    private static final class CountingRequest extends HttpServletRequestWrapper {
+
+        private long bytesRead;
+        private ServletInputStream stream;
+
+        CountingRequest(HttpServletRequest request) {
+            super(request);
+        }
+
+        @Override
+        public ServletInputStream getInputStream() throws IOException {
+            if (stream == null) {
+                ServletInputStream delegate = super.getInputStream();
+                stream = new ServletInputStream() {
+                    @Override
+                    public int read() throws IOException {
+                        int b = delegate.read();
+                        if (b >= 0) {
+                            bytesRead++;
+                        }
+                        return b;
+                    }
+
+                    @Override
+                    public int read(byte[] buffer, int offset, int length) throws IOException {
+                        int read = delegate.read(buffer, offset, length);
+                        if (read > 0) {
+                            bytesRead += read;
+                        }
+                        return read;
+                    }
+
+                    @Override
+                    public boolean isFinished() {
+                        return delegate.isFinished();
+                    }
+
+                    @Override
+                    public boolean isReady() {
+                        return delegate.isReady();
+                    }
+
+                    @Override
+                    public void setReadListener(ReadListener listener) {
+                        delegate.setReadListener(listener);
+                    }
+                };
+            }
+            return stream;
+        }
+    }
+}
@@ -0,0 +1,209 @@
+package com.peerlink.fileSharer.security;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Upload rate limits and bandwidth quotas per client: requests per second and bytes per
+ * second, with limits per tier (guest, free user, premium). Clients are users when logged
+ * in and IP addresses otherwise; each gets two TokenBuckets that allow a burst of
+ * burst-seconds worth of traffic.
+ *
+ * Buckets live in a bounded cache. An entry expires once its bucket has been full for
+ * idle-eviction-minutes, at which point forgetting it changes nothing.
+ */
+@Component
+public class UploadRateLimiter {
+
+    public enum Tier { GUEST, FREE_USER, PREMIUM }
+
+    /**
+     * Why a request was throttled and how long the client should wait.
+     */
+    public record Rejection(String limit, long retryAfterNanos) {
+
+        public long retryAfterSeconds() {
+            return Math.max(1, TimeUnit.NANOSECONDS.toSeconds(retryAfterNanos) + 1);
+        }
+
+        public String message() {
+            return "Upload " + limit + " limit exceeded, retry in " + retryAfterSeconds() + " seconds.";
+        }
+    }
+
+    private record Limits(double requestsPerSecond, double bytesPerSecond) {}
+
+    private record ClientBuckets(TokenBucket requests, TokenBucket bytes) {
+
+        long nanosUntilFull(long nowNanos) {
+            return Math.max(requests.nanosUntilFull(nowNanos), bytes.nanosUntilFull(nowNanos));
+        }
+    }
+
+    private final boolean enabled;
+    private final double burstSeconds;
+    private final Map<Tier, Limits> limits = new EnumMap<>(Tier.class);
+    private final Cache<String, ClientBuckets> clients;
+    private final MeterRegistry meterRegistry;
+
+    public UploadRateLimiter(
+        MeterRegistry meterRegistry,
+        @Value("${app.ratelimit.enabled:true}") boolean enabled,
+        @Value("${app.ratelimit.burst-seconds:10}") double burstSeconds,
+        @Value("${app.ratelimit.idle-eviction-minutes:10}") long idleEvictionMinutes,
+        @Value("${app.ratelimit.max-clients:100000}") long maxClients,
+        @Value("${app.ratelimit.guest.requests-per-second:1}") double guestRequests,
+        @Value("${app.ratelimit.guest.bytes-per-second:5242880}") double guestBytes,
+        @Value("${app.ratelimit.free-user.requests-per-second:5}") double freeUserRequests,
+        @Value("${app.ratelimit.free-user.bytes-per-second:20971520}") double freeUserBytes,
+        @Value("${app.ratelimit.premium.requests-per-second:20}") double premiumRequests,
+        @Value("${app.ratelimit.premium.bytes-per-second:104857600}") double premiumBytes
+    ) {
+        this.meterRegistry = meterRegistry;
+        this.enabled = enabled;
+        this.burstSeconds = burstSeconds;
+        limits.put(Tier.GUEST, new Limits(guestRequests, guestBytes));
+        limits.put(Tier.FREE_USER, new Limits(freeUserRequests, freeUserBytes));
+        limits.put(Tier.PREMIUM, new Limits(premiumRequests, premiumBytes));
+
+        long idleNanos = Duration.ofMinutes(idleEvictionMinutes).toNanos();
+        this.clients = Caffeine.newBuilder()
+            .maximumSize(maxClients)
+            .expireAfter(new Expiry<String, ClientBuckets>() {
+                @Override
+                public long expireAfterCreate(String key, ClientBuckets buckets, long currentTime) {
+                    return idleNanos + buckets.nanosUntilFull(currentTime);
+                }
+
+                @Override
+                public long expireAfterUpdate(String key, ClientBuckets buckets, long currentTime, long currentDuration) {
+                    return idleNanos + buckets.nanosUntilFull(currentTime);
+                }
+
+                @Override
+                public long expireAfterRead(String key, ClientBuckets buckets, long currentTime, long currentDuration) {
+                    return idleNanos + buckets.nanosUntilFull(currentTime);
+                }
+            })
+            .build();
+
+        Gauge.builder("ratelimit.clients", clients, Cache::estimatedSize).register(meterRegistry);
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Guests have no role; anything other than PREMIUM is a free user, as in ExpiryPolicy.
+     */
+    public static Tier tierFor(String role) {
+        if (role == null) {
+            return Tier.GUEST;
+        }
+        return "PREMIUM".equals(role) ? Tier.PREMIUM : Tier.FREE_USER;
+    }
+
+    /**
+     * Who is uploading: the user when logged in, the client address otherwise.
+     * (guestId is chosen by the client, so it can't be what a guest's limit hangs on)
+     */
+    public static String clientKey(UserPrincipal principal, String remoteAddr) {
+        return principal != null ? "user:" + principal.getId() : "ip:" + remoteAddr;
+    }
+
+    /**
+     * Admits one request carrying the given number of bytes.
+     * @return null if admitted, otherwise the limit that was hit.
+     */
+    public Rejection tryAcquire(String clientKey, Tier tier, long bytes) {
+        long now = System.nanoTime();
+        ClientBuckets buckets = bucketsFor(clientKey, tier, now);
+
+        long wait = buckets.requests().tryConsume(1, now);
+        if (wait > 0) {
+            return reject(tier, "requests", wait);
+        }
+        if (bytes > 0) {
+            wait = buckets.bytes().tryConsume(bytes, now);
+            if (wait > 0) {
+                // The request is not admitted, so it must not use up the request allowance either
+                buckets.requests().refund(1);
+                return reject(tier, "bytes", wait);
+            }
+            // A large upload may have pushed the bucket into debt; keep it until that is paid off
+            clients.put(clientKey, buckets);
+        }
+        return null;
+    }
+
+    /**
+     * Charges bytes that don't travel in the request itself (a direct upload announces its
+     * size, then sends the file straight to storage).
+     * @return null if admitted, otherwise the limit that was hit.
+     */
+    public Rejection tryAcquireBytes(String clientKey, Tier tier, long bytes) {
+        if (!enabled || bytes <= 0) {
+            return null;
+        }
+        long now = System.nanoTime();
+        ClientBuckets buckets = bucketsFor(clientKey, tier, now);
+        long wait = buckets.bytes().tryConsume(bytes, now);
+        if (wait > 0) {
+            return reject(tier, "bytes", wait);
+        }
+        clients.put(clientKey, buckets);
+        return null;
+    }
+
+    /**
+     * Gives back bytes charged by tryAcquireBytes for an upload that was never stored.
+     */
+    public void refundBytes(String clientKey, Tier tier, long bytes) {
+        if (!enabled || bytes <= 0) {
+            return;
+        }
+        bucketsFor(clientKey, tier, System.nanoTime()).bytes().refund(bytes);
+    }
+
+    /**
+     * Charges bytes that could only be counted after the request was admitted
+     * (bodies sent without a Content-Length).
+     */
+    public void chargeBytes(String clientKey, Tier tier, long bytes) {
+        long now = System.nanoTime();
+        ClientBuckets buckets = bucketsFor(clientKey, tier, now);
+        buckets.bytes().consume(bytes, now);
+        clients.put(clientKey, buckets);
+    }
+
+    private ClientBuckets bucketsFor(String clientKey, Tier tier, long now) {
+        return clients.get(clientKey, key -> {
+            Limits tierLimits = limits.get(tier);
+            return new ClientBuckets(
+                new TokenBucket(tierLimits.requestsPerSecond(), Math.max(1, tierLimits.requestsPerSecond() * burstSeconds), now),
+                new TokenBucket(tierLimits.bytesPerSecond(), tierLimits.bytesPerSecond() * burstSeconds, now)
+            );
+        });
+    }
+
+    private Rejection reject(Tier tier, String limit, long waitNanos) {
+        Counter.builder("ratelimit.rejections")
+            .tag("tier", tier.name())
+            .tag("limit", limit)
+            .register(meterRegistry)
+            .increment();
+        return new Rejection(limit, waitNanos);
+    }
+}
@@ -0,0 +1,61 @@
+package com.peerlink.fileSharer.security;
+
+import com.peerlink.fileSharer.model.User;
+import org.springframework.security.core.CredentialsContainer;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.security.core.userdetails.UserDetails;
+
+import java.util.Collection;
+import java.util.Collections;
+
+/**
+ * Authenticated principal that carries the user's id and role, so controllers can
+ * work with the current user without querying the users table on every request.
+ */
+public class UserPrincipal implements UserDetails, CredentialsContainer {
+
+    private final Long id;
+    private final String username;
+    private final String role;
+    private String password; // Erased by Spring Security once authentication succeeds
+
+    public UserPrincipal(Long id, String username, String password, String role) {
+        this.id = id;
+        this.username = username;
+        this.password = password;
+        this.role = role;
+    }
+
+    public static UserPrincipal from(User user) {
+        return new UserPrincipal(user.getId(), user.getUsername(), user.getPassword(), user.getRole());
+    }
+
+    public Long getId() {
+        return id;
+    }
+
+    public String getRole() {
+        return role;
+    }
+
+    @Override
+    public String getUsername() {
+        return username;
+    }
+
+    @Override
+    public String getPassword() {
+        return password;
+    }
+
+    @Override
+    public Collection<? extends GrantedAuthority> getAuthorities() {
+        return Collections.singletonList(new SimpleGrantedAuthority(role));
+    }
+
+    @Override
+    public void eraseCredentials() {
+        this.password = null;
+    }
+}
@@ -0,0 +1,144 @@
+package com.peerlink.fileSharer.service;
+
+import com.peerlink.fileSharer.model.AccountPurge;
+import com.peerlink.fileSharer.model.FileBundle;
+import com.peerlink.fileSharer.model.FileRecord;
+import com.peerlink.fileSharer.repository.AccountPurgeRepository;
+import com.peerlink.fileSharer.repository.FileBundleRepository;
+import com.peerlink.fileSharer.repository.FileRecordRepository;
+import com.peerlink.fileSharer.repository.UserRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.domain.Limit;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+
+/**
+ * Deletes user accounts with everything they own. A request only records an account_purges
+ * row (from then on the user can no longer log in or refresh tokens); a background job does
+ * the work in pages: each page of files is one keyset range scan on (user_id, id), one DELETE
+ * for the rows and one multi-object storage delete, after which the cursor on the purge row
+ * moves past it. Memory stays bounded by the page size however many files the user has.
+ *
+ * The job holds a lease on the purge row while it works, so only one instance purges a given
+ * account; when an instance dies, the lease runs out and another one resumes at the cursor.
+ * At most the page in flight during a crash can leave orphaned objects behind.
+ */
+@Service
+public class AccountPurgeService {
+
+    private static final Logger log = LoggerFactory.getLogger(AccountPurgeService.class);
+
+    private final AccountPurgeRepository accountPurgeRepository;
+    private final FileRecordRepository fileRecordRepository;
+    private final FileBundleRepository fileBundleRepository;
+    private final UserRepository userRepository;
+    private final FileRecordPurger fileRecordPurger;
+    private final ResumableUploadService resumableUploadService;
+    private final ShareCodeAllocator shareCodeAllocator;
+    private final TransactionTemplate transactionTemplate;
+    private final int pageSize;
+    private final Duration lease;
+
+    public AccountPurgeService(
+        AccountPurgeRepository accountPurgeRepository,
+        FileRecordRepository fileRecordRepository,
+        FileBundleRepository fileBundleRepository,
+        UserRepository userRepository,
+        FileRecordPurger fileRecordPurger,
+        ResumableUploadService resumableUploadService,
+        ShareCodeAllocator shareCodeAllocator,
+        TransactionTemplate transactionTemplate,
+        @Value("${app.account-purge.page-size:1000}") int pageSize,
+        @Value("${app.account-purge.lease-seconds:300}") long leaseSeconds
+    ) {
+        this.accountPurgeRepository = accountPurgeRepository;
+        this.fileRecordRepository = fileRecordRepository;
+        this.fileBundleRepository = fileBundleRepository;
+        this.userRepository = userRepository;
+        this.fileRecordPurger = fileRecordPurger;
+        this.resumableUploadService = resumableUploadService;
+        this.shareCodeAllocator = shareCodeAllocator;
+        this.transactionTemplate = transactionTemplate;
+        this.pageSize = Math.max(1, pageSize);
+        this.lease = Duration.ofSeconds(Math.max(30, leaseSeconds));
+    }
+
+    /**
+     * Schedules the account for deletion. Requesting it again while it is in progress changes nothing.
+     */
+    public void requestPurge(Long userId) {
+        if (!accountPurgeRepository.existsById(userId)) {
+            try {
+                accountPurgeRepository.save(new AccountPurge(userId));
+            } catch (DataIntegrityViolationException e) {
+                // A concurrent request got there first
+            }
+        }
+        log.info("Account purge requested for user {}", userId);
+    }
+
+    @Scheduled(fixedDelayString = "${app.account-purge.interval-ms:30000}")
+    public void runPendingPurges() {
+        for (AccountPurge purge : accountPurgeRepository.findAllByOrderByRequestedAt(Limit.of(100))) {
+            Instant now = Instant.now();
+            if (accountPurgeRepository.claim(purge.getUserId(), now, now.plus(lease)) == 0) {
+                continue; // Another instance is on it
+            }
+            try {
+                purge(purge);
+            } catch (RuntimeException e) {
+                // The lease runs out and a later run resumes at the cursor
+                log.warn("Account purge of user {} stopped after {} files: {}",
+                    purge.getUserId(), purge.getFilesPurged(), e.getMessage());
+            }
+        }
+    }
+
+    private void purge(AccountPurge purge) {
+        Long userId = purge.getUserId();
+        long started = System.nanoTime();
+
+        // 1. Files, page by page; each page waits for storage so a crash loses at most one page of objects
+        long cursor = purge.getLastFileId();
+        long purged = purge.getFilesPurged();
+        List<FileRecord> page;
+        do {
+            page = fileRecordRepository.findByUser_IdAndIdGreaterThanOrderById(userId, cursor, Limit.of(pageSize));
+            if (page.isEmpty()) {
+                break;
+            }
+            fileRecordPurger.purge(page).join();
+            cursor = page.get(page.size() - 1).getId();
+            purged += page.size();
+            accountPurgeRepository.advance(userId, cursor, page.size(), Instant.now().plus(lease));
+            purge.setFilesPurged(purged);
+        } while (page.size() == pageSize);
+
+        // 2. Unfinished uploads, and bundles (their files are gone already; only rows and codes are left)
+        resumableUploadService.discardUserSessions(userId);
+        List<FileBundle> bundles;
+        do {
+            bundles = fileBundleRepository.findByUser_IdOrderById(userId, Limit.of(pageSize));
+            fileBundleRepository.deleteAllByIdInBatch(bundles.stream().map(FileBundle::getId).toList());
+            shareCodeAllocator.recycle(bundles.stream().map(FileBundle::getShareCode).toList());
+        } while (bundles.size() == pageSize);
+
+        // 3. The user row and the purge row go together. An upload that slipped in after the
+        // last page makes this fail on its foreign key; the next run picks that file up
+        transactionTemplate.executeWithoutResult(status -> {
+            userRepository.deleteRow(userId);
+            accountPurgeRepository.deleteById(userId);
+        });
+
+        log.info("Purged account of user {}: {} files in {} ms",
+            userId, purged, Duration.ofNanos(System.nanoTime() - started).toMillis());
+    }
+}
@@ -0,0 +1,84 @@
+package com.peerlink.fileSharer.service;
+
+import com.peerlink.fileSharer.model.StoredBlob;
+import com.peerlink.fileSharer.repository.StoredBlobRepository;
+import com.peerlink.fileSharer.service.UploadEncoder.StoredFormat;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.Optional;
+
+/**
+ * Reference-counted, content-addressed S3 objects for upload deduplication.
+ * Every method runs in its own transaction with the blob row locked, so a new
+ * reference can never be taken on an object that is being deleted.
+ */
+@Service
+public class BlobService {
+
+    private final StoredBlobRepository storedBlobRepository;
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    public BlobService(StoredBlobRepository storedBlobRepository) {
+        this.storedBlobRepository = storedBlobRepository;
+    }
+
+    public boolean exists(String contentHash) {
+        return storedBlobRepository.existsById(contentHash);
+    }
+
+    /**
+     * Takes a reference on an existing blob.
+     * @return The blob (S3 key and how the object is stored), or empty if no blob has this hash.
+     */
+    @Transactional
+    public Optional<StoredBlob> acquire(String contentHash) {
+        return storedBlobRepository.findForUpdate(contentHash).map(blob -> {
+            blob.setRefCount(blob.getRefCount() + 1);
+            return blob;
+        });
+    }
+
+    /**
+     * Records a freshly uploaded object as the blob for its hash, with one reference.
+     * Throws DataIntegrityViolationException (on commit) if another upload registered the hash first.
+     */
+    @Transactional
+    public void register(String contentHash, String s3ObjectKey, StoredFormat format) {
+        StoredBlob blob = new StoredBlob();
+        blob.setContentHash(contentHash);
+        blob.setS3ObjectKey(s3ObjectKey);
+        blob.setSize(format.originalSize());
+        blob.setContentEncoding(format.contentEncoding());
+        blob.setStoredSize(format.storedSize());
+        if (format.envelope() != null) {
+            blob.setEncryptionKey(format.envelope().wrappedKey());
+            blob.setEncryptionSegmentSize(format.envelope().segmentSize());
+        }
+        // persist, not save: save() would merge over a row another upload inserted concurrently
+        entityManager.persist(blob);
+    }
+
+    /**
+     * Drops one reference.
+     * @return The S3 key to delete if that was the last reference, otherwise empty.
+     */
+    @Transactional
+    public Optional<String> release(String contentHash) {
+        Optional<StoredBlob> locked = storedBlobRepository.findForUpdate(contentHash);
+        if (locked.isEmpty()) {
+            return Optional.empty();
+        }
+        StoredBlob blob = locked.get();
+        if (blob.getRefCount() > 1) {
+            blob.setRefCount(blob.getRefCount() - 1);
+            return Optional.empty();
+        }
+        storedBlobRepository.delete(blob);
+        return Optional.of(blob.getS3ObjectKey());
+    }
+}
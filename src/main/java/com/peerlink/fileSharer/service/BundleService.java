@@ -0,0 +1,218 @@
+package com.peerlink.fileSharer.service;
+
+import com.peerlink.fileSharer.model.FileBundle;
+import com.peerlink.fileSharer.model.FileRecord;
+import com.peerlink.fileSharer.model.User;
+import com.peerlink.fileSharer.repository.FileBundleRepository;
+import com.peerlink.fileSharer.repository.FileRecordJdbcRepository;
+import com.peerlink.fileSharer.repository.FileRecordRepository;
+import com.peerlink.fileSharer.storage.StorageBackend;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * Multi-file uploads shared under a single bundle code. The files of a batch are stored
+ * concurrently and their records inserted in one JDBC batch; downloading the bundle streams
+ * a zip that is assembled on the fly from storage, one entry at a time.
+ */
+@Service
+public class BundleService {
+
+    private final FileService fileService;
+    private final FileRecordRepository fileRecordRepository;
+    private final FileRecordJdbcRepository fileRecordJdbcRepository;
+    private final FileBundleRepository fileBundleRepository;
+    private final ShareCodeAllocator shareCodeAllocator;
+    private final ShareCodeCache shareCodeCache;
+    private final DownloadCounter downloadCounter;
+    private final StorageBackend storage;
+    private final ExecutorService ioExecutor;
+    private final TransactionTemplate transactionTemplate;
+    private final EnvelopeEncryption encryption;
+    private final FileProcessingService fileProcessingService;
+
+    @Value("${app.upload.batch.max-files:100}")
+    private int maxFiles;
+
+    public BundleService(
+        FileService fileService,
+        FileRecordRepository fileRecordRepository,
+        FileRecordJdbcRepository fileRecordJdbcRepository,
+        FileBundleRepository fileBundleRepository,
+        ShareCodeAllocator shareCodeAllocator,
+        ShareCodeCache shareCodeCache,
+        DownloadCounter downloadCounter,
+        StorageBackend storage,
+        @Qualifier("s3IoExecutor") ExecutorService ioExecutor,
+        TransactionTemplate transactionTemplate,
+        EnvelopeEncryption encryption,
+        FileProcessingService fileProcessingService
+    ) {
+        this.fileService = fileService;
+        this.fileRecordRepository = fileRecordRepository;
+        this.fileRecordJdbcRepository = fileRecordJdbcRepository;
+        this.fileBundleRepository = fileBundleRepository;
+        this.shareCodeAllocator = shareCodeAllocator;
+        this.shareCodeCache = shareCodeCache;
+        this.downloadCounter = downloadCounter;
+        this.storage = storage;
+        this.ioExecutor = ioExecutor;
+        this.transactionTemplate = transactionTemplate;
+        this.encryption = encryption;
+        this.fileProcessingService = fileProcessingService;
+    }
+
+    /**
+     * A stored bundle and its files (each file also keeps a share code of its own).
+     */
+    public record BundleUpload(FileBundle bundle, List<FileRecord> files) {}
+
+    /**
+     * Stores every file and creates the bundle. The user may be null for guests.
+     */
+    public BundleUpload uploadBundle(List<MultipartFile> files, User user, Instant expiresAt) throws IOException {
+        if (files.isEmpty() || files.size() > maxFiles) {
+            throw new IllegalArgumentException("A batch must contain between 1 and " + maxFiles + " files.");
+        }
+
+        // 1. Store all files concurrently
+        List<CompletableFuture<FileService.StoredObject>> uploads = files.stream()
+            .map(file -> CompletableFuture.supplyAsync(() -> {
+                try {
+                    return fileService.storeMultipartFile(file);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }, ioExecutor))
+            .toList();
+        List<FileService.StoredObject> stored = awaitAll(uploads);
+
+        // 2. One bundle row, then every file row in a single JDBC batch
+        FileBundle bundle = new FileBundle();
+        bundle.setShareCode(shareCodeAllocator.allocate());
+        bundle.setFileCount(files.size());
+        bundle.setExpiresAt(expiresAt);
+        bundle.setUser(user);
+
+        List<FileRecord> records = new ArrayList<>(files.size());
+        for (int i = 0; i < files.size(); i++) {
+            FileRecord record = new FileRecord();
+            record.setShareCode(shareCodeAllocator.allocate());
+            record.setOriginalFilename(files.get(i).getOriginalFilename());
+            record.setS3ObjectKey(stored.get(i).s3ObjectKey());
+            record.setContentHash(stored.get(i).contentHash());
+            stored.get(i).applyTo(record);
+            record.setExpiresAt(expiresAt);
+            record.setUser(user);
+            records.add(record);
+        }
+
+        try {
+            transactionTemplate.executeWithoutResult(status -> {
+                FileBundle saved = fileBundleRepository.save(bundle);
+                records.forEach(record -> record.setBundleId(saved.getId()));
+                fileRecordJdbcRepository.insertAll(records);
+            });
+        } catch (RuntimeException e) {
+            stored.forEach(fileService::discardStoredObject);
+            List<String> codes = new ArrayList<>(records.stream().map(FileRecord::getShareCode).toList());
+            codes.add(bundle.getShareCode());
+            shareCodeAllocator.recycle(codes);
+            throw e;
+        }
+
+        // 3. Seed the download cache and queue post-upload processing, as single uploads do
+        records.forEach(shareCodeCache::put);
+        fileProcessingService.enqueue(records);
+        return new BundleUpload(bundle, records);
+    }
+
+    /**
+     * Files of a bundle, or null if the code is unknown or the bundle has expired.
+     */
+    public List<FileRecord> getBundleFiles(String shareCode) {
+        return fileBundleRepository.findByShareCode(shareCode)
+            .filter(bundle -> !bundle.isExpired())
+            .map(bundle -> fileRecordRepository.findByBundleIdOrderById(bundle.getId()).stream()
+                .filter(file -> !file.isExpired())
+                .toList())
+            .orElse(null);
+    }
+
+    /**
+     * Writes the files as a zip archive. Each object is streamed from storage straight into
+     * its entry, so neither the archive nor any single file is ever held on disk or heap.
+     */
+    public void writeZip(List<FileRecord> files, OutputStream out) throws IOException {
+        ZipOutputStream zip = new ZipOutputStream(out);
+        // Most shared files (media, archives, office documents) are already compressed
+        zip.setLevel(Deflater.BEST_SPEED);
+
+        Set<String> usedNames = new HashSet<>();
+        for (FileRecord file : files) {
+            zip.putNextEntry(new ZipEntry(entryName(file.getOriginalFilename(), usedNames)));
+            // Entries hold the original bytes; the zip applies its own compression
+            InputStream stored = encryption.decrypt(
+                EnvelopeEncryption.envelopeOf(file.getEncryptionKey(), file.getEncryptionSegmentSize()),
+                storage.get(file.getS3ObjectKey())
+            );
+            try (InputStream content = UploadEncoder.GZIP.equals(file.getContentEncoding())
+                    ? new GZIPInputStream(stored, 64 * 1024)
+                    : stored) {
+                content.transferTo(zip);
+            }
+            zip.closeEntry();
+            downloadCounter.increment(file.getShareCode());
+        }
+        zip.finish();
+        zip.flush();
+    }
+
+    // Entry names are flat (no directories, so nothing can be extracted outside the target
+    // folder) and unique: a second "a.txt" becomes "a (2).txt"
+    private static String entryName(String filename, Set<String> usedNames) {
+        String name = filename.replace('/', '_').replace('\\', '_');
+        String candidate = name;
+        int dot = name.lastIndexOf('.');
+        String base = dot > 0 ? name.substring(0, dot) : name;
+        String extension = dot > 0 ? name.substring(dot) : "";
+        for (int n = 2; !usedNames.add(candidate); n++) {
+            candidate = base + " (" + n + ")" + extension;
+        }
+        return candidate;
+    }
+
+    // Waits for every upload; if any failed, removes the ones that succeeded and rethrows
+    private List<FileService.StoredObject> awaitAll(List<CompletableFuture<FileService.StoredObject>> uploads) throws IOException {
+        try {
+            CompletableFuture.allOf(uploads.toArray(CompletableFuture[]::new)).join();
+        } catch (CompletionException e) {
+            uploads.stream()
+                .filter(upload -> !upload.isCompletedExceptionally())
+                .forEach(upload -> fileService.discardStoredObject(upload.join()));
+            Throwable cause = e.getCause() instanceof UncheckedIOException unchecked ? unchecked.getCause() : e.getCause();
+            throw new IOException("Batch upload failed", cause);
+        }
+        return uploads.stream().map(CompletableFuture::join).toList();
+    }
+}
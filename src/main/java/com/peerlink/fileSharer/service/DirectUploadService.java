@@ -0,0 +1,253 @@
+package com.peerlink.fileSharer.service;
+
+import com.peerlink.fileSharer.model.FileRecord;
+import com.peerlink.fileSharer.model.FileStatus;
+import com.peerlink.fileSharer.model.User;
+import com.peerlink.fileSharer.payload.DirectUploadTicket;
+import com.peerlink.fileSharer.repository.FileRecordRepository;
+import com.peerlink.fileSharer.repository.UserRepository;
+import com.peerlink.fileSharer.storage.StorageBackend;
+import com.peerlink.fileSharer.storage.StorageBackend.CompletedPart;
+import com.peerlink.fileSharer.storage.StorageBackend.ObjectInfo;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Limit;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.util.unit.DataSize;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.UUID;
+
+/**
+ * Uploads that never touch this server: the client gets presigned PUT URLs (one for
+ * small files, one per part for large ones) and sends the bytes straight to storage.
+ * The share code is reserved up front on a PENDING record and only becomes
+ * downloadable once the stored object has been checked against the announced size.
+ * Activation is a conditional update, so the client's complete and the reconciler (which
+ * runs on every instance) can race without counting the upload twice.
+ */
+@Service
+public class DirectUploadService {
+
+    private static final Logger log = LoggerFactory.getLogger(DirectUploadService.class);
+
+    private static final String DEFAULT_CONTENT_TYPE = "application/octet-stream";
+    private static final int RECONCILE_BATCH_SIZE = 500;
+
+    /**
+     * The stored object did not match what was announced and has been deleted with its record.
+     */
+    public static class RejectedUploadException extends RuntimeException {
+
+        private final long announcedSize;
+
+        RejectedUploadException(String message, long announcedSize) {
+            super(message);
+            this.announcedSize = announcedSize;
+        }
+
+        public long announcedSize() {
+            return announcedSize;
+        }
+    }
+
+    private final StorageBackend storage;
+    private final FileService fileService;
+    private final FileRecordRepository fileRecordRepository;
+    private final UserRepository userRepository;
+
+    @Value("${app.upload.direct.part-size-mb:64}")
+    private long partSizeMb;
+
+    // Same cap as uploads through the server unless set on its own
+    @Value("${app.upload.direct.max-size:${spring.servlet.multipart.max-file-size:1GB}}")
+    private DataSize maxSize;
+
+    @Value("${app.upload.direct.url-ttl-minutes:60}")
+    private long urlTtlMinutes;
+
+    // Pending records older than this are deleted along with any partial upload
+    @Value("${app.upload.direct.pending-ttl-hours:24}")
+    private long pendingTtlHours;
+
+    public DirectUploadService(
+        StorageBackend storage,
+        FileService fileService,
+        FileRecordRepository fileRecordRepository,
+        UserRepository userRepository
+    ) {
+        this.storage = storage;
+        this.fileService = fileService;
+        this.fileRecordRepository = fileRecordRepository;
+        this.userRepository = userRepository;
+    }
+
+    /**
+     * Reserves a share code and returns the URLs the client uploads to. The user may be null for guests.
+     * @param expiresAt When the file itself expires (see ExpiryPolicy), or null for never.
+     */
+    public DirectUploadTicket startUpload(String originalFilename, String contentType, long size, User user, Instant expiresAt) {
+        if (size <= 0) {
+            throw new RuntimeException("File size must be greater than zero.");
+        }
+        if (size > maxSize.toBytes()) {
+            throw new RuntimeException("File is larger than the " + maxSize.toMegabytes() + " MB limit.");
+        }
+        String type = contentType == null || contentType.isBlank() ? DEFAULT_CONTENT_TYPE : contentType;
+        String uploadToken = UUID.randomUUID().toString();
+        String s3ObjectKey = uploadToken + "_" + originalFilename;
+        Duration validity = Duration.ofMinutes(urlTtlMinutes);
+        Instant urlsExpireAt = Instant.now().plus(validity);
+
+        // 1. Small files: one presigned PUT
+        long partSize = partSizeFor(size);
+        if (size <= partSize) {
+            FileRecord record = fileService.registerPendingObject(s3ObjectKey, originalFilename, user, null, size, expiresAt);
+            String uploadUrl = storage.presignPut(s3ObjectKey, type, validity);
+            return new DirectUploadTicket(record.getShareCode(), uploadToken, uploadUrl, null, null, urlsExpireAt);
+        }
+
+        // 2. Large files: a multipart upload with one presigned URL per part
+        String uploadId = storage.startMultipart(s3ObjectKey, type);
+        FileRecord record = fileService.registerPendingObject(s3ObjectKey, originalFilename, user, uploadId, size, expiresAt);
+
+        int partCount = (int) ((size + partSize - 1) / partSize);
+        List<String> partUrls = new ArrayList<>(partCount);
+        for (int partNumber = 1; partNumber <= partCount; partNumber++) {
+            partUrls.add(storage.presignPart(s3ObjectKey, uploadId, partNumber, validity));
+        }
+        return new DirectUploadTicket(record.getShareCode(), uploadToken, null, partUrls, partSize, urlsExpireAt);
+    }
+
+    /**
+     * Finalizes an upload: completes the multipart upload if there is one, then checks the
+     * stored object's size (and ETag, if the client sent it) before activating the share code.
+     * An object that doesn't match is deleted along with the record (RejectedUploadException).
+     */
+    public FileRecord completeUpload(String shareCode, String uploadToken, String etag, List<CompletedPart> parts, Long userId) {
+        FileRecord record = getPending(shareCode, uploadToken, userId);
+
+        // 1. Stitch the parts together
+        if (record.getPendingUploadId() != null) {
+            if (parts == null || parts.isEmpty()) {
+                throw new RuntimeException("Part ETags are required to complete a multipart upload.");
+            }
+            try {
+                storage.completeMultipart(record.getS3ObjectKey(), record.getPendingUploadId(), parts);
+            } catch (IOException e) {
+                throw new UncheckedIOException("Could not assemble the uploaded parts.", e);
+            }
+        }
+
+        // 2. Check what actually arrived
+        ObjectInfo info = storage.stat(record.getS3ObjectKey())
+            .orElseThrow(() -> new RuntimeException("The file has not been uploaded yet."));
+        if (info.size() != record.getExpectedSize()) {
+            fileService.discardPending(record);
+            throw new RejectedUploadException(
+                "Uploaded " + info.size() + " bytes but " + record.getExpectedSize() + " were announced.", record.getExpectedSize()
+            );
+        }
+        if (etag != null && info.etag() != null && !unquote(etag).equals(unquote(info.etag()))) {
+            fileService.discardPending(record);
+            throw new RejectedUploadException("Uploaded file does not match its ETag.", record.getExpectedSize());
+        }
+
+        // Lost the race: fine if the reconciler activated it, not if it was expired meanwhile
+        if (!activate(record) && fileRecordRepository.findById(record.getId()).filter(r -> !r.isPending()).isEmpty()) {
+            throw new RuntimeException("Upload not found or expired.");
+        }
+        return record;
+    }
+
+    /**
+     * Stand-in for bucket notifications: activates single-PUT uploads whose object has arrived
+     * even if the client never called complete, and removes pending uploads past their TTL.
+     */
+    @Scheduled(fixedDelayString = "${app.upload.direct.reconcile-interval-ms:60000}")
+    public void reconcilePendingUploads() {
+        Instant cutoff = Instant.now().minus(Duration.ofHours(pendingTtlHours));
+
+        // 1. Expire abandoned uploads
+        int expired = 0;
+        List<FileRecord> stale;
+        do {
+            stale = fileRecordRepository.findByStatusAndUploadDateBeforeOrderByUploadDate(
+                FileStatus.PENDING, cutoff, Limit.of(RECONCILE_BATCH_SIZE)
+            );
+            for (FileRecord record : stale) {
+                fileService.discardPending(record);
+                expired++;
+            }
+        } while (stale.size() == RECONCILE_BATCH_SIZE);
+
+        // 2. Activate single PUTs that have landed with the announced size, a page of ids at a time
+        int activated = 0;
+        long afterId = 0;
+        List<FileRecord> pending;
+        do {
+            pending = fileRecordRepository.findByStatusAndPendingUploadIdIsNullAndIdGreaterThanOrderById(
+                FileStatus.PENDING, afterId, Limit.of(RECONCILE_BATCH_SIZE)
+            );
+            for (FileRecord record : pending) {
+                boolean arrived = storage.stat(record.getS3ObjectKey())
+                    .map(info -> info.size() == record.getExpectedSize())
+                    .orElse(false);
+                if (arrived && activate(record)) {
+                    activated++;
+                }
+            }
+            if (!pending.isEmpty()) {
+                afterId = pending.get(pending.size() - 1).getId();
+            }
+        } while (pending.size() == RECONCILE_BATCH_SIZE);
+
+        if (expired > 0 || activated > 0) {
+            log.info("Direct upload reconciliation activated {} and expired {} pending uploads", activated, expired);
+        }
+    }
+
+    // Only the caller that activated the record counts the transfer
+    private boolean activate(FileRecord record) {
+        if (!fileService.activatePending(record)) {
+            return false;
+        }
+        if (record.getUser() != null) {
+            userRepository.incrementTransferCount(record.getUser().getId());
+        }
+        return true;
+    }
+
+    // S3 caps an upload at 10,000 parts, so very large files get proportionally larger parts
+    private long partSizeFor(long size) {
+        long partSize = partSizeMb * 1024 * 1024;
+        long minForSize = (size + ResumableUploadService.MAX_PART_NUMBER - 1) / ResumableUploadService.MAX_PART_NUMBER;
+        return Math.max(Math.max(partSize, ResumableUploadService.MIN_CHUNK_SIZE), minForSize);
+    }
+
+    // Records owned by a user can only be completed by that user; every caller must also
+    // present the upload token, which only the client that started the upload has seen.
+    private FileRecord getPending(String shareCode, String uploadToken, Long userId) {
+        FileRecord record = fileRecordRepository.findByShareCode(shareCode)
+            .filter(FileRecord::isPending)
+            .orElseThrow(() -> new RuntimeException("Upload not found or expired."));
+        boolean tokenMatches = uploadToken != null && record.getS3ObjectKey().startsWith(uploadToken + "_");
+        boolean ownerMatches = record.getUser() == null || Objects.equals(record.getUser().getId(), userId);
+        if (!tokenMatches || !ownerMatches) {
+            throw new RuntimeException("Upload not found or expired.");
+        }
+        return record;
+    }
+
+    private static String unquote(String etag) {
+        return etag.replace("\"", "");
+    }
+}
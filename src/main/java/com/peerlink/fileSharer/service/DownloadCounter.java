@@ -0,0 +1,94 @@
+package com.peerlink.fileSharer.service;
+
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Aggregates download counts in memory and writes them to PostgreSQL in batches,
+ * so a download costs a LongAdder increment instead of a database write.
+ *
+ * Counts are flushed every {@code app.downloads.flush-interval-ms} and once more on
+ * shutdown. A crash (kill -9, power loss) can lose at most one interval's worth of
+ * increments; a failed flush puts its counts back for the next run.
+ *
+ * Each flush swaps in an empty map instead of removing idle counters one by one, so an
+ * increment can never land in a counter that was already dropped: a download that still
+ * picked up the old map is written by the next flush, which drains the old map once more.
+ */
+@Component
+public class DownloadCounter {
+
+    private static final Logger log = LoggerFactory.getLogger(DownloadCounter.class);
+
+    private static final String INCREMENT_SQL =
+        "UPDATE file_records SET download_count = download_count + ? WHERE share_code = ?";
+
+    // LongAdder stripes contended increments across cells, so viral codes don't serialize on one CAS
+    private volatile ConcurrentHashMap<String, LongAdder> pending = new ConcurrentHashMap<>();
+    // The map the last flush swapped out, drained once more for increments that raced with the swap
+    private ConcurrentHashMap<String, LongAdder> previous = new ConcurrentHashMap<>();
+    private final JdbcTemplate jdbcTemplate;
+
+    public DownloadCounter(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    public void increment(String shareCode) {
+        pending.computeIfAbsent(shareCode, code -> new LongAdder()).increment();
+    }
+
+    @Scheduled(fixedDelayString = "${app.downloads.flush-interval-ms:5000}")
+    public synchronized void flush() {
+        // 1. Swap in an empty map, so the one we drain only holds recently downloaded codes
+        ConcurrentHashMap<String, LongAdder> swapped = pending;
+        pending = new ConcurrentHashMap<>();
+
+        // 2. Take a snapshot of every counter, including late increments to the previous map.
+        //    Subtracting the snapshot (instead of resetting) keeps increments that race with
+        //    the flush for the next run.
+        List<Object[]> batch = new ArrayList<>();
+        drain(previous, batch);
+        drain(swapped, batch);
+        previous = swapped;
+        if (batch.isEmpty()) {
+            return;
+        }
+
+        // 3. One JDBC batch of atomic "download_count = download_count + ?" updates
+        try {
+            jdbcTemplate.batchUpdate(INCREMENT_SQL, batch);
+        } catch (RuntimeException e) {
+            log.warn("Download count flush failed, retrying {} codes next run: {}", batch.size(), e.getMessage());
+            for (Object[] row : batch) {
+                pending.computeIfAbsent((String) row[1], code -> new LongAdder()).add((Long) row[0]);
+            }
+        }
+    }
+
+    @PreDestroy
+    public void flushOnShutdown() {
+        flush();
+        flush(); // Increments that raced with the first swap
+    }
+
+    private static void drain(Map<String, LongAdder> counters, List<Object[]> batch) {
+        for (Map.Entry<String, LongAdder> entry : counters.entrySet()) {
+            LongAdder adder = entry.getValue();
+            long delta = adder.sum();
+            if (delta != 0) {
+                adder.add(-delta);
+                batch.add(new Object[]{delta, entry.getKey()});
+            }
+        }
+    }
+}
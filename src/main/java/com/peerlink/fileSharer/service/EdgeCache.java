@@ -0,0 +1,339 @@
+package com.peerlink.fileSharer.service;
+
+import com.github.benmanes.caffeine.cache.AsyncCache;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.RemovalCause;
+import com.peerlink.fileSharer.storage.StorageBackend;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.util.Collection;
+import java.util.HexFormat;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+
+/**
+ * Optional local copy of hot objects (app.edge-cache.enabled), so popular files stop costing
+ * a storage GET and egress per download. An object becomes hot when it is downloaded
+ * hot-threshold times within hot-window-seconds on this node; its next download fetches it
+ * once into the cache, and concurrent downloads of the same object wait for that one fetch
+ * instead of starting their own. Small objects are kept in memory, the rest in a directory
+ * on local disk that proxied downloads send with zero-copy sendfile.
+ *
+ * Both tiers are size-bounded Caffeine caches, which evict by frequency and recency
+ * (W-TinyLFU), so a burst of one-off downloads does not flush the files that stay popular.
+ * Object keys are never reused for other content, so entries only have to be invalidated
+ * when their object is deleted (FileRecordPurger). Every fetch writes a file of its own, so
+ * the (asynchronous) removal of an old entry never deletes the file of a newer one. The disk
+ * index lives in memory: the directory is emptied on startup.
+ *
+ * Metrics: edge.cache.requests by result (hit / miss), edge.cache.served.bytes (bytes sent
+ * from the cache instead of storage), edge.cache.fetched.bytes, and the size of each tier.
+ */
+@Component
+public class EdgeCache {
+
+    private static final Logger log = LoggerFactory.getLogger(EdgeCache.class);
+
+    private static final String TMP_SUFFIX = ".tmp";
+
+    /**
+     * A cached copy of a stored object, held in memory (bytes) or in a local file.
+     */
+    public record CachedObject(byte[] bytes, Path file, long size) {
+
+        // Reads the object from start to the end
+        public InputStream open(long start) throws IOException {
+            if (bytes != null) {
+                return new ByteArrayInputStream(bytes, (int) start, bytes.length - (int) start);
+            }
+            FileChannel channel = FileChannel.open(file, StandardOpenOption.READ);
+            channel.position(start);
+            return Channels.newInputStream(channel);
+        }
+    }
+
+    private final StorageBackend storage;
+    private final ExecutorService ioExecutor;
+    private final boolean enabled;
+    private final Path dir;
+    private final long maxObjectBytes;
+    private final int memoryMaxObjectBytes;
+    private final int hotThreshold;
+    private final AtomicLong generation = new AtomicLong();
+
+    private final Cache<String, AtomicInteger> recentDownloads;
+    private final Cache<String, byte[]> memory;
+    private final AsyncCache<String, CachedObject> disk; // Weighed in KiB, so objects over 2 GiB still fit an int
+
+    private final Counter hits;
+    private final Counter misses;
+    private final Counter servedBytes;
+    private final Counter fetchedBytes;
+
+    public EdgeCache(
+        StorageBackend storage,
+        @Qualifier("s3IoExecutor") ExecutorService ioExecutor,
+        MeterRegistry meterRegistry,
+        @Value("${app.edge-cache.enabled:false}") boolean enabled,
+        @Value("${app.edge-cache.dir:./edge-cache}") String dir,
+        @Value("${app.edge-cache.disk-max-mb:10240}") long diskMaxMb,
+        @Value("${app.edge-cache.memory-max-mb:64}") long memoryMaxMb,
+        @Value("${app.edge-cache.memory-max-object-kb:64}") int memoryMaxObjectKb,
+        @Value("${app.edge-cache.hot-threshold:5}") int hotThreshold,
+        @Value("${app.edge-cache.hot-window-seconds:60}") long hotWindowSeconds
+    ) throws IOException {
+        this.storage = storage;
+        this.ioExecutor = ioExecutor;
+        this.enabled = enabled;
+        this.dir = Paths.get(dir).toAbsolutePath().normalize();
+        this.memoryMaxObjectBytes = Math.max(0, memoryMaxObjectKb) * 1024;
+        this.hotThreshold = Math.max(1, hotThreshold);
+
+        long diskMaxKb = Math.max(1, diskMaxMb) * 1024;
+        // Anything bigger would push a large part of the working set out for one file
+        this.maxObjectBytes = diskMaxKb * 1024 / 8;
+
+        this.recentDownloads = Caffeine.newBuilder()
+            .maximumSize(100_000)
+            .expireAfterWrite(Duration.ofSeconds(Math.max(1, hotWindowSeconds)))
+            .build();
+        this.memory = Caffeine.newBuilder()
+            .maximumWeight(Math.max(1, memoryMaxMb) * 1024 * 1024)
+            .weigher((String key, byte[] bytes) -> bytes.length)
+            .recordStats()
+            .build();
+        this.disk = Caffeine.newBuilder()
+            .maximumWeight(diskMaxKb)
+            .weigher((String key, CachedObject object) -> (int) Math.max(1, (object.size() + 1023) / 1024))
+            .removalListener((String key, CachedObject object, RemovalCause cause) -> {
+                // A download already handed to sendfile may lose the race with an eviction; evicted
+                // objects are the least popular ones, so that download is rarely still in progress
+                if (object != null) {
+                    deleteQuietly(object.file());
+                }
+            })
+            .recordStats()
+            .buildAsync();
+
+        this.hits = Counter.builder("edge.cache.requests").tag("result", "hit")
+            .description("Downloads served from the edge cache")
+            .register(meterRegistry);
+        this.misses = Counter.builder("edge.cache.requests").tag("result", "miss")
+            .description("Downloads that had to read from storage")
+            .register(meterRegistry);
+        this.servedBytes = Counter.builder("edge.cache.served.bytes")
+            .description("Bytes sent from the edge cache instead of storage")
+            .baseUnit("bytes")
+            .register(meterRegistry);
+        this.fetchedBytes = Counter.builder("edge.cache.fetched.bytes")
+            .description("Bytes read from storage to fill the edge cache")
+            .baseUnit("bytes")
+            .register(meterRegistry);
+        Gauge.builder("edge.cache.size", memory, cache -> weightedSize(cache))
+            .tag("tier", "memory")
+            .baseUnit("bytes")
+            .register(meterRegistry);
+        Gauge.builder("edge.cache.size", disk.synchronous(), cache -> weightedSize(cache) * 1024.0)
+            .tag("tier", "disk")
+            .baseUnit("bytes")
+            .register(meterRegistry);
+        CaffeineCacheMetrics.monitor(meterRegistry, memory, "edgeMemory");
+        CaffeineCacheMetrics.monitor(meterRegistry, disk.synchronous(), "edgeDisk");
+
+        if (enabled) {
+            // Files left by a previous run are not in the index; start empty
+            Files.createDirectories(this.dir);
+            try (Stream<Path> leftovers = Files.list(this.dir)) {
+                leftovers.filter(Files::isRegularFile).forEach(EdgeCache::deleteQuietly);
+            }
+        }
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Decides where a download through a download link is served (the object's size is not
+     * known yet; sizeHint may be null). Only downloads left to storage are counted here; the
+     * others are counted once, by get(), when the proxied download arrives.
+     * @return Whether the download should be served by this node instead of storage, because
+     * the object is cached or this download makes it hot
+     */
+    public boolean isHot(String key, Long sizeHint) {
+        if (!enabled || (sizeHint != null && sizeHint > maxObjectBytes)) {
+            return false;
+        }
+        if (memory.getIfPresent(key) != null || disk.getIfPresent(key) != null) {
+            return true;
+        }
+        AtomicInteger downloads = recentDownloads.get(key, k -> new AtomicInteger());
+        if (downloads.get() + 1 >= hotThreshold) {
+            return true;
+        }
+        downloads.incrementAndGet();
+        return false;
+    }
+
+    /**
+     * Returns the cached copy of the object, fetching it first if this download makes it hot.
+     * @return null if the object is not cached and not hot (or the fetch failed): serve it from storage
+     */
+    public CachedObject get(String key, long size) {
+        if (!enabled) {
+            return null;
+        }
+
+        // 1. Already cached, or being fetched by a concurrent download
+        byte[] bytes = memory.getIfPresent(key);
+        if (bytes != null) {
+            hits.increment();
+            return new CachedObject(bytes, null, bytes.length);
+        }
+        CompletableFuture<CachedObject> onDisk = disk.getIfPresent(key);
+        if (onDisk != null) {
+            CachedObject object = await(key, onDisk);
+            if (object != null) {
+                hits.increment();
+                return object;
+            }
+        }
+
+        // 2. Not cached: fetch it once it is hot and small enough
+        if (size > maxObjectBytes || !recordDownload(key)) {
+            misses.increment();
+            return null;
+        }
+        AtomicBoolean fetched = new AtomicBoolean();
+        CachedObject object;
+        if (size <= memoryMaxObjectBytes) {
+            // Concurrent callers for the same key wait on this one load
+            try {
+                bytes = memory.get(key, k -> {
+                    fetched.set(true);
+                    return fetchBytes(k);
+                });
+                object = new CachedObject(bytes, null, bytes.length);
+            } catch (RuntimeException e) {
+                log.warn("Edge cache could not fetch {}: {}", key, e.getMessage());
+                object = null;
+            }
+        } else {
+            object = await(key, disk.get(key, (k, executor) -> {
+                fetched.set(true);
+                return CompletableFuture.supplyAsync(() -> fetchToDisk(k), ioExecutor);
+            }));
+        }
+        (fetched.get() || object == null ? misses : hits).increment();
+        return object;
+    }
+
+    /**
+     * Counts bytes sent to a client from a cached copy.
+     */
+    public void served(long bytes) {
+        servedBytes.increment(bytes);
+    }
+
+    /**
+     * Drops the objects from both tiers (their stored objects were deleted).
+     */
+    public void invalidate(Collection<String> keys) {
+        if (!enabled || keys.isEmpty()) {
+            return;
+        }
+        memory.invalidateAll(keys);
+        disk.synchronous().invalidateAll(keys);
+        recentDownloads.invalidateAll(keys);
+    }
+
+    private boolean recordDownload(String key) {
+        return recentDownloads.get(key, k -> new AtomicInteger()).incrementAndGet() >= hotThreshold;
+    }
+
+    private byte[] fetchBytes(String key) {
+        try (InputStream in = storage.get(key)) {
+            byte[] bytes = in.readAllBytes();
+            fetchedBytes.increment(bytes.length);
+            return bytes;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    // Downloads into a temp file that is moved into place, so a half-written file is never served
+    private CachedObject fetchToDisk(String key) {
+        Path file = dir.resolve(fileName(key) + "." + generation.incrementAndGet());
+        Path tmp = dir.resolve(file.getFileName() + TMP_SUFFIX);
+        try (InputStream in = storage.get(key)) {
+            long size = Files.copy(in, tmp);
+            Files.move(tmp, file, StandardCopyOption.ATOMIC_MOVE);
+            fetchedBytes.increment(size);
+            return new CachedObject(null, file, size);
+        } catch (IOException e) {
+            deleteQuietly(tmp);
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    // A failed fetch is dropped from the cache by Caffeine; the download falls back to storage
+    private static CachedObject await(String key, CompletableFuture<CachedObject> fetch) {
+        try {
+            return fetch.join();
+        } catch (RuntimeException e) {
+            log.warn("Edge cache could not fetch {}: {}", key, e.getMessage());
+            return null;
+        }
+    }
+
+    // Keys may contain slashes and user-chosen filenames; the hash is a safe, fixed-length name
+    // (fetchToDisk appends a generation, so every fetch has a file of its own)
+    private static String fileName(String key) {
+        try {
+            byte[] hash = MessageDigest.getInstance("SHA-256").digest(key.getBytes(StandardCharsets.UTF_8));
+            return HexFormat.of().formatHex(hash);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+
+    private static double weightedSize(Cache<?, ?> cache) {
+        return cache.policy().eviction().map(eviction -> eviction.weightedSize().orElse(0)).orElse(0L);
+    }
+
+    private static void deleteQuietly(Path file) {
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException e) {
+            log.warn("Could not delete edge cache file {}: {}", file, e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,242 @@
+package com.peerlink.fileSharer.service;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.crypto.Cipher;
+import javax.crypto.SecretKey;
+import javax.crypto.spec.GCMParameterSpec;
+import javax.crypto.spec.SecretKeySpec;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.security.GeneralSecurityException;
+import java.security.SecureRandom;
+import java.util.Arrays;
+import java.util.Base64;
+
+/**
+ * Optional envelope encryption of stored objects (app.encryption.enabled). Every object gets
+ * its own random AES-256 data key, kept on its FileRecord wrapped (AES-GCM) with the master
+ * key from app.encryption.master-key, so storage only ever sees ciphertext and the master
+ * key never leaves the app.
+ *
+ * Objects are encrypted while they stream to storage, in segments of segment-kb plaintext
+ * that are each sealed with AES-GCM on their own (ciphertext plus a 16-byte tag). Any segment
+ * can be decrypted without the ones before it, so a range request reads and decrypts only
+ * the segments it covers. A segment's nonce is its index plus a flag for the last segment:
+ * segments cannot be reordered, and an object cut short fails authentication. The JDK's
+ * AES-GCM runs on the CPU's AES and carry-less multiply instructions where present.
+ *
+ * Stored object: segment 0 | segment 1 | ... | last segment (possibly short, or empty)
+ */
+@Component
+public class EnvelopeEncryption {
+
+    static final int TAG_BYTES = 16;
+    static final String CIPHER = "AES/GCM/NoPadding";
+
+    private static final int KEY_BYTES = 32;
+    private static final int NONCE_BYTES = 12;
+
+    /**
+     * How an object is encrypted: its wrapped data key and the plaintext size of its segments.
+     */
+    public record Envelope(String wrappedKey, int segmentSize) {}
+
+    /**
+     * The stored bytes (inclusive) holding plaintext bytes start..end, and where in them the
+     * plaintext starts: skip bytes into the first segment's plaintext.
+     */
+    public record SegmentRange(long storedStart, long storedEnd, long firstSegment, long finalSegment, int skip) {}
+
+    private final boolean enabled;
+    private final SecretKey masterKey;
+    private final int segmentSize;
+    private final SecureRandom random = new SecureRandom();
+
+    public EnvelopeEncryption(
+        @Value("${app.encryption.enabled:false}") boolean enabled,
+        @Value("${app.encryption.master-key:}") String masterKey,
+        @Value("${app.encryption.segment-kb:64}") int segmentKb
+    ) {
+        this.enabled = enabled;
+        this.segmentSize = Math.max(1, segmentKb) * 1024;
+
+        // Without a key, files encrypted earlier can no longer be read: keep it configured after disabling
+        if (masterKey.isBlank()) {
+            if (enabled) {
+                throw new IllegalStateException("app.encryption.master-key must be set when app.encryption.enabled=true");
+            }
+            this.masterKey = null;
+        } else {
+            byte[] key = Base64.getDecoder().decode(masterKey.trim());
+            if (key.length != KEY_BYTES) {
+                throw new IllegalStateException("app.encryption.master-key must be 32 bytes, base64-encoded");
+            }
+            this.masterKey = new SecretKeySpec(key, "AES");
+        }
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Plaintext bytes per segment of newly encrypted objects.
+     */
+    public int segmentSize() {
+        return segmentSize;
+    }
+
+    /**
+     * The envelope stored with a record, or null for objects stored in plaintext.
+     */
+    public static Envelope envelopeOf(String wrappedKey, Integer segmentSize) {
+        return wrappedKey == null ? null : new Envelope(wrappedKey, segmentSize);
+    }
+
+    // Encrypts the stream under a fresh data key; the stream carries the envelope to store
+    SegmentedEncryptingInputStream encrypt(InputStream plaintext) {
+        byte[] dataKey = new byte[KEY_BYTES];
+        random.nextBytes(dataKey);
+        try {
+            Envelope envelope = new Envelope(wrap(dataKey), segmentSize);
+            return new SegmentedEncryptingInputStream(plaintext, new SecretKeySpec(dataKey, "AES"), envelope);
+        } finally {
+            Arrays.fill(dataKey, (byte) 0);
+        }
+    }
+
+    /**
+     * An envelope with a fresh data key, for an object that is encrypted piece by piece
+     * (see encryptPiece).
+     */
+    public Envelope newEnvelope() {
+        byte[] dataKey = new byte[KEY_BYTES];
+        random.nextBytes(dataKey);
+        try {
+            return new Envelope(wrap(dataKey), segmentSize);
+        } finally {
+            Arrays.fill(dataKey, (byte) 0);
+        }
+    }
+
+    // Encrypts one piece of an object (a resumable upload chunk) under the envelope's data key.
+    // The piece starts at segment firstSegment; unless it ends the object it must hold whole
+    // segments, and its last segment is not sealed as the object's last
+    SegmentedEncryptingInputStream encryptPiece(Envelope envelope, InputStream plaintext, long firstSegment, boolean endsObject) {
+        return new SegmentedEncryptingInputStream(plaintext, unwrap(envelope), envelope, firstSegment, endsObject);
+    }
+
+    // The empty last segment that ends an object whose pieces all held whole segments
+    byte[] emptyLastSegment(Envelope envelope, long segment) {
+        try {
+            Cipher cipher = Cipher.getInstance(CIPHER);
+            cipher.init(Cipher.ENCRYPT_MODE, unwrap(envelope), nonce(segment, true));
+            return cipher.doFinal();
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("Could not encrypt segment " + segment, e);
+        }
+    }
+
+    /**
+     * Decrypts a whole stored object.
+     * @return The stream itself if envelope is null (a plaintext object)
+     */
+    public InputStream decrypt(Envelope envelope, InputStream stored) {
+        if (envelope == null) {
+            return stored;
+        }
+        return new SegmentedDecryptingInputStream(stored, unwrap(envelope), envelope.segmentSize(), 0, -1, 0);
+    }
+
+    /**
+     * Decrypts the stored bytes of a SegmentRange; the stream starts at the range's first plaintext byte.
+     */
+    public InputStream decrypt(Envelope envelope, InputStream storedRange, SegmentRange range) {
+        return new SegmentedDecryptingInputStream(
+            storedRange, unwrap(envelope), envelope.segmentSize(), range.firstSegment(), range.finalSegment(), range.skip()
+        );
+    }
+
+    /**
+     * The segments to read for plaintext bytes start..end (inclusive) of an object of storedSize bytes.
+     */
+    public static SegmentRange segmentRange(Envelope envelope, long storedSize, long start, long end) {
+        long segment = envelope.segmentSize();
+        long sealed = segment + TAG_BYTES;
+        long first = start / segment;
+        long last = Math.max(first, end / segment);
+        long finalSegment = segmentCount(storedSize, envelope.segmentSize()) - 1;
+        return new SegmentRange(
+            first * sealed,
+            Math.min((last + 1) * sealed, storedSize) - 1,
+            first,
+            finalSegment,
+            (int) (start - first * segment)
+        );
+    }
+
+    /**
+     * Plaintext size of an encrypted object.
+     */
+    public static long plaintextSize(long storedSize, int segmentSize) {
+        return storedSize - segmentCount(storedSize, segmentSize) * TAG_BYTES;
+    }
+
+    /**
+     * Stored size of plaintextSize bytes once encrypted. Empty content is one empty segment.
+     */
+    public static long storedSize(long plaintextSize, int segmentSize) {
+        long segments = Math.max(1, (plaintextSize + segmentSize - 1) / segmentSize);
+        return plaintextSize + segments * TAG_BYTES;
+    }
+
+    private static long segmentCount(long storedSize, int segmentSize) {
+        long sealed = (long) segmentSize + TAG_BYTES;
+        return Math.max(1, (storedSize + sealed - 1) / sealed);
+    }
+
+    // Segment index, then 1 for the last segment and 0 for all others
+    static GCMParameterSpec nonce(long segment, boolean last) {
+        byte[] nonce = ByteBuffer.allocate(NONCE_BYTES).putLong(segment).putInt(last ? 1 : 0).array();
+        return new GCMParameterSpec(TAG_BYTES * 8, nonce);
+    }
+
+    // nonce | AES-GCM(master key, data key), base64
+    private String wrap(byte[] dataKey) {
+        try {
+            byte[] nonce = new byte[NONCE_BYTES];
+            random.nextBytes(nonce);
+            Cipher cipher = Cipher.getInstance(CIPHER);
+            cipher.init(Cipher.ENCRYPT_MODE, requireMasterKey(), new GCMParameterSpec(TAG_BYTES * 8, nonce));
+            byte[] wrapped = cipher.doFinal(dataKey);
+            return Base64.getEncoder().encodeToString(ByteBuffer.allocate(NONCE_BYTES + wrapped.length).put(nonce).put(wrapped).array());
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("Could not wrap data key", e);
+        }
+    }
+
+    private SecretKey unwrap(Envelope envelope) {
+        byte[] wrapped = Base64.getDecoder().decode(envelope.wrappedKey());
+        try {
+            Cipher cipher = Cipher.getInstance(CIPHER);
+            cipher.init(Cipher.DECRYPT_MODE, requireMasterKey(), new GCMParameterSpec(TAG_BYTES * 8, wrapped, 0, NONCE_BYTES));
+            byte[] dataKey = cipher.doFinal(wrapped, NONCE_BYTES, wrapped.length - NONCE_BYTES);
+            try {
+                return new SecretKeySpec(dataKey, "AES");
+            } finally {
+                Arrays.fill(dataKey, (byte) 0);
+            }
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("Could not unwrap data key (wrong app.encryption.master-key?)", e);
+        }
+    }
+
+    private SecretKey requireMasterKey() {
+        if (masterKey == null) {
+            throw new IllegalStateException("app.encryption.master-key is not set");
+        }
+        return masterKey;
+    }
+}
@@ -0,0 +1,117 @@
+package com.peerlink.fileSharer.service;
+
+import com.peerlink.fileSharer.model.FileBundle;
+import com.peerlink.fileSharer.model.FileRecord;
+import com.peerlink.fileSharer.repository.FileBundleRepository;
+import com.peerlink.fileSharer.repository.FileRecordRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Limit;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Instant;
+import java.util.List;
+
+/**
+ * Deletes expired files in the background. Each batch is one index range scan on
+ * expires_at, one DELETE for the rows and one multi-object delete per 1000 objects.
+ *
+ * Every instance runs the reaper. The purge claims a batch by locking its rows with SKIP
+ * LOCKED, so when two instances read the same batch only one deletes it; the other gets
+ * nothing and stops until its next run.
+ *
+ * The reaper throttles itself with a duty cycle: after every batch it sleeps long enough
+ * that it is busy at most dutyCycle of the time. When the database or storage slows down
+ * under foreground load, batches take longer and the pauses grow with them.
+ */
+@Component
+public class ExpiredFileReaper {
+
+    private static final Logger log = LoggerFactory.getLogger(ExpiredFileReaper.class);
+
+    private final FileRecordRepository fileRecordRepository;
+    private final FileRecordPurger fileRecordPurger;
+    private final FileBundleRepository fileBundleRepository;
+    private final ShareCodeAllocator shareCodeAllocator;
+    private final TransactionTemplate transactionTemplate;
+    private final int batchSize;
+    private final int maxBatchesPerRun;
+    private final double dutyCycle;
+
+    public ExpiredFileReaper(
+        FileRecordRepository fileRecordRepository,
+        FileRecordPurger fileRecordPurger,
+        FileBundleRepository fileBundleRepository,
+        ShareCodeAllocator shareCodeAllocator,
+        TransactionTemplate transactionTemplate,
+        @Value("${app.expiry.reaper.batch-size:500}") int batchSize,
+        @Value("${app.expiry.reaper.max-batches-per-run:100}") int maxBatchesPerRun,
+        @Value("${app.expiry.reaper.duty-cycle:0.2}") double dutyCycle
+    ) {
+        this.fileRecordRepository = fileRecordRepository;
+        this.fileRecordPurger = fileRecordPurger;
+        this.fileBundleRepository = fileBundleRepository;
+        this.shareCodeAllocator = shareCodeAllocator;
+        this.transactionTemplate = transactionTemplate;
+        this.batchSize = Math.max(1, batchSize);
+        this.maxBatchesPerRun = Math.max(1, maxBatchesPerRun);
+        this.dutyCycle = Math.min(1.0, Math.max(0.01, dutyCycle));
+    }
+
+    @Scheduled(fixedDelayString = "${app.expiry.reaper.interval-ms:300000}")
+    public void reapExpiredFiles() {
+        Instant now = Instant.now();
+        int reaped = 0;
+
+        for (int batch = 0; batch < maxBatchesPerRun; batch++) {
+            long started = System.nanoTime();
+
+            List<FileRecord> expired = fileRecordRepository.findByExpiresAtBeforeOrderByExpiresAt(now, Limit.of(batchSize));
+            if (expired.isEmpty()) {
+                break;
+            }
+            int purged = fileRecordPurger.purge(expired).join(); // Storage time counts towards the duty cycle
+            if (purged == 0) {
+                break; // Another instance holds this batch
+            }
+            reaped += purged;
+
+            if (expired.size() < batchSize || !pause(System.nanoTime() - started)) {
+                break;
+            }
+        }
+
+        // Bundles expire together with their files; only the row and the code are left to remove.
+        // The rows are locked while they are deleted, so each code is recycled by one instance only
+        int bundles = 0;
+        List<FileBundle> expiredBundles;
+        do {
+            expiredBundles = transactionTemplate.execute(status -> {
+                List<FileBundle> batch = fileBundleRepository.findByExpiresAtBeforeOrderByExpiresAt(now, Limit.of(batchSize));
+                fileBundleRepository.deleteAllByIdInBatch(batch.stream().map(FileBundle::getId).toList());
+                return batch;
+            });
+            shareCodeAllocator.recycle(expiredBundles.stream().map(FileBundle::getShareCode).toList());
+            bundles += expiredBundles.size();
+        } while (expiredBundles.size() == batchSize);
+
+        if (reaped > 0 || bundles > 0) {
+            log.info("Expiry reaper removed {} expired files and {} expired bundles", reaped, bundles);
+        }
+    }
+
+    // Sleeps so the batch that took busyNanos was dutyCycle of the elapsed time; false if interrupted
+    private boolean pause(long busyNanos) {
+        long pauseMillis = (long) (busyNanos * (1 - dutyCycle) / dutyCycle / 1_000_000);
+        try {
+            Thread.sleep(pauseMillis);
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+}
@@ -0,0 +1,53 @@
+package com.peerlink.fileSharer.service;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.Instant;
+
+/**
+ * Decides when an upload expires. Each role has a maximum lifetime (0 = keep forever);
+ * uploaders may ask for a shorter one per file, never a longer one. Requests beyond
+ * MAX_TTL_HOURS are rejected, so the date arithmetic can never overflow.
+ */
+@Component
+public class ExpiryPolicy {
+
+    // About 100 years; also the cap for roles that keep files forever when a TTL is asked for
+    public static final long MAX_TTL_HOURS = 876_000;
+
+    @Value("${app.expiry.guest-ttl-hours:24}")
+    private long guestTtlHours;
+
+    @Value("${app.expiry.free-user-ttl-hours:168}")
+    private long freeUserTtlHours;
+
+    @Value("${app.expiry.premium-ttl-hours:0}")
+    private long premiumTtlHours;
+
+    /**
+     * @param role The uploader's role, or null for guests.
+     * @param requestedTtlHours Lifetime the uploader asked for, or null for the role default.
+     * @return When the file expires, or null if it never does.
+     * @throws IllegalArgumentException if requestedTtlHours is above MAX_TTL_HOURS.
+     */
+    public Instant expiresAt(String role, Long requestedTtlHours) {
+        if (requestedTtlHours != null && requestedTtlHours > MAX_TTL_HOURS) {
+            throw new IllegalArgumentException("ttlHours must not exceed " + MAX_TTL_HOURS + ".");
+        }
+        long maxHours = Math.min(maxTtlHours(role), MAX_TTL_HOURS);
+        Long hours = requestedTtlHours == null || requestedTtlHours <= 0
+            ? (maxHours > 0 ? maxHours : null)
+            : (maxHours > 0 ? Math.min(requestedTtlHours, maxHours) : requestedTtlHours);
+
+        return hours == null ? null : Instant.now().plus(Duration.ofHours(hours));
+    }
+
+    private long maxTtlHours(String role) {
+        if (role == null) {
+            return guestTtlHours;
+        }
+        return "PREMIUM".equals(role) ? premiumTtlHours : freeUserTtlHours;
+    }
+}
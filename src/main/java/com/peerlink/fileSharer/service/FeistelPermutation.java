@@ -0,0 +1,81 @@
+package com.peerlink.fileSharer.service;
+
+/**
+ * Keyed, reversible permutation of [0, size). A balanced Feistel network over the
+ * smallest even power of two >= size, with cycle-walking to stay inside the range.
+ * Used to turn sequential share-code indexes into codes that don't look sequential.
+ */
+class FeistelPermutation {
+
+    private static final int ROUNDS = 4;
+
+    private final long size;
+    private final long key;
+    private final int halfBits;
+    private final long halfMask;
+
+    FeistelPermutation(long size, long key) {
+        if (size < 2) {
+            throw new IllegalArgumentException("Permutation domain must hold at least 2 values");
+        }
+        int bits = 64 - Long.numberOfLeadingZeros(size - 1);
+        this.halfBits = (bits + 1) / 2;
+        this.halfMask = (1L << halfBits) - 1;
+        this.size = size;
+        this.key = key;
+    }
+
+    long permute(long value) {
+        checkRange(value);
+        long result = value;
+        do {
+            result = encrypt(result);
+        } while (result >= size); // Cycle-walk: every value lands in range after a few steps
+        return result;
+    }
+
+    long invert(long value) {
+        checkRange(value);
+        long result = value;
+        do {
+            result = decrypt(result);
+        } while (result >= size);
+        return result;
+    }
+
+    private long encrypt(long value) {
+        long left = value >>> halfBits;
+        long right = value & halfMask;
+        for (int round = 0; round < ROUNDS; round++) {
+            long next = left ^ (roundFunction(right, round) & halfMask);
+            left = right;
+            right = next;
+        }
+        return (left << halfBits) | right;
+    }
+
+    private long decrypt(long value) {
+        long left = value >>> halfBits;
+        long right = value & halfMask;
+        for (int round = ROUNDS - 1; round >= 0; round--) {
+            long previous = right ^ (roundFunction(left, round) & halfMask);
+            right = left;
+            left = previous;
+        }
+        return (left << halfBits) | right;
+    }
+
+    // SplitMix64 finalizer over the key, round and half-block
+    private long roundFunction(long half, int round) {
+        long z = half + key + (round + 1) * 0x9E3779B97F4A7C15L;
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+
+    private void checkRange(long value) {
+        if (value < 0 || value >= size) {
+            throw new IllegalArgumentException("Value " + value + " is outside [0, " + size + ")");
+        }
+    }
+}
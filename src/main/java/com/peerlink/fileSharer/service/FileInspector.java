@@ -0,0 +1,209 @@
+package com.peerlink.fileSharer.service;
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.ImageInputStream;
+import javax.imageio.stream.MemoryCacheImageInputStream;
+import javax.imageio.stream.MemoryCacheImageOutputStream;
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PushbackInputStream;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.Iterator;
+import java.util.Set;
+
+/**
+ * Reads a file once, front to back, and works out its size, content type, SHA-256 and, for
+ * images, a JPEG thumbnail. Nothing is buffered beyond what the image decoder needs, and
+ * images over maxSourceBytes or maxPixels get no thumbnail instead of exhausting the heap.
+ * Used by FileProcessingService.
+ */
+final class FileInspector {
+
+    static final String THUMBNAIL_TYPE = "image/jpeg";
+
+    private static final int HEAD_BYTES = 8192;
+
+    // What the JDK's ImageIO can decode
+    private static final Set<String> IMAGE_TYPES = Set.of("image/png", "image/jpeg", "image/gif", "image/bmp", "image/tiff");
+
+    record Thumbnail(byte[] image, int width, int height, int sourceWidth, int sourceHeight) {}
+
+    // thumbnail is null when the file is not an image, or not one we could preview
+    record Result(long size, String contentType, String sha256, Thumbnail thumbnail) {}
+
+    private final int thumbnailSize;
+    private final long maxSourceBytes;
+    private final long maxPixels;
+
+    FileInspector(int thumbnailSize, long maxSourceBytes, long maxPixels) {
+        this.thumbnailSize = thumbnailSize;
+        this.maxSourceBytes = maxSourceBytes;
+        this.maxPixels = maxPixels;
+    }
+
+    Result inspect(InputStream content) throws IOException {
+        MessageDigest digest = newSha256();
+        CountingInputStream counted = new CountingInputStream(content);
+        PushbackInputStream in = new PushbackInputStream(new DigestInputStream(counted, digest), HEAD_BYTES);
+        byte[] head = in.readNBytes(HEAD_BYTES);
+        in.unread(head);
+
+        // 1. Type from the first bytes, then the thumbnail while the decoder reads on
+        String contentType = UploadEncoder.sniffContentType(head);
+        Thumbnail thumbnail = null;
+        if (IMAGE_TYPES.contains(contentType)) {
+            try {
+                thumbnail = thumbnail(new LimitedInputStream(in, maxSourceBytes));
+            } catch (IOException | RuntimeException e) {
+                // Truncated, corrupt or too big: the file just has no preview
+            }
+        }
+
+        // 2. The rest only feeds the digest and the count
+        byte[] buffer = new byte[64 * 1024];
+        while (in.read(buffer) >= 0) {
+            // Drain
+        }
+        return new Result(counted.count, contentType, HexFormat.of().formatHex(digest.digest()), thumbnail);
+    }
+
+    private Thumbnail thumbnail(InputStream in) throws IOException {
+        ImageInputStream images = new MemoryCacheImageInputStream(in);
+        Iterator<ImageReader> readers = ImageIO.getImageReaders(images);
+        if (!readers.hasNext()) {
+            return null;
+        }
+        ImageReader reader = readers.next();
+        BufferedImage source;
+        int sourceWidth;
+        int sourceHeight;
+        try {
+            reader.setInput(images, true, true);
+            sourceWidth = reader.getWidth(0);
+            sourceHeight = reader.getHeight(0);
+            if ((long) sourceWidth * sourceHeight > maxPixels) {
+                return null;
+            }
+            // Decode only every n-th pixel, keeping twice the resolution for a smooth downscale
+            int step = Math.max(1, Math.max(sourceWidth, sourceHeight) / (thumbnailSize * 2));
+            ImageReadParam param = reader.getDefaultReadParam();
+            param.setSourceSubsampling(step, step, 0, 0);
+            source = reader.read(0, param);
+        } finally {
+            reader.dispose();
+        }
+
+        double scale = Math.min(1.0, (double) thumbnailSize / Math.max(source.getWidth(), source.getHeight()));
+        int width = Math.max(1, (int) Math.round(source.getWidth() * scale));
+        int height = Math.max(1, (int) Math.round(source.getHeight() * scale));
+        BufferedImage scaled = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        Graphics2D graphics = scaled.createGraphics();
+        try {
+            graphics.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+            graphics.setColor(Color.WHITE); // JPEG has no alpha: transparent areas become white
+            graphics.fillRect(0, 0, width, height);
+            graphics.drawImage(source, 0, 0, width, height, null);
+        } finally {
+            graphics.dispose();
+        }
+        return new Thumbnail(encodeJpeg(scaled), width, height, sourceWidth, sourceHeight);
+    }
+
+    private static byte[] encodeJpeg(BufferedImage image) throws IOException {
+        ImageWriter writer = ImageIO.getImageWritersByFormatName("jpeg").next();
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (MemoryCacheImageOutputStream out = new MemoryCacheImageOutputStream(bytes)) {
+            ImageWriteParam param = writer.getDefaultWriteParam();
+            param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+            param.setCompressionQuality(0.8f);
+            writer.setOutput(out);
+            writer.write(null, new IIOImage(image, null, null), param);
+        } finally {
+            writer.dispose();
+        }
+        return bytes.toByteArray();
+    }
+
+    private static MessageDigest newSha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+
+    private static final class CountingInputStream extends FilterInputStream {
+
+        private long count;
+
+        CountingInputStream(InputStream in) {
+            super(in);
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = in.read();
+            if (b >= 0) {
+                count++;
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int read = in.read(b, off, len);
+            if (read > 0) {
+                count += read;
+            }
+            return read;
+        }
+    }
+
+    // Fails once more than limit bytes have been read, so a huge image cannot fill the decoder's cache
+    private static final class LimitedInputStream extends FilterInputStream {
+
+        private long remaining;
+
+        LimitedInputStream(InputStream in, long limit) {
+            super(in);
+            this.remaining = limit;
+        }
+
+        @Override
+        public int read() throws IOException {
+            byte[] one = new byte[1];
+            return read(one, 0, 1) < 0 ? -1 : one[0] & 0xff;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (remaining <= 0) {
+                throw new IOException("Image is larger than the thumbnail source limit");
+            }
+            int read = in.read(b, off, (int) Math.min(len, remaining));
+            if (read > 0) {
+                remaining -= read;
+            }
+            return read;
+        }
+
+        @Override
+        public void close() {
+            // The caller still drains the underlying stream
+        }
+    }
+}
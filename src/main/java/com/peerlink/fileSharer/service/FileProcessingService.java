@@ -0,0 +1,255 @@
+package com.peerlink.fileSharer.service;
+
+import com.peerlink.fileSharer.model.FileProcessingTask;
+import com.peerlink.fileSharer.model.FileRecord;
+import com.peerlink.fileSharer.model.FileThumbnail;
+import com.peerlink.fileSharer.repository.FileProcessingTaskRepository;
+import com.peerlink.fileSharer.repository.FileRecordRepository;
+import com.peerlink.fileSharer.repository.FileThumbnailRepository;
+import com.peerlink.fileSharer.storage.StorageBackend;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Limit;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Post-upload processing (app.processing.enabled): after an upload has been answered, every
+ * new file is read back from storage once to record its SHA-256, content type and size and,
+ * for images, a thumbnail (FileThumbnail), so history can show previews without clients
+ * downloading the files.
+ *
+ * Uploads only add a row to file_processing_tasks, which is the queue: it survives restarts
+ * and is shared by all instances. A poller claims due tasks with a lease (a claimed task is
+ * due again when its lease runs out, so work of a crashed instance is picked up elsewhere)
+ * and hands them to processingExecutor, never more than it has threads. Everything else
+ * waits in the table, so a burst of uploads makes the backlog longer, not the uploads
+ * slower. Failed tasks are retried with exponential backoff up to max-attempts times.
+ *
+ * Metrics: file.processing.tasks by result (processed / retried / failed),
+ * file.processing.duration and file.processing.in.flight.
+ */
+@Service
+public class FileProcessingService {
+
+    private static final Logger log = LoggerFactory.getLogger(FileProcessingService.class);
+
+    private final FileProcessingTaskRepository taskRepository;
+    private final FileRecordRepository fileRecordRepository;
+    private final FileThumbnailRepository thumbnailRepository;
+    private final StorageBackend storage;
+    private final EnvelopeEncryption encryption;
+    private final ShareCodeCache shareCodeCache;
+    private final TransactionTemplate transactionTemplate;
+    private final ExecutorService executor;
+    private final FileInspector inspector;
+    private final boolean enabled;
+    private final Semaphore slots;
+    private final int maxAttempts;
+    private final Duration retryBase;
+    private final Duration lease;
+
+    private final Counter processed;
+    private final Counter retried;
+    private final Counter failed;
+    private final Timer duration;
+
+    public FileProcessingService(
+        FileProcessingTaskRepository taskRepository,
+        FileRecordRepository fileRecordRepository,
+        FileThumbnailRepository thumbnailRepository,
+        StorageBackend storage,
+        EnvelopeEncryption encryption,
+        ShareCodeCache shareCodeCache,
+        TransactionTemplate transactionTemplate,
+        @Qualifier("processingExecutor") ExecutorService executor,
+        MeterRegistry meterRegistry,
+        @Value("${app.processing.enabled:false}") boolean enabled,
+        @Value("${app.processing.threads:2}") int threads,
+        @Value("${app.processing.max-attempts:5}") int maxAttempts,
+        @Value("${app.processing.retry-base-seconds:30}") long retryBaseSeconds,
+        @Value("${app.processing.lease-seconds:600}") long leaseSeconds,
+        @Value("${app.processing.thumbnail.size:256}") int thumbnailSize,
+        @Value("${app.processing.thumbnail.max-source-mb:50}") long maxSourceMb,
+        @Value("${app.processing.thumbnail.max-megapixels:100}") long maxMegapixels
+    ) {
+        this.taskRepository = taskRepository;
+        this.fileRecordRepository = fileRecordRepository;
+        this.thumbnailRepository = thumbnailRepository;
+        this.storage = storage;
+        this.encryption = encryption;
+        this.shareCodeCache = shareCodeCache;
+        this.transactionTemplate = transactionTemplate;
+        this.executor = executor;
+        this.inspector = new FileInspector(
+            Math.max(16, thumbnailSize), Math.max(1, maxSourceMb) * 1024 * 1024, Math.max(1, maxMegapixels) * 1_000_000
+        );
+        this.enabled = enabled;
+        int poolSize = Math.max(1, threads);
+        this.slots = new Semaphore(poolSize);
+        this.maxAttempts = Math.max(1, maxAttempts);
+        this.retryBase = Duration.ofSeconds(Math.max(1, retryBaseSeconds));
+        this.lease = Duration.ofSeconds(Math.max(60, leaseSeconds));
+
+        this.processed = Counter.builder("file.processing.tasks").tag("result", "processed")
+            .description("Files processed after upload")
+            .register(meterRegistry);
+        this.retried = Counter.builder("file.processing.tasks").tag("result", "retried")
+            .description("Processing attempts that failed and were rescheduled")
+            .register(meterRegistry);
+        this.failed = Counter.builder("file.processing.tasks").tag("result", "failed")
+            .description("Files given up on after max-attempts")
+            .register(meterRegistry);
+        this.duration = Timer.builder("file.processing.duration")
+            .description("Time to read and process one file")
+            .register(meterRegistry);
+        Gauge.builder("file.processing.in.flight", slots, s -> poolSize - s.availablePermits())
+            .register(meterRegistry);
+    }
+
+    /**
+     * Queues new files for processing. Never throws: a file that could not be queued only
+     * misses its preview, which must not fail the upload it belongs to.
+     */
+    public void enqueue(Collection<FileRecord> records) {
+        if (!enabled || records.isEmpty()) {
+            return;
+        }
+        try {
+            taskRepository.saveAll(records.stream().map(record -> new FileProcessingTask(record.getId())).toList());
+        } catch (RuntimeException e) {
+            log.warn("Could not queue {} files for processing: {}", records.size(), e.getMessage());
+        }
+    }
+
+    public void enqueue(FileRecord record) {
+        enqueue(List.of(record));
+    }
+
+    /**
+     * The thumbnail of a share code's file, if processing made one.
+     */
+    public Optional<FileThumbnail> findThumbnail(String shareCode) {
+        return thumbnailRepository.findByShareCode(shareCode);
+    }
+
+    @Scheduled(fixedDelayString = "${app.processing.poll-interval-ms:2000}")
+    public void pollTasks() {
+        // Back-pressure: only claim what the workers can start right away
+        int free = slots.availablePermits();
+        if (!enabled || free == 0) {
+            return;
+        }
+        Instant now = Instant.now();
+        for (FileProcessingTask task : taskRepository.findByNextAttemptAtLessThanEqualOrderByNextAttemptAt(now, Limit.of(free))) {
+            if (!slots.tryAcquire()) {
+                return;
+            }
+            if (taskRepository.claim(task.getId(), now, now.plus(lease)) == 0) {
+                slots.release(); // Another instance is on it
+                continue;
+            }
+            try {
+                executor.execute(() -> {
+                    try {
+                        process(task);
+                    } finally {
+                        slots.release();
+                    }
+                });
+            } catch (RejectedExecutionException e) {
+                // Shutting down; the lease runs out and the task is picked up again
+                slots.release();
+            }
+        }
+    }
+
+    private void process(FileProcessingTask task) {
+        int attempt = task.getAttempts() + 1;
+        long started = System.nanoTime();
+        try {
+            FileRecord record = fileRecordRepository.findById(task.getFileId()).orElse(null);
+            if (record != null) {
+                FileInspector.Result result;
+                try (InputStream in = open(record)) {
+                    result = inspector.inspect(in);
+                }
+                save(record, result);
+            }
+            taskRepository.deleteById(task.getId());
+            processed.increment();
+        } catch (IOException | RuntimeException e) {
+            String error = e.getClass().getSimpleName() + ": " + e.getMessage();
+            if (attempt >= maxAttempts) {
+                log.warn("Giving up processing file {} after {} attempts: {}", task.getFileId(), attempt, error);
+                taskRepository.deleteById(task.getId());
+                failed.increment();
+            } else {
+                Duration backoff = retryBase.multipliedBy(1L << Math.min(attempt - 1, 10));
+                taskRepository.retryAt(task.getId(), Instant.now().plus(backoff), error.length() > 500 ? error.substring(0, 500) : error);
+                retried.increment();
+            }
+        } finally {
+            duration.record(Duration.ofNanos(System.nanoTime() - started));
+        }
+    }
+
+    // The content as uploaded: decrypted and decompressed
+    private InputStream open(FileRecord record) throws IOException {
+        InputStream in = encryption.decrypt(
+            EnvelopeEncryption.envelopeOf(record.getEncryptionKey(), record.getEncryptionSegmentSize()),
+            storage.get(record.getS3ObjectKey())
+        );
+        return UploadEncoder.GZIP.equals(record.getContentEncoding()) ? new GZIPInputStream(in, 64 * 1024) : in;
+    }
+
+    private void save(FileRecord record, FileInspector.Result result) {
+        FileInspector.Thumbnail thumbnail = result.thumbnail();
+        // The thumbnail goes first, so a file deleted in the meantime (update count 0) takes it back out with the rollback
+        Boolean saved = transactionTemplate.execute(status -> {
+            if (thumbnail != null) {
+                FileThumbnail row = new FileThumbnail();
+                row.setFileId(record.getId());
+                row.setContentType(FileInspector.THUMBNAIL_TYPE);
+                row.setWidth(thumbnail.width());
+                row.setHeight(thumbnail.height());
+                row.setSourceWidth(thumbnail.sourceWidth());
+                row.setSourceHeight(thumbnail.sourceHeight());
+                row.setImage(thumbnail.image());
+                thumbnailRepository.save(row);
+            }
+            int updated = fileRecordRepository.recordProcessing(
+                record.getId(), result.sha256(), result.contentType(), result.size(),
+                thumbnail != null ? FileInspector.THUMBNAIL_TYPE : null, Instant.now()
+            );
+            if (updated == 0) {
+                status.setRollbackOnly();
+            }
+            return updated > 0;
+        });
+
+        // Downloads of files uploaded without a type pick up the sniffed one
+        if (Boolean.TRUE.equals(saved) && (record.getContentType() == null || record.getOriginalSize() == null)) {
+            shareCodeCache.invalidate(record.getShareCode());
+        }
+    }
+}
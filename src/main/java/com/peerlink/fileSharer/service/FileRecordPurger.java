@@ -0,0 +1,146 @@
+package com.peerlink.fileSharer.service;
+
+import com.peerlink.fileSharer.model.FileRecord;
+import com.peerlink.fileSharer.repository.FileProcessingTaskRepository;
+import com.peerlink.fileSharer.repository.FileRecordRepository;
+import com.peerlink.fileSharer.repository.FileThumbnailRepository;
+import com.peerlink.fileSharer.storage.StorageBackend;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.stream.Collectors;
+
+/**
+ * Removes file records together with everything hanging off them: the stored object
+ * (or one reference on a deduplicated blob), an unfinished multipart upload, the thumbnail
+ * and pending processing task, the cache
+ * entries (including the edge cache's copy of the object) and the share code, which goes back to the allocator for reuse.
+ *
+ * Rows are deleted first, in one transaction with the blob releases, so a failure
+ * half-way can leave an orphaned object behind but never a record without its object.
+ * The rows are locked (skipping rows another purge holds) and only what this purge
+ * actually deleted is released: overlapping purges of the same records, e.g. the reaper
+ * on two instances or a user delete racing it, never drop a blob reference twice.
+ * Objects are deleted asynchronously; callers that want to pace themselves by storage
+ * (the expiry reaper) wait on the returned future, user-facing deletes do not.
+ */
+@Component
+public class FileRecordPurger {
+
+    private static final Logger log = LoggerFactory.getLogger(FileRecordPurger.class);
+
+    private final FileRecordRepository fileRecordRepository;
+    private final FileThumbnailRepository fileThumbnailRepository;
+    private final FileProcessingTaskRepository fileProcessingTaskRepository;
+    private final BlobService blobService;
+    private final StorageBackend storage;
+    private final ShareCodeCache shareCodeCache;
+    private final ShareCodeAllocator shareCodeAllocator;
+    private final EdgeCache edgeCache;
+    private final TransactionTemplate transactionTemplate;
+    private final ExecutorService ioExecutor;
+
+    public FileRecordPurger(
+        FileRecordRepository fileRecordRepository,
+        FileThumbnailRepository fileThumbnailRepository,
+        FileProcessingTaskRepository fileProcessingTaskRepository,
+        BlobService blobService,
+        StorageBackend storage,
+        ShareCodeCache shareCodeCache,
+        ShareCodeAllocator shareCodeAllocator,
+        EdgeCache edgeCache,
+        TransactionTemplate transactionTemplate,
+        @Qualifier("s3IoExecutor") ExecutorService ioExecutor
+    ) {
+        this.fileRecordRepository = fileRecordRepository;
+        this.fileThumbnailRepository = fileThumbnailRepository;
+        this.fileProcessingTaskRepository = fileProcessingTaskRepository;
+        this.blobService = blobService;
+        this.storage = storage;
+        this.shareCodeCache = shareCodeCache;
+        this.shareCodeAllocator = shareCodeAllocator;
+        this.edgeCache = edgeCache;
+        this.transactionTemplate = transactionTemplate;
+        this.ioExecutor = ioExecutor;
+    }
+
+    // The records this purge deleted, and the objects nobody uses any more
+    private record Deleted(List<FileRecord> records, List<String> keys) {}
+
+    /**
+     * @return Completes with the number of records this call deleted (records that are gone
+     * already, or that a concurrent purge holds, are left to it) once their objects are
+     * deleted. It never completes exceptionally: failures only leave orphaned objects behind
+     * and are logged.
+     */
+    public CompletableFuture<Integer> purge(List<FileRecord> records) {
+        if (records.isEmpty()) {
+            return CompletableFuture.completedFuture(0);
+        }
+
+        // 1. Lock the rows that still exist, delete them (one statement each) and drop their blob references.
+        // Records go first: a processing worker saving a thumbnail at the same time waits for them and then backs out
+        Deleted deleted = transactionTemplate.execute(status -> {
+            Set<Long> locked = fileRecordRepository.lockForPurge(records.stream().map(FileRecord::getId).toList())
+                .stream().map(FileRecord::getId).collect(Collectors.toSet());
+            List<FileRecord> mine = records.stream().filter(record -> locked.contains(record.getId())).toList();
+            if (mine.isEmpty()) {
+                return new Deleted(mine, List.of());
+            }
+            List<Long> ids = mine.stream().map(FileRecord::getId).toList();
+            fileRecordRepository.deleteAllByIdInBatch(ids);
+            fileThumbnailRepository.deleteAllByIdInBatch(ids);
+            fileProcessingTaskRepository.deleteByFileIdIn(ids);
+
+            List<String> keys = new ArrayList<>(mine.size());
+            for (FileRecord record : mine) {
+                if (record.getContentHash() == null) {
+                    keys.add(record.getS3ObjectKey());
+                } else {
+                    blobService.release(record.getContentHash()).ifPresent(keys::add);
+                }
+            }
+            return new Deleted(mine, keys);
+        });
+        List<FileRecord> purged = deleted.records();
+        List<String> keysToDelete = deleted.keys();
+        if (purged.isEmpty()) {
+            return CompletableFuture.completedFuture(0);
+        }
+
+        // 2. Make the codes unreachable, then hand them back for reuse
+        List<String> shareCodes = purged.stream().map(FileRecord::getShareCode).toList();
+        shareCodes.forEach(shareCodeCache::invalidate);
+        edgeCache.invalidate(keysToDelete);
+        shareCodeAllocator.recycle(shareCodes);
+
+        // 3. Remove the bytes; failures only leave orphaned objects behind
+        for (FileRecord record : purged) {
+            if (record.getPendingUploadId() != null) {
+                try {
+                    storage.abortMultipart(record.getS3ObjectKey(), record.getPendingUploadId());
+                } catch (RuntimeException e) {
+                    // Already completed or aborted; the object itself is deleted below
+                }
+            }
+        }
+        return storage.deleteAllAsync(keysToDelete, ioExecutor)
+            .exceptionally(e -> {
+                log.warn("Could not delete {} objects of purged files: {}", keysToDelete.size(), e.getMessage());
+                return null;
+            })
+            .thenApply(ignored -> purged.size());
+    }
+
+    public CompletableFuture<Integer> purge(FileRecord record) {
+        return purge(List.of(record));
+    }
+}
@@ -1,166 +1,508 @@
 package com.peerlink.fileSharer.service;
 
-import com.amazonaws.HttpMethod;
-import com.amazonaws.services.s3.AmazonS3;
-import com.amazonaws.services.s3.model.GeneratePresignedUrlRequest;
-import com.amazonaws.services.s3.model.ObjectMetadata;
-import com.amazonaws.services.s3.model.PutObjectRequest;
 import com.peerlink.fileSharer.model.FileRecord;
+import com.peerlink.fileSharer.model.FileStatus;
+import com.peerlink.fileSharer.model.StoredBlob;
 import com.peerlink.fileSharer.model.User;
+import com.peerlink.fileSharer.payload.FileHistoryItem;
+import com.peerlink.fileSharer.payload.FileHistoryPage;
 import com.peerlink.fileSharer.repository.FileRecordRepository;
+import com.peerlink.fileSharer.service.UploadEncoder.EncodedUpload;
+import com.peerlink.fileSharer.service.UploadEncoder.StoredFormat;
+import com.peerlink.fileSharer.storage.StorageBackend;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.domain.Limit;
 import org.springframework.stereotype.Service;
 import org.springframework.web.multipart.MultipartFile;
 import java.io.IOException;
-import java.net.URL;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
 import java.time.Instant;
-import java.util.Date;
+import java.util.Base64;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.HexFormat;
 import java.util.UUID;
-import java.util.concurrent.ThreadLocalRandom;
 import java.util.List; 
 
 @Service
 public class FileService {
 
-    private final AmazonS3 amazonS3;
+    private final StorageBackend storage;
     private final FileRecordRepository fileRecordRepository;
+    private final StreamingUploader streamingUploader;
+    private final ShareCodeCache shareCodeCache;
+    private final DownloadCounter downloadCounter;
+    private final ShareCodeAllocator shareCodeAllocator;
+    private final BlobService blobService;
+    private final FileRecordPurger fileRecordPurger;
+    private final UploadMetrics uploadMetrics;
+    private final UploadEncoder uploadEncoder;
+    private final EdgeCache edgeCache;
+    private final FileProcessingService fileProcessingService;
 
-    @Value("${app.aws.s3.bucket-name}")
-    private String bucketName;
+    // Cursor of the first history page: later than any upload, but still a valid SQL timestamp
+    private static final Instant FIRST_PAGE_DATE = Instant.parse("9999-12-31T23:59:59Z");
+
+    // Download links are valid for 10 minutes
+    private static final Duration DOWNLOAD_URL_VALIDITY = Duration.ofSeconds(600);
+
+    // Content-addressed deduplication: identical uploads share one S3 object
+    @Value("${app.dedup.enabled:false}")
+    private boolean dedupEnabled;
+
+    // How clients reach this node, for links to proxied downloads (/files/stream)
+    @Value("${app.download.proxy.public-base-url:http://localhost:8080}")
+    private String proxyBaseUrl;
     
-    // Constructor Injection (Spring Boot automatically provides the AmazonS3 client)
-    public FileService(AmazonS3 amazonS3, FileRecordRepository fileRecordRepository) {
-        this.amazonS3 = amazonS3;
+    // Constructor Injection (the StorageBackend is S3, async S3 or the local filesystem, see app.storage.backend)
+    public FileService(
+        StorageBackend storage,
+        FileRecordRepository fileRecordRepository,
+        StreamingUploader streamingUploader,
+        ShareCodeCache shareCodeCache,
+        DownloadCounter downloadCounter,
+        ShareCodeAllocator shareCodeAllocator,
+        BlobService blobService,
+        FileRecordPurger fileRecordPurger,
+        UploadMetrics uploadMetrics,
+        UploadEncoder uploadEncoder,
+        EdgeCache edgeCache,
+        FileProcessingService fileProcessingService
+    ) {
+        this.storage = storage;
         this.fileRecordRepository = fileRecordRepository;
+        this.streamingUploader = streamingUploader;
+        this.shareCodeCache = shareCodeCache;
+        this.downloadCounter = downloadCounter;
+        this.shareCodeAllocator = shareCodeAllocator;
+        this.blobService = blobService;
+        this.fileRecordPurger = fileRecordPurger;
+        this.uploadMetrics = uploadMetrics;
+        this.uploadEncoder = uploadEncoder;
+        this.edgeCache = edgeCache;
+        this.fileProcessingService = fileProcessingService;
     }
 
     /**
-     * Uploads the file to S3 and creates a record in PostgreSQL for logged-in users.
+     * Uploads the file to storage and creates a record in PostgreSQL for logged-in users.
+     * @param expiresAt When the share code stops working (see ExpiryPolicy), or null for never.
      */
-    public FileRecord uploadFile(MultipartFile file, User user) throws IOException {
+    public FileRecord uploadFile(MultipartFile file, User user, Instant expiresAt) throws IOException {
         
-        // 1. Generate unique IDs
-        String shareCode = generateUniqueShareCode();
-        String s3ObjectKey = UUID.randomUUID().toString() + "_" + file.getOriginalFilename();
+        // 1. Upload to storage (or reuse an identical object when deduplication is on)
+        StoredObject stored = storeMultipartFile(file);
 
-        // 2. Prepare Metadata and Upload to S3
-        ObjectMetadata metadata = new ObjectMetadata();
-        metadata.setContentLength(file.getSize());
-        metadata.setContentType(file.getContentType());
-        
-        amazonS3.putObject(
-            new PutObjectRequest(bucketName, s3ObjectKey, file.getInputStream(), metadata)
-        );
+        // 2. Save Metadata to PostgreSQL
+        return registerStoredObject(stored, file.getOriginalFilename(), user, expiresAt);
+    }
+    
+    /**
+     * Streams the raw request body to storage as it arrives (multipart upload, parts sent in parallel)
+     * instead of waiting for Spring to buffer a MultipartFile. The user may be null for guests.
+     */
+    public FileRecord uploadFileStreaming(
+        InputStream content, String originalFilename, String contentType, User user, Instant expiresAt
+    ) throws IOException {
+        String s3ObjectKey = UUID.randomUUID().toString() + "_" + originalFilename;
+
+        if (!dedupEnabled) {
+            StoredFormat format;
+            try (UploadMetrics.Upload upload = uploadMetrics.start("stream");
+                 EncodedUpload encoded = uploadEncoder.encode(content, contentType)) {
+                format = encoded.finish(streamingUploader.upload(s3ObjectKey, encoded.stream(), encoded.contentType()));
+                upload.completed(format, encoded.cpuNanos());
+            }
+            return registerStoredObject(new StoredObject(s3ObjectKey, null, format), originalFilename, user, expiresAt);
+        }
+
+        // Hash the content as sent (before encoding) while streaming. Once the body is fully read
+        // the uploader asks whether to keep the object; for a known hash the PUT is skipped
+        // (small files) or the multipart upload aborted.
+        MessageDigest digest = newSha256();
+        String[] contentHash = new String[1];
+        StoredBlob[] reused = new StoredBlob[1];
+        StoredFormat format;
+        try (UploadMetrics.Upload upload = uploadMetrics.start("stream");
+             EncodedUpload encoded = uploadEncoder.encode(new DigestInputStream(content, digest), contentType)) {
+            long storedBytes = streamingUploader.upload(s3ObjectKey, encoded.stream(), encoded.contentType(), () -> {
+                contentHash[0] = HexFormat.of().formatHex(digest.digest());
+                reused[0] = blobService.acquire(contentHash[0]).orElse(null);
+                return reused[0] == null;
+            });
+            format = encoded.finish(storedBytes);
+            upload.completed(format, encoded.cpuNanos());
+        }
+
+        StoredObject stored = reused[0] != null
+            ? StoredObject.reused(reused[0], format.contentType())
+            : registerBlob(contentHash[0], s3ObjectKey, format);
+        return registerStoredObject(stored, originalFilename, user, expiresAt);
+    }
 
-        // 3. Save Metadata to PostgreSQL
+    /**
+     * Creates the share code and record for an object that is already in storage
+     * (e.g. a completed resumable upload session). The user may be null for guests.
+     */
+    public FileRecord registerUploadedObject(
+        String s3ObjectKey, String originalFilename, StoredFormat format, User user, Instant expiresAt
+    ) {
+        return registerStoredObject(new StoredObject(s3ObjectKey, null, format), originalFilename, user, expiresAt);
+    }
+
+    /**
+     * Reserves a share code for an object the client uploads straight to storage. The record
+     * stays PENDING, and its code undownloadable, until activatePending is called.
+     * @param uploadId The multipart upload the client feeds, or null for a single PUT.
+     */
+    public FileRecord registerPendingObject(
+        String s3ObjectKey, String originalFilename, User user, String uploadId, long expectedSize, Instant expiresAt
+    ) {
         FileRecord record = new FileRecord();
-        record.setShareCode(shareCode);
+        record.setShareCode(generateUniqueShareCode());
         record.setS3ObjectKey(s3ObjectKey);
-        record.setOriginalFilename(file.getOriginalFilename());
+        record.setOriginalFilename(originalFilename);
         record.setUser(user);
-        
-        return fileRecordRepository.save(record);
+        record.setStatus(FileStatus.PENDING);
+        record.setPendingUploadId(uploadId);
+        record.setExpectedSize(expectedSize);
+        record.setExpiresAt(expiresAt);
+
+        return saveRecord(record);
     }
-    
+
+    /**
+     * Makes a pending record downloadable. Several callers (the client's complete, the
+     * reconciler on every instance) may try at once; only one of them activates it.
+     * @return Whether this call activated the record.
+     */
+    public boolean activatePending(FileRecord record) {
+        if (fileRecordRepository.activatePending(record.getId()) == 0) {
+            return false;
+        }
+        record.setStatus(FileStatus.ACTIVE);
+        record.setPendingUploadId(null);
+        shareCodeCache.put(record);
+        fileProcessingService.enqueue(record);
+        return true;
+    }
+
+    /**
+     * Drops a pending record together with whatever part of its object reached storage.
+     */
+    public void discardPending(FileRecord record) {
+        fileRecordPurger.purge(record);
+    }
+
+    /**
+     * Creates a record for content the server already has, identified by its SHA-256,
+     * so the client never sends the bytes. A hash is no proof of having the content, so
+     * only content the user already has a file of can be reused this way; anything else
+     * has to be uploaded (and is deduplicated server-side as usual).
+     * @return The new record, or null if the user has no stored file with this hash.
+     */
+    public FileRecord uploadByHash(String contentHash, String originalFilename, User user, Instant expiresAt) {
+        if (!ownsContent(user.getId(), contentHash)) {
+            return null;
+        }
+        return blobService.acquire(contentHash.toLowerCase())
+            .map(blob -> registerStoredObject(StoredObject.reused(blob, null), originalFilename, user, expiresAt))
+            .orElse(null);
+    }
+
+    // Only tells a user about their own content, so the probe cannot reveal what others stored
+    public boolean blobExists(String contentHash, Long userId) {
+        return ownsContent(userId, contentHash) && blobService.exists(contentHash.toLowerCase());
+    }
+
+    private boolean ownsContent(Long userId, String contentHash) {
+        return dedupEnabled && fileRecordRepository.existsByUser_IdAndContentHash(userId, contentHash.toLowerCase());
+    }
+
+    private FileRecord registerStoredObject(StoredObject stored, String originalFilename, User user, Instant expiresAt) {
+        FileRecord record = new FileRecord();
+        record.setShareCode(generateUniqueShareCode());
+        record.setS3ObjectKey(stored.s3ObjectKey());
+        record.setContentHash(stored.contentHash());
+        stored.applyTo(record);
+        record.setOriginalFilename(originalFilename);
+        record.setUser(user);
+        record.setExpiresAt(expiresAt);
+
+        return saveRecord(record);
+    }
+
+    // Puts a MultipartFile into storage. With deduplication on, the (already buffered) file is
+    // hashed first and the PUT is skipped entirely if a blob with that digest exists.
+    // Package-private for BundleService, which stores the files of a batch concurrently.
+    StoredObject storeMultipartFile(MultipartFile file) throws IOException {
+        String s3ObjectKey = UUID.randomUUID().toString() + "_" + file.getOriginalFilename();
+
+        String contentHash = null;
+        if (dedupEnabled) {
+            contentHash = sha256(file.getInputStream());
+            StoredBlob existing = blobService.acquire(contentHash).orElse(null);
+            if (existing != null) {
+                try (EncodedUpload sniffed = uploadEncoder.encode(file.getInputStream(), file.getContentType())) {
+                    return StoredObject.reused(existing, sniffed.contentType());
+                }
+            }
+        }
+
+        StoredFormat format;
+        try (UploadMetrics.Upload upload = uploadMetrics.start("multipart");
+             EncodedUpload encoded = uploadEncoder.encode(file.getInputStream(), file.getContentType())) {
+            long storedLength = encoded.storedLength(file.getSize());
+            if (storedLength < 0) {
+                // The compressed size is only known at the end, so it goes in parts like a streamed upload
+                format = encoded.finish(streamingUploader.upload(s3ObjectKey, encoded.stream(), encoded.contentType()));
+            } else {
+                storage.put(s3ObjectKey, encoded.stream(), storedLength, encoded.contentType());
+                format = encoded.finish(storedLength);
+            }
+            upload.completed(format, encoded.cpuNanos());
+        }
+
+        return contentHash == null
+            ? new StoredObject(s3ObjectKey, null, format)
+            : registerBlob(contentHash, s3ObjectKey, format);
+    }
+
+    // Undoes storeMultipartFile when the record for the object could not be saved
+    void discardStoredObject(StoredObject stored) {
+        if (stored.contentHash() == null) {
+            storage.delete(stored.s3ObjectKey());
+        } else {
+            blobService.release(stored.contentHash()).ifPresent(storage::delete);
+        }
+    }
+
+    // Registers a just-uploaded object as the blob for its hash. If a concurrent upload of the
+    // same content won the race, our copy is deleted and we take a reference on theirs.
+    private StoredObject registerBlob(String contentHash, String s3ObjectKey, StoredFormat format) {
+        try {
+            blobService.register(contentHash, s3ObjectKey, format);
+            return new StoredObject(s3ObjectKey, contentHash, format);
+        } catch (DataIntegrityViolationException e) {
+            StoredBlob existing = blobService.acquire(contentHash).orElse(null);
+            if (existing == null) {
+                // The winner was deleted again in the meantime; keep our own copy unshared
+                return new StoredObject(s3ObjectKey, null, format);
+            }
+            storage.delete(s3ObjectKey);
+            return StoredObject.reused(existing, format.contentType());
+        }
+    }
+
+    private static String sha256(InputStream in) throws IOException {
+        MessageDigest digest = newSha256();
+        try (InputStream stream = in) {
+            byte[] buffer = new byte[64 * 1024];
+            int read;
+            while ((read = stream.read(buffer)) != -1) {
+                digest.update(buffer, 0, read);
+            }
+        }
+        return HexFormat.of().formatHex(digest.digest());
+    }
+
+    private static MessageDigest newSha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+
     /**
      * Generates a time-limited download URL for a file using its share code.
-     * @return The pre-signed URL string, or null if the file is not found.
+     * @return The pre-signed URL string, or null if the file is not found or has expired.
      */
     public String generateDownloadUrl(String shareCode) {
-        FileRecord record = fileRecordRepository.findByShareCode(shareCode)
-                .orElse(null);
+        ShareCodeCache.CachedFile file = findDownloadable(shareCode);
 
-        if (record == null) {
-            return null; // File not found
+        if (file == null) {
+            return null; // File not found, or expired and waiting for the reaper: never signed
         }
 
-        // The URL is valid for 10 minutes
-        Date expiration = Date.from(Instant.now().plusSeconds(600)); 
-        
-        // 1. Create the request to S3 with response headers to force download
-        GeneratePresignedUrlRequest urlRequest = new GeneratePresignedUrlRequest(
-            bucketName, record.getS3ObjectKey()
-        )
-            .withMethod(HttpMethod.GET)
-            .withExpiration(expiration);
-        
-        // Force download with original filename
-        urlRequest.addRequestParameter("response-content-disposition", 
-            "attachment; filename=\"" + record.getOriginalFilename() + "\"");
-        urlRequest.addRequestParameter("response-content-type", "application/octet-stream");
-        
-        // 2. Generate and return the secure URL
-        URL url = amazonS3.generatePresignedUrl(urlRequest);
-        
-        // 3. Update download count in PostgreSQL (optional but good for stats)
-        record.setDownloadCount(record.getDownloadCount() + 1);
-        fileRecordRepository.save(record);
+        // Encrypted files can only be decrypted here, and hot files are served by this node from
+        // its edge cache: both are proxied downloads, which count themselves
+        if (file.envelope() != null || edgeCache.isHot(file.s3ObjectKey(), file.originalSize())) {
+            return proxyBaseUrl + "/files/stream/" + shareCode;
+        }
+
+        // Repeat downloads within the cache window reuse the already signed URL
+        String url = shareCodeCache.getPresignedUrl(shareCode, () ->
+            storage.presignGet(file.s3ObjectKey(), file.originalFilename(), file.contentEncoding(), downloadUrlValidity(file))
+        );
+
+        // Count the download in memory; DownloadCounter flushes the totals to PostgreSQL in batches
+        downloadCounter.increment(shareCode);
 
-        return url.toString();
+        return url;
     }
-    
+
     /**
-     * Generates a unique 5-digit numeric share code (like the old port logic)
+     * Looks up a share code for downloading.
+     * @return The file, or null if the code is unknown, still being uploaded, or expired.
+     */
+    public ShareCodeCache.CachedFile findDownloadable(String shareCode) {
+        // Hot share codes are answered from memory; only misses go to PostgreSQL
+        ShareCodeCache.CachedFile file = shareCodeCache.getFile(shareCode, code ->
+            fileRecordRepository.findByShareCode(code)
+                .filter(record -> !record.isPending()) // Direct uploads still in flight
+                .map(ShareCodeCache.CachedFile::of)
+                .orElse(null)
+        );
+        return file == null || file.isExpired() ? null : file;
+    }
+
+    // Links never outlive the file they point to
+    private static Duration downloadUrlValidity(ShareCodeCache.CachedFile file) {
+        if (file.expiresAt() == null) {
+            return DOWNLOAD_URL_VALIDITY;
+        }
+        Duration remaining = Duration.between(Instant.now(), file.expiresAt());
+        return remaining.compareTo(DOWNLOAD_URL_VALIDITY) < 0 ? remaining : DOWNLOAD_URL_VALIDITY;
+    }
+
+    /**
+     * Generates a unique numeric share code (5 digits while the 5-digit space lasts).
+     * Codes come from ShareCodeAllocator's pre-reserved blocks, so no DB probing is needed.
      */
     private String generateUniqueShareCode() {
-        String shareCode;
-        int attempts = 0;
-        final int MAX_ATTEMPTS = 10;
-        
-        do {
-            int randomInt = ThreadLocalRandom.current().nextInt(10000, 99999);
-            shareCode = String.valueOf(randomInt);
-            attempts++;
-            
-            if (attempts >= MAX_ATTEMPTS) {
-                // Fallback to UUID if we can't find a unique 5-digit code
-                shareCode = UUID.randomUUID().toString().substring(0, 8).toUpperCase();
-                break;
-            }
-        } while (fileRecordRepository.findByShareCode(shareCode).isPresent());
-        
-        return shareCode;
+        return shareCodeAllocator.allocate();
     }
     
     /**
-     * Deletes the file from S3 and removes the record from PostgreSQL.
+     * Deletes the file from storage and removes the record from PostgreSQL.
      */
     public void deleteFile(String shareCode, Long userId) {
         FileRecord record = fileRecordRepository.findByShareCodeAndUserId(shareCode, userId)
                 .orElseThrow(() -> new RuntimeException("File not found or unauthorized."));
 
-        // Delete from S3
-        amazonS3.deleteObject(bucketName, record.getS3ObjectKey());
-        
-        // Delete from PostgreSQL
-        fileRecordRepository.delete(record);
+        // Storage object, blob reference, cache entry and share code go with it
+        fileRecordPurger.purge(record);
+    }
+
+    /**
+     * Deletes many of the user's files at once: one lookup, one DELETE for the rows and one
+     * multi-object storage delete per 1000 objects. Codes that do not exist or belong to
+     * someone else are skipped, so a retried call simply skips what is already gone.
+     * @return The codes that were deleted
+     */
+    public List<String> deleteFiles(Collection<String> shareCodes, Long userId) {
+        List<FileRecord> records = fileRecordRepository.findByUser_IdAndShareCodeIn(userId, new HashSet<>(shareCodes));
+        fileRecordPurger.purge(records);
+        return records.stream().map(FileRecord::getShareCode).toList();
+    }
+
+    // Saves the record and seeds the download cache so the first download is already a hit;
+    // complete uploads are queued for post-upload processing
+    private FileRecord saveRecord(FileRecord record) {
+        FileRecord saved;
+        int attempts = 0;
+        while (true) {
+            try {
+                saved = fileRecordRepository.save(record);
+                break;
+            } catch (DataIntegrityViolationException e) {
+                // Only possible while instances with the old random generator are still running
+                shareCodeAllocator.recordCollision();
+                if (++attempts >= 3) {
+                    throw e;
+                }
+                record.setShareCode(generateUniqueShareCode());
+            }
+        }
+        if (!saved.isPending()) {
+            shareCodeCache.put(saved);
+            fileProcessingService.enqueue(saved);
+        }
+        return saved;
     }
 
     public List<FileRecord> getUserFiles(Long userId) {
         return fileRecordRepository.findByUser_Id(userId);
     }
+
+    /**
+     * Returns one page of the user's history, newest first. The cursor is opaque to clients:
+     * it encodes the (uploadDate, id) of the last item of the previous page.
+     */
+    public FileHistoryPage getUserFilesPage(Long userId, String cursor, int limit, String filenamePrefix) {
+        Instant beforeDate = FIRST_PAGE_DATE;
+        long beforeId = Long.MAX_VALUE;
+        if (cursor != null && !cursor.isBlank()) {
+            try {
+                String[] parts = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8).split("_");
+                beforeDate = Instant.parse(parts[0]);
+                beforeId = Long.parseLong(parts[1]);
+            } catch (RuntimeException e) {
+                throw new IllegalArgumentException("Invalid cursor.");
+            }
+        }
+
+        String prefix = filenamePrefix == null ? "%" : escapeLike(filenamePrefix) + "%";
+
+        // Fetch one extra row to know whether another page exists
+        List<FileHistoryItem> items = fileRecordRepository.findHistoryPage(
+            userId, beforeDate, beforeId, prefix, Limit.of(limit + 1)
+        );
+
+        String nextCursor = null;
+        if (items.size() > limit) {
+            items = items.subList(0, limit);
+            FileHistoryItem last = items.get(limit - 1);
+            nextCursor = Base64.getUrlEncoder().withoutPadding().encodeToString(
+                (last.getUploadDate() + "_" + last.getId()).getBytes(StandardCharsets.UTF_8)
+            );
+        }
+        return new FileHistoryPage(items, nextCursor);
+    }
+
+    private static String escapeLike(String value) {
+        return value.replace("\\", "\\\\").replace("%", "\\%").replace("_", "\\_");
+    }
     
     /**
      * Uploads file for guest users (no user association).
      */
-    public FileRecord uploadFileAsGuest(MultipartFile file, String guestId) throws IOException {
-        String shareCode = generateUniqueShareCode();
-        String s3ObjectKey = UUID.randomUUID().toString() + "_" + file.getOriginalFilename();
+    public FileRecord uploadFileAsGuest(MultipartFile file, String guestId, Instant expiresAt) throws IOException {
+        StoredObject stored = storeMultipartFile(file);
 
-        ObjectMetadata metadata = new ObjectMetadata();
-        metadata.setContentLength(file.getSize());
-        metadata.setContentType(file.getContentType());
-        
-        amazonS3.putObject(
-            new PutObjectRequest(bucketName, s3ObjectKey, file.getInputStream(), metadata)
-        );
+        return registerStoredObject(stored, file.getOriginalFilename(), null, expiresAt); // No user for guest uploads
+    }
 
-        FileRecord record = new FileRecord();
-        record.setShareCode(shareCode);
-        record.setS3ObjectKey(s3ObjectKey);
-        record.setOriginalFilename(file.getOriginalFilename());
-        record.setUser(null); // No user for guest uploads
-        
-        return fileRecordRepository.save(record);
+    // Where an upload's bytes ended up; contentHash is set when the object is a shared, deduplicated
+    // blob, format is null when nothing is known about the content (objects uploaded by the client)
+    record StoredObject(String s3ObjectKey, String contentHash, StoredFormat format) {
+
+        // A reference to an existing blob, which may have been stored with a different encoding (and data key)
+        static StoredObject reused(StoredBlob blob, String contentType) {
+            long storedSize = blob.getStoredSize() != null ? blob.getStoredSize() : blob.getSize();
+            return new StoredObject(blob.getS3ObjectKey(), blob.getContentHash(), new StoredFormat(
+                contentType, blob.getContentEncoding(), blob.getSize(), storedSize,
+                EnvelopeEncryption.envelopeOf(blob.getEncryptionKey(), blob.getEncryptionSegmentSize())
+            ));
+        }
+
+        void applyTo(FileRecord record) {
+            if (format != null) {
+                record.setContentType(format.contentType());
+                record.setContentEncoding(format.contentEncoding());
+                record.setOriginalSize(format.originalSize());
+                record.setStoredSize(format.storedSize());
+                if (format.envelope() != null) {
+                    record.setEncryptionKey(format.envelope().wrappedKey());
+                    record.setEncryptionSegmentSize(format.envelope().segmentSize());
+                }
+            }
+        }
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,127 @@
+package com.peerlink.fileSharer.service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+/**
+ * Reading from this stream yields the gzip encoding of the wrapped stream, compressed on the
+ * fly (the JDK only offers gzip as an OutputStream, which would need a pipe and a second
+ * thread to feed an uploader that pulls). Counts bytes in and out, and the CPU time spent
+ * in the deflater.
+ */
+final class GzipEncodingInputStream extends InputStream {
+
+    // Magic, deflate, no flags, no mtime, no extra flags, OS unknown (RFC 1952)
+    private static final byte[] HEADER = {0x1f, (byte) 0x8b, Deflater.DEFLATED, 0, 0, 0, 0, 0, 0, (byte) 0xff};
+    private static final ThreadMXBean THREADS = ManagementFactory.getThreadMXBean();
+
+    private final InputStream in;
+    private final Deflater deflater;
+    private final CRC32 crc = new CRC32();
+    private final byte[] input = new byte[64 * 1024];
+    private final boolean measureCpu = THREADS.isCurrentThreadCpuTimeSupported();
+
+    private int headerPosition = 0;
+    private byte[] trailer;
+    private int trailerPosition = 0;
+
+    private long originalBytes = 0;
+    private long encodedBytes = 0;
+    private long cpuNanos = 0;
+
+    GzipEncodingInputStream(InputStream in, int level) {
+        this.in = in;
+        this.deflater = new Deflater(level, true);
+    }
+
+    @Override
+    public int read() throws IOException {
+        byte[] single = new byte[1];
+        int read = read(single, 0, 1);
+        return read < 0 ? -1 : single[0] & 0xff;
+    }
+
+    @Override
+    public int read(byte[] buffer, int offset, int length) throws IOException {
+        if (length == 0) {
+            return 0;
+        }
+
+        // 1. Header
+        if (headerPosition < HEADER.length) {
+            int n = Math.min(length, HEADER.length - headerPosition);
+            System.arraycopy(HEADER, headerPosition, buffer, offset, n);
+            headerPosition += n;
+            encodedBytes += n;
+            return n;
+        }
+
+        // 2. Deflated body, pulling input as the deflater asks for it
+        while (trailer == null && !deflater.finished()) {
+            long started = measureCpu ? THREADS.getCurrentThreadCpuTime() : 0;
+            int n = deflater.deflate(buffer, offset, length);
+            if (measureCpu) {
+                cpuNanos += THREADS.getCurrentThreadCpuTime() - started;
+            }
+            if (n > 0) {
+                encodedBytes += n;
+                return n;
+            }
+            if (deflater.needsInput()) {
+                int read = in.read(input);
+                if (read < 0) {
+                    deflater.finish();
+                } else {
+                    crc.update(input, 0, read);
+                    originalBytes += read;
+                    deflater.setInput(input, 0, read);
+                }
+            }
+        }
+
+        // 3. Trailer: CRC-32 and length mod 2^32, little-endian
+        if (trailer == null) {
+            trailer = new byte[8];
+            writeIntLE(trailer, 0, (int) crc.getValue());
+            writeIntLE(trailer, 4, (int) originalBytes);
+            deflater.end();
+        }
+        if (trailerPosition == trailer.length) {
+            return -1;
+        }
+        int n = Math.min(length, trailer.length - trailerPosition);
+        System.arraycopy(trailer, trailerPosition, buffer, offset, n);
+        trailerPosition += n;
+        encodedBytes += n;
+        return n;
+    }
+
+    long originalBytes() {
+        return originalBytes;
+    }
+
+    long encodedBytes() {
+        return encodedBytes;
+    }
+
+    long cpuNanos() {
+        return cpuNanos;
+    }
+
+    @Override
+    public void close() throws IOException {
+        deflater.end();
+        in.close();
+    }
+
+    private static void writeIntLE(byte[] target, int offset, int value) {
+        target[offset] = (byte) value;
+        target[offset + 1] = (byte) (value >>> 8);
+        target[offset + 2] = (byte) (value >>> 16);
+        target[offset + 3] = (byte) (value >>> 24);
+    }
+}
@@ -0,0 +1,164 @@
+package com.peerlink.fileSharer.service;
+
+import com.peerlink.fileSharer.storage.StorageBackend;
+import com.peerlink.fileSharer.storage.StorageBackend.ObjectInfo;
+import org.springframework.stereotype.Service;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Path;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Streams stored objects through this server, for clients that cannot reach the bucket
+ * or want byte ranges. The HTTP side (Range, If-Range, ETag) lives in ProxyDownloadController.
+ *
+ * Objects stored compressed (see UploadEncoder) are sent as they are to clients that accept
+ * the encoding, and decompressed on the way out for the rest.
+ *
+ * Hot objects are read from the EdgeCache instead of storage when it is enabled. Encrypted
+ * objects (see EnvelopeEncryption) are decrypted on the way out; a range reads and decrypts
+ * only the segments it covers.
+ */
+@Service
+public class ProxyDownloadService {
+
+    private final FileService fileService;
+    private final ShareCodeCache shareCodeCache;
+    private final StorageBackend storage;
+    private final TransferBufferPool bufferPool;
+    private final DownloadCounter downloadCounter;
+    private final EdgeCache edgeCache;
+    private final EnvelopeEncryption encryption;
+
+    public ProxyDownloadService(
+        FileService fileService,
+        ShareCodeCache shareCodeCache,
+        StorageBackend storage,
+        TransferBufferPool bufferPool,
+        DownloadCounter downloadCounter,
+        EdgeCache edgeCache,
+        EnvelopeEncryption encryption
+    ) {
+        this.fileService = fileService;
+        this.shareCodeCache = shareCodeCache;
+        this.storage = storage;
+        this.bufferPool = bufferPool;
+        this.downloadCounter = downloadCounter;
+        this.edgeCache = edgeCache;
+        this.encryption = encryption;
+    }
+
+    /**
+     * A downloadable file together with its stored object's size and ETag, and the edge
+     * cache's copy of the object if it has one (null otherwise).
+     */
+    public record ProxyTarget(
+        String shareCode, ShareCodeCache.CachedFile file, ObjectInfo object, EdgeCache.CachedObject cached
+    ) {
+
+        // Size of the object as sent: the stored bytes, minus the segment tags of an encrypted object
+        public long size() {
+            EnvelopeEncryption.Envelope envelope = file.envelope();
+            return envelope == null ? object.size() : EnvelopeEncryption.plaintextSize(object.size(), envelope.segmentSize());
+        }
+
+        // The cached copy's file when it is on local disk and can be sent as is, for zero-copy sendfile; null otherwise
+        public Path cachedFile() {
+            return cached != null && file.envelope() == null ? cached.file() : null;
+        }
+
+        // Strong ETag in HTTP syntax (S3 reports it with or without quotes depending on the call)
+        public String etag() {
+            return "\"" + object.etag().replace("\"", "") + "\"";
+        }
+
+        // The decoded bytes of an encoded object are a different representation, with an ETag of their own
+        public String identityEtag() {
+            return "\"" + object.etag().replace("\"", "") + "-identity\"";
+        }
+    }
+
+    /**
+     * @return The target, or null if the share code is unknown or expired, or its object is missing.
+     */
+    public ProxyTarget resolve(String shareCode) {
+        ShareCodeCache.CachedFile file = fileService.findDownloadable(shareCode);
+        if (file == null) {
+            return null;
+        }
+        ObjectInfo object = shareCodeCache.getObjectInfo(file.s3ObjectKey(), key -> storage.stat(key).orElse(null));
+        if (object == null) {
+            return null;
+        }
+        return new ProxyTarget(shareCode, file, object, edgeCache.get(file.s3ObjectKey(), object.size()));
+    }
+
+    /**
+     * Copies bytes start..end (inclusive) of the object to out through one pooled buffer.
+     */
+    public void copy(ProxyTarget target, long start, long end, OutputStream out) throws IOException {
+        String key = target.file().s3ObjectKey();
+        byte[] buffer = bufferPool.acquire();
+        try (InputStream in = open(target, start, end)) {
+            long remaining = end - start + 1;
+            while (remaining > 0) {
+                int read = in.read(buffer, 0, (int) Math.min(buffer.length, remaining));
+                if (read < 0) {
+                    throw new EOFException("Object " + key + " ended " + remaining + " bytes early");
+                }
+                out.write(buffer, 0, read);
+                remaining -= read;
+            }
+        } finally {
+            bufferPool.release(buffer);
+        }
+    }
+
+    /**
+     * Copies the whole object to out, decoding it (gzip) back to the bytes that were uploaded.
+     */
+    public void copyDecoded(ProxyTarget target, OutputStream out) throws IOException {
+        byte[] buffer = bufferPool.acquire();
+        try (InputStream in = new GZIPInputStream(open(target, 0, target.size() - 1), buffer.length)) {
+            int read;
+            while ((read = in.read(buffer)) >= 0) {
+                out.write(buffer, 0, read);
+            }
+        } finally {
+            bufferPool.release(buffer);
+        }
+    }
+
+    /**
+     * Counts a range sent from the edge cache's file by other means (sendfile).
+     */
+    public void servedFromCache(long bytes) {
+        edgeCache.served(bytes);
+    }
+
+    // Bytes start..end (inclusive) of the object as sent; the stream may go on past end
+    private InputStream open(ProxyTarget target, long start, long end) throws IOException {
+        EnvelopeEncryption.Envelope envelope = target.file().envelope();
+        if (envelope == null) {
+            return openStored(target, start, end);
+        }
+        EnvelopeEncryption.SegmentRange range = EnvelopeEncryption.segmentRange(envelope, target.object().size(), start, end);
+        return encryption.decrypt(envelope, openStored(target, range.storedStart(), range.storedEnd()), range);
+    }
+
+    private InputStream openStored(ProxyTarget target, long start, long end) throws IOException {
+        if (target.cached() != null) {
+            edgeCache.served(end - start + 1);
+            return target.cached().open(start);
+        }
+        String key = target.file().s3ObjectKey();
+        return start == 0 && end == target.object().size() - 1 ? storage.get(key) : storage.getRange(key, start, end);
+    }
+
+    public void countDownload(ProxyTarget target) {
+        downloadCounter.increment(target.shareCode());
+    }
+}
@@ -0,0 +1,333 @@
+package com.peerlink.fileSharer.service;
+
+import com.peerlink.fileSharer.model.FileRecord;
+import com.peerlink.fileSharer.model.UploadSession;
+import com.peerlink.fileSharer.model.UploadSessionPart;
+import com.peerlink.fileSharer.model.User;
+import com.peerlink.fileSharer.repository.FileRecordRepository;
+import com.peerlink.fileSharer.repository.UploadSessionPartRepository;
+import com.peerlink.fileSharer.repository.UploadSessionRepository;
+import com.peerlink.fileSharer.service.EnvelopeEncryption.Envelope;
+import com.peerlink.fileSharer.service.UploadEncoder.StoredFormat;
+import com.peerlink.fileSharer.storage.StorageBackend;
+import com.peerlink.fileSharer.storage.StorageBackend.CompletedPart;
+import com.peerlink.fileSharer.storage.StorageBackend.PendingUpload;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.UUID;
+
+/**
+ * Chunked, resumable uploads. Each session wraps one multipart upload in storage and
+ * each chunk the client PUTs becomes the part with the same number, so a dropped
+ * connection only costs the chunk that was in flight.
+ *
+ * Session objects live under KEY_PREFIX, so the cleanup job only ever looks at multipart
+ * uploads this feature started; direct and streaming uploads have their own lifecycle.
+ *
+ * With app.encryption.enabled every chunk is encrypted on its way through, under a data key
+ * of the session's own. Chunk n then holds segments from (n - 1) * chunkSize / segmentSize
+ * on, so sessions must declare a chunk size that is a whole number of segments, and every
+ * chunk but the last must have exactly that size.
+ */
+@Service
+public class ResumableUploadService {
+
+    private static final Logger log = LoggerFactory.getLogger(ResumableUploadService.class);
+
+    // S3 limits: parts are numbered 1..10000 and every part but the last must be at least 5 MB
+    public static final int MAX_PART_NUMBER = 10_000;
+    public static final long MIN_CHUNK_SIZE = 5L * 1024 * 1024;
+
+    static final String KEY_PREFIX = "resumable/";
+
+    private final StorageBackend storage;
+    private final UploadSessionRepository sessionRepository;
+    private final UploadSessionPartRepository partRepository;
+    private final FileService fileService;
+    private final FileRecordRepository fileRecordRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final EnvelopeEncryption encryption;
+
+    @Value("${app.upload.session-ttl-hours:24}")
+    private long sessionTtlHours;
+
+    public ResumableUploadService(
+        StorageBackend storage,
+        UploadSessionRepository sessionRepository,
+        UploadSessionPartRepository partRepository,
+        FileService fileService,
+        FileRecordRepository fileRecordRepository,
+        TransactionTemplate transactionTemplate,
+        EnvelopeEncryption encryption
+    ) {
+        this.storage = storage;
+        this.sessionRepository = sessionRepository;
+        this.partRepository = partRepository;
+        this.fileService = fileService;
+        this.fileRecordRepository = fileRecordRepository;
+        this.transactionTemplate = transactionTemplate;
+        this.encryption = encryption;
+    }
+
+    /**
+     * Starts the multipart upload and persists the session. The user may be null for guests.
+     *
+     * @param chunkSize Size of every chunk but the last, or null if the client does not say.
+     */
+    public UploadSession createSession(String originalFilename, String contentType, Long chunkSize, User user, String guestId) {
+        // S3 rejects the assembled upload if any part but the last is smaller, so fail before the first chunk
+        if (chunkSize != null && chunkSize < MIN_CHUNK_SIZE) {
+            throw new RuntimeException("Chunk size must be at least " + MIN_CHUNK_SIZE + " bytes.");
+        }
+        Envelope envelope = null;
+        if (encryption.isEnabled()) {
+            if (chunkSize == null || chunkSize % encryption.segmentSize() != 0) {
+                throw new RuntimeException("Chunk size must be a multiple of " + encryption.segmentSize() + " bytes.");
+            }
+            envelope = encryption.newEnvelope();
+        }
+        String s3ObjectKey = KEY_PREFIX + UUID.randomUUID() + "_" + originalFilename;
+
+        String s3UploadId = storage.startMultipart(s3ObjectKey, contentType);
+
+        UploadSession session = new UploadSession();
+        session.setId(UUID.randomUUID().toString());
+        session.setS3UploadId(s3UploadId);
+        session.setS3ObjectKey(s3ObjectKey);
+        session.setOriginalFilename(originalFilename);
+        session.setContentType(contentType);
+        session.setChunkSize(chunkSize);
+        session.setUser(user);
+        session.setGuestId(guestId);
+        if (envelope != null) {
+            session.setEncryptionKey(envelope.wrappedKey());
+            session.setEncryptionSegmentSize(envelope.segmentSize());
+        }
+
+        return sessionRepository.save(session);
+    }
+
+    /**
+     * Streams one chunk straight into the matching storage part. Re-sending a chunk number
+     * simply replaces the earlier part.
+     */
+    public UploadSessionPart uploadChunk(String sessionId, int partNumber, InputStream content, long size, Long userId) {
+        if (partNumber < 1 || partNumber > MAX_PART_NUMBER) {
+            throw new RuntimeException("Chunk number must be between 1 and " + MAX_PART_NUMBER + ".");
+        }
+        if (size <= 0) {
+            throw new RuntimeException("Chunk must have a Content-Length.");
+        }
+        UploadSession session = getSession(sessionId, userId);
+        if (session.getChunkSize() != null && size > session.getChunkSize()) {
+            throw new RuntimeException("Chunk is larger than the session's chunk size of " + session.getChunkSize() + " bytes.");
+        }
+
+        Envelope envelope = envelopeOf(session);
+        String etag;
+        try {
+            if (envelope == null) {
+                etag = storage.uploadPart(session.getS3ObjectKey(), session.getS3UploadId(), partNumber, content, size);
+            } else {
+                // A chunk shorter than the chunk size is the last one: its last segment ends the object
+                long firstSegment = (partNumber - 1) * session.getChunkSize() / envelope.segmentSize();
+                InputStream encrypted = encryption.encryptPiece(envelope, content, firstSegment, size < session.getChunkSize());
+                etag = storage.uploadPart(
+                    session.getS3ObjectKey(), session.getS3UploadId(), partNumber, encrypted,
+                    EnvelopeEncryption.storedSize(size, envelope.segmentSize())
+                );
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not store chunk " + partNumber + ".", e);
+        }
+
+        partRepository.upsert(sessionId, partNumber, etag, size);
+        UploadSessionPart part = new UploadSessionPart();
+        part.setSessionId(sessionId);
+        part.setPartNumber(partNumber);
+        part.setEtag(etag);
+        part.setSize(size);
+
+        session.setUpdatedAt(Instant.now());
+        sessionRepository.save(session);
+
+        return part;
+    }
+
+    /**
+     * Lists the chunks already stored, so a client can resume from the first missing one.
+     */
+    public List<UploadSessionPart> getStoredParts(String sessionId, Long userId) {
+        getSession(sessionId, userId);
+        return partRepository.findBySessionIdOrderByPartNumber(sessionId);
+    }
+
+    /**
+     * Completes the multipart upload and turns the session into a regular FileRecord with a share code.
+     * Not transactional: the storage call never holds a database connection. If the record can't be
+     * saved afterwards, the assembled object is deleted, since no multipart sweep would find it.
+     */
+    public FileRecord completeSession(String sessionId, Long userId, Instant expiresAt) {
+        UploadSession session = getSession(sessionId, userId);
+        List<UploadSessionPart> parts = partRepository.findBySessionIdOrderByPartNumber(sessionId);
+        Envelope envelope = envelopeOf(session);
+
+        if (parts.isEmpty()) {
+            throw new RuntimeException("No chunks have been uploaded.");
+        }
+        // Chunks must be contiguous, otherwise the file would silently have holes
+        for (int i = 0; i < parts.size(); i++) {
+            if (parts.get(i).getPartNumber() != i + 1) {
+                throw new RuntimeException("Chunk " + (i + 1) + " is missing.");
+            }
+            if (i < parts.size() - 1 && parts.get(i).getSize() < MIN_CHUNK_SIZE) {
+                throw new RuntimeException("Chunk " + (i + 1) + " is smaller than " + MIN_CHUNK_SIZE + " bytes.");
+            }
+            if (envelope != null && i < parts.size() - 1 && parts.get(i).getSize().longValue() != session.getChunkSize()) {
+                throw new RuntimeException("Chunk " + (i + 1) + " is not " + session.getChunkSize() + " bytes.");
+            }
+        }
+
+        // 1. Assemble the object
+        List<CompletedPart> completed = new ArrayList<>(parts.stream()
+            .map(part -> new CompletedPart(part.getPartNumber(), part.getEtag()))
+            .toList());
+        long originalBytes = parts.stream().mapToLong(UploadSessionPart::getSize).sum();
+        long storedBytes = envelope == null ? originalBytes : parts.stream()
+            .mapToLong(part -> EnvelopeEncryption.storedSize(part.getSize(), envelope.segmentSize()))
+            .sum();
+        try {
+            if (envelope != null && parts.getLast().getSize().longValue() == session.getChunkSize()) {
+                // The last chunk was full, so none of its segments was sealed as the last one: end
+                // the object with an empty last segment
+                if (parts.size() == MAX_PART_NUMBER) {
+                    throw new RuntimeException("The last chunk must be smaller than the chunk size.");
+                }
+                byte[] end = encryption.emptyLastSegment(envelope, originalBytes / envelope.segmentSize());
+                int partNumber = parts.size() + 1;
+                String etag = storage.uploadPart(
+                    session.getS3ObjectKey(), session.getS3UploadId(), partNumber, new ByteArrayInputStream(end), end.length
+                );
+                completed.add(new CompletedPart(partNumber, etag));
+                storedBytes += end.length;
+            }
+            storage.completeMultipart(session.getS3ObjectKey(), session.getS3UploadId(), completed);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not assemble the uploaded chunks.", e);
+        }
+
+        // 2. Issue the share code and drop the session in one short transaction
+        StoredFormat format = new StoredFormat(null, null, originalBytes, storedBytes, envelope);
+        try {
+            return transactionTemplate.execute(status -> {
+                FileRecord record = fileService.registerUploadedObject(
+                    session.getS3ObjectKey(), session.getOriginalFilename(), format, session.getUser(), expiresAt
+                );
+                partRepository.deleteBySessionId(sessionId);
+                sessionRepository.delete(session);
+                return record;
+            });
+        } catch (RuntimeException e) {
+            try {
+                storage.delete(session.getS3ObjectKey());
+            } catch (RuntimeException deleteFailure) {
+                log.warn("Could not delete {} after its session failed to complete: {}",
+                    session.getS3ObjectKey(), deleteFailure.getMessage());
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Cancels the session and discards every part stored so far.
+     */
+    public void abortSession(String sessionId, Long userId) {
+        discard(getSession(sessionId, userId));
+    }
+
+    /**
+     * Cancels every unfinished upload of a user (account purge).
+     */
+    public int discardUserSessions(Long userId) {
+        List<UploadSession> sessions = sessionRepository.findByUser_Id(userId);
+        sessions.forEach(this::discard);
+        return sessions.size();
+    }
+
+    /**
+     * Garbage-collects sessions that saw no chunk within the TTL, plus any multipart
+     * upload under KEY_PREFIX that is older than the TTL but has no session (e.g. the app
+     * died between initiating the upload and saving the session). Uploads that still
+     * belong to a session or to a pending file record are left alone.
+     * Not transactional: storage calls never hold a database connection.
+     */
+    @Scheduled(fixedDelayString = "${app.upload.session-cleanup-interval-ms:3600000}")
+    public void cleanupStaleSessions() {
+        Instant cutoff = Instant.now().minus(Duration.ofHours(sessionTtlHours));
+
+        List<UploadSession> stale = sessionRepository.findByUpdatedAtBefore(cutoff);
+        for (UploadSession session : stale) {
+            discard(session);
+        }
+
+        int orphans = 0;
+        for (PendingUpload upload : storage.listMultipartUploadsStartedBefore(KEY_PREFIX, cutoff)) {
+            if (sessionRepository.existsByS3UploadId(upload.uploadId())
+                || fileRecordRepository.existsByPendingUploadId(upload.uploadId())) {
+                continue;
+            }
+            try {
+                storage.abortMultipart(upload.key(), upload.uploadId());
+                orphans++;
+            } catch (RuntimeException e) {
+                log.warn("Could not abort orphaned multipart upload {}: {}", upload.uploadId(), e.getMessage());
+            }
+        }
+
+        if (!stale.isEmpty() || orphans > 0) {
+            log.info("Upload cleanup removed {} stale sessions and {} orphaned multipart uploads", stale.size(), orphans);
+        }
+    }
+
+    private void discard(UploadSession session) {
+        try {
+            storage.abortMultipart(session.getS3ObjectKey(), session.getS3UploadId());
+        } catch (RuntimeException e) {
+            // The upload may already be gone on the storage side; the rows still need to go
+            log.warn("Could not abort multipart upload for session {}: {}", session.getId(), e.getMessage());
+        }
+        transactionTemplate.executeWithoutResult(status -> {
+            partRepository.deleteBySessionId(session.getId());
+            sessionRepository.delete(session);
+        });
+    }
+
+    private static Envelope envelopeOf(UploadSession session) {
+        return EnvelopeEncryption.envelopeOf(session.getEncryptionKey(), session.getEncryptionSegmentSize());
+    }
+
+    // Sessions owned by a user can only be used by that user; guest sessions are
+    // protected by the unguessable session id alone.
+    private UploadSession getSession(String sessionId, Long userId) {
+        UploadSession session = sessionRepository.findById(sessionId)
+            .orElseThrow(() -> new RuntimeException("Upload session not found or expired."));
+        if (session.getUser() != null && !Objects.equals(session.getUser().getId(), userId)) {
+            throw new RuntimeException("Upload session not found or expired.");
+        }
+        return session;
+    }
+}
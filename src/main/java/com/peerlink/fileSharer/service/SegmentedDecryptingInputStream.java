@@ -0,0 +1,104 @@
+package com.peerlink.fileSharer.service;
+
+import javax.crypto.AEADBadTagException;
+import javax.crypto.Cipher;
+import javax.crypto.SecretKey;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PushbackInputStream;
+import java.security.GeneralSecurityException;
+
+/**
+ * Decrypts AES-GCM segments (see EnvelopeEncryption) read from the wrapped stream, which
+ * starts at a segment boundary. Each segment is authenticated before any of its bytes are
+ * returned.
+ */
+final class SegmentedDecryptingInputStream extends InputStream {
+
+    private final PushbackInputStream in;
+    private final SecretKey key;
+    private final Cipher cipher;
+    private final byte[] sealed;
+    private final byte[] plaintext;
+    private final long finalSegment; // -1: the segment the stream ends with
+
+    private int position = 0;
+    private int limit = 0;
+    private int skip; // Plaintext bytes at the start of the first segment that come before the range
+    private long segment;
+    private boolean finished = false;
+
+    SegmentedDecryptingInputStream(InputStream in, SecretKey key, int segmentSize, long firstSegment, long finalSegment, int skip) {
+        this.in = new PushbackInputStream(in, 1);
+        this.key = key;
+        try {
+            this.cipher = Cipher.getInstance(EnvelopeEncryption.CIPHER);
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("AES-GCM not available", e);
+        }
+        this.sealed = new byte[segmentSize + EnvelopeEncryption.TAG_BYTES];
+        this.plaintext = new byte[segmentSize];
+        this.segment = firstSegment;
+        this.finalSegment = finalSegment;
+        this.skip = skip;
+    }
+
+    @Override
+    public int read() throws IOException {
+        byte[] single = new byte[1];
+        int read = read(single, 0, 1);
+        return read < 0 ? -1 : single[0] & 0xff;
+    }
+
+    @Override
+    public int read(byte[] buffer, int offset, int length) throws IOException {
+        if (length == 0) {
+            return 0;
+        }
+        while (position == limit) {
+            if (finished) {
+                return -1;
+            }
+            openNextSegment();
+            position = Math.min(skip, limit);
+            skip = 0;
+        }
+        int n = Math.min(length, limit - position);
+        System.arraycopy(plaintext, position, buffer, offset, n);
+        position += n;
+        return n;
+    }
+
+    private void openNextSegment() throws IOException {
+        int n = in.readNBytes(sealed, 0, sealed.length);
+        if (n < EnvelopeEncryption.TAG_BYTES) {
+            throw new EOFException("Encrypted object ends inside segment " + segment);
+        }
+        boolean last = finalSegment >= 0 ? segment == finalSegment : n < sealed.length || atEnd();
+        try {
+            cipher.init(Cipher.DECRYPT_MODE, key, EnvelopeEncryption.nonce(segment, last));
+            limit = cipher.doFinal(sealed, 0, n, plaintext, 0);
+        } catch (AEADBadTagException e) {
+            throw new IOException("Segment " + segment + " of encrypted object failed authentication", e);
+        } catch (GeneralSecurityException e) {
+            throw new IOException("Could not decrypt segment " + segment, e);
+        }
+        segment++;
+        finished = last;
+    }
+
+    private boolean atEnd() throws IOException {
+        int next = in.read();
+        if (next < 0) {
+            return true;
+        }
+        in.unread(next);
+        return false;
+    }
+
+    @Override
+    public void close() throws IOException {
+        in.close();
+    }
+}
@@ -0,0 +1,117 @@
+package com.peerlink.fileSharer.service;
+
+import javax.crypto.Cipher;
+import javax.crypto.SecretKey;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PushbackInputStream;
+import java.security.GeneralSecurityException;
+
+/**
+ * Reading from this stream yields the wrapped stream encrypted in AES-GCM segments (see
+ * EnvelopeEncryption), one segment at a time: memory use is two segment buffers however
+ * large the upload, and every byte passes through the cipher once.
+ */
+final class SegmentedEncryptingInputStream extends InputStream {
+
+    private final PushbackInputStream in; // One byte of lookahead tells whether a full segment is the last
+    private final SecretKey key;
+    private final EnvelopeEncryption.Envelope envelope;
+    private final Cipher cipher;
+    private final byte[] plaintext;
+    private final byte[] sealed;
+    private final boolean endsObject; // false for a piece that more of the object follows
+
+    private int position = 0;
+    private int limit = 0;
+    private long segment;
+    private boolean finished = false;
+    private long plaintextBytes = 0;
+
+    SegmentedEncryptingInputStream(InputStream in, SecretKey key, EnvelopeEncryption.Envelope envelope) {
+        this(in, key, envelope, 0, true);
+    }
+
+    SegmentedEncryptingInputStream(
+        InputStream in, SecretKey key, EnvelopeEncryption.Envelope envelope, long firstSegment, boolean endsObject
+    ) {
+        this.in = new PushbackInputStream(in, 1);
+        this.segment = firstSegment;
+        this.endsObject = endsObject;
+        this.key = key;
+        this.envelope = envelope;
+        try {
+            this.cipher = Cipher.getInstance(EnvelopeEncryption.CIPHER);
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("AES-GCM not available", e);
+        }
+        this.plaintext = new byte[envelope.segmentSize()];
+        this.sealed = new byte[envelope.segmentSize() + EnvelopeEncryption.TAG_BYTES];
+    }
+
+    @Override
+    public int read() throws IOException {
+        byte[] single = new byte[1];
+        int read = read(single, 0, 1);
+        return read < 0 ? -1 : single[0] & 0xff;
+    }
+
+    @Override
+    public int read(byte[] buffer, int offset, int length) throws IOException {
+        if (length == 0) {
+            return 0;
+        }
+        while (position == limit) {
+            if (finished) {
+                return -1;
+            }
+            sealNextSegment();
+        }
+        int n = Math.min(length, limit - position);
+        System.arraycopy(sealed, position, buffer, offset, n);
+        position += n;
+        return n;
+    }
+
+    private void sealNextSegment() throws IOException {
+        int n = in.readNBytes(plaintext, 0, plaintext.length);
+        boolean end = n < plaintext.length || atEnd();
+        if (end && !endsObject && n < plaintext.length) {
+            // Only the object's last segment may be short
+            throw new IOException("A piece the object continues after must hold whole segments");
+        }
+        boolean last = end && endsObject;
+        try {
+            cipher.init(Cipher.ENCRYPT_MODE, key, EnvelopeEncryption.nonce(segment, last));
+            limit = cipher.doFinal(plaintext, 0, n, sealed, 0);
+        } catch (GeneralSecurityException e) {
+            throw new IOException("Could not encrypt segment " + segment, e);
+        }
+        position = 0;
+        segment++;
+        plaintextBytes += n;
+        finished = end;
+    }
+
+    private boolean atEnd() throws IOException {
+        int next = in.read();
+        if (next < 0) {
+            return true;
+        }
+        in.unread(next);
+        return false;
+    }
+
+    EnvelopeEncryption.Envelope envelope() {
+        return envelope;
+    }
+
+    long plaintextBytes() {
+        return plaintextBytes;
+    }
+
+    @Override
+    public void close() throws IOException {
+        in.close();
+    }
+}
@@ -0,0 +1,315 @@
+package com.peerlink.fileSharer.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.DependsOn;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Hands out unique numeric share codes without probing the database per upload.
+ *
+ * Every instance reserves blocks of indexes from a database sequence (so two instances
+ * never get the same index) and maps each index through a keyed permutation onto the
+ * code space: indexes 0..89,999 become 5-digit codes, the next 900,000 become 6-digit
+ * codes and so on, so codes stay numeric as the space fills. Codes of deleted files are
+ * queued in recycled_share_codes and handed out again after a quarantine period.
+ *
+ * Codes are served from an in-memory queue that is refilled in the background, so the
+ * upload path only touches the database when the queue runs dry.
+ *
+ * Metrics: share_codes.allocation (latency, which spikes when a caller has to wait for a
+ * refill), share_codes.refills (codes added, by source=recycled / fresh), share_codes.ready
+ * (queue depth) and share_codes.collisions (saves that hit the unique constraint).
+ */
+@Component
+@DependsOn("entityManagerFactory") // The startup scan needs Hibernate to have created the tables
+public class ShareCodeAllocator {
+
+    private static final Logger log = LoggerFactory.getLogger(ShareCodeAllocator.class);
+
+    private static final int MIN_DIGITS = 5;
+    private static final int MAX_DIGITS = 9;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final int blockSize;
+    private final Duration recycleQuarantine;
+    private final FeistelPermutation[] permutations = new FeistelPermutation[MAX_DIGITS + 1];
+
+    // Codes fresh blocks must skip: random codes from before block allocation existed and
+    // codes waiting in the recycle queue. Only codes whose index lies beyond this instance's
+    // first block are kept (everything below it can never be issued fresh again), which in
+    // practice leaves just the old random 5-digit codes - a 90,000-bit bitmap.
+    private final BitSet reservedFiveDigitCodes = new BitSet((int) codesWithDigits(MIN_DIGITS));
+    private final Set<Long> reservedLongerCodes = new HashSet<>();
+
+    private final ConcurrentLinkedQueue<String> ready = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger readyCount = new AtomicInteger();
+    private final AtomicBoolean refilling = new AtomicBoolean();
+    private final ExecutorService refillExecutor = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "share-code-refill");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final Timer allocationTimer;
+    private final Counter recycledCodes;
+    private final Counter freshCodes;
+    private final Counter collisions;
+
+    public ShareCodeAllocator(
+        JdbcTemplate jdbcTemplate,
+        MeterRegistry meterRegistry,
+        @Value("${app.share-codes.block-size:500}") int blockSize,
+        @Value("${app.share-codes.recycle-after-days:30}") long recycleAfterDays,
+        @Value("${app.share-codes.permutation-key:8731640052281}") long permutationKey
+    ) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.blockSize = Math.max(1, blockSize);
+        this.recycleQuarantine = Duration.ofDays(recycleAfterDays);
+        for (int digits = MIN_DIGITS; digits <= MAX_DIGITS; digits++) {
+            permutations[digits] = new FeistelPermutation(codesWithDigits(digits), permutationKey + digits);
+        }
+
+        this.allocationTimer = Timer.builder("share_codes.allocation")
+            .publishPercentileHistogram()
+            .register(meterRegistry);
+        this.recycledCodes = Counter.builder("share_codes.refills").tag("source", "recycled").register(meterRegistry);
+        this.freshCodes = Counter.builder("share_codes.refills").tag("source", "fresh").register(meterRegistry);
+        this.collisions = Counter.builder("share_codes.collisions").register(meterRegistry);
+        Gauge.builder("share_codes.ready", readyCount, AtomicInteger::get).register(meterRegistry);
+    }
+
+    @PostConstruct
+    public void initialize() {
+        jdbcTemplate.execute("CREATE SEQUENCE IF NOT EXISTS share_code_block_seq START WITH 0 MINVALUE 0");
+
+        // Every index from our first block onwards may still be issued fresh, by us or by another instance
+        long firstBlock = nextBlock();
+        long firstFreshIndex = firstBlock * blockSize;
+
+        // One streaming pass over existing codes, marking the ones a fresh block could collide with
+        jdbcTemplate.query(
+            "SELECT share_code FROM file_records UNION ALL SELECT share_code FROM recycled_share_codes",
+            row -> {
+                markReservedIfAhead(row.getString(1), firstFreshIndex);
+            }
+        );
+        log.info("Share code allocator ready, {} existing codes reserved",
+            reservedFiveDigitCodes.cardinality() + reservedLongerCodes.size());
+
+        enqueue(codesForBlock(firstBlock));
+    }
+
+    /**
+     * Returns a code nobody else holds. Only blocks on the database when the local queue is empty.
+     */
+    public String allocate() {
+        return allocationTimer.record(this::takeCode);
+    }
+
+    /**
+     * Counts a save that failed because the code was already taken.
+     */
+    public void recordCollision() {
+        collisions.increment();
+    }
+
+    private String takeCode() {
+        String code = ready.poll();
+        if (code == null) {
+            refill();
+            code = ready.poll();
+            if (code == null) {
+                throw new IllegalStateException("Share code space exhausted.");
+            }
+        }
+        if (readyCount.decrementAndGet() < blockSize / 4) {
+            refillInBackground();
+        }
+        return code;
+    }
+
+    /**
+     * Queues codes of deleted or expired files for reuse once the quarantine has passed.
+     */
+    public void recycle(Collection<String> shareCodes) {
+        if (shareCodes.isEmpty()) {
+            return;
+        }
+        Timestamp now = Timestamp.from(Instant.now());
+        jdbcTemplate.batchUpdate(
+            "INSERT INTO recycled_share_codes (share_code, recycled_at) VALUES (?, ?) ON CONFLICT DO NOTHING",
+            shareCodes.stream().map(code -> new Object[]{code, now}).toList()
+        );
+    }
+
+    public void recycle(String shareCode) {
+        recycle(List.of(shareCode));
+    }
+
+    private void refillInBackground() {
+        if (refilling.compareAndSet(false, true)) {
+            refillExecutor.execute(() -> {
+                try {
+                    fill();
+                } catch (RuntimeException e) {
+                    log.warn("Background share code refill failed: {}", e.getMessage());
+                } finally {
+                    refilling.set(false);
+                }
+            });
+        }
+    }
+
+    private synchronized void refill() {
+        if (ready.isEmpty()) {
+            fill();
+        }
+    }
+
+    private synchronized void fill() {
+        // 1. Prefer recycled codes. SKIP LOCKED lets instances claim disjoint rows concurrently.
+        List<String> recycled = jdbcTemplate.queryForList(
+            "DELETE FROM recycled_share_codes WHERE share_code IN ("
+                + " SELECT share_code FROM recycled_share_codes WHERE recycled_at < ?"
+                + " ORDER BY recycled_at LIMIT ? FOR UPDATE SKIP LOCKED"
+                + ") RETURNING share_code",
+            String.class,
+            Timestamp.from(Instant.now().minus(recycleQuarantine)), blockSize
+        );
+        enqueue(recycled);
+        recycledCodes.increment(recycled.size());
+        if (recycled.size() >= blockSize) {
+            return;
+        }
+
+        // 2. Reserve a fresh block of indexes and map them onto codes
+        List<String> fresh = codesForBlock(nextBlock());
+        enqueue(fresh);
+        freshCodes.increment(fresh.size());
+    }
+
+    private long nextBlock() {
+        return jdbcTemplate.queryForObject("SELECT nextval('share_code_block_seq')", Long.class);
+    }
+
+    private List<String> codesForBlock(long block) {
+        long first = block * blockSize;
+        List<String> codes = new ArrayList<>(blockSize);
+        for (long index = first; index < first + blockSize; index++) {
+            long code = codeForIndex(index);
+            if (code > 0 && !isReserved(code)) {
+                codes.add(String.valueOf(code));
+            }
+        }
+        return codes;
+    }
+
+    private void enqueue(List<String> codes) {
+        ready.addAll(codes);
+        readyCount.addAndGet(codes.size());
+    }
+
+    /**
+     * Maps a global index onto a code: the first 90,000 indexes are 5-digit codes,
+     * the next 900,000 are 6-digit codes, and so on. Returns -1 past the last tier.
+     */
+    long codeForIndex(long index) {
+        long offset = index;
+        for (int digits = MIN_DIGITS; digits <= MAX_DIGITS; digits++) {
+            long tierSize = codesWithDigits(digits);
+            if (offset < tierSize) {
+                return pow10(digits - 1) + permutations[digits].permute(offset);
+            }
+            offset -= tierSize;
+        }
+        return -1;
+    }
+
+    /**
+     * Inverse of codeForIndex, possible because the permutation is reversible.
+     */
+    long indexForCode(long code) {
+        long tierStart = 0;
+        for (int digits = MIN_DIGITS; digits <= MAX_DIGITS; digits++) {
+            long lowest = pow10(digits - 1);
+            if (code < lowest * 10) {
+                return tierStart + permutations[digits].invert(code - lowest);
+            }
+            tierStart += codesWithDigits(digits);
+        }
+        return -1;
+    }
+
+    private void markReservedIfAhead(String shareCode, long firstFreshIndex) {
+        long code = numericValue(shareCode);
+        if (code < 0 || indexForCode(code) < firstFreshIndex) {
+            return;
+        }
+        if (code < pow10(MIN_DIGITS)) {
+            reservedFiveDigitCodes.set((int) (code - pow10(MIN_DIGITS - 1)));
+        } else {
+            reservedLongerCodes.add(code);
+        }
+    }
+
+    private boolean isReserved(long code) {
+        if (code < pow10(MIN_DIGITS)) {
+            return reservedFiveDigitCodes.get((int) (code - pow10(MIN_DIGITS - 1)));
+        }
+        return reservedLongerCodes.contains(code);
+    }
+
+    // Value of a numeric code the allocator could produce, -1 for anything else (e.g. old UUID fallbacks)
+    private static long numericValue(String code) {
+        if (code == null || code.length() < MIN_DIGITS || code.length() > MAX_DIGITS || code.charAt(0) == '0') {
+            return -1;
+        }
+        for (int i = 0; i < code.length(); i++) {
+            if (!Character.isDigit(code.charAt(i))) {
+                return -1;
+            }
+        }
+        return Long.parseLong(code);
+    }
+
+    private static long codesWithDigits(int digits) {
+        return 9 * pow10(digits - 1);
+    }
+
+    private static long pow10(int exponent) {
+        long result = 1;
+        for (int i = 0; i < exponent; i++) {
+            result *= 10;
+        }
+        return result;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        refillExecutor.shutdownNow();
+    }
+}
@@ -0,0 +1,120 @@
+package com.peerlink.fileSharer.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.peerlink.fileSharer.model.FileRecord;
+import com.peerlink.fileSharer.storage.StorageBackend.ObjectInfo;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * In-process cache for the download hot path: share code -> S3 key and filename,
+ * plus the last presigned URL handed out for the code. Hits skip Postgres and the
+ * URL signer entirely. Hit/miss/eviction counts are published as the Micrometer
+ * "cache.*" metrics (cache=shareCodes / cache=presignedUrls / cache=objectInfo).
+ *
+ * Also caches size and ETag per object key for proxied downloads. Keys carry a random
+ * UUID and objects are never overwritten, so these entries cannot go stale.
+ *
+ * The cache is per instance: invalidate only reaches this one, so other instances keep
+ * resolving a deleted file's share code until their entry expires (share-codes.ttl-seconds).
+ */
+@Component
+public class ShareCodeCache {
+
+    /**
+     * The slice of a FileRecord the download path needs. contentEncoding is null (and
+     * originalSize may be) for objects stored as uploaded; envelope is null for objects
+     * stored unencrypted.
+     */
+    public record CachedFile(
+        String s3ObjectKey, String originalFilename, Instant expiresAt,
+        String contentType, String contentEncoding, Long originalSize, EnvelopeEncryption.Envelope envelope
+    ) {
+
+        public static CachedFile of(FileRecord record) {
+            return new CachedFile(
+                record.getS3ObjectKey(), record.getOriginalFilename(), record.getExpiresAt(),
+                record.getContentType(), record.getContentEncoding(), record.getOriginalSize(),
+                EnvelopeEncryption.envelopeOf(record.getEncryptionKey(), record.getEncryptionSegmentSize())
+            );
+        }
+
+        public boolean isExpired() {
+            return expiresAt != null && !expiresAt.isAfter(Instant.now());
+        }
+    }
+
+    private final Cache<String, CachedFile> files;
+    private final Cache<String, String> presignedUrls;
+    private final Cache<String, ObjectInfo> objectInfo;
+
+    public ShareCodeCache(
+        MeterRegistry meterRegistry,
+        @Value("${app.cache.share-codes.max-size:100000}") long maxSize,
+        @Value("${app.cache.share-codes.ttl-seconds:300}") long ttlSeconds,
+        @Value("${app.cache.presigned-urls.ttl-seconds:300}") long presignedUrlTtlSeconds
+    ) {
+        this.files = Caffeine.newBuilder()
+            .maximumSize(maxSize)
+            .expireAfterWrite(Duration.ofSeconds(ttlSeconds))
+            .recordStats()
+            .build();
+
+        // Presigned URLs are valid for 600 s; caching them for a slice of that still
+        // leaves every client with a URL that is valid for the remainder.
+        this.presignedUrls = Caffeine.newBuilder()
+            .maximumSize(maxSize)
+            .expireAfterWrite(Duration.ofSeconds(presignedUrlTtlSeconds))
+            .recordStats()
+            .build();
+
+        this.objectInfo = Caffeine.newBuilder()
+            .maximumSize(maxSize)
+            .expireAfterAccess(Duration.ofSeconds(ttlSeconds))
+            .recordStats()
+            .build();
+
+        CaffeineCacheMetrics.monitor(meterRegistry, files, "shareCodes");
+        CaffeineCacheMetrics.monitor(meterRegistry, presignedUrls, "presignedUrls");
+        CaffeineCacheMetrics.monitor(meterRegistry, objectInfo, "objectInfo");
+    }
+
+    /**
+     * Returns the cached entry, calling the loader on a miss. A null from the loader
+     * (unknown share code) is not cached.
+     */
+    public CachedFile getFile(String shareCode, Function<String, CachedFile> loader) {
+        return files.get(shareCode, loader);
+    }
+
+    public String getPresignedUrl(String shareCode, Supplier<String> signer) {
+        return presignedUrls.get(shareCode, code -> signer.get());
+    }
+
+    /**
+     * Size and ETag of a stored object, calling the loader on a miss. A null (no such object) is not cached.
+     */
+    public ObjectInfo getObjectInfo(String s3ObjectKey, Function<String, ObjectInfo> loader) {
+        return objectInfo.get(s3ObjectKey, loader);
+    }
+
+    public void put(FileRecord record) {
+        files.put(record.getShareCode(), CachedFile.of(record));
+    }
+
+    /**
+     * Evicts the share code on this instance only (see the class comment).
+     */
+    public void invalidate(String shareCode) {
+        files.invalidate(shareCode);
+        presignedUrls.invalidate(shareCode);
+    }
+}
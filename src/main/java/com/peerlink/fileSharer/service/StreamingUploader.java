@@ -0,0 +1,239 @@
+package com.peerlink.fileSharer.service;
+
+import com.peerlink.fileSharer.storage.StorageBackend;
+import com.peerlink.fileSharer.storage.StorageBackend.CompletedPart;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.BooleanSupplier;
+
+/**
+ * Streams an InputStream of unknown length into storage using multipart upload.
+ * The stream is cut into fixed-size parts which are uploaded in parallel; at most
+ * {@code maxInFlightParts} part buffers exist per upload, so heap use is bounded
+ * no matter how large the file is. Only failed parts are retried, after an exponential
+ * backoff with jitter so that parts failing together don't all retry at the same moment.
+ */
+@Component
+public class StreamingUploader {
+
+    private static final Logger log = LoggerFactory.getLogger(StreamingUploader.class);
+
+    // S3 rejects non-final parts smaller than 5 MB
+    private static final int MIN_PART_SIZE = 5 * 1024 * 1024;
+
+    // Backoff doubles per attempt up to this
+    private static final long MAX_RETRY_BACKOFF_MS = 10_000;
+
+    private final StorageBackend storage;
+    private final ExecutorService partUploadExecutor;
+    private final int partSize;
+    private final int maxInFlightParts;
+    private final int partRetries;
+    private final long retryBaseMs;
+
+    public StreamingUploader(
+        StorageBackend storage,
+        @Value("${app.upload.part-size-mb:8}") int partSizeMb,
+        @Value("${app.upload.max-in-flight-parts:4}") int maxInFlightParts,
+        @Value("${app.upload.part-retries:3}") int partRetries,
+        @Value("${app.upload.part-retry-base-ms:200}") long retryBaseMs,
+        @Qualifier("s3IoExecutor") ExecutorService partUploadExecutor
+    ) {
+        this.storage = storage;
+        this.partSize = Math.max(MIN_PART_SIZE, partSizeMb * 1024 * 1024);
+        this.maxInFlightParts = Math.max(1, maxInFlightParts);
+        this.partRetries = Math.max(0, partRetries);
+        this.retryBaseMs = Math.max(1, retryBaseMs);
+        this.partUploadExecutor = partUploadExecutor;
+    }
+
+    /**
+     * Uploads the stream under the given key and returns the number of bytes written.
+     */
+    public long upload(String s3ObjectKey, InputStream in, String contentType) throws IOException {
+        return upload(s3ObjectKey, in, contentType, () -> true);
+    }
+
+    /**
+     * Same as above, but once the whole stream has been read (and before the object becomes
+     * visible) keepObject decides whether to store it at all. Returning false skips the PUT,
+     * or aborts the multipart upload; the byte count is still returned.
+     */
+    public long upload(String s3ObjectKey, InputStream in, String contentType, BooleanSupplier keepObject) throws IOException {
+        long started = System.nanoTime();
+        BufferPool buffers = new BufferPool();
+
+        // 1. Read the first part; small files never need a multipart upload
+        byte[] first = buffers.take();
+        int firstLength = readFully(in, first);
+        if (firstLength < partSize) {
+            if (!keepObject.getAsBoolean()) {
+                return firstLength;
+            }
+            storage.put(s3ObjectKey, new ByteArrayInputStream(first, 0, firstLength), firstLength, contentType);
+            logThroughput(s3ObjectKey, firstLength, started);
+            return firstLength;
+        }
+
+        // 2. Start the multipart upload and feed parts to the executor as they arrive
+        String uploadId = storage.startMultipart(s3ObjectKey, contentType);
+
+        List<CompletableFuture<CompletedPart>> parts = new ArrayList<>();
+        AtomicReference<Throwable> failure = new AtomicReference<>();
+        long totalBytes = 0;
+
+        try {
+            byte[] buffer = first;
+            int length = firstLength;
+            int partNumber = 1;
+
+            while (length > 0 && failure.get() == null) {
+                parts.add(submitPart(s3ObjectKey, uploadId, partNumber++, buffer, length, buffers, failure));
+                totalBytes += length;
+
+                // Blocks here while maxInFlightParts buffers are still being uploaded
+                buffer = buffers.take();
+                length = readFully(in, buffer);
+            }
+
+            // 3. Wait for every part, then stitch them together
+            List<CompletedPart> etags = new ArrayList<>();
+            for (CompletableFuture<CompletedPart> part : parts) {
+                etags.add(part.join());
+            }
+            etags.sort(Comparator.comparingInt(CompletedPart::partNumber));
+
+            if (!keepObject.getAsBoolean()) {
+                storage.abortMultipart(s3ObjectKey, uploadId);
+                return totalBytes;
+            }
+            storage.completeMultipart(s3ObjectKey, uploadId, etags);
+        } catch (IOException | RuntimeException e) {
+            storage.abortMultipart(s3ObjectKey, uploadId);
+            Throwable cause = e instanceof CompletionException && e.getCause() != null ? e.getCause() : e;
+            throw new IOException("Multipart upload failed for " + s3ObjectKey, cause);
+        }
+
+        logThroughput(s3ObjectKey, totalBytes, started);
+        return totalBytes;
+    }
+
+    private CompletableFuture<CompletedPart> submitPart(
+        String s3ObjectKey, String uploadId, int partNumber, byte[] buffer, int length,
+        BufferPool buffers, AtomicReference<Throwable> failure
+    ) {
+        return uploadPartWithRetry(s3ObjectKey, uploadId, partNumber, buffer, length)
+            .whenComplete((part, error) -> {
+                if (error != null) {
+                    failure.compareAndSet(null, error);
+                }
+                buffers.release(buffer);
+            });
+    }
+
+    // With the s3-async backend no thread waits for the part; otherwise it occupies one of partUploadExecutor.
+    // Each retry is chained onto the attempt before it and scheduled after its backoff, so no
+    // thread sleeps in between either; a part that succeeds skips the remaining stages.
+    private CompletableFuture<CompletedPart> uploadPartWithRetry(
+        String s3ObjectKey, String uploadId, int partNumber, byte[] buffer, int length
+    ) {
+        CompletableFuture<CompletedPart> part = uploadPart(s3ObjectKey, uploadId, partNumber, buffer, length, 1);
+        for (int attempt = 2; attempt <= partRetries + 1; attempt++) {
+            int retry = attempt;
+            Executor afterBackoff = CompletableFuture.delayedExecutor(backoffMs(retry - 1), TimeUnit.MILLISECONDS, partUploadExecutor);
+            part = part.exceptionallyComposeAsync(
+                error -> uploadPart(s3ObjectKey, uploadId, partNumber, buffer, length, retry), afterBackoff
+            );
+        }
+        return part;
+    }
+
+    private CompletableFuture<CompletedPart> uploadPart(
+        String s3ObjectKey, String uploadId, int partNumber, byte[] buffer, int length, int attempt
+    ) {
+        return storage.uploadPartAsync(s3ObjectKey, uploadId, partNumber, buffer, length, partUploadExecutor)
+            .thenApply(etag -> new CompletedPart(partNumber, etag))
+            .exceptionallyCompose(error -> {
+                Throwable cause = error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+                log.warn("Part {} of {} failed (attempt {}/{}): {}",
+                    partNumber, s3ObjectKey, attempt, partRetries + 1, cause.getMessage());
+                return CompletableFuture.failedFuture(new CompletionException(cause));
+            });
+    }
+
+    // Equal jitter: half of the doubled backoff is fixed, the other half random
+    long backoffMs(int retry) {
+        long ceiling = Math.min(MAX_RETRY_BACKOFF_MS, retryBaseMs << Math.min(retry - 1, 20));
+        return ceiling / 2 + ThreadLocalRandom.current().nextLong(ceiling / 2 + 1);
+    }
+
+    /**
+     * Fills the buffer from the stream, returning fewer bytes than its length only at end of stream.
+     */
+    static int readFully(InputStream in, byte[] buffer) throws IOException {
+        int total = 0;
+        while (total < buffer.length) {
+            int read = in.read(buffer, total, buffer.length - total);
+            if (read < 0) {
+                break;
+            }
+            total += read;
+        }
+        return total;
+    }
+
+    private void logThroughput(String s3ObjectKey, long bytes, long startedNanos) {
+        double seconds = (System.nanoTime() - startedNanos) / 1_000_000_000.0;
+        log.info("Streamed {} bytes to {} in {} s ({} MB/s)", bytes, s3ObjectKey,
+            String.format("%.2f", seconds), String.format("%.2f", bytes / 1_048_576.0 / Math.max(seconds, 1e-9)));
+    }
+
+    /**
+     * Per-upload pool of part buffers. Buffers are allocated lazily up to
+     * maxInFlightParts; once all are in use, take() blocks until a part finishes.
+     */
+    private class BufferPool {
+        private final BlockingQueue<byte[]> free = new ArrayBlockingQueue<>(maxInFlightParts);
+        private int allocated = 0;
+
+        byte[] take() throws IOException {
+            byte[] buffer = free.poll();
+            if (buffer != null) {
+                return buffer;
+            }
+            if (allocated < maxInFlightParts) {
+                allocated++;
+                return new byte[partSize];
+            }
+            try {
+                return free.take();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException("Interrupted while waiting for a free part buffer", e);
+            }
+        }
+
+        void release(byte[] buffer) {
+            free.offer(buffer);
+        }
+    }
+}
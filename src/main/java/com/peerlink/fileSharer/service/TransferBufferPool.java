@@ -0,0 +1,37 @@
+package com.peerlink.fileSharer.service;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * Fixed-size copy buffers shared by all proxied downloads. Each stream borrows one buffer
+ * for its whole lifetime, so memory per download is constant no matter how large the file
+ * is, and steady traffic reuses the same few arrays instead of churning the heap. When the
+ * pool is empty a fresh buffer is handed out; returning it to a full pool simply drops it.
+ */
+@Component
+public class TransferBufferPool {
+
+    private final BlockingQueue<byte[]> free;
+    private final int bufferSize;
+
+    public TransferBufferPool(
+        @Value("${app.download.proxy.buffer-kb:64}") int bufferKb,
+        @Value("${app.download.proxy.pooled-buffers:256}") int pooledBuffers
+    ) {
+        this.bufferSize = Math.max(4, bufferKb) * 1024;
+        this.free = new ArrayBlockingQueue<>(Math.max(1, pooledBuffers));
+    }
+
+    public byte[] acquire() {
+        byte[] buffer = free.poll();
+        return buffer != null ? buffer : new byte[bufferSize];
+    }
+
+    public void release(byte[] buffer) {
+        free.offer(buffer);
+    }
+}
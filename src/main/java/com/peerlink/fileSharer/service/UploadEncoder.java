@@ -0,0 +1,271 @@
+package com.peerlink.fileSharer.service;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PushbackInputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.CharacterCodingException;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Locale;
+
+/**
+ * Storage-side encoding stage for uploads. The first bytes of every upload are sniffed to
+ * find its real content type (clients often send application/octet-stream, or nothing);
+ * with app.upload.compression.enabled, text and other compressible content is then gzipped
+ * while it streams to storage. Formats that are already compressed (images, video, archives,
+ * office documents) and anything unrecognised are stored as they are.
+ *
+ * The encoding is recorded on the FileRecord and downloads are served with Content-Encoding,
+ * so clients get the original bytes back.
+ *
+ * With app.encryption.enabled the (possibly compressed) bytes are then encrypted on their
+ * way out as well (see EnvelopeEncryption); compression has to come first, since ciphertext
+ * does not compress.
+ */
+@Component
+public class UploadEncoder {
+
+    public static final String GZIP = "gzip";
+
+    // Enough for every signature below, and for a fair guess at whether content is text
+    private static final int SNIFF_BYTES = 8192;
+
+    private final boolean compressionEnabled;
+    private final int level;
+    private final int minSize;
+    private final EnvelopeEncryption encryption;
+
+    public UploadEncoder(
+        @Value("${app.upload.compression.enabled:false}") boolean compressionEnabled,
+        @Value("${app.upload.compression.level:6}") int level,
+        @Value("${app.upload.compression.min-size-bytes:1024}") int minSize,
+        EnvelopeEncryption encryption
+    ) {
+        this.compressionEnabled = compressionEnabled;
+        this.level = Math.min(9, Math.max(1, level));
+        this.minSize = Math.min(SNIFF_BYTES, Math.max(0, minSize));
+        this.encryption = encryption;
+    }
+
+    /**
+     * How an upload ended up in storage. contentEncoding is null when the bytes are stored as
+     * sent, envelope is null when they are stored unencrypted.
+     */
+    public record StoredFormat(
+        String contentType, String contentEncoding, long originalSize, long storedSize, EnvelopeEncryption.Envelope envelope
+    ) {}
+
+    /**
+     * Sniffs the upload and, if it is worth it, wraps it in a gzip encoder. Read the bytes to
+     * store from stream(), then call finish() with the number of bytes that were stored.
+     */
+    public EncodedUpload encode(InputStream content, String declaredContentType) throws IOException {
+        PushbackInputStream in = new PushbackInputStream(content, SNIFF_BYTES);
+        byte[] head = in.readNBytes(SNIFF_BYTES);
+        in.unread(head);
+
+        Sniffed sniffed = sniff(head);
+        String contentType = contentType(sniffed, declaredContentType);
+        // readNBytes stops short only at end of stream, so a short head is the whole upload
+        boolean compress = compressionEnabled && sniffed.compressible() && head.length >= minSize;
+
+        InputStream encoded = compress ? new GzipEncodingInputStream(in, level) : in;
+        return new EncodedUpload(encoded, encryption.isEnabled() ? encryption.encrypt(encoded) : null, contentType);
+    }
+
+    /**
+     * An upload on its way to storage.
+     */
+    public static final class EncodedUpload implements Closeable {
+
+        private final InputStream encoded; // Before encryption
+        private final SegmentedEncryptingInputStream encrypted; // null when encryption is off
+        private final String contentType;
+
+        private EncodedUpload(InputStream encoded, SegmentedEncryptingInputStream encrypted, String contentType) {
+            this.encoded = encoded;
+            this.encrypted = encrypted;
+            this.contentType = contentType;
+        }
+
+        public InputStream stream() {
+            return encrypted != null ? encrypted : encoded;
+        }
+
+        public String contentType() {
+            return contentType;
+        }
+
+        public String contentEncoding() {
+            return encoded instanceof GzipEncodingInputStream ? GZIP : null;
+        }
+
+        public boolean isEncoded() {
+            return contentEncoding() != null;
+        }
+
+        /**
+         * Bytes that go to storage for an upload of originalLength bytes, or -1 if that is only
+         * known once the upload has been compressed.
+         */
+        public long storedLength(long originalLength) {
+            if (isEncoded()) {
+                return -1;
+            }
+            return encrypted != null
+                ? EnvelopeEncryption.storedSize(originalLength, encrypted.envelope().segmentSize())
+                : originalLength;
+        }
+
+        /**
+         * CPU time spent compressing, 0 when the upload is stored as sent.
+         */
+        public long cpuNanos() {
+            return encoded instanceof GzipEncodingInputStream gzip ? gzip.cpuNanos() : 0;
+        }
+
+        public StoredFormat finish(long storedBytes) {
+            long originalBytes = encoded instanceof GzipEncodingInputStream gzip ? gzip.originalBytes()
+                : encrypted != null ? encrypted.plaintextBytes()
+                : storedBytes;
+            return new StoredFormat(contentType, contentEncoding(), originalBytes, storedBytes,
+                encrypted != null ? encrypted.envelope() : null);
+        }
+
+        @Override
+        public void close() throws IOException {
+            stream().close();
+        }
+    }
+
+    // --- Sniffing ---
+
+    // type is null when the content is not recognised
+    private record Sniffed(String type, boolean text, boolean compressible) {}
+
+    private static final Sniffed UNKNOWN = new Sniffed(null, false, false);
+
+    private record Signature(int offset, byte[] magic, String type, boolean compressible) {}
+
+    private static final Signature[] SIGNATURES = {
+        // Already compressed
+        signature(0, "application/gzip", false, 0x1f, 0x8b),
+        signature(0, "application/zip", false, 'P', 'K', 3, 4), // Also docx/xlsx/pptx, jar, apk, epub
+        signature(0, "application/x-7z-compressed", false, '7', 'z', 0xbc, 0xaf, 0x27, 0x1c),
+        signature(0, "application/vnd.rar", false, 'R', 'a', 'r', '!'),
+        signature(0, "application/x-xz", false, 0xfd, '7', 'z', 'X', 'Z', 0),
+        signature(0, "application/zstd", false, 0x28, 0xb5, 0x2f, 0xfd),
+        signature(0, "application/x-bzip2", false, 'B', 'Z', 'h'),
+        signature(0, "image/png", false, 0x89, 'P', 'N', 'G'),
+        signature(0, "image/jpeg", false, 0xff, 0xd8, 0xff),
+        signature(0, "image/gif", false, 'G', 'I', 'F', '8'),
+        signature(8, "image/webp", false, 'W', 'E', 'B', 'P'),
+        signature(4, "video/mp4", false, 'f', 't', 'y', 'p'), // Also mov, m4a, heic
+        signature(0, "video/webm", false, 0x1a, 0x45, 0xdf, 0xa3),
+        signature(0, "audio/mpeg", false, 'I', 'D', '3'),
+        signature(0, "audio/ogg", false, 'O', 'g', 'g', 'S'),
+        signature(0, "application/pdf", false, '%', 'P', 'D', 'F'), // Page content is deflated already
+        // Uncompressed binary formats
+        signature(8, "audio/wav", true, 'W', 'A', 'V', 'E'),
+        signature(0, "image/bmp", true, 'B', 'M'),
+        signature(0, "image/tiff", true, 'I', 'I', '*', 0),
+        signature(0, "image/tiff", true, 'M', 'M', 0, '*'),
+        signature(0, "application/vnd.sqlite3", true, 'S', 'Q', 'L', 'i', 't', 'e', ' ', 'f', 'o', 'r', 'm', 'a', 't', ' ', '3', 0),
+        signature(257, "application/x-tar", true, 'u', 's', 't', 'a', 'r'),
+    };
+
+    private static Sniffed sniff(byte[] head) {
+        for (Signature signature : SIGNATURES) {
+            int end = signature.offset() + signature.magic().length;
+            if (head.length >= end && Arrays.equals(head, signature.offset(), end, signature.magic(), 0, signature.magic().length)) {
+                return new Sniffed(signature.type(), false, signature.compressible());
+            }
+        }
+        String textType = textType(head);
+        return textType != null ? new Sniffed(textType, true, true) : UNKNOWN;
+    }
+
+    // A text type if the bytes are UTF-8 (or ASCII) without control characters, otherwise null
+    private static String textType(byte[] head) {
+        if (head.length == 0) {
+            return null;
+        }
+        for (byte b : head) {
+            if (b == 0 || (b > 0 && b < 0x20 && b != '\t' && b != '\n' && b != '\r' && b != '\f' && b != 0x1b)) {
+                return null;
+            }
+        }
+        // The head may end in the middle of a multi-byte character; allow up to 3 trailing bytes of one
+        CharsetDecoder decoder = StandardCharsets.UTF_8.newDecoder()
+            .onMalformedInput(CodingErrorAction.REPORT)
+            .onUnmappableCharacter(CodingErrorAction.REPORT);
+        String text = null;
+        for (int cut = 0; cut <= 3 && text == null && cut < head.length; cut++) {
+            try {
+                text = decoder.reset().decode(ByteBuffer.wrap(head, 0, head.length - cut)).toString();
+            } catch (CharacterCodingException e) {
+                // Try again without the last byte
+            }
+        }
+        if (text == null) {
+            return null;
+        }
+
+        String start = text.stripLeading().toLowerCase(Locale.ROOT);
+        if (start.startsWith("{") || start.startsWith("[")) {
+            return MediaType.APPLICATION_JSON_VALUE;
+        }
+        if (start.startsWith("<!doctype html") || start.startsWith("<html")) {
+            return MediaType.TEXT_HTML_VALUE;
+        }
+        if (start.startsWith("<?xml")) {
+            return MediaType.APPLICATION_XML_VALUE;
+        }
+        return MediaType.TEXT_PLAIN_VALUE;
+    }
+
+    /**
+     * Content type of content starting with head (at most the first 8 KiB are looked at),
+     * application/octet-stream when it is not recognised.
+     */
+    static String sniffContentType(byte[] head) {
+        return contentType(sniff(head.length > SNIFF_BYTES ? Arrays.copyOf(head, SNIFF_BYTES) : head), null);
+    }
+
+    // Recognised binary formats override what the client said; for text, a more specific
+    // declared text type (text/csv, application/x-ndjson, ...) is kept
+
+    private static String contentType(Sniffed sniffed, String declared) {
+        boolean declaredUseful = declared != null && !declared.isBlank()
+            && !declared.startsWith(MediaType.APPLICATION_OCTET_STREAM_VALUE);
+        if (sniffed.type() == null) {
+            return declaredUseful ? declared : MediaType.APPLICATION_OCTET_STREAM_VALUE;
+        }
+        if (sniffed.text() && declaredUseful && isTextual(declared)) {
+            return declared;
+        }
+        return sniffed.type();
+    }
+
+    private static boolean isTextual(String contentType) {
+        String type = contentType.toLowerCase(Locale.ROOT);
+        return type.startsWith("text/") || type.contains("json") || type.contains("xml")
+            || type.contains("javascript") || type.contains("csv") || type.contains("yaml");
+    }
+
+    private static Signature signature(int offset, String type, boolean compressible, int... magic) {
+        byte[] bytes = new byte[magic.length];
+        for (int i = 0; i < magic.length; i++) {
+            bytes[i] = (byte) magic[i];
+        }
+        return new Signature(offset, bytes, type, compressible);
+    }
+}
@@ -0,0 +1,109 @@
+package com.peerlink.fileSharer.service;
+
+import com.peerlink.fileSharer.service.UploadEncoder.StoredFormat;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Upload metrics, tagged by how the bytes arrive (path=multipart / stream):
+ * - uploads.in_flight: uploads currently transferring to storage
+ * - upload.duration: time spent transferring, with outcome=success / failure
+ * - upload.throughput: bytes per second of each successful upload (histogram)
+ * - upload.original_bytes / upload.stored_bytes: size as sent and as stored, with
+ *   encoding=gzip / identity (see UploadEncoder)
+ * - upload.encoding.cpu: CPU time spent compressing each encoded upload
+ *
+ * Usage: try (UploadMetrics.Upload upload = uploadMetrics.start("stream")) { ...; upload.completed(bytes); }
+ */
+@Component
+public class UploadMetrics {
+
+    private final MeterRegistry meterRegistry;
+    private final AtomicInteger inFlight = new AtomicInteger();
+
+    public UploadMetrics(MeterRegistry meterRegistry) {
+        this.meterRegistry = meterRegistry;
+        Gauge.builder("uploads.in_flight", inFlight, AtomicInteger::get)
+            .description("Uploads currently transferring to storage")
+            .register(meterRegistry);
+    }
+
+    public Upload start(String path) {
+        inFlight.incrementAndGet();
+        return new Upload(path, System.nanoTime());
+    }
+
+    /**
+     * One upload in progress. Closing it without calling completed() records a failure.
+     */
+    public final class Upload implements AutoCloseable {
+
+        private final String path;
+        private final long startNanos;
+        private long bytes = -1;
+
+        private Upload(String path, long startNanos) {
+            this.path = path;
+            this.startNanos = startNanos;
+        }
+
+        public void completed(long bytes) {
+            this.bytes = bytes;
+        }
+
+        /**
+         * Completes the upload (bytes as sent by the client) and records what storage received.
+         */
+        public void completed(StoredFormat format, long cpuNanos) {
+            completed(format.originalSize());
+            String encoding = format.contentEncoding() == null ? "identity" : format.contentEncoding();
+
+            DistributionSummary.builder("upload.original_bytes")
+                .baseUnit("bytes")
+                .tag("path", path)
+                .tag("encoding", encoding)
+                .register(meterRegistry)
+                .record(format.originalSize());
+            DistributionSummary.builder("upload.stored_bytes")
+                .baseUnit("bytes")
+                .tag("path", path)
+                .tag("encoding", encoding)
+                .register(meterRegistry)
+                .record(format.storedSize());
+            if (format.contentEncoding() != null) {
+                Timer.builder("upload.encoding.cpu")
+                    .tag("path", path)
+                    .tag("encoding", encoding)
+                    .register(meterRegistry)
+                    .record(cpuNanos, TimeUnit.NANOSECONDS);
+            }
+        }
+
+        @Override
+        public void close() {
+            inFlight.decrementAndGet();
+            long elapsedNanos = System.nanoTime() - startNanos;
+
+            Timer.builder("upload.duration")
+                .tag("path", path)
+                .tag("outcome", bytes >= 0 ? "success" : "failure")
+                .register(meterRegistry)
+                .record(elapsedNanos, TimeUnit.NANOSECONDS);
+
+            if (bytes > 0 && elapsedNanos > 0) {
+                DistributionSummary.builder("upload.throughput")
+                    .baseUnit("bytes_per_second")
+                    .tag("path", path)
+                    .publishPercentileHistogram()
+                    .register(meterRegistry)
+                    .record(bytes * 1_000_000_000.0 / elapsedNanos);
+            }
+        }
+    }
+}
@@ -0,0 +1,411 @@
+package com.peerlink.fileSharer.storage;
+
+import io.micrometer.observation.annotation.Observed;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+import org.springframework.web.util.UriComponentsBuilder;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.DigestInputStream;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Properties;
+import java.util.UUID;
+import java.util.stream.Stream;
+
+/**
+ * Stores objects on the local filesystem: hermetic test runs, benchmarking without AWS,
+ * and edge nodes that serve hot files from local disk. Writes go through NIO FileChannels
+ * into a temp file that is atomically moved into place. Downloads use HMAC-signed URLs
+ * served by LocalStorageController, which hands the file to the connector for zero-copy
+ * sendfile.
+ */
+@Component
+@Observed(name = "storage.operation", contextualName = "storage")
+@ConditionalOnProperty(name = "app.storage.backend", havingValue = "local")
+public class LocalStorageBackend implements StorageBackend {
+
+    private static final String HMAC_ALGORITHM = "HmacSHA256";
+    private static final long TRANSFER_CHUNK = 8L * 1024 * 1024;
+
+    private final Path objectsDir;
+    private final Path uploadsDir;
+    private final Path tmpDir;
+    private final SecretKeySpec signingKey;
+    private final String publicBaseUrl;
+
+    public LocalStorageBackend(
+        @Value("${app.storage.local.root:./storage}") String root,
+        @Value("${app.storage.local.signing-key}") String signingKey,
+        @Value("${app.storage.local.public-base-url:http://localhost:8080}") String publicBaseUrl
+    ) throws IOException {
+        Path rootDir = Paths.get(root).toAbsolutePath().normalize();
+        this.objectsDir = Files.createDirectories(rootDir.resolve("objects"));
+        this.uploadsDir = Files.createDirectories(rootDir.resolve("uploads"));
+        this.tmpDir = Files.createDirectories(rootDir.resolve("tmp"));
+        this.signingKey = new SecretKeySpec(signingKey.getBytes(StandardCharsets.UTF_8), HMAC_ALGORITHM);
+        this.publicBaseUrl = publicBaseUrl;
+    }
+
+    @Override
+    public void put(String key, InputStream content, long length, String contentType) throws IOException {
+        Path tmp = Files.createTempFile(tmpDir, "put-", ".tmp");
+        try {
+            writeStream(content, tmp);
+            moveIntoPlace(tmp, objectPath(key));
+        } finally {
+            Files.deleteIfExists(tmp);
+        }
+    }
+
+    @Override
+    public InputStream get(String key) throws IOException {
+        return Files.newInputStream(objectPath(key));
+    }
+
+    @Override
+    public InputStream getRange(String key, long start, long end) throws IOException {
+        FileChannel channel = FileChannel.open(objectPath(key), StandardOpenOption.READ);
+        channel.position(start);
+        return new LimitedInputStream(Channels.newInputStream(channel), end - start + 1);
+    }
+
+    @Override
+    public void delete(String key) {
+        try {
+            Files.deleteIfExists(objectPath(key));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Override
+    public void deleteAll(Collection<String> keys) {
+        keys.forEach(this::delete);
+    }
+
+    @Override
+    public Optional<ObjectInfo> stat(String key) {
+        Path file = objectPath(key);
+        try {
+            long size = Files.size(file);
+            // Size and modification time change whenever the object is replaced, which is all an ETag has to do
+            long modified = Files.getLastModifiedTime(file).toMillis();
+            return Optional.of(new ObjectInfo(size, Long.toHexString(size) + "-" + Long.toHexString(modified)));
+        } catch (NoSuchFileException e) {
+            return Optional.empty();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Override
+    public String presignGet(String key, String downloadFilename, String contentEncoding, Duration validity) {
+        long expires = Instant.now().plus(validity).getEpochSecond();
+
+        Map<String, Object> params = new LinkedHashMap<>();
+        params.put("key", key);
+        params.put("filename", downloadFilename);
+        if (contentEncoding != null) {
+            params.put("encoding", contentEncoding);
+        }
+        params.put("expires", expires);
+        params.put("sig", sign("GET", key, downloadTarget(downloadFilename, contentEncoding), expires));
+        return signedUrl("/files/local", params);
+    }
+
+    @Override
+    public String presignPut(String key, String contentType, Duration validity) {
+        long expires = Instant.now().plus(validity).getEpochSecond();
+
+        Map<String, Object> params = new LinkedHashMap<>();
+        params.put("key", key);
+        params.put("expires", expires);
+        params.put("sig", sign("PUT", key, "", expires));
+        return signedUrl("/files/local/upload", params);
+    }
+
+    @Override
+    public String presignPart(String key, String uploadId, int partNumber, Duration validity) {
+        long expires = Instant.now().plus(validity).getEpochSecond();
+
+        Map<String, Object> params = new LinkedHashMap<>();
+        params.put("key", key);
+        params.put("uploadId", uploadId);
+        params.put("partNumber", partNumber);
+        params.put("expires", expires);
+        params.put("sig", sign("PUT", key, uploadId + "/" + partNumber, expires));
+        return signedUrl("/files/local/upload", params);
+    }
+
+    /**
+     * Checks a URL produced by presignGet: the signature must match and must not have expired.
+     * @param contentEncoding The encoding parameter of the URL, null if it has none.
+     */
+    public boolean verify(String key, String downloadFilename, String contentEncoding, long expires, String signature) {
+        return verifySignature(sign("GET", key, downloadTarget(downloadFilename, contentEncoding), expires), expires, signature);
+    }
+
+    // The encoding is signed too, so it can't be added to or stripped from a link
+    private static String downloadTarget(String downloadFilename, String contentEncoding) {
+        return contentEncoding == null ? downloadFilename : downloadFilename + "\n" + contentEncoding;
+    }
+
+    /**
+     * Checks a URL produced by presignPut (uploadId null) or presignPart.
+     */
+    public boolean verifyUpload(String key, String uploadId, Integer partNumber, long expires, String signature) {
+        String target = uploadId == null ? "" : uploadId + "/" + partNumber;
+        return verifySignature(sign("PUT", key, target, expires), expires, signature);
+    }
+
+    /**
+     * The file holding the object, for serving it with sendfile / transferTo.
+     */
+    public Path resolve(String key) {
+        return objectPath(key);
+    }
+
+    // --- Multipart uploads: each upload is a directory of part files plus a small metadata file ---
+
+    @Override
+    public String startMultipart(String key, String contentType) {
+        String uploadId = UUID.randomUUID().toString();
+        Properties meta = new Properties();
+        meta.setProperty("key", key);
+        meta.setProperty("initiated", Instant.now().toString());
+        try {
+            Path dir = Files.createDirectories(uploadsDir.resolve(uploadId));
+            try (var out = Files.newOutputStream(dir.resolve("upload.properties"))) {
+                meta.store(out, null);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return uploadId;
+    }
+
+    @Override
+    public String uploadPart(String key, String uploadId, int partNumber, InputStream content, long length) throws IOException {
+        Path dir = uploadDir(key, uploadId);
+        Path tmp = Files.createTempFile(tmpDir, "part-", ".tmp");
+        try {
+            // The ETag is the MD5 of the part, like S3
+            MessageDigest md5 = MessageDigest.getInstance("MD5");
+            writeStream(new DigestInputStream(content, md5), tmp);
+            moveIntoPlace(tmp, dir.resolve(partFileName(partNumber)));
+            return HexFormat.of().formatHex(md5.digest());
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("MD5 not available", e);
+        } finally {
+            Files.deleteIfExists(tmp);
+        }
+    }
+
+    @Override
+    public void completeMultipart(String key, String uploadId, List<CompletedPart> parts) throws IOException {
+        Path dir = uploadDir(key, uploadId);
+        List<CompletedPart> ordered = parts.stream().sorted(Comparator.comparingInt(CompletedPart::partNumber)).toList();
+
+        Path tmp = Files.createTempFile(tmpDir, "complete-", ".tmp");
+        try {
+            // Parts are concatenated file-to-file with transferTo, so no bytes pass through the heap
+            try (FileChannel out = FileChannel.open(tmp, StandardOpenOption.WRITE)) {
+                for (CompletedPart part : ordered) {
+                    Path partFile = dir.resolve(partFileName(part.partNumber()));
+                    if (!Files.exists(partFile)) {
+                        throw new IOException("Part " + part.partNumber() + " of upload " + uploadId + " is missing");
+                    }
+                    try (FileChannel in = FileChannel.open(partFile, StandardOpenOption.READ)) {
+                        long size = in.size();
+                        long position = 0;
+                        while (position < size) {
+                            position += in.transferTo(position, size - position, out);
+                        }
+                    }
+                }
+            }
+            moveIntoPlace(tmp, objectPath(key));
+        } finally {
+            Files.deleteIfExists(tmp);
+        }
+        deleteRecursively(dir);
+    }
+
+    @Override
+    public void abortMultipart(String key, String uploadId) {
+        try {
+            deleteRecursively(uploadDir(key, uploadId));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Override
+    public List<PendingUpload> listMultipartUploadsStartedBefore(String prefix, Instant cutoff) {
+        List<PendingUpload> pending = new ArrayList<>();
+        try (DirectoryStream<Path> uploads = Files.newDirectoryStream(uploadsDir)) {
+            for (Path dir : uploads) {
+                Properties meta = readMeta(dir);
+                Instant initiated = Instant.parse(meta.getProperty("initiated"));
+                if (meta.getProperty("key").startsWith(prefix) && initiated.isBefore(cutoff)) {
+                    pending.add(new PendingUpload(meta.getProperty("key"), dir.getFileName().toString(), initiated));
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return pending;
+    }
+
+    // Keys come from user-supplied filenames, so they are never used as paths directly:
+    // each object lives under the SHA-256 of its key, fanned out over 256 directories.
+    private Path objectPath(String key) {
+        try {
+            String hash = HexFormat.of().formatHex(
+                MessageDigest.getInstance("SHA-256").digest(key.getBytes(StandardCharsets.UTF_8))
+            );
+            return objectsDir.resolve(hash.substring(0, 2)).resolve(hash);
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+
+    private Path uploadDir(String key, String uploadId) throws IOException {
+        // Upload ids are UUIDs we generated; anything else must not reach the filesystem
+        Path dir = uploadsDir.resolve(UUID.fromString(uploadId).toString());
+        if (!Files.isDirectory(dir) || !key.equals(readMeta(dir).getProperty("key"))) {
+            throw new IOException("No such multipart upload: " + uploadId);
+        }
+        return dir;
+    }
+
+    private static Properties readMeta(Path dir) throws IOException {
+        Properties meta = new Properties();
+        try (InputStream in = Files.newInputStream(dir.resolve("upload.properties"))) {
+            meta.load(in);
+        }
+        return meta;
+    }
+
+    private static String partFileName(int partNumber) {
+        return String.format("part-%05d", partNumber);
+    }
+
+    private static void writeStream(InputStream content, Path target) throws IOException {
+        try (FileChannel out = FileChannel.open(target, StandardOpenOption.WRITE);
+             ReadableByteChannel in = Channels.newChannel(content)) {
+            long position = 0;
+            long transferred;
+            while ((transferred = out.transferFrom(in, position, TRANSFER_CHUNK)) > 0) {
+                position += transferred;
+            }
+        }
+    }
+
+    private static void moveIntoPlace(Path tmp, Path target) throws IOException {
+        Files.createDirectories(target.getParent());
+        Files.move(tmp, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    private static void deleteRecursively(Path dir) throws IOException {
+        if (!Files.exists(dir)) {
+            return;
+        }
+        try (Stream<Path> paths = Files.walk(dir)) {
+            for (Path path : paths.sorted(Comparator.reverseOrder()).toList()) {
+                Files.deleteIfExists(path);
+            }
+        }
+    }
+
+    // Stops after limit bytes, so a range read never runs past its end
+    private static final class LimitedInputStream extends FilterInputStream {
+        private long remaining;
+
+        LimitedInputStream(InputStream in, long limit) {
+            super(in);
+            this.remaining = limit;
+        }
+
+        @Override
+        public int read() throws IOException {
+            if (remaining <= 0) {
+                return -1;
+            }
+            int b = super.read();
+            if (b >= 0) {
+                remaining--;
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int length) throws IOException {
+            if (remaining <= 0) {
+                return -1;
+            }
+            int read = super.read(buffer, offset, (int) Math.min(length, remaining));
+            if (read > 0) {
+                remaining -= read;
+            }
+            return read;
+        }
+    }
+
+    private String signedUrl(String path, Map<String, Object> params) {
+        UriComponentsBuilder builder = UriComponentsBuilder.fromUriString(publicBaseUrl).path(path);
+        // Values go in as URI variables so characters like & and = in filenames are encoded too
+        params.keySet().forEach(name -> builder.queryParam(name, "{" + name + "}"));
+        return builder.encode().buildAndExpand(params).toUriString();
+    }
+
+    private static boolean verifySignature(String expected, long expires, String signature) {
+        if (Instant.now().getEpochSecond() > expires) {
+            return false;
+        }
+        // Constant-time comparison so the signature can't be guessed byte by byte
+        return MessageDigest.isEqual(expected.getBytes(StandardCharsets.UTF_8), signature.getBytes(StandardCharsets.UTF_8));
+    }
+
+    // The method is part of the signed payload, so a download link can't be turned into an upload link
+    private String sign(String method, String key, String target, long expires) {
+        try {
+            Mac mac = Mac.getInstance(HMAC_ALGORITHM);
+            mac.init(signingKey);
+            String payload = method + "\n" + key + "\n" + target + "\n" + expires;
+            byte[] signature = mac.doFinal(payload.getBytes(StandardCharsets.UTF_8));
+            return Base64.getUrlEncoder().withoutPadding().encodeToString(signature);
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("HMAC-SHA256 not available", e);
+        }
+    }
+}
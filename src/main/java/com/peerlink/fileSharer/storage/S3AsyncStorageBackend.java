@@ -0,0 +1,264 @@
+package com.peerlink.fileSharer.storage;
+
+import io.micrometer.observation.annotation.Observed;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+import software.amazon.awssdk.core.async.AsyncRequestBody;
+import software.amazon.awssdk.core.async.AsyncResponseTransformer;
+import software.amazon.awssdk.services.s3.S3AsyncClient;
+import software.amazon.awssdk.services.s3.model.CompletedMultipartUpload;
+import software.amazon.awssdk.services.s3.model.Delete;
+import software.amazon.awssdk.services.s3.model.GetObjectRequest;
+import software.amazon.awssdk.services.s3.model.HeadObjectResponse;
+import software.amazon.awssdk.services.s3.model.ListMultipartUploadsResponse;
+import software.amazon.awssdk.services.s3.model.MultipartUpload;
+import software.amazon.awssdk.services.s3.model.ObjectIdentifier;
+import software.amazon.awssdk.services.s3.model.S3Error;
+import software.amazon.awssdk.services.s3.model.S3Exception;
+import software.amazon.awssdk.services.s3.model.UploadPartResponse;
+import software.amazon.awssdk.services.s3.presigner.S3Presigner;
+
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+
+/**
+ * Stores objects in the S3 bucket through the non-blocking SDK v2 client (see S3AsyncConfig).
+ * The blocking StorageBackend methods wait on the call; part uploads and deletes also have
+ * non-blocking variants that hold no thread at all while S3 responds.
+ */
+@Component
+@Observed(name = "storage.operation", contextualName = "storage")
+@ConditionalOnProperty(name = "app.storage.backend", havingValue = "s3-async")
+public class S3AsyncStorageBackend implements StorageBackend {
+
+    // S3 multi-object delete accepts at most 1000 keys per request
+    private static final int MAX_KEYS_PER_DELETE = 1000;
+
+    private final S3AsyncClient s3;
+    private final S3Presigner presigner;
+    private final ExecutorService ioExecutor;
+
+    @Value("${app.aws.s3.bucket-name}")
+    private String bucketName;
+
+    public S3AsyncStorageBackend(
+        S3AsyncClient s3,
+        S3Presigner presigner,
+        @Qualifier("s3IoExecutor") ExecutorService ioExecutor // Reads request bodies given as InputStreams
+    ) {
+        this.s3 = s3;
+        this.presigner = presigner;
+        this.ioExecutor = ioExecutor;
+    }
+
+    @Override
+    public void put(String key, InputStream content, long length, String contentType) {
+        join(s3.putObject(
+            request -> request.bucket(bucketName).key(key).contentLength(length).contentType(contentType),
+            AsyncRequestBody.fromInputStream(content, length, ioExecutor)
+        ));
+    }
+
+    @Override
+    public InputStream get(String key) {
+        return join(s3.getObject(
+            request -> request.bucket(bucketName).key(key),
+            AsyncResponseTransformer.toBlockingInputStream()
+        ));
+    }
+
+    @Override
+    public InputStream getRange(String key, long start, long end) {
+        return join(s3.getObject(
+            request -> request.bucket(bucketName).key(key).range("bytes=" + start + "-" + end),
+            AsyncResponseTransformer.toBlockingInputStream()
+        ));
+    }
+
+    @Override
+    public void delete(String key) {
+        join(s3.deleteObject(request -> request.bucket(bucketName).key(key)));
+    }
+
+    @Override
+    public void deleteAll(Collection<String> keys) {
+        join(deleteAllAsync(keys, ioExecutor));
+    }
+
+    @Override
+    public CompletableFuture<Void> deleteAllAsync(Collection<String> keys, Executor executor) {
+        List<CompletableFuture<?>> batches = new ArrayList<>();
+        List<ObjectIdentifier> batch = new ArrayList<>(MAX_KEYS_PER_DELETE);
+        for (String key : keys) {
+            batch.add(ObjectIdentifier.builder().key(key).build());
+            if (batch.size() == MAX_KEYS_PER_DELETE) {
+                batches.add(deleteBatch(batch));
+                batch = new ArrayList<>(MAX_KEYS_PER_DELETE);
+            }
+        }
+        if (!batch.isEmpty()) {
+            batches.add(deleteBatch(batch));
+        }
+        return CompletableFuture.allOf(batches.toArray(CompletableFuture[]::new));
+    }
+
+    private CompletableFuture<?> deleteBatch(List<ObjectIdentifier> keys) {
+        // Quiet mode: the response only lists keys that failed. The request itself succeeds even
+        // then, so per-key errors fail the future here, as the blocking client does
+        return s3.deleteObjects(request -> request
+            .bucket(bucketName)
+            .delete(Delete.builder().objects(keys).quiet(true).build())
+        ).thenAccept(response -> {
+            if (response.hasErrors() && !response.errors().isEmpty()) {
+                S3Error first = response.errors().get(0);
+                throw new IllegalStateException(response.errors().size() + " of " + keys.size()
+                    + " objects could not be deleted, first " + first.key() + ": " + first.code() + " " + first.message());
+            }
+        });
+    }
+
+    @Override
+    public Optional<ObjectInfo> stat(String key) {
+        try {
+            HeadObjectResponse head = join(s3.headObject(request -> request.bucket(bucketName).key(key)));
+            return Optional.of(new ObjectInfo(head.contentLength(), head.eTag()));
+        } catch (S3Exception e) {
+            if (e.statusCode() == 404) {
+                return Optional.empty();
+            }
+            throw e;
+        }
+    }
+
+    @Override
+    public String presignGet(String key, String downloadFilename, String contentEncoding, Duration validity) {
+        // Force download with original filename
+        GetObjectRequest.Builder request = GetObjectRequest.builder()
+            .bucket(bucketName)
+            .key(key)
+            .responseContentDisposition("attachment; filename=\"" + downloadFilename + "\"")
+            .responseContentType("application/octet-stream");
+        if (contentEncoding != null) {
+            request.responseContentEncoding(contentEncoding);
+        }
+
+        return presigner.presignGetObject(presign -> presign
+            .signatureDuration(validity)
+            .getObjectRequest(request.build())
+        ).url().toString();
+    }
+
+    @Override
+    public String presignPut(String key, String contentType, Duration validity) {
+        return presigner.presignPutObject(presign -> presign
+            .signatureDuration(validity)
+            .putObjectRequest(request -> request.bucket(bucketName).key(key).contentType(contentType))
+        ).url().toString();
+    }
+
+    @Override
+    public String presignPart(String key, String uploadId, int partNumber, Duration validity) {
+        return presigner.presignUploadPart(presign -> presign
+            .signatureDuration(validity)
+            .uploadPartRequest(request -> request.bucket(bucketName).key(key).uploadId(uploadId).partNumber(partNumber))
+        ).url().toString();
+    }
+
+    @Override
+    public String startMultipart(String key, String contentType) {
+        return join(s3.createMultipartUpload(
+            request -> request.bucket(bucketName).key(key).contentType(contentType)
+        )).uploadId();
+    }
+
+    @Override
+    public String uploadPart(String key, String uploadId, int partNumber, InputStream content, long length) {
+        return join(s3.uploadPart(
+            request -> request.bucket(bucketName).key(key).uploadId(uploadId).partNumber(partNumber).contentLength(length),
+            AsyncRequestBody.fromInputStream(content, length, ioExecutor)
+        )).eTag();
+    }
+
+    @Override
+    public CompletableFuture<String> uploadPartAsync(
+        String key, String uploadId, int partNumber, byte[] buffer, int length, Executor executor
+    ) {
+        // The caller keeps the buffer until the future completes, so the SDK may read it without copying
+        return s3.uploadPart(
+            request -> request.bucket(bucketName).key(key).uploadId(uploadId).partNumber(partNumber).contentLength((long) length),
+            AsyncRequestBody.fromRemainingByteBufferUnsafe(ByteBuffer.wrap(buffer, 0, length))
+        ).thenApply(UploadPartResponse::eTag);
+    }
+
+    @Override
+    public void completeMultipart(String key, String uploadId, List<CompletedPart> parts) {
+        List<software.amazon.awssdk.services.s3.model.CompletedPart> etags = parts.stream()
+            .map(part -> software.amazon.awssdk.services.s3.model.CompletedPart.builder()
+                .partNumber(part.partNumber())
+                .eTag(part.etag())
+                .build())
+            .toList();
+
+        join(s3.completeMultipartUpload(request -> request
+            .bucket(bucketName)
+            .key(key)
+            .uploadId(uploadId)
+            .multipartUpload(CompletedMultipartUpload.builder().parts(etags).build())
+        ));
+    }
+
+    @Override
+    public void abortMultipart(String key, String uploadId) {
+        join(s3.abortMultipartUpload(request -> request.bucket(bucketName).key(key).uploadId(uploadId)));
+    }
+
+    @Override
+    public List<PendingUpload> listMultipartUploadsStartedBefore(String prefix, Instant cutoff) {
+        List<PendingUpload> pending = new ArrayList<>();
+        String keyMarker = null;
+        String uploadIdMarker = null;
+        ListMultipartUploadsResponse listing;
+        do {
+            String keys = keyMarker;
+            String uploadIds = uploadIdMarker;
+            listing = join(s3.listMultipartUploads(request -> request
+                .bucket(bucketName)
+                .prefix(prefix)
+                .keyMarker(keys)
+                .uploadIdMarker(uploadIds)
+            ));
+            for (MultipartUpload upload : listing.uploads()) {
+                if (upload.initiated().isBefore(cutoff)) {
+                    pending.add(new PendingUpload(upload.key(), upload.uploadId(), upload.initiated()));
+                }
+            }
+            keyMarker = listing.nextKeyMarker();
+            uploadIdMarker = listing.nextUploadIdMarker();
+        } while (Boolean.TRUE.equals(listing.isTruncated()));
+        return pending;
+    }
+
+    // Waits for the call and rethrows its failure as it was thrown (S3Exception, SdkClientException, ...)
+    private static <T> T join(CompletableFuture<T> call) {
+        try {
+            return call.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw e;
+        }
+    }
+}
@@ -0,0 +1,205 @@
+package com.peerlink.fileSharer.storage;
+
+import com.amazonaws.HttpMethod;
+import com.amazonaws.services.s3.AmazonS3;
+import com.amazonaws.services.s3.model.AbortMultipartUploadRequest;
+import com.amazonaws.services.s3.model.AmazonS3Exception;
+import com.amazonaws.services.s3.model.CompleteMultipartUploadRequest;
+import com.amazonaws.services.s3.model.DeleteObjectsRequest;
+import com.amazonaws.services.s3.model.GeneratePresignedUrlRequest;
+import com.amazonaws.services.s3.model.GetObjectRequest;
+import com.amazonaws.services.s3.model.InitiateMultipartUploadRequest;
+import com.amazonaws.services.s3.model.ListMultipartUploadsRequest;
+import com.amazonaws.services.s3.model.MultipartUpload;
+import com.amazonaws.services.s3.model.MultipartUploadListing;
+import com.amazonaws.services.s3.model.ObjectMetadata;
+import com.amazonaws.services.s3.model.PartETag;
+import com.amazonaws.services.s3.model.PutObjectRequest;
+import com.amazonaws.services.s3.model.UploadPartRequest;
+import io.micrometer.observation.annotation.Observed;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.io.InputStream;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Date;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Stores objects in the S3 bucket configured by app.aws.s3.bucket-name.
+ */
+@Component
+@Observed(name = "storage.operation", contextualName = "storage")
+@ConditionalOnProperty(name = "app.storage.backend", havingValue = "s3", matchIfMissing = true)
+public class S3StorageBackend implements StorageBackend {
+
+    // S3 multi-object delete accepts at most 1000 keys per request
+    private static final int MAX_KEYS_PER_DELETE = 1000;
+
+    private final AmazonS3 amazonS3;
+
+    @Value("${app.aws.s3.bucket-name}")
+    private String bucketName;
+
+    public S3StorageBackend(AmazonS3 amazonS3) {
+        this.amazonS3 = amazonS3;
+    }
+
+    @Override
+    public void put(String key, InputStream content, long length, String contentType) {
+        ObjectMetadata metadata = new ObjectMetadata();
+        metadata.setContentLength(length);
+        metadata.setContentType(contentType);
+
+        amazonS3.putObject(new PutObjectRequest(bucketName, key, content, metadata));
+    }
+
+    @Override
+    public InputStream get(String key) {
+        return amazonS3.getObject(bucketName, key).getObjectContent();
+    }
+
+    @Override
+    public InputStream getRange(String key, long start, long end) {
+        return amazonS3.getObject(new GetObjectRequest(bucketName, key).withRange(start, end)).getObjectContent();
+    }
+
+    @Override
+    public void delete(String key) {
+        amazonS3.deleteObject(bucketName, key);
+    }
+
+    @Override
+    public void deleteAll(Collection<String> keys) {
+        List<DeleteObjectsRequest.KeyVersion> batch = new ArrayList<>(MAX_KEYS_PER_DELETE);
+        for (String key : keys) {
+            batch.add(new DeleteObjectsRequest.KeyVersion(key));
+            if (batch.size() == MAX_KEYS_PER_DELETE) {
+                deleteBatch(batch);
+                batch = new ArrayList<>(MAX_KEYS_PER_DELETE);
+            }
+        }
+        if (!batch.isEmpty()) {
+            deleteBatch(batch);
+        }
+    }
+
+    private void deleteBatch(List<DeleteObjectsRequest.KeyVersion> keys) {
+        // Quiet mode: the response only lists keys that failed
+        amazonS3.deleteObjects(new DeleteObjectsRequest(bucketName).withKeys(keys).withQuiet(true));
+    }
+
+    @Override
+    public Optional<ObjectInfo> stat(String key) {
+        try {
+            ObjectMetadata metadata = amazonS3.getObjectMetadata(bucketName, key);
+            return Optional.of(new ObjectInfo(metadata.getContentLength(), metadata.getETag()));
+        } catch (AmazonS3Exception e) {
+            if (e.getStatusCode() == 404) {
+                return Optional.empty();
+            }
+            throw e;
+        }
+    }
+
+    @Override
+    public String presignGet(String key, String downloadFilename, String contentEncoding, Duration validity) {
+        Date expiration = Date.from(Instant.now().plus(validity));
+
+        // Create the request to S3 with response headers to force download
+        GeneratePresignedUrlRequest urlRequest = new GeneratePresignedUrlRequest(bucketName, key)
+            .withMethod(HttpMethod.GET)
+            .withExpiration(expiration);
+
+        // Force download with original filename
+        urlRequest.addRequestParameter("response-content-disposition",
+            "attachment; filename=\"" + downloadFilename + "\"");
+        urlRequest.addRequestParameter("response-content-type", "application/octet-stream");
+        if (contentEncoding != null) {
+            urlRequest.addRequestParameter("response-content-encoding", contentEncoding);
+        }
+
+        return amazonS3.generatePresignedUrl(urlRequest).toString();
+    }
+
+    @Override
+    public String presignPut(String key, String contentType, Duration validity) {
+        GeneratePresignedUrlRequest urlRequest = new GeneratePresignedUrlRequest(bucketName, key)
+            .withMethod(HttpMethod.PUT)
+            .withExpiration(Date.from(Instant.now().plus(validity)))
+            .withContentType(contentType);
+
+        return amazonS3.generatePresignedUrl(urlRequest).toString();
+    }
+
+    @Override
+    public String presignPart(String key, String uploadId, int partNumber, Duration validity) {
+        GeneratePresignedUrlRequest urlRequest = new GeneratePresignedUrlRequest(bucketName, key)
+            .withMethod(HttpMethod.PUT)
+            .withExpiration(Date.from(Instant.now().plus(validity)));
+        urlRequest.addRequestParameter("uploadId", uploadId);
+        urlRequest.addRequestParameter("partNumber", String.valueOf(partNumber));
+
+        return amazonS3.generatePresignedUrl(urlRequest).toString();
+    }
+
+    @Override
+    public String startMultipart(String key, String contentType) {
+        ObjectMetadata metadata = new ObjectMetadata();
+        metadata.setContentType(contentType);
+
+        return amazonS3.initiateMultipartUpload(
+            new InitiateMultipartUploadRequest(bucketName, key, metadata)
+        ).getUploadId();
+    }
+
+    @Override
+    public String uploadPart(String key, String uploadId, int partNumber, InputStream content, long length) {
+        return amazonS3.uploadPart(new UploadPartRequest()
+            .withBucketName(bucketName)
+            .withKey(key)
+            .withUploadId(uploadId)
+            .withPartNumber(partNumber)
+            .withInputStream(content)
+            .withPartSize(length)
+        ).getETag();
+    }
+
+    @Override
+    public void completeMultipart(String key, String uploadId, List<CompletedPart> parts) {
+        List<PartETag> etags = parts.stream()
+            .map(part -> new PartETag(part.partNumber(), part.etag()))
+            .toList();
+
+        amazonS3.completeMultipartUpload(new CompleteMultipartUploadRequest(bucketName, key, uploadId, etags));
+    }
+
+    @Override
+    public void abortMultipart(String key, String uploadId) {
+        amazonS3.abortMultipartUpload(new AbortMultipartUploadRequest(bucketName, key, uploadId));
+    }
+
+    @Override
+    public List<PendingUpload> listMultipartUploadsStartedBefore(String prefix, Instant cutoff) {
+        List<PendingUpload> pending = new ArrayList<>();
+        ListMultipartUploadsRequest request = new ListMultipartUploadsRequest(bucketName).withPrefix(prefix);
+        MultipartUploadListing listing;
+        do {
+            listing = amazonS3.listMultipartUploads(request);
+            for (MultipartUpload upload : listing.getMultipartUploads()) {
+                Instant initiated = upload.getInitiated().toInstant();
+                if (initiated.isBefore(cutoff)) {
+                    pending.add(new PendingUpload(upload.getKey(), upload.getUploadId(), initiated));
+                }
+            }
+            request.setKeyMarker(listing.getNextKeyMarker());
+            request.setUploadIdMarker(listing.getNextUploadIdMarker());
+        } while (listing.isTruncated());
+        return pending;
+    }
+}
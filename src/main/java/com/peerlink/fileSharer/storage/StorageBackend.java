@@ -0,0 +1,128 @@
+package com.peerlink.fileSharer.storage;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+
+/**
+ * Where uploaded bytes live. FileService and the upload pipelines only talk to this
+ * interface; app.storage.backend selects S3 ("s3", the default), S3 through the non-blocking
+ * SDK v2 client ("s3-async") or the local disk ("local").
+ *
+ * Implementations carry @Observed(name = "storage.operation"): every call gets a timer tagged
+ * with the method name and a tracing span under the request that made it. For get/getRange
+ * the timing covers opening the stream, not reading it.
+ */
+public interface StorageBackend {
+
+    /**
+     * A part that has been uploaded and is ready to be stitched into the final object.
+     */
+    record CompletedPart(int partNumber, String etag) {}
+
+    /**
+     * A multipart upload that was started but never completed or aborted.
+     */
+    record PendingUpload(String key, String uploadId, Instant initiated) {}
+
+    /**
+     * Size and ETag of a stored object.
+     */
+    record ObjectInfo(long size, String etag) {}
+
+    void put(String key, InputStream content, long length, String contentType) throws IOException;
+
+    InputStream get(String key) throws IOException;
+
+    /**
+     * Streams bytes start..end (both inclusive) of the object.
+     */
+    InputStream getRange(String key, long start, long end) throws IOException;
+
+    void delete(String key);
+
+    /**
+     * Deletes many objects with as few requests as the backend allows. Missing keys are ignored.
+     */
+    void deleteAll(Collection<String> keys);
+
+    /**
+     * Size and ETag of the object, or empty if there is no object under this key.
+     */
+    Optional<ObjectInfo> stat(String key);
+
+    /**
+     * Returns a URL the client can download the object from without going through this
+     * server's request path, forcing a download under the given filename.
+     */
+    default String presignGet(String key, String downloadFilename, Duration validity) {
+        return presignGet(key, downloadFilename, null, validity);
+    }
+
+    /**
+     * Same as above for an object stored encoded (e.g. "gzip"): the download is served with
+     * that Content-Encoding, so the client decodes it back to the original bytes.
+     */
+    String presignGet(String key, String downloadFilename, String contentEncoding, Duration validity);
+
+    /**
+     * Returns a URL the client can PUT the whole object to directly, bypassing this server.
+     * The client must send the same Content-Type.
+     */
+    String presignPut(String key, String contentType, Duration validity);
+
+    /**
+     * Returns a URL the client can PUT one part of a multipart upload to. The response
+     * carries the part's ETag, which the client hands back when the upload is completed.
+     */
+    String presignPart(String key, String uploadId, int partNumber, Duration validity);
+
+    // --- Multipart uploads: parts are numbered from 1 and completed in order ---
+
+    String startMultipart(String key, String contentType);
+
+    /**
+     * Stores one part and returns its ETag. Uploading the same part number again replaces it.
+     */
+    String uploadPart(String key, String uploadId, int partNumber, InputStream content, long length) throws IOException;
+
+    void completeMultipart(String key, String uploadId, List<CompletedPart> parts) throws IOException;
+
+    void abortMultipart(String key, String uploadId);
+
+    /**
+     * Multipart uploads under the key prefix started before the cutoff that are still open (for garbage collection).
+     */
+    List<PendingUpload> listMultipartUploadsStartedBefore(String prefix, Instant cutoff);
+
+    // --- Non-blocking variants. The defaults run the blocking call on the given executor;
+    // s3-async sends the request without holding any thread while S3 works on it ---
+
+    /**
+     * Uploads bytes 0..length of the buffer as one part and completes with its ETag.
+     * The buffer must be left alone until the future completes.
+     */
+    default CompletableFuture<String> uploadPartAsync(
+        String key, String uploadId, int partNumber, byte[] buffer, int length, Executor executor
+    ) {
+        return CompletableFuture.supplyAsync(() -> {
+            try {
+                return uploadPart(key, uploadId, partNumber, new ByteArrayInputStream(buffer, 0, length), length);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }, executor);
+    }
+
+    default CompletableFuture<Void> deleteAllAsync(Collection<String> keys, Executor executor) {
+        return CompletableFuture.runAsync(() -> deleteAll(keys), executor);
+    }
+}
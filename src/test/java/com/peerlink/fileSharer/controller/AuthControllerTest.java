@@ -0,0 +1,90 @@
+package com.peerlink.fileSharer.controller;
+
+import com.peerlink.fileSharer.payload.LoginRequest;
+import com.peerlink.fileSharer.repository.UserRepository;
+import com.peerlink.fileSharer.security.LoginService;
+import com.peerlink.fileSharer.security.TokenService;
+import com.peerlink.fileSharer.security.UserPrincipal;
+import com.peerlink.fileSharer.service.AccountPurgeService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpSession;
+import org.springframework.security.authentication.BadCredentialsException;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.security.web.context.HttpSessionSecurityContextRepository;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class AuthControllerTest {
+
+    private LoginService loginService;
+    private AuthController controller;
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void setUp() {
+        loginService = mock(LoginService.class);
+        ObjectProvider<TokenService> noTokens = mock(ObjectProvider.class); // Session mode
+        controller = new AuthController(
+            loginService, mock(UserRepository.class), mock(PasswordEncoder.class), noTokens, mock(AccountPurgeService.class)
+        );
+    }
+
+    @Test
+    void aFailedLoginLeavesNoSessionBehind() {
+        when(loginService.authenticate(anyString(), anyString()))
+            .thenReturn(CompletableFuture.failedFuture(new BadCredentialsException("bad")));
+        MockHttpServletRequest request = new MockHttpServletRequest();
+
+        ResponseEntity<?> response = controller.authenticateUser(login(), request).join();
+
+        assertThat(response.getStatusCode()).isEqualTo(HttpStatus.UNAUTHORIZED);
+        assertThat(request.getSession(false)).as("session after the failed login").isNull();
+    }
+
+    @Test
+    void aFailedLoginKeepsTheClientsExistingSession() {
+        when(loginService.authenticate(anyString(), anyString()))
+            .thenReturn(CompletableFuture.failedFuture(new BadCredentialsException("bad")));
+        MockHttpServletRequest request = new MockHttpServletRequest();
+        MockHttpSession existing = new MockHttpSession();
+        request.setSession(existing);
+
+        controller.authenticateUser(login(), request).join();
+
+        assertThat(existing.isInvalid()).isFalse();
+    }
+
+    @Test
+    void aSuccessfulLoginIsStoredInTheSession() {
+        UserPrincipal principal = new UserPrincipal(1L, "alice", "hash", "FREE_USER");
+        when(loginService.authenticate(anyString(), anyString())).thenReturn(CompletableFuture.completedFuture(
+            new UsernamePasswordAuthenticationToken(principal, null, List.of())
+        ));
+        MockHttpServletRequest request = new MockHttpServletRequest();
+
+        ResponseEntity<?> response = controller.authenticateUser(login(), request).join();
+
+        assertThat(response.getStatusCode()).isEqualTo(HttpStatus.OK);
+        assertThat(request.getSession(false).getAttribute(HttpSessionSecurityContextRepository.SPRING_SECURITY_CONTEXT_KEY))
+            .isNotNull();
+    }
+
+    private static LoginRequest login() {
+        LoginRequest login = new LoginRequest();
+        login.setUsername("alice");
+        login.setPassword("secret");
+        return login;
+    }
+}
@@ -0,0 +1,222 @@
+package com.peerlink.fileSharer.controller;
+
+import com.peerlink.fileSharer.service.ProxyDownloadService;
+import com.peerlink.fileSharer.service.ProxyDownloadService.ProxyTarget;
+import com.peerlink.fileSharer.service.ShareCodeCache;
+import com.peerlink.fileSharer.storage.StorageBackend.ObjectInfo;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpRange;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+class ProxyDownloadControllerTest {
+
+    private static final String URL = "/files/stream/12345";
+    private static final String ETAG = "\"abc123\"";
+    private static final byte[] CONTENT = "0123456789abcdefghijklmnopqrstuvwxyz".getBytes(StandardCharsets.US_ASCII);
+
+    private ProxyDownloadService service;
+    private ProxyTarget target;
+    private MockMvc mockMvc;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        service = mock(ProxyDownloadService.class);
+        ShareCodeCache.CachedFile file = new ShareCodeCache.CachedFile(
+            "files/report.txt", "report.txt", Instant.now().plusSeconds(3600), "text/plain", null, null, null
+        );
+        target = new ProxyTarget("12345", file, new ObjectInfo(CONTENT.length, "abc123"), null);
+        when(service.resolve("12345")).thenReturn(target);
+        doAnswer(invocation -> {
+            int start = (int) (long) invocation.getArgument(1);
+            int end = (int) (long) invocation.getArgument(2);
+            invocation.<OutputStream>getArgument(3).write(CONTENT, start, end - start + 1);
+            return null;
+        }).when(service).copy(any(), anyLong(), anyLong(), any());
+
+        mockMvc = MockMvcBuilders.standaloneSetup(new ProxyDownloadController(service)).build();
+    }
+
+    @Test
+    void sendsTheWholeFileWithoutARange() throws Exception {
+        mockMvc.perform(get(URL))
+            .andExpect(status().isOk())
+            .andExpect(header().string(HttpHeaders.ACCEPT_RANGES, "bytes"))
+            .andExpect(header().string(HttpHeaders.ETAG, ETAG))
+            .andExpect(header().longValue(HttpHeaders.CONTENT_LENGTH, CONTENT.length))
+            .andExpect(content().bytes(CONTENT));
+
+        verify(service).countDownload(target);
+    }
+
+    @Test
+    void sendsOneRangeAsPartialContent() throws Exception {
+        mockMvc.perform(get(URL).header(HttpHeaders.RANGE, "bytes=10-15"))
+            .andExpect(status().isPartialContent())
+            .andExpect(header().string(HttpHeaders.CONTENT_RANGE, "bytes 10-15/36"))
+            .andExpect(header().longValue(HttpHeaders.CONTENT_LENGTH, 6))
+            .andExpect(content().string("abcdef"));
+
+        // Only the request for the first byte counts as a download
+        verify(service, never()).countDownload(any());
+    }
+
+    @Test
+    void resolvesSuffixAndOpenEndedRanges() throws Exception {
+        mockMvc.perform(get(URL).header(HttpHeaders.RANGE, "bytes=-4"))
+            .andExpect(status().isPartialContent())
+            .andExpect(header().string(HttpHeaders.CONTENT_RANGE, "bytes 32-35/36"))
+            .andExpect(content().string("wxyz"));
+
+        mockMvc.perform(get(URL).header(HttpHeaders.RANGE, "bytes=0-"))
+            .andExpect(status().isPartialContent())
+            .andExpect(header().string(HttpHeaders.CONTENT_RANGE, "bytes 0-35/36"))
+            .andExpect(content().bytes(CONTENT));
+
+        verify(service).countDownload(target);
+    }
+
+    @Test
+    void honoursTheRangeWhenIfRangeMatches() throws Exception {
+        mockMvc.perform(get(URL).header(HttpHeaders.RANGE, "bytes=10-15").header(HttpHeaders.IF_RANGE, ETAG))
+            .andExpect(status().isPartialContent())
+            .andExpect(content().string("abcdef"));
+    }
+
+    @Test
+    void sendsTheWholeFileWhenIfRangeDoesNotMatch() throws Exception {
+        mockMvc.perform(get(URL).header(HttpHeaders.RANGE, "bytes=10-15").header(HttpHeaders.IF_RANGE, "\"stale\""))
+            .andExpect(status().isOk())
+            .andExpect(header().doesNotExist(HttpHeaders.CONTENT_RANGE))
+            .andExpect(content().bytes(CONTENT));
+
+        // A date validator can't match a strong ETag either
+        mockMvc.perform(get(URL).header(HttpHeaders.RANGE, "bytes=10-15").header(HttpHeaders.IF_RANGE, "Wed, 21 Oct 2015 07:28:00 GMT"))
+            .andExpect(status().isOk());
+    }
+
+    @Test
+    void rejectsAnUnsatisfiableRange() throws Exception {
+        mockMvc.perform(get(URL).header(HttpHeaders.RANGE, "bytes=36-40"))
+            .andExpect(status().isRequestedRangeNotSatisfiable())
+            .andExpect(header().string(HttpHeaders.CONTENT_RANGE, "bytes */36"));
+
+        verify(service, never()).copy(any(), anyLong(), anyLong(), any());
+    }
+
+    @Test
+    void ignoresAMalformedRange() throws Exception {
+        mockMvc.perform(get(URL).header(HttpHeaders.RANGE, "bytes=banana"))
+            .andExpect(status().isOk())
+            .andExpect(content().bytes(CONTENT));
+    }
+
+    @Test
+    void sendsSeveralRangesAsMultipartByteranges() throws Exception {
+        MvcResult result = mockMvc.perform(get(URL).header(HttpHeaders.RANGE, "bytes=20-22,0-1"))
+            .andExpect(status().isPartialContent())
+            .andReturn();
+
+        String contentType = result.getResponse().getContentType();
+        assertThat(contentType).startsWith("multipart/byteranges; boundary=");
+        String boundary = contentType.substring(contentType.indexOf('=') + 1);
+        String body = result.getResponse().getContentAsString();
+
+        // Parts follow the order of the request
+        assertThat(body).isEqualTo(
+            "\r\n--" + boundary + "\r\n"
+                + "Content-Type: text/plain\r\n"
+                + "Content-Range: bytes 20-22/36\r\n\r\n"
+                + "klm"
+                + "\r\n--" + boundary + "\r\n"
+                + "Content-Type: text/plain\r\n"
+                + "Content-Range: bytes 0-1/36\r\n\r\n"
+                + "01"
+                + "\r\n--" + boundary + "--\r\n"
+        );
+        verify(service).countDownload(target);
+    }
+
+    @Test
+    void sendsTheWholeFileOnceForOverlappingRanges() throws Exception {
+        mockMvc.perform(get(URL).header(HttpHeaders.RANGE, "bytes=0-10,5-15"))
+            .andExpect(status().isOk())
+            .andExpect(header().doesNotExist(HttpHeaders.CONTENT_RANGE))
+            .andExpect(content().bytes(CONTENT));
+
+        mockMvc.perform(get(URL).header(HttpHeaders.RANGE, "bytes=0-,0-,0-"))
+            .andExpect(status().isOk())
+            .andExpect(content().bytes(CONTENT));
+    }
+
+    @Test
+    void answersAMatchingIfNoneMatchWithNotModified() throws Exception {
+        mockMvc.perform(get(URL).header(HttpHeaders.IF_NONE_MATCH, "\"other\", W/" + ETAG))
+            .andExpect(status().isNotModified())
+            .andExpect(header().string(HttpHeaders.ETAG, ETAG));
+
+        verify(service, never()).countDownload(any());
+    }
+
+    @Test
+    void answersAnUnknownShareCodeWithNotFound() throws Exception {
+        mockMvc.perform(get("/files/stream/99999"))
+            .andExpect(status().isNotFound());
+    }
+
+    @Test
+    void resolveDropsUnsatisfiableRangesAndKeepsTheRest() {
+        List<long[]> bounds = ProxyDownloadController.resolve(HttpRange.parseRanges("bytes=50-60,30-"), 36);
+
+        assertThat(bounds).hasSize(1);
+        assertThat(bounds.get(0)).containsExactly(30, 35);
+    }
+
+    @Test
+    void resolveClampsTheEndToTheFile() {
+        List<long[]> bounds = ProxyDownloadController.resolve(HttpRange.parseRanges("bytes=30-100"), 36);
+
+        assertThat(bounds).hasSize(1);
+        assertThat(bounds.get(0)).containsExactly(30, 35);
+    }
+
+    @Test
+    void resolveReturnsNullWhenNothingCanBeServed() {
+        assertThat(ProxyDownloadController.resolve(HttpRange.parseRanges("bytes=36-,40-50"), 36)).isNull();
+    }
+
+    @Test
+    void resolveFallsBackToTheWholeFileForAdjacentOrExcessiveRanges() {
+        // Touching but not overlapping ranges are fine
+        assertThat(ProxyDownloadController.resolve(HttpRange.parseRanges("bytes=0-9,10-19"), 36)).hasSize(2);
+        // Overlapping ones are not
+        assertThat(ProxyDownloadController.resolve(HttpRange.parseRanges("bytes=0-10,10-19"), 36)).isEmpty();
+        // Nor are ranges that add up to more than the file
+        assertThat(ProxyDownloadController.resolve(HttpRange.parseRanges("bytes=-30,0-9"), 36)).isEmpty();
+
+        List<long[]> ordered = ProxyDownloadController.resolve(HttpRange.parseRanges("bytes=20-29,0-9"), 36);
+        assertThat(ordered).extracting(range -> Arrays.toString(range)).containsExactly("[20, 29]", "[0, 9]");
+    }
+}
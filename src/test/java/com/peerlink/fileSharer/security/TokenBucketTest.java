@@ -0,0 +1,102 @@
+package com.peerlink.fileSharer.security;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class TokenBucketTest {
+
+    private static final long SECOND = 1_000_000_000L;
+    private static final long START = 1_000 * SECOND;
+
+    @Test
+    void admitsABurstUpToCapacityThenRejects() {
+        TokenBucket bucket = new TokenBucket(10, 5, START);
+
+        for (int i = 0; i < 5; i++) {
+            assertThat(bucket.tryConsume(1, START)).isZero();
+        }
+        // The next token arrives after 1/10 s
+        assertThat(bucket.tryConsume(1, START)).isEqualTo(SECOND / 10);
+    }
+
+    @Test
+    void refillsAtTheConfiguredRate() {
+        TokenBucket bucket = new TokenBucket(10, 5, START);
+        for (int i = 0; i < 5; i++) {
+            bucket.tryConsume(1, START);
+        }
+
+        assertThat(bucket.tryConsume(1, START + SECOND / 10)).isZero();
+        assertThat(bucket.tryConsume(1, START + SECOND / 10)).isPositive();
+        assertThat(bucket.tryConsume(2, START + 3 * SECOND / 10)).isZero();
+    }
+
+    @Test
+    void neverHoldsMoreThanCapacity() {
+        TokenBucket bucket = new TokenBucket(10, 5, START);
+        long later = START + 60 * SECOND;
+
+        for (int i = 0; i < 5; i++) {
+            assertThat(bucket.tryConsume(1, later)).isZero();
+        }
+        assertThat(bucket.tryConsume(1, later)).isPositive();
+    }
+
+    @Test
+    void admitsAnOversizedRequestWhenFullAndLeavesTheBucketInDebt() {
+        TokenBucket bucket = new TokenBucket(100, 100, START);
+
+        // 300 tokens from a 100-token bucket: admitted, then 2 s of debt plus the usual refill
+        assertThat(bucket.tryConsume(300, START)).isZero();
+        assertThat(bucket.nanosUntilFull(START)).isEqualTo(3 * SECOND);
+        assertThat(bucket.tryConsume(1, START + SECOND)).isPositive();
+        assertThat(bucket.tryConsume(1, START + 2 * SECOND + SECOND / 100)).isZero();
+    }
+
+    @Test
+    void oversizedRequestsWaitForAFullBucket() {
+        TokenBucket bucket = new TokenBucket(100, 100, START);
+        bucket.tryConsume(50, START);
+
+        assertThat(bucket.tryConsume(300, START)).isEqualTo(SECOND / 2);
+        assertThat(bucket.tryConsume(300, START + SECOND / 2)).isZero();
+    }
+
+    @Test
+    void consumeChargesEvenWhenEmpty() {
+        TokenBucket bucket = new TokenBucket(10, 5, START);
+
+        bucket.consume(5, START);
+        bucket.consume(10, START);
+
+        assertThat(bucket.nanosUntilFull(START)).isEqualTo(15 * SECOND / 10);
+        assertThat(bucket.tryConsume(1, START + SECOND)).isPositive();
+    }
+
+    @Test
+    void refundGivesTokensBackButNeverOverfills() {
+        TokenBucket bucket = new TokenBucket(10, 1, START);
+
+        assertThat(bucket.tryConsume(1, START)).isZero();
+        assertThat(bucket.tryConsume(1, START)).isPositive();
+        bucket.refund(1);
+        assertThat(bucket.tryConsume(1, START)).isZero();
+
+        // Refunding into a full bucket adds nothing beyond capacity
+        TokenBucket full = new TokenBucket(10, 1, START);
+        full.refund(5);
+        assertThat(full.tryConsume(1, START)).isZero();
+        assertThat(full.tryConsume(1, START)).isPositive();
+    }
+
+    @Test
+    void aFullBucketHasNothingToWaitFor() {
+        TokenBucket bucket = new TokenBucket(10, 5, START);
+
+        assertThat(bucket.nanosUntilFull(START)).isZero();
+        bucket.tryConsume(2, START);
+        assertThat(bucket.nanosUntilFull(START)).isEqualTo(2 * SECOND / 10);
+        assertThat(bucket.nanosUntilFull(START + SECOND)).isZero();
+    }
+}
@@ -0,0 +1,55 @@
+package com.peerlink.fileSharer.security;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class UploadRateLimiterTest {
+
+    private static final String CLIENT = "ip:192.0.2.1";
+
+    // Guests: 1 request and 1,000 bytes per second, with a one-second burst
+    private static UploadRateLimiter limiter(boolean enabled) {
+        return new UploadRateLimiter(new SimpleMeterRegistry(), enabled, 1, 10, 1000, 1, 1000, 5, 20_000, 20, 100_000);
+    }
+
+    @Test
+    void chargesAnAnnouncedSizeAgainstTheByteQuota() {
+        UploadRateLimiter limiter = limiter(true);
+
+        // A direct upload of a minute's allowance is admitted on a full bucket, then the next one waits
+        assertThat(limiter.tryAcquireBytes(CLIENT, UploadRateLimiter.Tier.GUEST, 60_000)).isNull();
+        UploadRateLimiter.Rejection rejection = limiter.tryAcquireBytes(CLIENT, UploadRateLimiter.Tier.GUEST, 1_000);
+
+        assertThat(rejection).isNotNull();
+        assertThat(rejection.limit()).isEqualTo("bytes");
+        assertThat(rejection.retryAfterSeconds()).isGreaterThanOrEqualTo(59);
+    }
+
+    @Test
+    void refundingAnUploadThatWasNeverStoredFreesTheQuota() {
+        UploadRateLimiter limiter = limiter(true);
+        limiter.tryAcquireBytes(CLIENT, UploadRateLimiter.Tier.GUEST, 60_000);
+
+        limiter.refundBytes(CLIENT, UploadRateLimiter.Tier.GUEST, 60_000);
+
+        assertThat(limiter.tryAcquireBytes(CLIENT, UploadRateLimiter.Tier.GUEST, 1_000)).isNull();
+    }
+
+    @Test
+    void announcedBytesDoNotUseUpTheRequestAllowance() {
+        UploadRateLimiter limiter = limiter(true);
+
+        assertThat(limiter.tryAcquireBytes(CLIENT, UploadRateLimiter.Tier.GUEST, 500)).isNull();
+        assertThat(limiter.tryAcquire(CLIENT, UploadRateLimiter.Tier.GUEST, 0)).isNull();
+    }
+
+    @Test
+    void admitsEverythingWhenDisabled() {
+        UploadRateLimiter limiter = limiter(false);
+
+        assertThat(limiter.tryAcquireBytes(CLIENT, UploadRateLimiter.Tier.GUEST, 60_000)).isNull();
+        assertThat(limiter.tryAcquireBytes(CLIENT, UploadRateLimiter.Tier.GUEST, 60_000)).isNull();
+    }
+}
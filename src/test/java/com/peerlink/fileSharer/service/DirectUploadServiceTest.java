@@ -0,0 +1,46 @@
+package com.peerlink.fileSharer.service;
+
+import com.peerlink.fileSharer.repository.FileRecordRepository;
+import com.peerlink.fileSharer.repository.UserRepository;
+import com.peerlink.fileSharer.storage.StorageBackend;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.util.unit.DataSize;
+
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verifyNoInteractions;
+
+class DirectUploadServiceTest {
+
+    private StorageBackend storage;
+    private FileService fileService;
+    private DirectUploadService service;
+
+    @BeforeEach
+    void setUp() {
+        storage = mock(StorageBackend.class);
+        fileService = mock(FileService.class);
+        service = new DirectUploadService(storage, fileService, mock(FileRecordRepository.class), mock(UserRepository.class));
+        ReflectionTestUtils.setField(service, "maxSize", DataSize.ofMegabytes(100));
+        ReflectionTestUtils.setField(service, "partSizeMb", 64L);
+        ReflectionTestUtils.setField(service, "urlTtlMinutes", 60L);
+    }
+
+    @Test
+    void rejectsAnAnnouncedSizeAboveTheLimitBeforeReservingAnything() {
+        long tooLarge = DataSize.ofMegabytes(100).toBytes() + 1;
+
+        assertThatThrownBy(() -> service.startUpload("video.mp4", "video/mp4", tooLarge, null, null))
+            .hasMessageContaining("100 MB limit");
+        verifyNoInteractions(storage, fileService);
+    }
+
+    @Test
+    void rejectsAnEmptyFile() {
+        assertThatThrownBy(() -> service.startUpload("empty.txt", "text/plain", 0, null, null))
+            .hasMessageContaining("greater than zero");
+        verifyNoInteractions(storage, fileService);
+    }
+}
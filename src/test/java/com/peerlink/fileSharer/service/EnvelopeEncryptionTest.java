@@ -0,0 +1,165 @@
+package com.peerlink.fileSharer.service;
+
+import com.peerlink.fileSharer.service.EnvelopeEncryption.Envelope;
+import com.peerlink.fileSharer.service.EnvelopeEncryption.SegmentRange;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class EnvelopeEncryptionTest {
+
+    private static final int SEGMENT = 1024;
+    private static final int SEALED = SEGMENT + EnvelopeEncryption.TAG_BYTES;
+    private static final String MASTER_KEY = Base64.getEncoder().encodeToString(new byte[32]);
+
+    private final EnvelopeEncryption encryption = new EnvelopeEncryption(true, MASTER_KEY, 1);
+
+    @Test
+    void segmentRangeCoversTheSegmentsHoldingTheRequestedBytes() {
+        Envelope envelope = new Envelope("unused", SEGMENT);
+        long stored = EnvelopeEncryption.storedSize(5_000, SEGMENT);
+
+        // Bytes 1500..2100 lie in segments 1 and 2
+        SegmentRange range = EnvelopeEncryption.segmentRange(envelope, stored, 1_500, 2_100);
+        assertThat(range).isEqualTo(new SegmentRange(SEALED, 3L * SEALED - 1, 1, 4, 1_500 - SEGMENT));
+
+        // The last segment is short: the range ends with the object
+        SegmentRange tail = EnvelopeEncryption.segmentRange(envelope, stored, 4_500, 4_999);
+        assertThat(tail).isEqualTo(new SegmentRange(4L * SEALED, stored - 1, 4, 4, 4_500 - 4 * SEGMENT));
+
+        // A range inside one segment starting on its boundary
+        SegmentRange single = EnvelopeEncryption.segmentRange(envelope, stored, SEGMENT, SEGMENT + 10);
+        assertThat(single).isEqualTo(new SegmentRange(SEALED, 2L * SEALED - 1, 1, 4, 0));
+    }
+
+    @Test
+    void sizesConvertBothWays() {
+        assertThat(EnvelopeEncryption.storedSize(0, SEGMENT)).isEqualTo(EnvelopeEncryption.TAG_BYTES);
+        assertThat(EnvelopeEncryption.storedSize(SEGMENT, SEGMENT)).isEqualTo(SEALED);
+        assertThat(EnvelopeEncryption.storedSize(SEGMENT + 1, SEGMENT)).isEqualTo(SEALED + 1 + EnvelopeEncryption.TAG_BYTES);
+
+        for (long size : new long[]{0, 1, SEGMENT - 1, SEGMENT, SEGMENT + 1, 5_000, 10 * SEGMENT}) {
+            assertThat(EnvelopeEncryption.plaintextSize(EnvelopeEncryption.storedSize(size, SEGMENT), SEGMENT)).isEqualTo(size);
+        }
+    }
+
+    @ParameterizedTest
+    @ValueSource(ints = {0, 1, SEGMENT - 1, SEGMENT, SEGMENT + 1, 3 * SEGMENT, 5_000})
+    void roundTripsContentOfAnySize(int size) throws IOException {
+        byte[] content = content(size);
+
+        SegmentedEncryptingInputStream encrypted = encryption.encrypt(new ByteArrayInputStream(content));
+        byte[] stored = encrypted.readAllBytes();
+
+        assertThat(stored).hasSize((int) EnvelopeEncryption.storedSize(size, SEGMENT));
+        assertThat(encrypted.plaintextBytes()).isEqualTo(size);
+        assertThat(decrypt(encrypted.envelope(), stored)).isEqualTo(content);
+    }
+
+    @Test
+    void decryptsARangeFromItsSegmentsOnly() throws IOException {
+        byte[] content = content(5_000);
+        SegmentedEncryptingInputStream encrypted = encryption.encrypt(new ByteArrayInputStream(content));
+        byte[] stored = encrypted.readAllBytes();
+        Envelope envelope = encrypted.envelope();
+
+        for (long[] bounds : new long[][]{{0, 0}, {1_500, 2_100}, {SEGMENT, 2 * SEGMENT - 1}, {4_500, 4_999}, {0, 4_999}}) {
+            int start = (int) bounds[0];
+            int end = (int) bounds[1];
+            SegmentRange range = EnvelopeEncryption.segmentRange(envelope, stored.length, start, end);
+            byte[] storedRange = Arrays.copyOfRange(stored, (int) range.storedStart(), (int) range.storedEnd() + 1);
+
+            byte[] plaintext = encryption.decrypt(envelope, new ByteArrayInputStream(storedRange), range)
+                .readNBytes(end - start + 1);
+
+            assertThat(plaintext).isEqualTo(Arrays.copyOfRange(content, start, end + 1));
+        }
+    }
+
+    @Test
+    void rejectsAnObjectTruncatedAtASegmentBoundary() throws IOException {
+        SegmentedEncryptingInputStream encrypted = encryption.encrypt(new ByteArrayInputStream(content(3 * SEGMENT)));
+        byte[] stored = encrypted.readAllBytes();
+
+        // Segment 1 now looks like the last one, but was not sealed as such
+        byte[] truncated = Arrays.copyOf(stored, 2 * SEALED);
+
+        assertThatThrownBy(() -> decrypt(encrypted.envelope(), truncated))
+            .isInstanceOf(IOException.class)
+            .hasMessageContaining("failed authentication");
+    }
+
+    @Test
+    void rejectsAnObjectTruncatedInsideASegment() throws IOException {
+        SegmentedEncryptingInputStream encrypted = encryption.encrypt(new ByteArrayInputStream(content(3 * SEGMENT)));
+        byte[] stored = encrypted.readAllBytes();
+
+        assertThatThrownBy(() -> decrypt(encrypted.envelope(), Arrays.copyOf(stored, 2 * SEALED + 100)))
+            .isInstanceOf(IOException.class);
+        assertThatThrownBy(() -> decrypt(encrypted.envelope(), Arrays.copyOf(stored, 2 * SEALED + 5)))
+            .isInstanceOf(IOException.class);
+    }
+
+    @Test
+    void rejectsReorderedSegments() throws IOException {
+        SegmentedEncryptingInputStream encrypted = encryption.encrypt(new ByteArrayInputStream(content(3 * SEGMENT)));
+        byte[] stored = encrypted.readAllBytes();
+
+        byte[] swapped = stored.clone();
+        System.arraycopy(stored, 0, swapped, SEALED, SEALED);
+        System.arraycopy(stored, SEALED, swapped, 0, SEALED);
+
+        assertThatThrownBy(() -> decrypt(encrypted.envelope(), swapped))
+            .isInstanceOf(IOException.class)
+            .hasMessageContaining("failed authentication");
+    }
+
+    @Test
+    void rejectsAFlippedBit() throws IOException {
+        SegmentedEncryptingInputStream encrypted = encryption.encrypt(new ByteArrayInputStream(content(2 * SEGMENT)));
+        byte[] stored = encrypted.readAllBytes();
+        stored[SEALED + 10] ^= 1;
+
+        assertThatThrownBy(() -> decrypt(encrypted.envelope(), stored))
+            .isInstanceOf(IOException.class)
+            .hasMessageContaining("Segment 1");
+    }
+
+    @Test
+    void rejectsAnEnvelopeFromAnotherMasterKey() throws IOException {
+        SegmentedEncryptingInputStream encrypted = encryption.encrypt(new ByteArrayInputStream(content(100)));
+        byte[] stored = encrypted.readAllBytes();
+        byte[] otherKey = new byte[32];
+        otherKey[0] = 1;
+        EnvelopeEncryption other = new EnvelopeEncryption(true, Base64.getEncoder().encodeToString(otherKey), 1);
+
+        assertThatThrownBy(() -> other.decrypt(encrypted.envelope(), new ByteArrayInputStream(stored)).readAllBytes())
+            .isInstanceOf(IllegalStateException.class);
+    }
+
+    @Test
+    void passesPlaintextObjectsThrough() throws IOException {
+        byte[] content = content(100);
+
+        assertThat(encryption.decrypt(null, new ByteArrayInputStream(content)).readAllBytes()).isEqualTo(content);
+    }
+
+    private byte[] decrypt(Envelope envelope, byte[] stored) throws IOException {
+        return encryption.decrypt(envelope, new ByteArrayInputStream(stored)).readAllBytes();
+    }
+
+    private static byte[] content(int size) {
+        byte[] content = new byte[size];
+        new Random(size).nextBytes(content);
+        return content;
+    }
+}
@@ -0,0 +1,67 @@
+package com.peerlink.fileSharer.service;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.util.BitSet;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class FeistelPermutationTest {
+
+    // 90,000 is the 5-digit share code space; the others hit odd and minimal bit widths
+    @ParameterizedTest
+    @ValueSource(longs = {2, 3, 17, 1_000, 4_096, 90_000})
+    void permutesEveryValueToADistinctValueInRange(long size) {
+        FeistelPermutation permutation = new FeistelPermutation(size, 8731640052281L);
+        BitSet seen = new BitSet((int) size);
+
+        for (long value = 0; value < size; value++) {
+            long permuted = permutation.permute(value);
+            assertThat(permuted).isBetween(0L, size - 1);
+            assertThat(seen.get((int) permuted)).as("%d is hit twice", permuted).isFalse();
+            seen.set((int) permuted);
+            assertThat(permutation.invert(permuted)).isEqualTo(value);
+        }
+        assertThat(seen.cardinality()).isEqualTo((int) size);
+    }
+
+    @Test
+    void differentKeysGiveDifferentOrders() {
+        FeistelPermutation first = new FeistelPermutation(90_000, 1);
+        FeistelPermutation second = new FeistelPermutation(90_000, 2);
+
+        int same = 0;
+        for (long value = 0; value < 1_000; value++) {
+            if (first.permute(value) == second.permute(value)) {
+                same++;
+            }
+        }
+        assertThat(same).isLessThan(10);
+    }
+
+    @Test
+    void consecutiveValuesDoNotLookSequential() {
+        FeistelPermutation permutation = new FeistelPermutation(90_000, 8731640052281L);
+
+        int adjacent = 0;
+        for (long value = 0; value < 1_000; value++) {
+            if (Math.abs(permutation.permute(value + 1) - permutation.permute(value)) == 1) {
+                adjacent++;
+            }
+        }
+        assertThat(adjacent).isLessThan(10);
+    }
+
+    @Test
+    void rejectsValuesOutsideTheDomain() {
+        FeistelPermutation permutation = new FeistelPermutation(100, 7);
+
+        assertThatThrownBy(() -> permutation.permute(100)).isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> permutation.permute(-1)).isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> permutation.invert(100)).isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> new FeistelPermutation(1, 7)).isInstanceOf(IllegalArgumentException.class);
+    }
+}
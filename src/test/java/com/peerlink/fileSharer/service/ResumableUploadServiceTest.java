@@ -0,0 +1,192 @@
+package com.peerlink.fileSharer.service;
+
+import com.peerlink.fileSharer.model.FileRecord;
+import com.peerlink.fileSharer.model.UploadSession;
+import com.peerlink.fileSharer.model.UploadSessionPart;
+import com.peerlink.fileSharer.repository.FileRecordRepository;
+import com.peerlink.fileSharer.repository.UploadSessionPartRepository;
+import com.peerlink.fileSharer.repository.UploadSessionRepository;
+import com.peerlink.fileSharer.service.EnvelopeEncryption.Envelope;
+import com.peerlink.fileSharer.service.EnvelopeEncryption.SegmentRange;
+import com.peerlink.fileSharer.service.UploadEncoder.StoredFormat;
+import com.peerlink.fileSharer.storage.LocalStorageBackend;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.ArgumentCaptor;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Comparator;
+import java.util.Map;
+import java.util.Optional;
+import java.util.TreeMap;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class ResumableUploadServiceTest {
+
+    private static final int CHUNK = (int) ResumableUploadService.MIN_CHUNK_SIZE;
+    private static final String MASTER_KEY = Base64.getEncoder().encodeToString(new byte[32]);
+
+    @TempDir
+    Path root;
+
+    private LocalStorageBackend storage;
+    private EnvelopeEncryption encryption;
+    private FileService fileService;
+    private ResumableUploadService service;
+
+    private UploadSession session;
+    private final Map<Integer, UploadSessionPart> parts = new TreeMap<>();
+
+    @BeforeEach
+    void setUp() throws IOException {
+        storage = new LocalStorageBackend(root.toString(), "signing-key", "http://localhost:8080");
+        encryption = new EnvelopeEncryption(true, MASTER_KEY, 64);
+        fileService = mock(FileService.class);
+
+        UploadSessionRepository sessionRepository = mock(UploadSessionRepository.class);
+        when(sessionRepository.save(any())).thenAnswer(invocation -> session = invocation.getArgument(0));
+        when(sessionRepository.findById(anyString())).thenAnswer(invocation -> Optional.ofNullable(session));
+
+        UploadSessionPartRepository partRepository = mock(UploadSessionPartRepository.class);
+        doAnswer(invocation -> {
+            UploadSessionPart part = new UploadSessionPart();
+            part.setSessionId(invocation.getArgument(0));
+            part.setPartNumber(invocation.getArgument(1));
+            part.setEtag(invocation.getArgument(2));
+            part.setSize(invocation.getArgument(3));
+            parts.put(part.getPartNumber(), part);
+            return null;
+        }).when(partRepository).upsert(anyString(), anyInt(), anyString(), anyLong());
+        when(partRepository.findBySessionIdOrderByPartNumber(anyString())).thenAnswer(invocation -> parts.values().stream()
+            .sorted(Comparator.comparing(UploadSessionPart::getPartNumber))
+            .toList());
+
+        when(fileService.registerUploadedObject(anyString(), anyString(), any(), isNull(), any())).thenReturn(new FileRecord());
+
+        service = new ResumableUploadService(
+            storage, sessionRepository, partRepository, fileService, mock(FileRecordRepository.class),
+            new TransactionTemplate(mock(PlatformTransactionManager.class)), encryption
+        );
+    }
+
+    @Test
+    void storesEncryptedChunksThatDecryptToTheUpload() throws IOException {
+        byte[] content = content(CHUNK + 100_000);
+
+        StoredFormat format = upload(content);
+
+        byte[] stored = storage.get(session.getS3ObjectKey()).readAllBytes();
+        assertThat(stored).hasSize((int) EnvelopeEncryption.storedSize(content.length, 64 * 1024));
+        assertNotPlaintext(stored, content);
+        assertThat(format.originalSize()).isEqualTo(content.length);
+        assertThat(format.storedSize()).isEqualTo(stored.length);
+        assertThat(encryption.decrypt(format.envelope(), new ByteArrayInputStream(stored)).readAllBytes()).isEqualTo(content);
+    }
+
+    @Test
+    void endsAnUploadOfWholeChunksWithAnEmptyLastSegment() throws IOException {
+        byte[] content = content(2 * CHUNK);
+
+        StoredFormat format = upload(content);
+
+        byte[] stored = storage.get(session.getS3ObjectKey()).readAllBytes();
+        assertNotPlaintext(stored, content);
+        assertThat(format.storedSize()).isEqualTo(stored.length);
+        assertThat(EnvelopeEncryption.plaintextSize(stored.length, 64 * 1024)).isEqualTo(content.length);
+        assertThat(encryption.decrypt(format.envelope(), new ByteArrayInputStream(stored)).readAllBytes()).isEqualTo(content);
+    }
+
+    @Test
+    void decryptsARangeAcrossTheChunkBoundary() throws IOException {
+        byte[] content = content(CHUNK + 100_000);
+        Envelope envelope = upload(content).envelope();
+        long storedSize = storage.get(session.getS3ObjectKey()).readAllBytes().length;
+
+        int start = CHUNK - 1_000;
+        int end = CHUNK + 1_000;
+        SegmentRange range = EnvelopeEncryption.segmentRange(envelope, storedSize, start, end);
+        InputStream storedRange = storage.getRange(session.getS3ObjectKey(), range.storedStart(), range.storedEnd());
+
+        assertThat(encryption.decrypt(envelope, storedRange, range).readNBytes(end - start + 1))
+            .isEqualTo(Arrays.copyOfRange(content, start, end + 1));
+    }
+
+    @Test
+    void requiresAChunkSizeOfWholeSegments() {
+        assertThatThrownBy(() -> service.createSession("report.txt", "text/plain", null, null, "guest"))
+            .hasMessageContaining("multiple of");
+        assertThatThrownBy(() -> service.createSession("report.txt", "text/plain", CHUNK + 1L, null, "guest"))
+            .hasMessageContaining("multiple of");
+    }
+
+    @Test
+    void rejectsAShortChunkBeforeTheLastOne() {
+        // Chunk 1 is above the S3 minimum but short of the declared size, so it was sealed as the end
+        long chunkSize = CHUNK + 64 * 1024;
+        UploadSession created = service.createSession("report.txt", "text/plain", chunkSize, null, "guest");
+        byte[] content = content(CHUNK);
+        service.uploadChunk(created.getId(), 1, new ByteArrayInputStream(content), CHUNK, null);
+        service.uploadChunk(created.getId(), 2, new ByteArrayInputStream(content, 0, 100), 100, null);
+
+        assertThatThrownBy(() -> service.completeSession(created.getId(), null, Instant.now()))
+            .hasMessageContaining("Chunk 1 is not " + chunkSize + " bytes");
+    }
+
+    // Uploads content in CHUNK-sized chunks and returns the format the record was registered with
+    private StoredFormat upload(byte[] content) {
+        UploadSession created = service.createSession("report.txt", "text/plain", (long) CHUNK, null, "guest");
+        for (int offset = 0, part = 1; offset < content.length; offset += CHUNK, part++) {
+            int length = Math.min(CHUNK, content.length - offset);
+            service.uploadChunk(created.getId(), part, new ByteArrayInputStream(content, offset, length), length, null);
+        }
+        service.completeSession(created.getId(), null, Instant.now());
+
+        ArgumentCaptor<StoredFormat> format = ArgumentCaptor.forClass(StoredFormat.class);
+        verify(fileService).registerUploadedObject(eq(created.getS3ObjectKey()), eq("report.txt"), format.capture(), isNull(), any());
+        assertThat(format.getValue().envelope()).isNotNull();
+        return format.getValue();
+    }
+
+    private static void assertNotPlaintext(byte[] stored, byte[] content) {
+        byte[] probe = Arrays.copyOf(content, 64);
+        int found = -1;
+        for (int i = 0; i + probe.length <= stored.length && found < 0; i++) {
+            if (Arrays.equals(stored, i, i + probe.length, probe, 0, probe.length)) {
+                found = i;
+            }
+        }
+        assertThat(found).as("offset of plaintext in the stored object").isEqualTo(-1);
+    }
+
+    // Recognisable text, so plaintext in storage would be easy to spot
+    private static byte[] content(int size) {
+        byte[] line = "confidential quarterly report, line of text\n".getBytes(StandardCharsets.US_ASCII);
+        byte[] content = new byte[size];
+        for (int i = 0; i < size; i++) {
+            content[i] = line[i % line.length];
+        }
+        return content;
+    }
+}
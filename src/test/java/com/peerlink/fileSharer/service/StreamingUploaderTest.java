@@ -0,0 +1,98 @@
+package com.peerlink.fileSharer.service;
+
+import com.peerlink.fileSharer.storage.StorageBackend;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class StreamingUploaderTest {
+
+    private static final int PART = 5 * 1024 * 1024;
+
+    private final ExecutorService executor = Executors.newFixedThreadPool(2);
+    private StorageBackend storage;
+
+    @BeforeEach
+    void setUp() {
+        storage = mock(StorageBackend.class);
+        when(storage.startMultipart(anyString(), any())).thenReturn("upload-1");
+    }
+
+    @AfterEach
+    void tearDown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    void retriesAFailedPartUntilItSucceeds() throws IOException {
+        AtomicInteger attempts = failingFirst(2);
+
+        long written = uploader(3).upload("key", new ByteArrayInputStream(new byte[PART + 1024]), "text/plain");
+
+        assertThat(written).isEqualTo(PART + 1024);
+        assertThat(attempts).hasValue(3);
+        verify(storage).completeMultipart(eq("key"), eq("upload-1"), anyList());
+        verify(storage, never()).abortMultipart(anyString(), anyString());
+    }
+
+    @Test
+    void abortsOnceTheRetriesAreUsedUp() {
+        AtomicInteger attempts = failingFirst(Integer.MAX_VALUE);
+
+        assertThatThrownBy(() -> uploader(2).upload("key", new ByteArrayInputStream(new byte[PART + 1024]), "text/plain"))
+            .isInstanceOf(IOException.class);
+        assertThat(attempts).hasValue(3);
+        verify(storage).abortMultipart("key", "upload-1");
+    }
+
+    @Test
+    void backoffDoublesWithJitterUpToTheCap() {
+        StreamingUploader uploader = uploader(3, 100);
+
+        for (int i = 0; i < 50; i++) {
+            assertThat(uploader.backoffMs(1)).isBetween(50L, 100L);
+            assertThat(uploader.backoffMs(3)).isBetween(200L, 400L);
+            assertThat(uploader.backoffMs(30)).isBetween(5_000L, 10_000L);
+        }
+    }
+
+    // Part 1 fails that many times before succeeding, every other part succeeds at once; counts part 1 attempts
+    private AtomicInteger failingFirst(int failures) {
+        AtomicInteger attempts = new AtomicInteger();
+        when(storage.uploadPartAsync(anyString(), anyString(), anyInt(), any(), anyInt(), any())).thenAnswer(invocation -> {
+            int partNumber = invocation.getArgument(2);
+            if (partNumber == 1 && attempts.incrementAndGet() <= failures) {
+                return CompletableFuture.failedFuture(new IOException("connection reset"));
+            }
+            return CompletableFuture.completedFuture("etag-" + partNumber);
+        });
+        return attempts;
+    }
+
+    private StreamingUploader uploader(int retries) {
+        return uploader(retries, 1);
+    }
+
+    private StreamingUploader uploader(int retries, long retryBaseMs) {
+        return new StreamingUploader(storage, 5, 2, retries, retryBaseMs, executor);
+    }
+}
@@ -0,0 +1,131 @@
+package com.peerlink.fileSharer.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.zip.GZIPInputStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class UploadEncoderTest {
+
+    private static final String OCTET_STREAM = "application/octet-stream";
+
+    private final UploadEncoder encoder = new UploadEncoder(true, 6, 1024, new EnvelopeEncryption(false, "", 64));
+
+    @Test
+    void recognisesBinaryFormatsByTheirMagicBytes() {
+        assertThat(sniff(0x89, 'P', 'N', 'G', 0x0d, 0x0a, 0x1a, 0x0a)).isEqualTo("image/png");
+        assertThat(sniff(0xff, 0xd8, 0xff, 0xe0)).isEqualTo("image/jpeg");
+        assertThat(sniff('%', 'P', 'D', 'F', '-', '1', '.', '7')).isEqualTo("application/pdf");
+        assertThat(sniff('P', 'K', 3, 4, 20, 0)).isEqualTo("application/zip");
+        assertThat(sniff(0x1f, 0x8b, 8, 0)).isEqualTo("application/gzip");
+        assertThat(sniff(0, 0, 0, 0x20, 'f', 't', 'y', 'p', 'i', 's', 'o', 'm')).isEqualTo("video/mp4");
+        assertThat(sniff('R', 'I', 'F', 'F', 0, 0, 0, 0, 'W', 'E', 'B', 'P')).isEqualTo("image/webp");
+    }
+
+    @Test
+    void recognisesTarByItsHeaderAtOffset257() {
+        byte[] header = new byte[512];
+        System.arraycopy("ustar".getBytes(StandardCharsets.US_ASCII), 0, header, 257, 5);
+
+        assertThat(UploadEncoder.sniffContentType(header)).isEqualTo("application/x-tar");
+        assertThat(UploadEncoder.sniffContentType(Arrays.copyOf(header, 260))).isEqualTo(OCTET_STREAM);
+    }
+
+    @Test
+    void recognisesTextTypes() {
+        assertThat(sniffText("  {\"name\": \"report\"}")).isEqualTo("application/json");
+        assertThat(sniffText("[1, 2, 3]")).isEqualTo("application/json");
+        assertThat(sniffText("<!DOCTYPE html>\n<html></html>")).isEqualTo("text/html");
+        assertThat(sniffText("<?xml version=\"1.0\"?><a/>")).isEqualTo("application/xml");
+        assertThat(sniffText("id,name\r\n1,Zoë\r\n")).isEqualTo("text/plain");
+    }
+
+    @Test
+    void acceptsTextCutInsideAMultiByteCharacter() {
+        byte[] text = "naïve café €".getBytes(StandardCharsets.UTF_8);
+
+        // € is three bytes; drop its last one
+        assertThat(UploadEncoder.sniffContentType(Arrays.copyOf(text, text.length - 1))).isEqualTo("text/plain");
+    }
+
+    @Test
+    void fallsBackToOctetStreamForUnknownAndEmptyContent() {
+        byte[] random = new byte[4096];
+        new Random(1).nextBytes(random);
+        random[0] = 0; // Rules out every signature that starts at offset 0
+
+        assertThat(UploadEncoder.sniffContentType(random)).isEqualTo(OCTET_STREAM);
+        assertThat(sniff('h', 'i', 0, 'x')).isEqualTo(OCTET_STREAM);
+        assertThat(sniff(0xc3, 0x28, 'a', 'b', 'c', 'd', 'e')).isEqualTo(OCTET_STREAM); // Invalid UTF-8
+        assertThat(UploadEncoder.sniffContentType(new byte[0])).isEqualTo(OCTET_STREAM);
+    }
+
+    @Test
+    void keepsAMoreSpecificDeclaredTextType() throws IOException {
+        byte[] csv = "id,name\n1,a\n".getBytes(StandardCharsets.UTF_8);
+
+        assertThat(encode(csv, "text/csv").contentType()).isEqualTo("text/csv");
+        assertThat(encode(csv, OCTET_STREAM).contentType()).isEqualTo("text/plain");
+        assertThat(encode(csv, null).contentType()).isEqualTo("text/plain");
+    }
+
+    @Test
+    void overridesTheDeclaredTypeOfRecognisedBinaries() throws IOException {
+        byte[] png = bytes(0x89, 'P', 'N', 'G', 0x0d, 0x0a, 0x1a, 0x0a);
+
+        assertThat(encode(png, "text/plain").contentType()).isEqualTo("image/png");
+        assertThat(encode(bytes(0, 1, 2, 3), "application/x-custom").contentType()).isEqualTo("application/x-custom");
+    }
+
+    @Test
+    void compressesTextAndStoresCompressedFormatsAsSent() throws IOException {
+        byte[] text = "line of text\n".repeat(1_000).getBytes(StandardCharsets.UTF_8);
+        UploadEncoder.EncodedUpload encodedText = encode(text, null);
+        byte[] stored = encodedText.stream().readAllBytes();
+
+        assertThat(encodedText.contentEncoding()).isEqualTo(UploadEncoder.GZIP);
+        assertThat(stored.length).isLessThan(text.length);
+        assertThat(new GZIPInputStream(new ByteArrayInputStream(stored)).readAllBytes()).isEqualTo(text);
+        assertThat(encodedText.finish(stored.length).originalSize()).isEqualTo(text.length);
+
+        byte[] jpeg = Arrays.copyOf(bytes(0xff, 0xd8, 0xff, 0xe0), 4096);
+        UploadEncoder.EncodedUpload encodedJpeg = encode(jpeg, null);
+        assertThat(encodedJpeg.contentEncoding()).isNull();
+        assertThat(encodedJpeg.stream().readAllBytes()).isEqualTo(jpeg);
+    }
+
+    @Test
+    void leavesUploadsBelowTheMinimumSizeAlone() throws IOException {
+        byte[] text = "short".getBytes(StandardCharsets.UTF_8);
+        UploadEncoder.EncodedUpload encoded = encode(text, null);
+
+        assertThat(encoded.contentEncoding()).isNull();
+        assertThat(encoded.stream().readAllBytes()).isEqualTo(text);
+    }
+
+    private UploadEncoder.EncodedUpload encode(byte[] content, String declaredContentType) throws IOException {
+        return encoder.encode(new ByteArrayInputStream(content), declaredContentType);
+    }
+
+    private static String sniffText(String text) {
+        return UploadEncoder.sniffContentType(text.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static String sniff(int... head) {
+        return UploadEncoder.sniffContentType(bytes(head));
+    }
+
+    private static byte[] bytes(int... values) {
+        byte[] bytes = new byte[values.length];
+        for (int i = 0; i < values.length; i++) {
+            bytes[i] = (byte) values[i];
+        }
+        return bytes;
+    }
+}